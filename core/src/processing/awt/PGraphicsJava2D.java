@@ -92,6 +92,9 @@ public class PGraphicsJava2D extends PGraphics {
   public boolean strokeGradient;
   public Paint strokeGradientObject;
 
+  /// pixels[] is the array behind the image, see directPixels()
+  boolean pixelsDirect;
+
 
 
   //////////////////////////////////////////////////////////////
@@ -1037,9 +1040,8 @@ public class PGraphicsJava2D extends PGraphics {
       for (int y = 0; y < height; y++) {
         src.getDataElements(0, y, width, 1, srcPixels);
         dstIn.getDataElements(0, y, width, 1, dstPixels);
-        for (int x = 0; x < width; x++) {
-          dstPixels[x] = blendColor(dstPixels[x], srcPixels[x], mode);
-        }
+        // same kernels as PImage.blend(), a whole row at a time
+        blendPixels(dstPixels, 0, srcPixels, 0, width, mode);
         dstOut.setDataElements(0, y, width, 1, dstPixels);
       }
     }
@@ -2775,10 +2777,48 @@ public class PGraphicsJava2D extends PGraphics {
   }
 
 
+  /**
+   * The int[] behind the image, when hint(ENABLE_DIRECT_PIXELS) is set and
+   * it's laid out just like pixels[] (TYPE_INT_ARGB, one row after another
+   * with nothing in between), otherwise null.
+   * <P>
+   * Calling getData() on the DataBuffer marks the image as "untrackable":
+   * Java2D can no longer tell when it has changed, so it stops keeping an
+   * accelerated copy of it in video memory. That affects drawing this image
+   * somewhere else (the main window, or another PGraphics), not drawing into
+   * it, and it can't be undone for this BufferedImage.
+   */
+  protected int[] directPixels() {
+    if (hints[ENABLE_DIRECT_PIXELS] && image instanceof BufferedImage) {
+      BufferedImage bi = (BufferedImage) image;
+      if (bi.getType() == BufferedImage.TYPE_INT_ARGB &&
+          bi.getWidth() == pixelWidth && bi.getHeight() == pixelHeight) {
+        DataBuffer buffer = bi.getRaster().getDataBuffer();
+        if (buffer instanceof DataBufferInt &&
+            buffer.getNumBanks() == 1 && buffer.getOffset() == 0 &&
+            buffer.getSize() == pixelWidth * pixelHeight) {
+          return ((DataBufferInt) buffer).getData();
+        }
+      }
+    }
+    return null;
+  }
+
+
   @Override
   public void loadPixels() {
-    if (pixels == null || (pixels.length != pixelWidth*pixelHeight)) {
+    int[] direct = directPixels();
+    if (direct != null) {
+      pixels = direct;
+      pixelsDirect = true;
+      return;
+    }
+    if (pixels == null || (pixels.length != pixelWidth*pixelHeight) ||
+        pixelsDirect) {
+      // don't copy into the array behind an image from before
+      // a resize or hint(DISABLE_DIRECT_PIXELS)
       pixels = new int[pixelWidth * pixelHeight];
+      pixelsDirect = false;
     }
 
     WritableRaster raster = getRaster();
@@ -2813,9 +2853,15 @@ public class PGraphicsJava2D extends PGraphics {
    * <P>
    * Unlike in PImage, where updatePixels() only requests that the
    * update happens, in PGraphicsJava2D, this will happen immediately.
+   * With hint(ENABLE_DIRECT_PIXELS), pixels[] is already the image,
+   * so this only marks the region as modified.
    */
   @Override
   public void updatePixels(int x, int y, int c, int d) {
+    if (pixels != null && pixels == directPixels()) {
+      super.updatePixels(x, y, c, d);
+      return;
+    }
     //if ((x == 0) && (y == 0) && (c == width) && (d == height)) {
 //    System.err.format("%d %d %d %d .. w/h = %d %d .. pw/ph = %d %d %n", x, y, c, d, width, height, pixelWidth, pixelHeight);
     if ((x != 0) || (y != 0) || (c != pixelWidth) || (d != pixelHeight)) {
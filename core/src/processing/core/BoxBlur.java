@@ -0,0 +1,192 @@
+package processing.core;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Approximates a blur kernel with three box blurs in a row, each done with
+ * a running sum, so the time taken doesn't depend on the blur radius.
+ * The box widths are picked so that the variance of the three together
+ * matches the kernel being approximated.
+ * <p/>
+ * Each row goes through all three boxes, and the last one writes its
+ * result transposed into a scratch buffer, so that the columns can then
+ * be blurred as rows (reading memory in order) and transposed back. As
+ * with the exact blur, pixels past the edges are left out of the average
+ * rather than being repeated.
+ * Advanced users only, not official API.
+ */
+class BoxBlur {
+  /** Reciprocals are stored as 8.24 fixed point */
+  static private final int RECIP_SHIFT = 24;
+  static private final long RECIP_HALF = 1L << (RECIP_SHIFT - 1);
+
+  /** The transposed image, kept between calls if nothing else is using it */
+  static private final AtomicReference<SoftReference<int[]>> spare =
+    new AtomicReference<>();
+
+
+  /**
+   * Variance of the kernel used by PImage.buildBlurKernel() for a radius,
+   * which weights each pixel by (radius - distance) squared.
+   */
+  static double kernelVariance(int radius) {
+    double sum = radius * (double) radius;  // center, at a distance of 0
+    double moment = 0;
+    for (int d = 1; d < radius; d++) {
+      double weight = (radius - d) * (double) (radius - d);
+      sum += 2 * weight;
+      moment += 2 * weight * d * d;
+    }
+    return moment / sum;
+  }
+
+
+  /**
+   * Kernel radii (from PImage.blurBox()) below this are blurred with the
+   * exact kernel instead. Three boxes can't get close to such a narrow
+   * kernel (they're off by 2 levels or more on average, and by much more
+   * below a radius of 4), and the exact version is cheap at that size.
+   */
+  static final int MIN_RADIUS = 8;
+
+
+  /**
+   * Radii for three boxes that together have the given variance.
+   * A box of width w has a variance of (w*w - 1) / 12; boxes of two
+   * neighboring odd widths are mixed to get close to the target.
+   */
+  static int[] boxRadii(double variance) {
+    int n = 3;
+    double ideal = Math.sqrt(12 * variance / n + 1);
+    int lower = (int) Math.floor(ideal);
+    if (lower % 2 == 0) {
+      lower--;
+    }
+    int upper = lower + 2;
+    double m = (12 * variance - n*lower*lower - 4*n*lower - 3*n) / (-4*lower - 4);
+    int lowerCount = Math.max(0, Math.min(n, (int) Math.round(m)));
+    if (lower == 1 && lowerCount == n && variance > 0) {
+      // don't round all the way down to boxes that do nothing
+      lowerCount = n - 1;
+    }
+
+    int[] outgoing = new int[n];
+    for (int i = 0; i < n; i++) {
+      outgoing[i] = ((i < lowerCount ? lower : upper) - 1) / 2;
+    }
+    return outgoing;
+  }
+
+
+  /** Blur the ARGB pixels of a width x height image in place. */
+  static void blur(int[] pixels, int width, int height, double variance) {
+    int[] radii = boxRadii(variance);
+    if (radii[0] == 0 && radii[1] == 0 && radii[2] == 0) {
+      return;
+    }
+    int longest = Math.max(width, height);
+    int[][] recips = new int[3][];
+    for (int i = 0; i < 3; i++) {
+      recips[i] = reciprocals(Math.min(2 * radii[i] + 1, longest));
+    }
+    int[] scratch = borrow(width * height);
+    // rows of pixels into columns of scratch...
+    passes(pixels, scratch, width, height, radii, recips);
+    // ...and the rows of scratch (the original columns) back again
+    passes(scratch, pixels, height, width, radii, recips);
+    spare.set(new SoftReference<>(scratch));
+  }
+
+
+  static private int[] borrow(int length) {
+    SoftReference<int[]> ref = spare.getAndSet(null);
+    int[] array = (ref == null) ? null : ref.get();
+    if (array == null || array.length < length) {
+      array = new int[length];
+    }
+    return array;
+  }
+
+
+  /**
+   * Run the three boxes along each of the rows of source, which is
+   * width x height, and write them transposed into target.
+   */
+  static private void passes(int[] source, int[] target, int width, int height,
+                             int[] radii, int[][] recips) {
+    PixelBands.run(height, width, (start, stop) -> {
+      int[] a = new int[width];
+      int[] b = new int[width];
+      for (int y = start; y < stop; y++) {
+        box(source, y * width, 1, a, 0, 1, width, radii[0], recips[0]);
+        box(a, 0, 1, b, 0, 1, width, radii[1], recips[1]);
+        box(b, 0, 1, target, y, height, width, radii[2], recips[2]);
+      }
+    });
+  }
+
+
+  /** 2^24 / count (rounded) for each count up to max */
+  static private int[] reciprocals(int max) {
+    int[] outgoing = new int[max + 1];
+    for (int count = 1; count <= max; count++) {
+      outgoing[count] = ((1 << RECIP_SHIFT) + count/2) / count;
+    }
+    return outgoing;
+  }
+
+
+  /**
+   * Average each of the n pixels read from source with the ones up to
+   * radius away on either side, writing the results to target.
+   */
+  static private void box(int[] source, int sourceOffset, int sourceStride,
+                          int[] target, int targetOffset, int targetStride,
+                          int n, int radius, int[] recip) {
+    if (radius == 0) {
+      for (int x = 0; x < n; x++) {
+        target[targetOffset + x*targetStride] = source[sourceOffset + x*sourceStride];
+      }
+      return;
+    }
+    int sa = 0, sr = 0, sg = 0, sb = 0;
+    // the window for the first pixel covers 0 through radius
+    int count = Math.min(radius + 1, n);
+    for (int i = 0; i < count; i++) {
+      int c = source[sourceOffset + i*sourceStride];
+      sa += c >>> 24;
+      sr += (c >> 16) & 0xff;
+      sg += (c >> 8) & 0xff;
+      sb += c & 0xff;
+    }
+    for (int x = 0; x < n; x++) {
+      long m = recip[count];
+      target[targetOffset + x*targetStride] =
+        (int) ((sa * m + RECIP_HALF) >>> RECIP_SHIFT) << 24 |
+        (int) ((sr * m + RECIP_HALF) >>> RECIP_SHIFT) << 16 |
+        (int) ((sg * m + RECIP_HALF) >>> RECIP_SHIFT) << 8 |
+        (int) ((sb * m + RECIP_HALF) >>> RECIP_SHIFT);
+
+      int entering = x + radius + 1;
+      if (entering < n) {
+        int c = source[sourceOffset + entering*sourceStride];
+        sa += c >>> 24;
+        sr += (c >> 16) & 0xff;
+        sg += (c >> 8) & 0xff;
+        sb += c & 0xff;
+        count++;
+      }
+      int leaving = x - radius;
+      if (leaving >= 0) {
+        int c = source[sourceOffset + leaving*sourceStride];
+        sa -= c >>> 24;
+        sr -= (c >> 16) & 0xff;
+        sg -= (c >> 8) & 0xff;
+        sb -= c & 0xff;
+        count--;
+      }
+    }
+  }
+}
@@ -5597,7 +5597,8 @@ public class PApplet implements PConstants {
 
 
   /**
-   * Options may contain "header", "tsv", "csv", or "bin" separated by commas.
+   * Options may contain "header", "tsv", "csv", "bin", or "arrow" separated
+   * by commas.
    * <p/>
    * Another option is "dictionary=filename.tsv", which allows users to
    * specify a "dictionary" file that contains a mapping of the column titles
@@ -5606,7 +5607,7 @@ public class PApplet implements PConstants {
    * dictionary file can only be tab-separated values (.tsv) and its extension
    * will be ignored. This option was added in Processing 2.0.2.
    *
-   * @param options may contain "header", "tsv", "csv", or "bin" separated by commas
+   * @param options may contain "header", "tsv", "csv", "bin", or "arrow" separated by commas
    */
   public Table loadTable(String filename, String options) {
     try {
@@ -5619,6 +5620,18 @@ public class PApplet implements PConstants {
           return dictionary.typedParse(createInput(filename), optionStr);
         }
       }
+      for (String opt : optionList) {
+        if (opt.equals("bin") || opt.equals("arrow")) {
+          // local binary files are memory-mapped instead of read as a stream
+          File file = new File(dataPath(filename));
+          if (!file.exists()) {
+            file = sketchFile(filename);
+          }
+          if (file.isFile()) {
+            return new Table(file, optionStr);
+          }
+        }
+      }
       InputStream input = createInput(filename);
       if (input == null) {
         System.err.println(filename + " does not exist or could not be read");
@@ -5659,7 +5672,7 @@ public class PApplet implements PConstants {
 
 
   /**
-   * @param options can be one of "tsv", "csv", "bin", or "html"
+   * @param options can be one of "tsv", "csv", "bin", "arrow", or "html"
    */
   public boolean saveTable(Table table, String filename, String options) {
 //    String ext = checkExtension(filename);
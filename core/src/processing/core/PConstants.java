@@ -489,6 +489,8 @@ public interface PConstants {
   int NEAREST_NEIGHBOR = 0;
   int BILINEAR = 1;
   int BICUBIC = 2;
+  int LANCZOS = 3;
+  int AREA = 4;
 
   // hints - hint values are positive for the alternate version,
   // negative of the same value returns to the normal/default state
@@ -531,5 +533,8 @@ public interface PConstants {
   int DISABLE_ASYNC_SAVEFRAME    =  12;
   int ENABLE_ASYNC_SAVEFRAME     = -12;
 
-  int HINT_COUNT                 =  13;
+  int ENABLE_DIRECT_PIXELS       =  13;
+  int DISABLE_DIRECT_PIXELS      = -13;
+
+  int HINT_COUNT                 =  14;
 }
@@ -1118,6 +1118,14 @@ public class PGraphics extends PImage implements PConstants {
    * will not use separate threads for saving and will block until the image
    * is written to the drive. This was the default behavior in 3.0b7 and before.
    * To enable, call <b>hint(ENABLE_ASYNC_SAVEFRAME)</b>.
+   * <br/> <br/>
+   * <b>hint(ENABLE_DIRECT_PIXELS)</b> - JAVA2D only - <b>loadPixels()</b> makes
+   * <b>pixels[]</b> share its memory with the image being drawn to, instead of
+   * copying the image into it, and <b>updatePixels()</b> no longer copies it
+   * back. Changes to <b>pixels[]</b> show up in the image right away. This
+   * stops Java from keeping a copy of the image on the graphics card, so
+   * drawing this <b>PGraphics</b> with <b>image()</b> may be slower, even after
+   * <b>hint(DISABLE_DIRECT_PIXELS)</b> is used to return to the default.
    *
    * @webref rendering
    * @webBrief Set various hints and hacks for the renderer
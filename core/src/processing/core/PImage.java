@@ -138,10 +138,6 @@ public class PImage implements PConstants, Cloneable {
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
-  private int ifV, sX, v1, v2, iw, iw1, ih1;
-  private int srcXOffset, srcYOffset;
-  private int[] srcBuffer;
-
   // fixed point precision is limited to 15 bits
   static final int PRECISIONB = 15;
   static final int PRECISIONF = 1 << PRECISIONB;
@@ -154,6 +150,8 @@ public class PImage implements PConstants, Cloneable {
   private int blurKernelSize;
   private int[] blurKernel;
   private int[][] blurMult;
+  /** Whether filter(BLUR) uses the exact kernel, see setExactBlur() */
+  private boolean exactBlur;
 
   // colour component bitmasks (moved from PConstants in 2.0b7)
   public static final int ALPHA_MASK = 0xff000000;
@@ -491,6 +489,12 @@ public class PImage implements PConstants, Cloneable {
    * P3D, or what would it even do with PDF?) If you want to resize <b>PGraphics</b>
    * content, first get a copy of its image data using the <b>get()</b>
    * method, and call <b>resize()</b> on the PImage that is returned.
+   * <br /><br />
+   * The <b>interpolationMode</b> can be NEAREST_NEIGHBOR, BILINEAR (the
+   * default), BICUBIC, LANCZOS (sharpest, and slowest), or AREA (a plain
+   * average of the pixels covered, for shrinking). When an image is made
+   * smaller, every mode except NEAREST_NEIGHBOR averages all the pixels
+   * that are being combined.
    *
    * @webref pimage:method
    * @webBrief Resize the image to a new width and height
@@ -501,8 +505,32 @@ public class PImage implements PConstants, Cloneable {
    * @see PImage#get(int, int, int, int)
    */
   public void resize(int w, int h,int interpolationMode) {  // ignore
-    //throw new RuntimeException("resize() not implemented for this PImage type");
-    ShimAWT.resizeImage(this, w, h, interpolationMode);
+    if (w <= 0 && h <= 0) {
+      throw new IllegalArgumentException("width or height must be > 0 for resize");
+    }
+
+    if (w == 0) {  // Use height to determine relative size
+      float diff = (float) h / (float) height;
+      w = (int) (width * diff);
+    } else if (h == 0) {  // Use the width to determine relative size
+      float diff = (float) w / (float) width;
+      h = (int) (height * diff);
+    }
+
+    loadPixels();
+    int targetWidth = w * pixelDensity;
+    int targetHeight = h * pixelDensity;
+    pixels = Resampler.resample(pixels, pixelWidth,
+                                0, 0, pixelWidth, pixelHeight,
+                                targetWidth, targetHeight,
+                                interpolationMode, format);
+    pixelWidth = targetWidth;
+    pixelHeight = targetHeight;
+    width = pixelWidth / pixelDensity;
+    height = pixelHeight / pixelDensity;
+
+    // Mark the pixels array as altered
+    updatePixels();
   }
 
   /**
@@ -884,6 +912,42 @@ public class PImage implements PConstants, Cloneable {
   // IMAGE FILTERS
 
 
+  /**
+   * Set the number of threads used by filter() and blend() for large
+   * images. Use 1 to do everything on the thread that calls them, or 0
+   * (the default) to share the threads of Java's common ForkJoinPool.
+   * The results are identical no matter how many threads are used.
+   */
+  static public void setFilterParallelism(int count) {
+    PixelBands.setParallelism(count);
+  }
+
+
+  /**
+   * By default, filter(BLUR) approximates its kernel with three box blurs
+   * (for all but small radii), which take the same amount of time
+   * regardless of the radius. Set this to true to use the exact kernel
+   * for this image instead, which is slower (especially for large radii)
+   * but matches the results of earlier releases.
+   */
+  public void setExactBlur(boolean exact) {
+    exactBlur = exact;
+  }
+
+
+  /**
+   * Run task on ranges of indices into pixels[], split up by rows
+   * so that large images can be handled on several threads.
+   */
+  private void eachPixel(PixelBands.Band task) {
+    int length = pixels.length;
+    int width = Math.max(1, pixelWidth);
+    int rows = (length + width - 1) / width;
+    PixelBands.run(rows, width, (start, stop) ->
+      task.run(start * width, Math.min(length, stop * width)));
+  }
+
+
   public void filter(int kind) {
     loadPixels();
 
@@ -898,33 +962,39 @@ public class PImage implements PConstants, Cloneable {
       case GRAY:
         if (format == ALPHA) {
           // for an alpha image, convert it to an opaque grayscale
-          for (int i = 0; i < pixels.length; i++) {
-            int col = 255 - pixels[i];
-            pixels[i] = 0xff000000 | (col << 16) | (col << 8) | col;
-          }
+          eachPixel((start, stop) -> {
+            for (int i = start; i < stop; i++) {
+              int col = 255 - pixels[i];
+              pixels[i] = 0xff000000 | (col << 16) | (col << 8) | col;
+            }
+          });
           format = RGB;
 
         } else {
           // Converts RGB image data into grayscale using
           // weighted RGB components, and keeps alpha channel intact.
           // [toxi 040115]
-          for (int i = 0; i < pixels.length; i++) {
-            int col = pixels[i];
-            // luminance = 0.3*red + 0.59*green + 0.11*blue
-            // 0.30 * 256 =  77
-            // 0.59 * 256 = 151
-            // 0.11 * 256 =  28
-            int lum = (77*(col>>16&0xff) + 151*(col>>8&0xff) + 28*(col&0xff))>>8;
-            pixels[i] = (col & ALPHA_MASK) | lum<<16 | lum<<8 | lum;
-          }
+          eachPixel((start, stop) -> {
+            for (int i = start; i < stop; i++) {
+              int col = pixels[i];
+              // luminance = 0.3*red + 0.59*green + 0.11*blue
+              // 0.30 * 256 =  77
+              // 0.59 * 256 = 151
+              // 0.11 * 256 =  28
+              int lum = (77*(col>>16&0xff) + 151*(col>>8&0xff) + 28*(col&0xff))>>8;
+              pixels[i] = (col & ALPHA_MASK) | lum<<16 | lum<<8 | lum;
+            }
+          });
         }
         break;
 
       case INVERT:
-        for (int i = 0; i < pixels.length; i++) {
-          //pixels[i] = 0xff000000 |
-          pixels[i] ^= 0xffffff;
-        }
+        eachPixel((start, stop) -> {
+          for (int i = start; i < stop; i++) {
+            //pixels[i] = 0xff000000 |
+            pixels[i] ^= 0xffffff;
+          }
+        });
         break;
 
       case POSTERIZE:
@@ -932,9 +1002,11 @@ public class PImage implements PConstants, Cloneable {
         "instead of filter(POSTERIZE)");
 
       case OPAQUE:
-        for (int i = 0; i < pixels.length; i++) {
-          pixels[i] |= 0xff000000;
-        }
+        eachPixel((start, stop) -> {
+          for (int i = start; i < stop; i++) {
+            pixels[i] |= 0xff000000;
+          }
+        });
         format = RGB;
         break;
 
@@ -1019,7 +1091,9 @@ public class PImage implements PConstants, Cloneable {
 
     switch (kind) {
       case BLUR:
-        if (format == ALPHA)
+        if (!exactBlur)
+          blurBox(param);
+        else if (format == ALPHA)
           blurAlpha(param);
         else if (format == ARGB)
           blurARGB(param);
@@ -1046,29 +1120,33 @@ public class PImage implements PConstants, Cloneable {
                                      "filter(POSTERIZE, levels)");
         }
         int levels1 = levels - 1;
-        for (int i = 0; i < pixels.length; i++) {
-          int rlevel = (pixels[i] >> 16) & 0xff;
-          int glevel = (pixels[i] >> 8) & 0xff;
-          int blevel = pixels[i] & 0xff;
-          rlevel = (((rlevel * levels) >> 8) * 255) / levels1;
-          glevel = (((glevel * levels) >> 8) * 255) / levels1;
-          blevel = (((blevel * levels) >> 8) * 255) / levels1;
-          pixels[i] = ((0xff000000 & pixels[i]) |
-                       (rlevel << 16) |
-                       (glevel << 8) |
-                       blevel);
-        }
+        // look up each channel, rather than dividing three times per pixel
+        int[] posterized = new int[256];
+        for (int level = 0; level < 256; level++) {
+          posterized[level] = (((level * levels) >> 8) * 255) / levels1;
+        }
+        eachPixel((start, stop) -> {
+          for (int i = start; i < stop; i++) {
+            int c = pixels[i];
+            pixels[i] = ((0xff000000 & c) |
+                         (posterized[(c >> 16) & 0xff] << 16) |
+                         (posterized[(c >> 8) & 0xff] << 8) |
+                         posterized[c & 0xff]);
+          }
+        });
         break;
 
       case THRESHOLD:  // greater than or equal to the threshold
         int thresh = (int) (param * 255);
-        for (int i = 0; i < pixels.length; i++) {
-          int max = Math.max((pixels[i] & RED_MASK) >> 16,
-                             Math.max((pixels[i] & GREEN_MASK) >> 8,
-                                      (pixels[i] & BLUE_MASK)));
-          pixels[i] = (pixels[i] & ALPHA_MASK) |
-            ((max < thresh) ? 0x000000 : 0xffffff);
-        }
+        eachPixel((start, stop) -> {
+          for (int i = start; i < stop; i++) {
+            int max = Math.max((pixels[i] & RED_MASK) >> 16,
+                               Math.max((pixels[i] & GREEN_MASK) >> 8,
+                                        (pixels[i] & BLUE_MASK)));
+            pixels[i] = (pixels[i] & ALPHA_MASK) |
+              ((max < thresh) ? 0x000000 : 0xffffff);
+          }
+        });
         break;
 
         // [toxi20050728] added new filters
@@ -1120,247 +1198,311 @@ public class PImage implements PConstants, Cloneable {
     }
   }
 
+  /**
+   * Blur with the same variance as the kernel from buildBlurKernel(),
+   * approximated by box blurs so that the cost per pixel doesn't depend
+   * on the radius. Small radii use the exact kernel, see BoxBlur.
+   */
+  protected void blurBox(float r) {
+    // same limits as buildBlurKernel()
+    float maxRadius = Math.min(width, height) / 2.0f;
+    float maxR = maxRadius / 3.5f;
+    r = Math.min(r, maxR);
+    int radius = (int) (r * 3.5f);
+    if (radius < 1) radius = 1;
+    if (radius > 248) radius = 248;
+
+    if (radius < BoxBlur.MIN_RADIUS) {
+      if (format == ALPHA) {
+        blurAlpha(r);
+      } else if (format == ARGB) {
+        blurARGB(r);
+      } else {
+        blurRGB(r);
+      }
+      return;
+    }
+    BoxBlur.blur(pixels, pixelWidth, pixelHeight,
+                 BoxBlur.kernelVariance(radius));
+
+    if (format == RGB) {
+      eachPixel((start, stop) -> {
+        for (int i = start; i < stop; i++) {
+          pixels[i] |= 0xff000000;
+        }
+      });
+    } else if (format == ALPHA) {
+      eachPixel((start, stop) -> {
+        for (int i = start; i < stop; i++) {
+          pixels[i] &= BLUE_MASK;
+        }
+      });
+    }
+  }
+
+
   private int safeDivide(int numerator, int denominator) {
     return denominator == 0 ? numerator : numerator / denominator;
   }
 
   protected void blurAlpha(float r) {
-    int sum, cb;
-    int read, ri, ym, ymi, bk0;
     int[] b2 = new int[pixels.length];
-    int yi = 0;
 
     buildBlurKernel(r);
 
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        //cb = cg = cr = sum = 0;
-        cb = sum = 0;
-        read = x - blurRadius;
-        if (read<0) {
-          bk0=-read;
-          read=0;
-        } else {
-          if (read >= pixelWidth)
-            break;
-          bk0=0;
-        }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (read >= pixelWidth)
-            break;
-          int c = pixels[read + yi];
-          int[] bm = blurMult[i];
-          cb += bm[c & BLUE_MASK];
-          sum += blurKernel[i];
-          read++;
+    PixelBands.run(pixelHeight, pixelWidth, (start, stop) -> {
+      int sum, cb;
+      int read, ri, bk0;
+      int yi = start * pixelWidth;
+
+      for (int y = start; y < stop; y++) {
+        for (int x = 0; x < pixelWidth; x++) {
+          //cb = cg = cr = sum = 0;
+          cb = sum = 0;
+          read = x - blurRadius;
+          if (read<0) {
+            bk0=-read;
+            read=0;
+          } else {
+            if (read >= pixelWidth)
+              break;
+            bk0=0;
+          }
+          for (int i = bk0; i < blurKernelSize; i++) {
+            if (read >= pixelWidth)
+              break;
+            int c = pixels[read + yi];
+            int[] bm = blurMult[i];
+            cb += bm[c & BLUE_MASK];
+            sum += blurKernel[i];
+            read++;
+          }
+          ri = yi + x;
+          b2[ri] = safeDivide(cb, sum);
         }
-        ri = yi + x;
-        b2[ri] = safeDivide(cb, sum);
+        yi += pixelWidth;
       }
-      yi += pixelWidth;
-    }
-
-    yi = 0;
-    ym = -blurRadius;
-    ymi = ym * pixelWidth;
-
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = sum = 0;
-        if (ym < 0) {
-          bk0 = ri = -ym;
-          read = x;
-        } else {
-          if (ym >= pixelHeight)
-            break;
-          bk0 = 0;
-          ri = ym;
-          read = x + ymi;
-        }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (ri >= pixelHeight)
-            break;
-          int[] bm = blurMult[i];
-          cb += bm[b2[read]];
-          sum += blurKernel[i];
-          ri++;
-          read += pixelWidth;
+    });
+
+    PixelBands.run(pixelHeight, pixelWidth, (start, stop) -> {
+      int sum, cb;
+      int read, ri, bk0;
+      int yi = start * pixelWidth;
+      int ym = start - blurRadius;
+      int ymi = ym * pixelWidth;
+
+      for (int y = start; y < stop; y++) {
+        for (int x = 0; x < pixelWidth; x++) {
+          cb = sum = 0;
+          if (ym < 0) {
+            bk0 = ri = -ym;
+            read = x;
+          } else {
+            if (ym >= pixelHeight)
+              break;
+            bk0 = 0;
+            ri = ym;
+            read = x + ymi;
+          }
+          for (int i = bk0; i < blurKernelSize; i++) {
+            if (ri >= pixelHeight)
+              break;
+            int[] bm = blurMult[i];
+            cb += bm[b2[read]];
+            sum += blurKernel[i];
+            ri++;
+            read += pixelWidth;
+          }
+          pixels[x+yi] = safeDivide(cb, sum);
         }
-        pixels[x+yi] = safeDivide(cb, sum);
+        yi += pixelWidth;
+        ymi += pixelWidth;
+        ym++;
       }
-      yi += pixelWidth;
-      ymi += pixelWidth;
-      ym++;
-    }
+    });
   }
 
 
   protected void blurRGB(float r) {
-    int sum, cr, cg, cb;
-    int read, ri, ym, ymi, bk0;
     int[] r2 = new int[pixels.length];
     int[] g2 = new int[pixels.length];
     int[] b2 = new int[pixels.length];
-    int yi = 0;
 
     buildBlurKernel(r);
 
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = cg = cr = sum = 0;
-        read = x - blurRadius;
-        if (read < 0) {
-          bk0 = -read;
-          read = 0;
-        } else {
-          if (read >= pixelWidth) {
-            break;
+    PixelBands.run(pixelHeight, pixelWidth, (start, stop) -> {
+      int sum, cr, cg, cb;
+      int read, ri, bk0;
+      int yi = start * pixelWidth;
+
+      for (int y = start; y < stop; y++) {
+        for (int x = 0; x < pixelWidth; x++) {
+          cb = cg = cr = sum = 0;
+          read = x - blurRadius;
+          if (read < 0) {
+            bk0 = -read;
+            read = 0;
+          } else {
+            if (read >= pixelWidth) {
+              break;
+            }
+            bk0 = 0;
           }
-          bk0 = 0;
-        }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (read >= pixelWidth) {
-            break;
+          for (int i = bk0; i < blurKernelSize; i++) {
+            if (read >= pixelWidth) {
+              break;
+            }
+            int c = pixels[read + yi];
+            int[] bm = blurMult[i];
+            cr += bm[(c & RED_MASK) >> 16];
+            cg += bm[(c & GREEN_MASK) >> 8];
+            cb += bm[c & BLUE_MASK];
+            sum += blurKernel[i];
+            read++;
           }
-          int c = pixels[read + yi];
-          int[] bm = blurMult[i];
-          cr += bm[(c & RED_MASK) >> 16];
-          cg += bm[(c & GREEN_MASK) >> 8];
-          cb += bm[c & BLUE_MASK];
-          sum += blurKernel[i];
-          read++;
+          ri = yi + x;
+          r2[ri] = safeDivide(cr, sum);
+          g2[ri] = safeDivide(cg, sum);
+          b2[ri] = safeDivide(cb, sum);
         }
-        ri = yi + x;
-        r2[ri] = safeDivide(cr, sum);
-        g2[ri] = safeDivide(cg, sum);
-        b2[ri] = safeDivide(cb, sum);
+        yi += pixelWidth;
       }
-      yi += pixelWidth;
-    }
-
-    yi = 0;
-    ym = -blurRadius;
-    ymi = ym * pixelWidth;
-
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = cg = cr = sum = 0;
-        if (ym < 0) {
-          bk0 = ri = -ym;
-          read = x;
-        } else {
-          if (ym >= pixelHeight) {
-            break;
+    });
+
+    PixelBands.run(pixelHeight, pixelWidth, (start, stop) -> {
+      int sum, cr, cg, cb;
+      int read, ri, bk0;
+      int yi = start * pixelWidth;
+      int ym = start - blurRadius;
+      int ymi = ym * pixelWidth;
+
+      for (int y = start; y < stop; y++) {
+        for (int x = 0; x < pixelWidth; x++) {
+          cb = cg = cr = sum = 0;
+          if (ym < 0) {
+            bk0 = ri = -ym;
+            read = x;
+          } else {
+            if (ym >= pixelHeight) {
+              break;
+            }
+            bk0 = 0;
+            ri = ym;
+            read = x + ymi;
           }
-          bk0 = 0;
-          ri = ym;
-          read = x + ymi;
-        }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (ri >= pixelHeight) {
-            break;
+          for (int i = bk0; i < blurKernelSize; i++) {
+            if (ri >= pixelHeight) {
+              break;
+            }
+            int[] bm = blurMult[i];
+            cr += bm[r2[read]];
+            cg += bm[g2[read]];
+            cb += bm[b2[read]];
+            sum += blurKernel[i];
+            ri++;
+            read += pixelWidth;
           }
-          int[] bm = blurMult[i];
-          cr += bm[r2[read]];
-          cg += bm[g2[read]];
-          cb += bm[b2[read]];
-          sum += blurKernel[i];
-          ri++;
-          read += pixelWidth;
+          pixels[x+yi] = 0xff000000 | (safeDivide(cr, sum))<<16 | (safeDivide(cg, sum))<<8 | (safeDivide(cb, sum));
         }
-        pixels[x+yi] = 0xff000000 | (safeDivide(cr, sum))<<16 | (safeDivide(cg, sum))<<8 | (safeDivide(cb, sum));
+        yi += pixelWidth;
+        ymi += pixelWidth;
+        ym++;
       }
-      yi += pixelWidth;
-      ymi += pixelWidth;
-      ym++;
-    }
+    });
   }
 
 
   protected void blurARGB(float r) {
-    int sum, cr, cg, cb, ca;
-    int /*pixel,*/ read, ri, /*roff,*/ ym, ymi, /*riw,*/ bk0;
     int wh = pixels.length;
     int[] r2 = new int[wh];
     int[] g2 = new int[wh];
     int[] b2 = new int[wh];
     int[] a2 = new int[wh];
-    int yi = 0;
 
     buildBlurKernel(r);
 
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = cg = cr = ca = sum = 0;
-        read = x - blurRadius;
-        if (read < 0) {
-          bk0 = -read;
-          read = 0;
-        } else {
-          if (read >= pixelWidth) {
-            break;
+    PixelBands.run(pixelHeight, pixelWidth, (start, stop) -> {
+      int sum, cr, cg, cb, ca;
+      int read, ri, bk0;
+      int yi = start * pixelWidth;
+
+      for (int y = start; y < stop; y++) {
+        for (int x = 0; x < pixelWidth; x++) {
+          cb = cg = cr = ca = sum = 0;
+          read = x - blurRadius;
+          if (read < 0) {
+            bk0 = -read;
+            read = 0;
+          } else {
+            if (read >= pixelWidth) {
+              break;
+            }
+            bk0=0;
           }
-          bk0=0;
-        }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (read >= pixelWidth) {
-            break;
+          for (int i = bk0; i < blurKernelSize; i++) {
+            if (read >= pixelWidth) {
+              break;
+            }
+            int c = pixels[read + yi];
+            int[] bm=blurMult[i];
+            ca += bm[(c & ALPHA_MASK) >>> 24];
+            cr += bm[(c & RED_MASK) >> 16];
+            cg += bm[(c & GREEN_MASK) >> 8];
+            cb += bm[c & BLUE_MASK];
+            sum += blurKernel[i];
+            read++;
           }
-          int c = pixels[read + yi];
-          int[] bm=blurMult[i];
-          ca += bm[(c & ALPHA_MASK) >>> 24];
-          cr += bm[(c & RED_MASK) >> 16];
-          cg += bm[(c & GREEN_MASK) >> 8];
-          cb += bm[c & BLUE_MASK];
-          sum += blurKernel[i];
-          read++;
+          ri = yi + x;
+          a2[ri] = safeDivide(ca, sum);
+          r2[ri] = safeDivide(cr, sum);
+          g2[ri] = safeDivide(cg, sum);
+          b2[ri] = safeDivide(cb, sum);
         }
-        ri = yi + x;
-        a2[ri] = safeDivide(ca, sum);
-        r2[ri] = safeDivide(cr, sum);
-        g2[ri] = safeDivide(cg, sum);
-        b2[ri] = safeDivide(cb, sum);
+        yi += pixelWidth;
       }
-      yi += pixelWidth;
-    }
-
-    yi = 0;
-    ym = -blurRadius;
-    ymi = ym * pixelWidth;
-
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = cg = cr = ca = sum = 0;
-        if (ym < 0) {
-          bk0 = ri = -ym;
-          read = x;
-        } else {
-          if (ym >= pixelHeight) {
-            break;
+    });
+
+    PixelBands.run(pixelHeight, pixelWidth, (start, stop) -> {
+      int sum, cr, cg, cb, ca;
+      int read, ri, bk0;
+      int yi = start * pixelWidth;
+      int ym = start - blurRadius;
+      int ymi = ym * pixelWidth;
+
+      for (int y = start; y < stop; y++) {
+        for (int x = 0; x < pixelWidth; x++) {
+          cb = cg = cr = ca = sum = 0;
+          if (ym < 0) {
+            bk0 = ri = -ym;
+            read = x;
+          } else {
+            if (ym >= pixelHeight) {
+              break;
+            }
+            bk0 = 0;
+            ri = ym;
+            read = x + ymi;
           }
-          bk0 = 0;
-          ri = ym;
-          read = x + ymi;
-        }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (ri >= pixelHeight) {
-            break;
+          for (int i = bk0; i < blurKernelSize; i++) {
+            if (ri >= pixelHeight) {
+              break;
+            }
+            int[] bm=blurMult[i];
+            ca += bm[a2[read]];
+            cr += bm[r2[read]];
+            cg += bm[g2[read]];
+            cb += bm[b2[read]];
+            sum += blurKernel[i];
+            ri++;
+            read += pixelWidth;
           }
-          int[] bm=blurMult[i];
-          ca += bm[a2[read]];
-          cr += bm[r2[read]];
-          cg += bm[g2[read]];
-          cb += bm[b2[read]];
-          sum += blurKernel[i];
-          ri++;
-          read += pixelWidth;
+          pixels[x+yi] = (safeDivide(ca, sum))<<24 | (safeDivide(cr, sum))<<16 | (safeDivide(cg, sum))<<8 | (safeDivide(cb, sum));
         }
-        pixels[x+yi] = (safeDivide(ca, sum))<<24 | (safeDivide(cr, sum))<<16 | (safeDivide(cg, sum))<<8 | (safeDivide(cb, sum));
+        yi += pixelWidth;
+        ymi += pixelWidth;
+        ym++;
       }
-      yi += pixelWidth;
-      ymi += pixelWidth;
-      ym++;
-    }
+    });
   }
 
 
@@ -1369,139 +1511,147 @@ public class PImage implements PConstants, Cloneable {
    * as decision factor. [toxi 050728]
    */
   protected void dilate() {  // formerly dilate(false)
-    int index = 0;
     int maxIndex = pixels.length;
     int[] outgoing = new int[maxIndex];
 
     // erosion (grow light areas)
-    while (index < maxIndex) {
-      int curRowIndex = index;
-      int maxRowIndex = index + pixelWidth;
-      while (index < maxRowIndex) {
-        int orig = pixels[index];
-        int result = orig;
-        int idxLeft = index - 1;
-        int idxRight = index + 1;
-        int idxUp = index - pixelWidth;
-        int idxDown = index + pixelWidth;
-        if (idxLeft < curRowIndex) {
-          idxLeft = index;
-        }
-        if (idxRight >= maxRowIndex) {
-          idxRight = index;
-        }
-        if (idxUp < 0) {
-          idxUp = index;
-        }
-        if (idxDown >= maxIndex) {
-          idxDown = index;
-        }
+    // each band reads the row above and below it, but only writes its own
+    PixelBands.run(pixelHeight, pixelWidth, (start, stop) -> {
+      int index = start * pixelWidth;
+      int stopIndex = Math.min(maxIndex, stop * pixelWidth);
+      while (index < stopIndex) {
+        int curRowIndex = index;
+        int maxRowIndex = index + pixelWidth;
+        while (index < maxRowIndex) {
+          int orig = pixels[index];
+          int result = orig;
+          int idxLeft = index - 1;
+          int idxRight = index + 1;
+          int idxUp = index - pixelWidth;
+          int idxDown = index + pixelWidth;
+          if (idxLeft < curRowIndex) {
+            idxLeft = index;
+          }
+          if (idxRight >= maxRowIndex) {
+            idxRight = index;
+          }
+          if (idxUp < 0) {
+            idxUp = index;
+          }
+          if (idxDown >= maxIndex) {
+            idxDown = index;
+          }
 
-        int colUp = pixels[idxUp];
-        int colLeft = pixels[idxLeft];
-        int colDown = pixels[idxDown];
-        int colRight = pixels[idxRight];
-
-        // compute luminance
-        int currLum =
-          77*(orig>>16&0xff) + 151*(orig>>8&0xff) + 28*(orig&0xff);
-        int lumLeft =
-          77*(colLeft>>16&0xff) + 151*(colLeft>>8&0xff) + 28*(colLeft&0xff);
-        int lumRight =
-          77*(colRight>>16&0xff) + 151*(colRight>>8&0xff) + 28*(colRight&0xff);
-        int lumUp =
-          77*(colUp>>16&0xff) + 151*(colUp>>8&0xff) + 28*(colUp&0xff);
-        int lumDown =
-          77*(colDown>>16&0xff) + 151*(colDown>>8&0xff) + 28*(colDown&0xff);
-
-        if (lumLeft > currLum) {
-          result = colLeft;
-          currLum = lumLeft;
-        }
-        if (lumRight > currLum) {
-          result = colRight;
-          currLum = lumRight;
-        }
-        if (lumUp > currLum) {
-          result = colUp;
-          currLum = lumUp;
-        }
-        if (lumDown > currLum) {
-          result = colDown;
-//          currLum = lumDown;  // removed, unused assignment
+          int colUp = pixels[idxUp];
+          int colLeft = pixels[idxLeft];
+          int colDown = pixels[idxDown];
+          int colRight = pixels[idxRight];
+
+          // compute luminance
+          int currLum =
+            77*(orig>>16&0xff) + 151*(orig>>8&0xff) + 28*(orig&0xff);
+          int lumLeft =
+            77*(colLeft>>16&0xff) + 151*(colLeft>>8&0xff) + 28*(colLeft&0xff);
+          int lumRight =
+            77*(colRight>>16&0xff) + 151*(colRight>>8&0xff) + 28*(colRight&0xff);
+          int lumUp =
+            77*(colUp>>16&0xff) + 151*(colUp>>8&0xff) + 28*(colUp&0xff);
+          int lumDown =
+            77*(colDown>>16&0xff) + 151*(colDown>>8&0xff) + 28*(colDown&0xff);
+
+          if (lumLeft > currLum) {
+            result = colLeft;
+            currLum = lumLeft;
+          }
+          if (lumRight > currLum) {
+            result = colRight;
+            currLum = lumRight;
+          }
+          if (lumUp > currLum) {
+            result = colUp;
+            currLum = lumUp;
+          }
+          if (lumDown > currLum) {
+            result = colDown;
+//            currLum = lumDown;  // removed, unused assignment
+          }
+          outgoing[index++] = result;
         }
-        outgoing[index++] = result;
       }
-    }
+    });
     System.arraycopy(outgoing, 0, pixels, 0, maxIndex);
   }
 
 
   protected void erode() {  // formerly dilate(true)
-    int index = 0;
     int maxIndex = pixels.length;
     int[] outgoing = new int[maxIndex];
 
     // dilate (grow dark areas)
-    while (index < maxIndex) {
-      int curRowIndex = index;
-      int maxRowIndex = index + pixelWidth;
-      while (index < maxRowIndex) {
-        int orig = pixels[index];
-        int result = orig;
-        int idxLeft = index - 1;
-        int idxRight = index + 1;
-        int idxUp = index - pixelWidth;
-        int idxDown = index + pixelWidth;
-        if (idxLeft < curRowIndex) {
-          idxLeft = index;
-        }
-        if (idxRight >= maxRowIndex) {
-          idxRight = index;
-        }
-        if (idxUp < 0) {
-          idxUp = index;
-        }
-        if (idxDown >= maxIndex) {
-          idxDown = index;
-        }
+    // each band reads the row above and below it, but only writes its own
+    PixelBands.run(pixelHeight, pixelWidth, (start, stop) -> {
+      int index = start * pixelWidth;
+      int stopIndex = Math.min(maxIndex, stop * pixelWidth);
+      while (index < stopIndex) {
+        int curRowIndex = index;
+        int maxRowIndex = index + pixelWidth;
+        while (index < maxRowIndex) {
+          int orig = pixels[index];
+          int result = orig;
+          int idxLeft = index - 1;
+          int idxRight = index + 1;
+          int idxUp = index - pixelWidth;
+          int idxDown = index + pixelWidth;
+          if (idxLeft < curRowIndex) {
+            idxLeft = index;
+          }
+          if (idxRight >= maxRowIndex) {
+            idxRight = index;
+          }
+          if (idxUp < 0) {
+            idxUp = index;
+          }
+          if (idxDown >= maxIndex) {
+            idxDown = index;
+          }
 
-        int colUp = pixels[idxUp];
-        int colLeft = pixels[idxLeft];
-        int colDown = pixels[idxDown];
-        int colRight = pixels[idxRight];
-
-        // compute luminance
-        int currLum =
-          77*(orig>>16&0xff) + 151*(orig>>8&0xff) + 28*(orig&0xff);
-        int lumLeft =
-          77*(colLeft>>16&0xff) + 151*(colLeft>>8&0xff) + 28*(colLeft&0xff);
-        int lumRight =
-          77*(colRight>>16&0xff) + 151*(colRight>>8&0xff) + 28*(colRight&0xff);
-        int lumUp =
-          77*(colUp>>16&0xff) + 151*(colUp>>8&0xff) + 28*(colUp&0xff);
-        int lumDown =
-          77*(colDown>>16&0xff) + 151*(colDown>>8&0xff) + 28*(colDown&0xff);
-
-        if (lumLeft < currLum) {
-          result = colLeft;
-          currLum = lumLeft;
-        }
-        if (lumRight < currLum) {
-          result = colRight;
-          currLum = lumRight;
-        }
-        if (lumUp < currLum) {
-          result = colUp;
-          currLum = lumUp;
-        }
-        if (lumDown < currLum) {
-          result = colDown;
-//          currLum = lumDown;  // removed, unused assignment
+          int colUp = pixels[idxUp];
+          int colLeft = pixels[idxLeft];
+          int colDown = pixels[idxDown];
+          int colRight = pixels[idxRight];
+
+          // compute luminance
+          int currLum =
+            77*(orig>>16&0xff) + 151*(orig>>8&0xff) + 28*(orig&0xff);
+          int lumLeft =
+            77*(colLeft>>16&0xff) + 151*(colLeft>>8&0xff) + 28*(colLeft&0xff);
+          int lumRight =
+            77*(colRight>>16&0xff) + 151*(colRight>>8&0xff) + 28*(colRight&0xff);
+          int lumUp =
+            77*(colUp>>16&0xff) + 151*(colUp>>8&0xff) + 28*(colUp&0xff);
+          int lumDown =
+            77*(colDown>>16&0xff) + 151*(colDown>>8&0xff) + 28*(colDown&0xff);
+
+          if (lumLeft < currLum) {
+            result = colLeft;
+            currLum = lumLeft;
+          }
+          if (lumRight < currLum) {
+            result = colRight;
+            currLum = lumRight;
+          }
+          if (lumUp < currLum) {
+            result = colUp;
+            currLum = lumUp;
+          }
+          if (lumDown < currLum) {
+            result = colDown;
+//            currLum = lumDown;  // removed, unused assignment
+          }
+          outgoing[index++] = result;
         }
-        outgoing[index++] = result;
       }
-    }
+    });
     System.arraycopy(outgoing, 0, pixels, 0, maxIndex);
   }
 
@@ -1832,8 +1982,8 @@ public class PImage implements PConstants, Cloneable {
     int dx = (int) (srcW / (float) destW * PRECISIONF);
     int dy = (int) (srcH / (float) destH * PRECISIONF);
 
-    srcXOffset = destX1 < 0 ? -destX1 * dx : srcX1 * PRECISIONF;
-    srcYOffset = destY1 < 0 ? -destY1 * dy : srcY1 * PRECISIONF;
+    int srcXOffset = destX1 < 0 ? -destX1 * dx : srcX1 * PRECISIONF;
+    int srcYOffset = destY1 < 0 ? -destY1 * dy : srcY1 * PRECISIONF;
 
     if (destX1 < 0) {
       destW += destX1;
@@ -1844,481 +1994,193 @@ public class PImage implements PConstants, Cloneable {
       destY1 = 0;
     }
 
-    destW = min(destW, screenW - destX1);
-    destH = min(destH, screenH - destY1);
-
+    int lineW = min(destW, screenW - destX1);
+    int lineH = min(destH, screenH - destY1);
+    if (lineW <= 0 || lineH <= 0) {
+      return;  // entirely off the left or top edge
+    }
     int destOffset = destY1 * screenW + destX1;
-    srcBuffer = img.pixels;
-
-    if (smooth) {
-      blitResizeBilinear(img, destPixels, destOffset, screenW, destW, destH, dx, dy, mode);
-    } else {
-      blitResizeNearest(img, destPixels, destOffset, screenW, destW, destH, dx, dy, mode);
+    int[] srcBuffer = img.pixels;
+    int iw = img.pixelWidth;
+    int ih = img.pixelHeight;
+
+    if (srcBuffer == destPixels) {
+      // reading the pixels being written (a blend() of this image onto an
+      // area that overlaps once clipped), where each result depends on the
+      // ones written before it, so go one pixel at a time, in order
+      int[] pixel = new int[1];
+      for (int y = 0; y < lineH; y++) {
+        int sY = srcYOffset + y * dy;
+        for (int x = 0; x < lineW; x++) {
+          int sX = srcXOffset + x * dx;
+          if (smooth) {
+            scanlineBilinear(srcBuffer, iw, ih, sX, sY, dx, pixel, 1);
+          } else {
+            scanlineNearest(srcBuffer, iw, sX, sY, dx, pixel, 1);
+          }
+          blendPixels(destPixels, destOffset + y * screenW + x, pixel, 0, 1, mode);
+        }
+      }
+      return;
     }
+
+    // each row is sampled into a buffer, then blended with the destination
+    PixelBands.run(lineH, lineW, (start, stop) -> {
+      int[] line = new int[lineW];
+      for (int y = start; y < stop; y++) {
+        int sY = srcYOffset + y * dy;
+        if (smooth) {
+          scanlineBilinear(srcBuffer, iw, ih, srcXOffset, sY, dx, line, lineW);
+        } else {
+          scanlineNearest(srcBuffer, iw, srcXOffset, sY, dx, line, lineW);
+        }
+        blendPixels(destPixels, destOffset + y * screenW, line, 0, lineW, mode);
+      }
+    });
   }
 
-  private void blitResizeBilinear(PImage img,
-                                  int[] destPixels, int destOffset, int screenW,
-                                  int destW, int destH,
-                                  int dx, int dy,
-                                  int mode) {
-    // use bilinear filtering
-    iw = img.pixelWidth;
-    iw1 = img.pixelWidth - 1;
-    ih1 = img.pixelHeight - 1;
 
+  /**
+   * Blend count pixels from src into dst, the same as calling blendColor()
+   * on each pair, but with the choice of mode made once for the whole run
+   * so that the JIT gets a tight loop for each mode. Used by blend() and
+   * by the Java2D renderer's blendMode(). Nothing happens if the mode is
+   * not recognized.
+   */
+  static protected void blendPixels(int[] dst, int dstOffset,
+                                    int[] src, int srcOffset,
+                                    int count, int mode) {
     switch (mode) {
-
       case BLEND:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            // davbol  - renamed old blend_multiply to blend_blend
-            destPixels[destOffset + x] =
-                    blend_blend(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          // davbol  - renamed old blend_multiply to blend_blend
+          dst[dstOffset + i] = blend_blend(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       case ADD:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_add_pin(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_add_pin(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       case SUBTRACT:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_sub_pin(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_sub_pin(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       case LIGHTEST:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_lightest(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_lightest(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       case DARKEST:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_darkest(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_darkest(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       case REPLACE:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] = filter_bilinear();
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
+        System.arraycopy(src, srcOffset, dst, dstOffset, count);
         break;
 
       case DIFFERENCE:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_difference(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_difference(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       case EXCLUSION:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_exclusion(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_exclusion(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       case MULTIPLY:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_multiply(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_multiply(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       case SCREEN:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_screen(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_screen(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       case OVERLAY:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_overlay(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_overlay(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       case HARD_LIGHT:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_hard_light(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_hard_light(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       case SOFT_LIGHT:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_soft_light(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_soft_light(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       // davbol - proposed 2007-01-09
       case DODGE:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_dodge(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_dodge(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
 
       case BURN:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-                    blend_burn(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        for (int i = 0; i < count; i++) {
+          dst[dstOffset + i] = blend_burn(dst[dstOffset + i], src[srcOffset + i]);
         }
         break;
-
     }
   }
 
-  private void blitResizeNearest(PImage img,
-                                 int[] destPixels, int destOffset, int screenW,
-                                 int destW, int destH,
-                                 int dx, int dy,
-                                 int mode) {
-    // nearest neighbour scaling (++fast!)
-    int sY;
-    switch (mode) {
 
-    case BLEND:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          // davbol - renamed old blend_multiply to blend_blend
-          destPixels[destOffset + x] =
-            blend_blend(destPixels[destOffset + x],
-                        srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case ADD:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_add_pin(destPixels[destOffset + x],
-                          srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case SUBTRACT:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_sub_pin(destPixels[destOffset + x],
-                          srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case LIGHTEST:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_lightest(destPixels[destOffset + x],
-                           srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case DARKEST:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_darkest(destPixels[destOffset + x],
-                          srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case REPLACE:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] = srcBuffer[sY + (sX >> PRECISIONB)];
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case DIFFERENCE:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_difference(destPixels[destOffset + x],
-                             srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case EXCLUSION:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_exclusion(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case MULTIPLY:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_multiply(destPixels[destOffset + x],
-                          srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case SCREEN:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_screen(destPixels[destOffset + x],
-                          srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case OVERLAY:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_overlay(destPixels[destOffset + x],
-                          srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case HARD_LIGHT:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_hard_light(destPixels[destOffset + x],
-                          srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case SOFT_LIGHT:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_soft_light(destPixels[destOffset + x],
-                          srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    // davbol - proposed 2007-01-09
-    case DODGE:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_dodge(destPixels[destOffset + x],
-                          srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
-
-    case BURN:
-      for (int y = 0; y < destH; y++) {
-        sX = srcXOffset;
-        sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-        for (int x = 0; x < destW; x++) {
-          destPixels[destOffset + x] =
-            blend_burn(destPixels[destOffset + x],
-                          srcBuffer[sY + (sX >> PRECISIONB)]);
-          sX += dx;
-        }
-        destOffset += screenW;
-        srcYOffset += dy;
-      }
-      break;
+  /** Nearest neighbour scaling (++fast!) of one row of the source. */
+  static private void scanlineNearest(int[] srcBuffer, int iw,
+                                      int srcXOffset, int srcYOffset, int dx,
+                                      int[] line, int count) {
+    int sX = srcXOffset;
+    int sY = (srcYOffset >> PRECISIONB) * iw;
+    for (int x = 0; x < count; x++) {
+      line[x] = srcBuffer[sY + (sX >> PRECISIONB)];
+      sX += dx;
     }
   }
 
 
-  private void filter_new_scanline() {
-    sX = srcXOffset;
+  /** Bilinear filtering of one row of the source. */
+  static private void scanlineBilinear(int[] srcBuffer, int iw, int ih,
+                                       int srcXOffset, int srcYOffset, int dx,
+                                       int[] line, int count) {
+    int iw1 = iw - 1;
+    int ih1 = ih - 1;
     int fracV = srcYOffset & PREC_MAXVAL;
-    ifV = PREC_MAXVAL - fracV + 1;
-    v1 = (srcYOffset >> PRECISIONB) * iw;
-    v2 = min((srcYOffset >> PRECISIONB) + 1, ih1) * iw;
+    int ifV = PREC_MAXVAL - fracV + 1;
+    int v1 = (srcYOffset >> PRECISIONB) * iw;
+    int v2 = min((srcYOffset >> PRECISIONB) + 1, ih1) * iw;
+
+    int sX = srcXOffset;
+    for (int x = 0; x < count; x++) {
+      line[x] = filter_bilinear(srcBuffer, sX, ifV, v1, v2, iw1);
+      sX += dx;
+    }
   }
 
 
-  private int filter_bilinear() {
+  static private int filter_bilinear(int[] srcBuffer,
+                                     int sX, int ifV, int v1, int v2, int iw1) {
     int cUL, cLL, cUR, cLR;
     int r, g, b, a;
 
-    // private fields
     int fracU = sX & PREC_MAXVAL;
     int ifU = PREC_MAXVAL - fracU + 1;
     int ul = (ifU * ifV) >> PRECISIONB;
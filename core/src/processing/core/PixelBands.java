@@ -0,0 +1,116 @@
+package processing.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+
+
+/**
+ * Runs work on an image in bands of rows, spread across the threads of a
+ * ForkJoinPool, for PImage.filter() and blend(). Images smaller than
+ * PARALLEL_PIXELS are handled on the calling thread, where starting the
+ * other threads would cost more than it saves.
+ * <p/>
+ * Each band only writes to its own rows, and anything read from outside
+ * of them (the rows above and below for ERODE and DILATE, for instance)
+ * has to be left alone until every band is finished, so the results are
+ * the same no matter how the rows are divided up.
+ * Advanced users only, not official API.
+ */
+class PixelBands {
+  /** Images with fewer pixels than this (512 x 512) use a single thread */
+  static final int PARALLEL_PIXELS = 1 << 18;
+  /** Smallest number of pixels to hand to a thread at once */
+  static final int BAND_PIXELS = 1 << 14;
+
+  /** Number of threads to use, or 0 for the common pool */
+  static private int parallelism;
+  static private ForkJoinPool pool;
+
+
+  interface Band {
+    /** Handle the rows from start up to (but not including) stop. */
+    void run(int start, int stop);
+  }
+
+
+  static synchronized void setParallelism(int count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("The number of threads cannot be negative");
+    }
+    if (count != parallelism) {
+      if (pool != null) {
+        pool.shutdown();
+        pool = null;
+      }
+      parallelism = count;
+      if (count > 1) {
+        pool = new ForkJoinPool(count);
+      }
+    }
+  }
+
+
+  static synchronized int getParallelism() {
+    return (parallelism == 0) ? ForkJoinPool.getCommonPoolParallelism() + 1 : parallelism;
+  }
+
+
+  static synchronized private ForkJoinPool pool() {
+    return (parallelism == 0) ? ForkJoinPool.commonPool() : pool;
+  }
+
+
+  /**
+   * Run band over rows 0 to rows, each of which has width pixels,
+   * returning once all of them are finished.
+   */
+  static void run(int rows, int width, Band band) {
+    int threads = getParallelism();
+    long pixels = (long) rows * width;
+    if (threads <= 1 || rows < 2 || pixels < PARALLEL_PIXELS) {
+      band.run(0, rows);
+      return;
+    }
+    // a few bands per thread so that one slow thread doesn't hold up the rest
+    int grain = Math.max(1, rows / (threads * 4));
+    grain = Math.max(grain, BAND_PIXELS / Math.max(1, width));
+    ForkJoinPool fjp = pool();
+    if (fjp == null) {  // setParallelism(1) happened in the meantime
+      band.run(0, rows);
+    } else {
+      try {
+        fjp.invoke(new Split(band, 0, rows, grain));
+      } catch (RejectedExecutionException e) {
+        // the pool was replaced by setParallelism() before it started
+        band.run(0, rows);
+      }
+    }
+  }
+
+
+  static private class Split extends RecursiveAction {
+    static private final long serialVersionUID = 1L;
+
+    final Band band;
+    final int start, stop, grain;
+
+    Split(Band band, int start, int stop, int grain) {
+      this.band = band;
+      this.start = start;
+      this.stop = stop;
+      this.grain = grain;
+    }
+
+    @Override
+    protected void compute() {
+      if (stop - start <= grain) {
+        band.run(start, stop);
+      } else {
+        int middle = (start + stop) >>> 1;
+        invokeAll(new Split(band, start, middle, grain),
+                  new Split(band, middle, stop, grain));
+      }
+    }
+  }
+}
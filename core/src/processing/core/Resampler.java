@@ -0,0 +1,380 @@
+package processing.core;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Scales pixels for PImage.resize() and for copy() when it shrinks a
+ * region, working directly on int[] pixels rather than going through
+ * Java2D. The work is done in two separable passes, first along the rows
+ * and then along the columns. Each target pixel's source pixels and
+ * fixed-point weights are worked out once per pass, rather than once per
+ * pixel.
+ * <p/>
+ * When shrinking, the filter is widened by the scale factor, so every
+ * source pixel contributes to the result (area averaging) instead of
+ * only the ones nearest to each sample. ARGB images are filtered with
+ * premultiplied alpha, so colors of fully transparent pixels don't bleed
+ * into their neighbors.
+ * <p/>
+ * NEAREST_NEIGHBOR picks the closest pixel, BILINEAR uses a triangle
+ * filter, BICUBIC uses Mitchell-Netravali (B = C = 1/3), LANCZOS uses a
+ * three-lobed Lanczos filter, and AREA uses a box filter.
+ * Advanced users only, not official API.
+ */
+class Resampler implements PConstants {
+  static final int PRECISION_BITS = 14;
+  static final int ONE = 1 << PRECISION_BITS;
+  static final int HALF = 1 << (PRECISION_BITS - 1);
+
+  /**
+   * Largest value in the wide format used between the passes, where each
+   * channel is multiplied by 255 (or by alpha, when premultiplied) so that
+   * nothing is lost by rounding between the two passes.
+   */
+  static final int WIDE_MAX = 255 * 255;
+
+  /** 1 / alpha in 8.24 fixed point, for undoing premultiplied alpha */
+  static private final int[] UNPREMULTIPLY = new int[256];
+  static {
+    for (int a = 1; a < 256; a++) {
+      UNPREMULTIPLY[a] = ((1 << 24) + a/2) / a;
+    }
+  }
+
+  /** Space for the first pass, kept between calls if nothing else is using it */
+  static private final AtomicReference<SoftReference<char[]>> spare =
+    new AtomicReference<>();
+
+
+  /** Which source pixels, and how much of each, make each target pixel. */
+  static class Taps {
+    /** Index of the first source pixel for each target pixel */
+    int[] start;
+    /** Number of source pixels used by each target pixel */
+    int[] count;
+    /** Weights for target i start at i * stride, and add up to ONE */
+    int[] weights;
+    int stride;
+  }
+
+
+  /**
+   * Scale the sw x sh region at sx, sy of src (which is srcWidth pixels
+   * across) to a new array of dw x dh pixels.
+   * @param mode NEAREST_NEIGHBOR, BILINEAR, BICUBIC, LANCZOS, or AREA
+   * @param format RGB, ARGB, or ALPHA, as used by PImage
+   */
+  static int[] resample(int[] src, int srcWidth,
+                        int sx, int sy, int sw, int sh,
+                        int dw, int dh, int mode, int format) {
+    int[] target = new int[dw * dh];
+    if (dw <= 0 || dh <= 0 || sw <= 0 || sh <= 0) {
+      return target;
+    }
+    // RGB images come out opaque, whatever was in the high byte before
+    int opaque = (format == RGB) ? 0xff000000 : 0;
+    if (mode == NEAREST_NEIGHBOR || (sw == dw && sh == dh)) {
+      nearest(src, srcWidth, sx, sy, sw, sh, target, dw, dh, opaque);
+      return target;
+    }
+    boolean premultiply = (format == ARGB);
+    Taps columns = (sw == dw) ? null : taps(sw, dw, mode);
+
+    if (sh == dh) {
+      // only the rows need to change, straight into the target
+      PixelBands.run(dh, dw, (start, stop) ->
+        horizontal(src, srcWidth, sx, sy, sw, start, stop, columns,
+                   null, target, dw, sh, premultiply, opaque));
+      return target;
+    }
+
+    // four planes of dw x sh, one for each channel
+    char[] middle = borrow(4 * dw * sh);
+    PixelBands.run(sh, dw, (start, stop) ->
+      horizontal(src, srcWidth, sx, sy, sw, start, stop, columns,
+                 middle, null, dw, sh, premultiply, opaque));
+    Taps rows = taps(sh, dh, mode);
+    PixelBands.run(dh, dw, (start, stop) ->
+      vertical(middle, sh, start, stop, rows, target, dw, premultiply, opaque));
+    spare.set(new SoftReference<>(middle));
+    return target;
+  }
+
+
+  static private char[] borrow(int length) {
+    SoftReference<char[]> ref = spare.getAndSet(null);
+    char[] array = (ref == null) ? null : ref.get();
+    if (array == null || array.length < length) {
+      array = new char[length];
+    }
+    return array;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  static private void nearest(int[] src, int srcWidth,
+                              int sx, int sy, int sw, int sh,
+                              int[] target, int dw, int dh, int opaque) {
+    int[] xs = new int[dw];
+    for (int x = 0; x < dw; x++) {
+      xs[x] = sx + Math.min(sw - 1, (int) ((x + 0.5) * sw / dw));
+    }
+    PixelBands.run(dh, dw, (start, stop) -> {
+      for (int y = start; y < stop; y++) {
+        int row = (sy + Math.min(sh - 1, (int) ((y + 0.5) * sh / dh))) * srcWidth;
+        int index = y * dw;
+        for (int x = 0; x < dw; x++) {
+          target[index++] = src[row + xs[x]] | opaque;
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Filter rows start to stop of the source region across (or just copy
+   * them if taps is null), either into the planes of middle in the wide
+   * format, or as finished pixels into target.
+   */
+  static private void horizontal(int[] src, int srcWidth, int sx, int sy, int sw,
+                                 int start, int stop, Taps taps,
+                                 char[] middle, int[] target, int dw, int sh,
+                                 boolean premultiply, int opaque) {
+    // each row is split into its channels first, so each tap is 4 reads
+    int[] la = new int[sw];
+    int[] lr = new int[sw];
+    int[] lg = new int[sw];
+    int[] lb = new int[sw];
+    int plane = dw * sh;
+    // locals, so the JIT knows they aren't changed by the writes below
+    int[] tapStart = (taps == null) ? null : taps.start;
+    int[] tapCount = (taps == null) ? null : taps.count;
+    int[] tapWeights = (taps == null) ? null : taps.weights;
+    int stride = (taps == null) ? 0 : taps.stride;
+
+    for (int y = start; y < stop; y++) {
+      int offset = (sy + y) * srcWidth + sx;
+      for (int x = 0; x < sw; x++) {
+        int c = src[offset + x];
+        int a = c >>> 24;
+        int m = premultiply ? a : 255;
+        la[x] = a * 255;
+        lr[x] = ((c >> 16) & 0xff) * m;
+        lg[x] = ((c >> 8) & 0xff) * m;
+        lb[x] = (c & 0xff) * m;
+      }
+      int index = y * dw;
+      for (int x = 0; x < dw; x++) {
+        int wa, wr, wg, wb;
+        if (taps == null) {
+          wa = la[x];
+          wr = lr[x];
+          wg = lg[x];
+          wb = lb[x];
+        } else {
+          int i = tapStart[x];
+          int w = x * stride;
+          int end = w + tapCount[x];
+          int ca = HALF, cr = HALF, cg = HALF, cb = HALF;
+          for (; w < end; w++, i++) {
+            int weight = tapWeights[w];
+            ca += weight * la[i];
+            cr += weight * lr[i];
+            cg += weight * lg[i];
+            cb += weight * lb[i];
+          }
+          wa = clamp(ca);
+          wr = clamp(cr);
+          wg = clamp(cg);
+          wb = clamp(cb);
+        }
+        if (target != null) {
+          target[index] = narrow(wa, wr, wg, wb, premultiply, opaque);
+        } else {
+          middle[index] = (char) wa;
+          middle[plane + index] = (char) wr;
+          middle[2*plane + index] = (char) wg;
+          middle[3*plane + index] = (char) wb;
+        }
+        index++;
+      }
+    }
+  }
+
+
+  /**
+   * Filter the target rows start to stop down the columns of the planes
+   * in middle, which are dw x sh.
+   */
+  static private void vertical(char[] middle, int sh,
+                               int start, int stop, Taps taps,
+                               int[] target, int dw,
+                               boolean premultiply, int opaque) {
+    int plane = dw * sh;
+    // add up each row's contribution across the whole line at once,
+    // so that memory is read in order
+    int[] ca = new int[dw];
+    int[] cr = new int[dw];
+    int[] cg = new int[dw];
+    int[] cb = new int[dw];
+    for (int y = start; y < stop; y++) {
+      Arrays.fill(ca, HALF);
+      Arrays.fill(cr, HALF);
+      Arrays.fill(cg, HALF);
+      Arrays.fill(cb, HALF);
+      int first = taps.start[y];
+      int w = y * taps.stride;
+      for (int k = 0; k < taps.count[y]; k++) {
+        int weight = taps.weights[w + k];
+        int row = (first + k) * dw;
+        for (int x = 0; x < dw; x++) {
+          int i = row + x;
+          ca[x] += weight * middle[i];
+          cr[x] += weight * middle[plane + i];
+          cg[x] += weight * middle[2*plane + i];
+          cb[x] += weight * middle[3*plane + i];
+        }
+      }
+      int index = y * dw;
+      for (int x = 0; x < dw; x++) {
+        target[index++] = narrow(clamp(ca[x]), clamp(cr[x]), clamp(cg[x]), clamp(cb[x]),
+                                 premultiply, opaque);
+      }
+    }
+  }
+
+
+  /** Turn a fixed-point sum (already rounded) into a wide channel value. */
+  static private int clamp(int sum) {
+    int value = sum >> PRECISION_BITS;
+    return (value < 0) ? 0 : (value > WIDE_MAX) ? WIDE_MAX : value;
+  }
+
+
+  /** Pack wide channel values back into an 8-bit ARGB color. */
+  static private int narrow(int wa, int wr, int wg, int wb,
+                            boolean premultiplied, int opaque) {
+    int a = (wa + 127) / 255;
+    int r, g, b;
+    if (premultiplied && a != 255) {
+      if (a == 0) {
+        return 0;
+      }
+      // the colors were multiplied by alpha
+      long m = UNPREMULTIPLY[a];
+      r = (int) Math.min(255, (wr * m + (1 << 23)) >> 24);
+      g = (int) Math.min(255, (wg * m + (1 << 23)) >> 24);
+      b = (int) Math.min(255, (wb * m + (1 << 23)) >> 24);
+    } else {  // not premultiplied, or multiplied by 255
+      r = (wr + 127) / 255;
+      g = (wg + 127) / 255;
+      b = (wb + 127) / 255;
+    }
+    return (a << 24) | (r << 16) | (g << 8) | b | opaque;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Work out the weights for scaling inSize pixels to outSize, with
+   * the centers of the pixels lined up (pixel x covers x to x+1).
+   */
+  static Taps taps(int inSize, int outSize, int mode) {
+    double scale = inSize / (double) outSize;
+    double filterScale = Math.max(scale, 1);
+    double support = support(mode) * filterScale;
+
+    Taps taps = new Taps();
+    taps.stride = (int) Math.ceil(support) * 2 + 1;
+    taps.start = new int[outSize];
+    taps.count = new int[outSize];
+    taps.weights = new int[outSize * taps.stride];
+    double[] values = new double[taps.stride];
+
+    for (int i = 0; i < outSize; i++) {
+      double center = (i + 0.5) * scale;
+      int min = Math.max(0, (int) Math.floor(center - support + 0.5));
+      int max = Math.min(inSize, (int) Math.floor(center + support + 0.5));
+      max = Math.min(max, min + taps.stride);
+
+      double total = 0;
+      for (int x = min; x < max; x++) {
+        double value = kernel(mode, (x - center + 0.5) / filterScale);
+        values[x - min] = value;
+        total += value;
+      }
+      int offset = i * taps.stride;
+      if (total == 0 || max <= min) {
+        // nothing under the filter, so use the closest pixel
+        taps.start[i] = Math.min(inSize - 1, (int) center);
+        taps.count[i] = 1;
+        taps.weights[offset] = ONE;
+        continue;
+      }
+      int sum = 0;
+      int biggest = 0;
+      for (int k = 0; k < max - min; k++) {
+        int weight = (int) Math.round(values[k] / total * ONE);
+        taps.weights[offset + k] = weight;
+        sum += weight;
+        if (weight > taps.weights[offset + biggest]) {
+          biggest = k;
+        }
+      }
+      // make sure the weights add up exactly, so flat areas stay flat
+      taps.weights[offset + biggest] += ONE - sum;
+      taps.start[i] = min;
+      taps.count[i] = max - min;
+    }
+    return taps;
+  }
+
+
+  static private double support(int mode) {
+    switch (mode) {
+      case AREA: return 0.5;
+      case BICUBIC: return 2;
+      case LANCZOS: return 3;
+      default: return 1;  // BILINEAR
+    }
+  }
+
+
+  static private double kernel(int mode, double x) {
+    switch (mode) {
+      case AREA:
+        return (x > -0.5 && x <= 0.5) ? 1 : 0;
+
+      case BICUBIC: {
+        // Mitchell-Netravali with B = C = 1/3
+        x = Math.abs(x);
+        if (x < 1) {
+          return (7*x*x*x - 12*x*x + 16/3.0) / 6;
+        } else if (x < 2) {
+          return (-7/3.0*x*x*x + 12*x*x - 20*x + 32/3.0) / 6;
+        }
+        return 0;
+      }
+
+      case LANCZOS: {
+        x = Math.abs(x);
+        if (x == 0) return 1;
+        if (x >= 3) return 0;
+        double px = Math.PI * x;
+        return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+      }
+
+      default: {  // BILINEAR
+        x = Math.abs(x);
+        return (x < 1) ? 1 - x : 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package processing.data;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+
+/**
+ * Key lookup shared by IntDict, LongDict, FloatDict, DoubleDict, and
+ * StringDict. The keys and values stay in the dictionary's own arrays,
+ * in the order they were added, and this finds the entry for a key using
+ * HashSlots, which keeps the hash of each key next to its slot so that
+ * most probes never need to look at the String itself.
+ * <p/>
+ * Removing a key marks its entry as REMOVED instead of shifting every
+ * entry that follows it. The gaps are closed up in a single pass by
+ * pack(), which the dictionaries only call when they need the entries
+ * numbered in order again. Removing keys one at a time is O(1) apiece.
+ * <p/>
+ * Advanced users only, not official API.
+ */
+class DictHash {
+  /** Placed in the keys array for an entry that has been removed. */
+  static final String REMOVED = new String("(removed)");
+
+  HashSlots slots;
+
+  /** Number of entries marked REMOVED, and the lowest of them. */
+  int removed;
+  int firstRemoved = Integer.MAX_VALUE;
+
+
+  DictHash() {
+    this(0);
+  }
+
+
+  /** Start out with room for this many entries. */
+  DictHash(int entries) {
+    slots = new HashSlots(entries);
+  }
+
+
+  static int hash(String key) {
+    return HashSlots.hash(key);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Return the entry for this key, or -1 if it's not present. */
+  int find(String[] keys, String key) {
+    int index = slotOf(keys, key, hash(key));
+    return (index == -1) ? -1 : slots.entry(index);
+  }
+
+
+  private int slotOf(String[] keys, String key, int hash) {
+    for (int i = slots.candidates(hash, -1); i != -1; i = slots.candidates(hash, i)) {
+      if (Objects.equals(keys[slots.entry(i)], key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+
+  /**
+   * Make keys[entry] find this entry. If the key is already present
+   * somewhere else, the later one wins, same as with HashMap.put().
+   */
+  void put(String[] keys, int entry) {
+    String key = keys[entry];
+    int hash = hash(key);
+    int index = slotOf(keys, key, hash);
+    if (index != -1) {
+      slots.set(index, entry);
+    } else {
+      slots.add(hash, entry);
+    }
+  }
+
+
+  /** Mark an entry as REMOVED. Its value is left for the caller to clear. */
+  void remove(String[] keys, int entry) {
+    if (keys[entry] == REMOVED) {
+      throw new IllegalStateException("Entry " + entry + " was already removed");
+    }
+    slots.remove(hash(keys[entry]), entry);
+    keys[entry] = REMOVED;
+    removed++;
+    if (entry < firstRemoved) {
+      firstRemoved = entry;
+    }
+  }
+
+
+  /** Change the key used for an entry. */
+  void rename(String[] keys, int entry, String key) {
+    slots.remove(hash(keys[entry]), entry);
+    keys[entry] = key;
+    put(keys, entry);
+  }
+
+
+  /** Called before two entries trade places in the keys array. */
+  void swap(String[] keys, int a, int b) {
+    int slotA = slots.slotOf(hash(keys[a]), a);
+    int slotB = slots.slotOf(hash(keys[b]), b);
+    if (slotA != -1) {
+      slots.set(slotA, b);
+    }
+    if (slotB != -1) {
+      slots.set(slotB, a);
+    }
+  }
+
+
+  /** Start over with the first count entries of keys. */
+  void rebuild(String[] keys, int count) {
+    slots.clear(count);
+    removed = 0;
+    firstRemoved = Integer.MAX_VALUE;
+    for (int entry = 0; entry < count; entry++) {
+      put(keys, entry);
+    }
+  }
+
+
+  /**
+   * Close up the gaps left by REMOVED entries, moving the keys and the
+   * values (any kind of array) down to fill them, and renumber the slots.
+   * Returns the new number of entries.
+   */
+  int pack(String[] keys, Object values, int count) {
+    int first = firstRemoved;
+    if (removed == 0 || first >= count) {
+      return count;
+    }
+    // new entry numbers for everything from the first gap onward
+    int[] remap = new int[count - first];
+    int target = first;
+    int entry = first;
+    while (entry < count) {
+      if (keys[entry] == REMOVED) {
+        entry++;
+      } else {
+        int start = entry;
+        while (entry < count && keys[entry] != REMOVED) {
+          remap[entry - first] = target + (entry - start);
+          entry++;
+        }
+        int length = entry - start;
+        System.arraycopy(keys, start, keys, target, length);
+        System.arraycopy(values, start, values, target, length);
+        target += length;
+      }
+    }
+    Arrays.fill(keys, target, count, null);
+    if (values instanceof Object[]) {
+      Arrays.fill((Object[]) values, target, count, null);
+    }
+    slots.rehash(HashSlots.capacity(target), remap, first);
+    removed = 0;
+    firstRemoved = Integer.MAX_VALUE;
+    return target;
+  }
+
+
+  /**
+   * The next entry after this one that hasn't been removed,
+   * or count if there are no more. Used for iterating.
+   */
+  static int next(String[] keys, int entry, int count) {
+    do {
+      entry++;
+    } while (entry < count && keys[entry] == REMOVED);
+    return entry;
+  }
+}
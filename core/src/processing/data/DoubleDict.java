@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -25,7 +24,7 @@ public class DoubleDict {
   protected double[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private DictHash lookup = new DictHash();
 
 
   public DoubleDict() {
@@ -45,6 +44,7 @@ public class DoubleDict {
     count = 0;
     keys = new String[length];
     values = new double[length];
+    lookup = new DictHash(length);
   }
 
 
@@ -64,7 +64,7 @@ public class DoubleDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseFloat(pieces[1]);
-        indices.put(pieces[0], count);
+        lookup.put(keys, count);
         count++;
       }
     }
@@ -81,9 +81,7 @@ public class DoubleDict {
     this.keys = keys;
     this.values = values;
     count = keys.length;
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    resetIndices();
   }
 
 
@@ -103,8 +101,8 @@ public class DoubleDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Float) pairs[i][1];
-      indices.put(keys[i], i);
     }
+    resetIndices();
   }
 
 
@@ -116,9 +114,9 @@ public class DoubleDict {
     for (Map.Entry<String, Double> e : incoming.entrySet()) {
       keys[index] = e.getKey();
       values[index] = e.getValue();
-      indices.put(keys[index], index);
       index++;
     }
+    resetIndices();
   }
 
 
@@ -127,7 +125,7 @@ public class DoubleDict {
    * @brief Returns the number of key/value pairs
    */
   public int size() {
-    return count;
+    return count - lookup.removed;
   }
 
 
@@ -136,6 +134,7 @@ public class DoubleDict {
    * Helpful for situations like sorting and then grabbing the top 50 entries.
    */
   public void resize(int length) {
+    pack();
     if (length == count) return;
 
     if (length > count) {
@@ -164,18 +163,35 @@ public class DoubleDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
+    lookup = new DictHash();
   }
 
 
   private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+    lookup.rebuild(keys, count);
+  }
+
+
+  /** Close up the gaps left by removed entries. */
+  private void pack() {
+    if (lookup.removed != 0) {
+      count = lookup.pack(keys, values, count);
     }
   }
 
 
+  /**
+   * Make sure that the entries up to and including this index are in
+   * order. Removing from the end of the list doesn't need a pack().
+   */
+  private int packed(int index) {
+    if (index >= lookup.firstRemoved) {
+      pack();
+    }
+    return index;
+  }
+
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
@@ -205,18 +221,16 @@ public class DoubleDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public Entry next() {
-        ++index;
-        Entry e = new Entry(keys[index], values[index]);
-        return e;
+        index = DictHash.next(keys, index, count);
+        return new Entry(keys[index], values[index]);
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -226,11 +240,12 @@ public class DoubleDict {
 
 
   public String key(int index) {
-    return keys[index];
+    return keys[packed(index)];
   }
 
 
   protected void crop() {
+    pack();
     if (count != keys.length) {
       keys = PApplet.subset(keys, 0, count);
       values = PApplet.subset(values, 0, count);
@@ -255,16 +270,16 @@ public class DoubleDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public String next() {
-        return key(++index);
+        index = DictHash.next(keys, index, count);
+        return keys[index];
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -283,6 +298,7 @@ public class DoubleDict {
 
 
   public String[] keyArray(String[] outgoing) {
+    pack();
     if (outgoing == null || outgoing.length != count) {
       outgoing = new String[count];
     }
@@ -292,7 +308,7 @@ public class DoubleDict {
 
 
   public double value(int index) {
-    return values[index];
+    return values[packed(index)];
   }
 
 
@@ -316,16 +332,16 @@ public class DoubleDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public Double next() {
-        return value(++index);
+        index = DictHash.next(keys, index, count);
+        return values[index];
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -349,6 +365,7 @@ public class DoubleDict {
    * size as the number of values, a new array will be allocated and returned.
    */
   public double[] valueArray(double[] array) {
+    pack();
     if (array == null || array.length != size()) {
       array = new double[count];
     }
@@ -364,7 +381,7 @@ public class DoubleDict {
    * @brief Return a value for the specified key
    */
   public double get(String key) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       throw new IllegalArgumentException("No key named '" + key + "'");
     }
@@ -373,7 +390,7 @@ public class DoubleDict {
 
 
   public double get(String key, double alternate) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       return alternate;
     }
@@ -386,7 +403,7 @@ public class DoubleDict {
    * @brief Create a new key/value pair or change the value of one
    */
   public void set(String key, double amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       create(key, amount);
     } else {
@@ -396,10 +413,10 @@ public class DoubleDict {
 
 
   public void setIndex(int index, String key, double value) {
-    if (index < 0 || index >= count) {
+    if (index < 0 || index >= size()) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    keys[index] = key;
+    lookup.rename(keys, packed(index), key);
     values[index] = value;
   }
 
@@ -409,7 +426,7 @@ public class DoubleDict {
    * @brief Check if a key is a part of the data structure
    */
   public boolean hasKey(String key) {
-    return index(key) != -1;
+    return lookup.find(keys, key) != -1;
   }
 
 
@@ -418,7 +435,7 @@ public class DoubleDict {
    * @brief Add to a value
    */
   public void add(String key, double amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       create(key, amount);
     } else {
@@ -441,7 +458,7 @@ public class DoubleDict {
    * @brief Multiply a value
    */
   public void mult(String key, double amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index != -1) {
       values[index] *= amount;
     }
@@ -453,7 +470,7 @@ public class DoubleDict {
    * @brief Divide a value
    */
   public void div(String key, double amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index != -1) {
       values[index] /= amount;
     }
@@ -461,6 +478,7 @@ public class DoubleDict {
 
 
   private void checkMinMax(String functionName) {
+    pack();
     if (count == 0) {
       String msg =
         String.format("Cannot use %s() on an empty %s.",
@@ -475,6 +493,7 @@ public class DoubleDict {
    * @brief Return the smallest value
    */
   public int minIndex() {
+    pack();
     //checkMinMax("minIndex");
     if (count == 0) return -1;
 
@@ -530,6 +549,7 @@ public class DoubleDict {
    */
   // The index of the entry that has the max value. Reference above is incorrect.
   public int maxIndex() {
+    pack();
     //checkMinMax("maxIndex");
     if (count == 0) {
       return -1;
@@ -581,6 +601,7 @@ public class DoubleDict {
 
 
   public double sum() {
+    pack();
     double sum = 0;
     for (int i = 0; i < count; i++) {
       sum += values[i];
@@ -590,19 +611,23 @@ public class DoubleDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    pack();
+    return lookup.find(keys, what);
   }
 
 
   protected void create(String what, double much) {
     if (count == keys.length) {
-      keys = PApplet.expand(keys);
-      values = PApplet.expand(values);
+      if (lookup.removed > count >> 2) {
+        pack();
+      } else {
+        keys = PApplet.expand(keys);
+        values = PApplet.expand(values);
+      }
     }
-    indices.put(what, Integer.valueOf(count));
     keys[count] = what;
     values[count] = much;
+    lookup.put(keys, count);
     count++;
   }
 
@@ -612,44 +637,40 @@ public class DoubleDict {
    * @brief Remove a key/value pair
    */
   public double remove(String key) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       throw new NoSuchElementException("'" + key + "' not found");
     }
     double value = values[index];
-    removeIndex(index);
+    removeEntry(index);
     return value;
   }
 
 
   public double removeIndex(int index) {
-    if (index < 0 || index >= count) {
+    if (index < 0 || index >= size()) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    double value = values[index];
-    indices.remove(keys[index]);
-    for (int i = index; i < count-1; i++) {
-      keys[i] = keys[i+1];
-      values[i] = values[i+1];
-      indices.put(keys[i], i);
-    }
-    count--;
-    keys[count] = null;
-    values[count] = 0;
+    return removeEntry(packed(index));
+  }
+
+
+  private double removeEntry(int entry) {
+    double value = values[entry];
+    lookup.remove(keys, entry);
     return value;
   }
 
 
   public void swap(int a, int b) {
+    packed(Math.max(a, b));
+    lookup.swap(keys, a, b);
     String tkey = keys[a];
     double tvalue = values[a];
     keys[a] = keys[b];
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
   }
 
 
@@ -711,64 +732,30 @@ public class DoubleDict {
 
   protected void sortImpl(final boolean useKeys, final boolean reverse,
                           final boolean stable) {
-    Sort s = new Sort() {
-      @Override
-      public int size() {
-        if (useKeys) {
-          return count;  // don't worry about NaN values
-
-        } else if (count == 0) {  // skip the NaN check, it'll AIOOBE
-          return 0;
-
-        } else {  // first move NaN values to the end of the list
-          int right = count - 1;
-          while (values[right] != values[right]) {
-            right--;
-            if (right == -1) {
-              return 0;  // all values are NaN
-            }
-          }
-          for (int i = right; i >= 0; --i) {
-            if (Double.isNaN(values[i])) {
-              swap(i, right);
-              --right;
-            }
-          }
-          return right + 1;
-        }
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        double diff = 0;
-        if (useKeys) {
-          diff = keys[a].compareToIgnoreCase(keys[b]);
-          if (diff == 0) {
-            diff = values[a] - values[b];
-          }
-        } else {  // sort values
-          diff = values[a] - values[b];
-          if (diff == 0 && stable) {
-            diff = keys[a].compareToIgnoreCase(keys[b]);
-          }
-        }
-        if (diff == 0) {
-          return 0;
-        } else if (reverse) {
-          return diff < 0 ? 1 : -1;
-        } else {
-          return diff < 0 ? -1 : 1;
-        }
-      }
-
-      @Override
-      public void swap(int a, int b) {
-        DoubleDict.this.swap(a, b);
+    pack();
+    // Each pass is a stable sort, so the last pass decides the order,
+    // and the earlier passes break ties.
+    int[] order = IntList.fromRange(count).values();
+    // NaN values go to the end, whether reversed or not
+    long[] valueKeys = RadixSort.doubleKeys(values, count, reverse);
+    if (useKeys) {
+      RadixSort.sortIndices(valueKeys, order, count, reverse);
+      RadixSort.sortIndices(RadixSort.rank(keys, count), order, count, reverse);
+    } else {
+      if (stable) {
+        RadixSort.sortIndices(RadixSort.rank(keys, count), order, count, reverse);
       }
-    };
-    s.run();
+      RadixSort.sortIndices(valueKeys, order, count, reverse);
+    }
 
-    // Set the indices after sort/swaps (performance fix 160411)
+    String[] newKeys = new String[keys.length];
+    double[] newValues = new double[values.length];
+    for (int i = 0; i < count; i++) {
+      newKeys[i] = keys[order[i]];
+      newValues[i] = values[order[i]];
+    }
+    keys = newKeys;
+    values = newValues;
     resetIndices();
   }
 
@@ -791,18 +778,18 @@ public class DoubleDict {
 
   /** Returns a duplicate copy of this object. */
   public DoubleDict copy() {
+    pack();
     DoubleDict outgoing = new DoubleDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
     outgoing.count = count;
+    outgoing.resetIndices();
     return outgoing;
   }
 
 
   public void print() {
+    pack();
     for (int i = 0; i < size(); i++) {
       System.out.println(keys[i] + " = " + values[i]);
     }
@@ -824,6 +811,7 @@ public class DoubleDict {
    * @param writer
    */
   public void write(PrintWriter writer) {
+    pack();
     for (int i = 0; i < count; i++) {
       writer.println(keys[i] + "\t" + values[i]);
     }
@@ -835,6 +823,7 @@ public class DoubleDict {
    * Return this dictionary as a String in JSON format.
    */
   public String toJSON() {
+    pack();
     StringList items = new StringList();
     for (int i = 0; i < count; i++) {
       items.append(JSONObject.quote(keys[i])+ ": " + values[i]);
@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -27,7 +26,7 @@ public class FloatDict {
   protected float[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private DictHash lookup = new DictHash();
 
 
   public FloatDict() {
@@ -47,6 +46,7 @@ public class FloatDict {
     count = 0;
     keys = new String[length];
     values = new float[length];
+    lookup = new DictHash(length);
   }
 
 
@@ -66,7 +66,7 @@ public class FloatDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseFloat(pieces[1]);
-        indices.put(pieces[0], count);
+        lookup.put(keys, count);
         count++;
       }
     }
@@ -83,9 +83,7 @@ public class FloatDict {
     this.keys = keys;
     this.values = values;
     count = keys.length;
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    resetIndices();
   }
 
 
@@ -105,8 +103,8 @@ public class FloatDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Float) pairs[i][1];
-      indices.put(keys[i], i);
     }
+    resetIndices();
   }
 
 
@@ -117,7 +115,7 @@ public class FloatDict {
    * @webBrief Returns the number of key/value pairs
    */
   public int size() {
-    return count;
+    return count - lookup.removed;
   }
 
 
@@ -126,6 +124,7 @@ public class FloatDict {
    * Helpful for situations like sorting and then grabbing the top 50 entries.
    */
   public void resize(int length) {
+    pack();
     if (length == count) return;
 
     if (length > count) {
@@ -154,18 +153,35 @@ public class FloatDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
+    lookup = new DictHash();
   }
 
 
   private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+    lookup.rebuild(keys, count);
+  }
+
+
+  /** Close up the gaps left by removed entries. */
+  private void pack() {
+    if (lookup.removed != 0) {
+      count = lookup.pack(keys, values, count);
     }
   }
 
 
+  /**
+   * Make sure that the entries up to and including this index are in
+   * order. Removing from the end of the list doesn't need a pack().
+   */
+  private int packed(int index) {
+    if (index >= lookup.firstRemoved) {
+      pack();
+    }
+    return index;
+  }
+
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
@@ -195,18 +211,16 @@ public class FloatDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public Entry next() {
-        ++index;
-        Entry e = new Entry(keys[index], values[index]);
-        return e;
+        index = DictHash.next(keys, index, count);
+        return new Entry(keys[index], values[index]);
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -216,11 +230,12 @@ public class FloatDict {
 
 
   public String key(int index) {
-    return keys[index];
+    return keys[packed(index)];
   }
 
 
   protected void crop() {
+    pack();
     if (count != keys.length) {
       keys = PApplet.subset(keys, 0, count);
       values = PApplet.subset(values, 0, count);
@@ -250,16 +265,16 @@ public class FloatDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public String next() {
-        return key(++index);
+        index = DictHash.next(keys, index, count);
+        return keys[index];
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -279,6 +294,7 @@ public class FloatDict {
 
 
   public String[] keyArray(String[] outgoing) {
+    pack();
     if (outgoing == null || outgoing.length != count) {
       outgoing = new String[count];
     }
@@ -288,7 +304,7 @@ public class FloatDict {
 
 
   public float value(int index) {
-    return values[index];
+    return values[packed(index)];
   }
 
 
@@ -314,16 +330,16 @@ public class FloatDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public Float next() {
-        return value(++index);
+        index = DictHash.next(keys, index, count);
+        return values[index];
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -351,6 +367,7 @@ public class FloatDict {
    * size as the number of values, a new array will be allocated and returned.
    */
   public float[] valueArray(float[] array) {
+    pack();
     if (array == null || array.length != size()) {
       array = new float[count];
     }
@@ -366,7 +383,7 @@ public class FloatDict {
    * @webBrief Return a value for the specified key
    */
   public float get(String key) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       throw new IllegalArgumentException("No key named '" + key + "'");
     }
@@ -375,7 +392,7 @@ public class FloatDict {
 
 
   public float get(String key, float alternate) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       return alternate;
     }
@@ -390,7 +407,7 @@ public class FloatDict {
    * @webBrief Create a new key/value pair or change the value of one
    */
   public void set(String key, float amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       create(key, amount);
     } else {
@@ -400,10 +417,10 @@ public class FloatDict {
 
 
   public void setIndex(int index, String key, float value) {
-    if (index < 0 || index >= count) {
+    if (index < 0 || index >= size()) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    keys[index] = key;
+    lookup.rename(keys, packed(index), key);
     values[index] = value;
   }
 
@@ -415,7 +432,7 @@ public class FloatDict {
    * @webBrief Check if a key is a part of the data structure
    */
   public boolean hasKey(String key) {
-    return index(key) != -1;
+    return lookup.find(keys, key) != -1;
   }
 
 
@@ -427,7 +444,7 @@ public class FloatDict {
    * @webBrief Add to a value
    */
   public void add(String key, float amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       create(key, amount);
     } else {
@@ -454,7 +471,7 @@ public class FloatDict {
    * @webBrief Multiply a value
    */
   public void mult(String key, float amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index != -1) {
       values[index] *= amount;
     }
@@ -468,7 +485,7 @@ public class FloatDict {
    * @webBrief Divide a value
    */
   public void div(String key, float amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index != -1) {
       values[index] /= amount;
     }
@@ -476,6 +493,7 @@ public class FloatDict {
 
 
   private void checkMinMax(String functionName) {
+    pack();
     if (count == 0) {
       String msg =
         String.format("Cannot use %s() on an empty %s.",
@@ -492,6 +510,7 @@ public class FloatDict {
    * @webBrief Return the smallest value
    */
   public int minIndex() {
+    pack();
     //checkMinMax("minIndex");
     if (count == 0) return -1;
 
@@ -549,6 +568,7 @@ public class FloatDict {
    */
   // The index of the entry that has the max value. Reference above is incorrect.
   public int maxIndex() {
+    pack();
     //checkMinMax("maxIndex");
     if (count == 0) {
       return -1;
@@ -612,6 +632,7 @@ public class FloatDict {
 
 
   public double sumDouble() {
+    pack();
     double sum = 0;
     for (int i = 0; i < count; i++) {
       sum += values[i];
@@ -621,19 +642,23 @@ public class FloatDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    pack();
+    return lookup.find(keys, what);
   }
 
 
   protected void create(String what, float much) {
     if (count == keys.length) {
-      keys = PApplet.expand(keys);
-      values = PApplet.expand(values);
+      if (lookup.removed > count >> 2) {
+        pack();
+      } else {
+        keys = PApplet.expand(keys);
+        values = PApplet.expand(values);
+      }
     }
-    indices.put(what, Integer.valueOf(count));
     keys[count] = what;
     values[count] = much;
+    lookup.put(keys, count);
     count++;
   }
 
@@ -645,44 +670,40 @@ public class FloatDict {
    * @webBrief Remove a key/value pair
    */
   public float remove(String key) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       throw new NoSuchElementException("'" + key + "' not found");
     }
     float value = values[index];
-    removeIndex(index);
+    removeEntry(index);
     return value;
   }
 
 
   public float removeIndex(int index) {
-    if (index < 0 || index >= count) {
+    if (index < 0 || index >= size()) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    float value = values[index];
-    indices.remove(keys[index]);
-    for (int i = index; i < count-1; i++) {
-      keys[i] = keys[i+1];
-      values[i] = values[i+1];
-      indices.put(keys[i], i);
-    }
-    count--;
-    keys[count] = null;
-    values[count] = 0;
+    return removeEntry(packed(index));
+  }
+
+
+  private float removeEntry(int entry) {
+    float value = values[entry];
+    lookup.remove(keys, entry);
     return value;
   }
 
 
   public void swap(int a, int b) {
+    packed(Math.max(a, b));
+    lookup.swap(keys, a, b);
     String tkey = keys[a];
     float tvalue = values[a];
     keys[a] = keys[b];
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
   }
 
 
@@ -749,64 +770,30 @@ public class FloatDict {
 
   protected void sortImpl(final boolean useKeys, final boolean reverse,
                           final boolean stable) {
-    Sort s = new Sort() {
-      @Override
-      public int size() {
-        if (useKeys) {
-          return count;  // don't worry about NaN values
-
-        } else if (count == 0) {  // skip the NaN check, it'll AIOOBE
-          return 0;
-
-        } else {  // first move NaN values to the end of the list
-          int right = count - 1;
-          while (values[right] != values[right]) {
-            right--;
-            if (right == -1) {
-              return 0;  // all values are NaN
-            }
-          }
-          for (int i = right; i >= 0; --i) {
-            if (Float.isNaN(values[i])) {
-              swap(i, right);
-              --right;
-            }
-          }
-          return right + 1;
-        }
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        float diff = 0;
-        if (useKeys) {
-          diff = keys[a].compareToIgnoreCase(keys[b]);
-          if (diff == 0) {
-            diff = values[a] - values[b];
-          }
-        } else {  // sort values
-          diff = values[a] - values[b];
-          if (diff == 0 && stable) {
-            diff = keys[a].compareToIgnoreCase(keys[b]);
-          }
-        }
-        if (diff == 0) {
-          return 0;
-        } else if (reverse) {
-          return diff < 0 ? 1 : -1;
-        } else {
-          return diff < 0 ? -1 : 1;
-        }
-      }
-
-      @Override
-      public void swap(int a, int b) {
-        FloatDict.this.swap(a, b);
+    pack();
+    // Each pass is a stable sort, so the last pass decides the order,
+    // and the earlier passes break ties.
+    int[] order = IntList.fromRange(count).values();
+    // NaN values go to the end, whether reversed or not
+    int[] valueKeys = RadixSort.floatKeys(values, count, reverse);
+    if (useKeys) {
+      RadixSort.sortIndices(valueKeys, order, count, reverse);
+      RadixSort.sortIndices(RadixSort.rank(keys, count), order, count, reverse);
+    } else {
+      if (stable) {
+        RadixSort.sortIndices(RadixSort.rank(keys, count), order, count, reverse);
       }
-    };
-    s.run();
+      RadixSort.sortIndices(valueKeys, order, count, reverse);
+    }
 
-    // Set the indices after sort/swaps (performance fix 160411)
+    String[] newKeys = new String[keys.length];
+    float[] newValues = new float[values.length];
+    for (int i = 0; i < count; i++) {
+      newKeys[i] = keys[order[i]];
+      newValues[i] = values[order[i]];
+    }
+    keys = newKeys;
+    values = newValues;
     resetIndices();
   }
 
@@ -829,18 +816,18 @@ public class FloatDict {
 
   /** Returns a duplicate copy of this object. */
   public FloatDict copy() {
+    pack();
     FloatDict outgoing = new FloatDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
     outgoing.count = count;
+    outgoing.resetIndices();
     return outgoing;
   }
 
 
   public void print() {
+    pack();
     for (int i = 0; i < size(); i++) {
       System.out.println(keys[i] + " = " + values[i]);
     }
@@ -862,6 +849,7 @@ public class FloatDict {
    * @param writer
    */
   public void write(PrintWriter writer) {
+    pack();
     for (int i = 0; i < count; i++) {
       writer.println(keys[i] + "\t" + values[i]);
     }
@@ -873,6 +861,7 @@ public class FloatDict {
    * Return this dictionary as a String in JSON format.
    */
   public String toJSON() {
+    pack();
     StringList items = new StringList();
     for (int i = 0; i < count; i++) {
       items.append(JSONObject.quote(keys[i])+ ": " + values[i]);
@@ -0,0 +1,205 @@
+package processing.data;
+
+
+/**
+ * The open addressing part of a hash table, shared by the classes that
+ * keep their keys in arrays of their own (TableGroup, TableJoin, the
+ * Table category dictionary, StringArena, and the Dict classes), so
+ * that they don't each need their own probing, removal, and resizing.
+ * <p/>
+ * Each slot holds an entry number (an index into the owner's arrays)
+ * along with the hash of its key. Lookups go through candidates(), which
+ * only stops at slots with the same hash, so the owner just compares the
+ * keys for the entries it's handed:
+ * <pre>
+ * for (int i = slots.candidates(hash, -1); i != -1; i = slots.candidates(hash, i)) {
+ *   if (key.equals(keys[slots.entry(i)])) ...
+ * }
+ * </pre>
+ * Linear probing, with the table kept at most half full. Removed entries
+ * leave a DELETED marker so that probing continues past them; those are
+ * reused by add(), and dropped whenever the table is rehashed.
+ * Advanced users only, not official API.
+ */
+class HashSlots {
+  static final int EMPTY = 0;
+  /** A slot whose entry was removed, left so that probing continues past it */
+  static final int DELETED = -1;
+
+  /** Entry + 1 for each slot, or EMPTY, or DELETED */
+  int[] slots;
+  int[] hashes;  // [slot]
+  /** Slots that are not EMPTY */
+  int filled;
+  /** Slots that are DELETED */
+  int deleted;
+
+
+  HashSlots() {
+    this(0);
+  }
+
+
+  /** Start out with room for this many entries. */
+  HashSlots(int entries) {
+    clear(entries);
+  }
+
+
+  /** Power of two with at least twice as many slots as entries. */
+  static int capacity(int entries) {
+    int capacity = 16;
+    while (capacity <= entries << 1) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+
+  /** Spread the bits of a hashCode() so that nearby values don't collide. */
+  static int mix(int hash) {
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+
+  static int mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+
+  /** Hash for a String key, where null is allowed. */
+  static int hash(String key) {
+    return (key == null) ? 0 : mix(key.hashCode());
+  }
+
+
+  /** Remove everything, leaving room for this many entries. */
+  void clear(int entries) {
+    int capacity = capacity(entries);
+    slots = new int[capacity];
+    hashes = new int[capacity];
+    filled = 0;
+    deleted = 0;
+  }
+
+
+  /** Number of entries in the table. */
+  int size() {
+    return filled - deleted;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * The next slot after previous (or the first one, when previous is -1)
+   * that holds an entry with this hash, or -1 once there are no more.
+   */
+  int candidates(int hash, int previous) {
+    int mask = slots.length - 1;
+    int index = (previous == -1) ? (hash & mask) : ((previous + 1) & mask);
+    int slot;
+    while ((slot = slots[index]) != EMPTY) {
+      if (slot != DELETED && hashes[index] == hash) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+
+  /** The entry held by a slot from candidates() or slotOf(). */
+  int entry(int index) {
+    return slots[index] - 1;
+  }
+
+
+  /** Point a slot at a different entry (for the same key). */
+  void set(int index, int entry) {
+    slots[index] = entry + 1;
+  }
+
+
+  /** The slot that holds this entry, or -1 if it's not in the table. */
+  int slotOf(int hash, int entry) {
+    for (int i = candidates(hash, -1); i != -1; i = candidates(hash, i)) {
+      if (slots[i] == entry + 1) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+
+  /**
+   * Add an entry whose key isn't in the table yet (the owner has already
+   * checked with candidates()), growing the table if it's over half full.
+   */
+  void add(int hash, int entry) {
+    int mask = slots.length - 1;
+    int index = hash & mask;
+    int slot;
+    while ((slot = slots[index]) != EMPTY) {
+      if (slot == DELETED) {
+        deleted--;
+        slots[index] = entry + 1;
+        hashes[index] = hash;
+        return;
+      }
+      index = (index + 1) & mask;
+    }
+    slots[index] = entry + 1;
+    hashes[index] = hash;
+    if (++filled << 1 > slots.length) {
+      rehash(capacity(size()), null, 0);
+    }
+  }
+
+
+  /** Take an entry out of the table, returning false if it wasn't there. */
+  boolean remove(int hash, int entry) {
+    int index = slotOf(hash, entry);
+    if (index == -1) {
+      return false;
+    }
+    slots[index] = DELETED;
+    deleted++;
+    return true;
+  }
+
+
+  /**
+   * Copy the slots into a new table of the given size, dropping the
+   * DELETED ones, and changing entry numbers from first onward using
+   * remap (when it's not null).
+   */
+  void rehash(int capacity, int[] remap, int first) {
+    int[] oldSlots = slots;
+    int[] oldHashes = hashes;
+    slots = new int[capacity];
+    hashes = new int[capacity];
+    filled = 0;
+    deleted = 0;
+    int mask = capacity - 1;
+    for (int i = 0; i < oldSlots.length; i++) {
+      int slot = oldSlots[i];
+      if (slot > 0) {
+        int entry = slot - 1;
+        if (remap != null && entry >= first) {
+          entry = remap[entry - first];
+        }
+        int index = oldHashes[i] & mask;
+        while (slots[index] != EMPTY) {
+          index = (index + 1) & mask;
+        }
+        slots[index] = entry + 1;
+        hashes[index] = oldHashes[i];
+        filled++;
+      }
+    }
+  }
+}
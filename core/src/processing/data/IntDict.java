@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -26,7 +25,7 @@ public class IntDict {
   protected int[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private DictHash lookup = new DictHash();
 
 
   public IntDict() {
@@ -46,6 +45,7 @@ public class IntDict {
     count = 0;
     keys = new String[length];
     values = new int[length];
+    lookup = new DictHash(length);
   }
 
 
@@ -65,7 +65,7 @@ public class IntDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseInt(pieces[1]);
-        indices.put(pieces[0], count);
+        lookup.put(keys, count);
         count++;
       }
     }
@@ -81,9 +81,7 @@ public class IntDict {
     this.keys = keys;
     this.values = values;
     count = keys.length;
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    resetIndices();
   }
 
 
@@ -103,8 +101,8 @@ public class IntDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Integer) pairs[i][1];
-      indices.put(keys[i], i);
     }
+    resetIndices();
   }
 
 
@@ -115,7 +113,7 @@ public class IntDict {
    * @webBrief Returns the number of key/value pairs
    */
   public int size() {
-    return count;
+    return count - lookup.removed;
   }
 
 
@@ -124,6 +122,7 @@ public class IntDict {
    * Helpful for situations like sorting and then grabbing the top 50 entries.
    */
   public void resize(int length) {
+    pack();
     if (length > count) {
       throw new IllegalArgumentException("resize() can only be used to shrink the dictionary");
     }
@@ -150,15 +149,32 @@ public class IntDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
+    lookup = new DictHash();
   }
 
 
   private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+    lookup.rebuild(keys, count);
+  }
+
+
+  /** Close up the gaps left by removed entries. */
+  private void pack() {
+    if (lookup.removed != 0) {
+      count = lookup.pack(keys, values, count);
+    }
+  }
+
+
+  /**
+   * Make sure that the entries up to and including this index are in
+   * order. Removing from the end of the list doesn't need a pack().
+   */
+  private int packed(int index) {
+    if (index >= lookup.firstRemoved) {
+      pack();
     }
+    return index;
   }
 
 
@@ -191,18 +207,16 @@ public class IntDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public Entry next() {
-        ++index;
-        Entry e = new Entry(keys[index], values[index]);
-        return e;
+        index = DictHash.next(keys, index, count);
+        return new Entry(keys[index], values[index]);
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -212,11 +226,12 @@ public class IntDict {
 
 
   public String key(int index) {
-    return keys[index];
+    return keys[packed(index)];
   }
 
 
   protected void crop() {
+    pack();
     if (count != keys.length) {
       keys = PApplet.subset(keys, 0, count);
       values = PApplet.subset(values, 0, count);
@@ -247,16 +262,16 @@ public class IntDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public String next() {
-        return key(++index);
+        index = DictHash.next(keys, index, count);
+        return keys[index];
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -276,6 +291,7 @@ public class IntDict {
 
 
   public String[] keyArray(String[] outgoing) {
+    pack();
     if (outgoing == null || outgoing.length != count) {
       outgoing = new String[count];
     }
@@ -285,7 +301,7 @@ public class IntDict {
 
 
   public int value(int index) {
-    return values[index];
+    return values[packed(index)];
   }
 
 
@@ -311,16 +327,16 @@ public class IntDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public Integer next() {
-        return value(++index);
+        index = DictHash.next(keys, index, count);
+        return values[index];
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -350,6 +366,7 @@ public class IntDict {
    * @param array values to copy into the array
    */
   public int[] valueArray(int[] array) {
+    pack();
     if (array == null || array.length != size()) {
       array = new int[count];
     }
@@ -365,7 +382,7 @@ public class IntDict {
    * @webBrief Return a value for the specified key
    */
   public int get(String key) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       throw new IllegalArgumentException("No key named '" + key + "'");
     }
@@ -374,7 +391,7 @@ public class IntDict {
 
 
   public int get(String key, int alternate) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) return alternate;
     return values[index];
   }
@@ -387,7 +404,7 @@ public class IntDict {
    * @webBrief Create a new key/value pair or change the value of one
    */
   public void set(String key, int amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       create(key, amount);
     } else {
@@ -397,10 +414,10 @@ public class IntDict {
 
 
   public void setIndex(int index, String key, int value) {
-    if (index < 0 || index >= count) {
+    if (index < 0 || index >= size()) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    keys[index] = key;
+    lookup.rename(keys, packed(index), key);
     values[index] = value;
   }
 
@@ -412,7 +429,7 @@ public class IntDict {
    * @webBrief Check if a key is a part of the data structure
    */
   public boolean hasKey(String key) {
-    return index(key) != -1;
+    return lookup.find(keys, key) != -1;
   }
 
 
@@ -433,7 +450,7 @@ public class IntDict {
    * even though it's technically an add().
    */
   public void increment(IntDict dict) {
-    for (int i = 0; i < dict.count; i++) {
+    for (int i = 0; i < dict.size(); i++) {
       add(dict.key(i), dict.value(i));
     }
   }
@@ -447,7 +464,7 @@ public class IntDict {
    * @webBrief Add to a value
    */
   public void add(String key, int amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       create(key, amount);
     } else {
@@ -474,7 +491,7 @@ public class IntDict {
    * @webBrief Multiply a value
    */
   public void mult(String key, int amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index != -1) {
       values[index] *= amount;
     }
@@ -488,7 +505,7 @@ public class IntDict {
    * @webBrief Divide a value
    */
   public void div(String key, int amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index != -1) {
       values[index] /= amount;
     }
@@ -496,6 +513,7 @@ public class IntDict {
 
 
   private void checkMinMax(String functionName) {
+    pack();
     if (count == 0) {
       String msg =
         String.format("Cannot use %s() on an empty %s.",
@@ -507,6 +525,7 @@ public class IntDict {
 
   // return the index of the minimum value
   public int minIndex() {
+    pack();
     //checkMinMax("minIndex");
     if (count == 0) return -1;
 
@@ -542,6 +561,7 @@ public class IntDict {
 
   // return the index of the max value
   public int maxIndex() {
+    pack();
     //checkMinMax("maxIndex");
     if (count == 0) {
       return -1;
@@ -589,6 +609,7 @@ public class IntDict {
 
 
   public long sumLong() {
+    pack();
     long sum = 0;
     for (int i = 0; i < count; i++) {
       sum += values[i];
@@ -598,19 +619,23 @@ public class IntDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    pack();
+    return lookup.find(keys, what);
   }
 
 
   protected void create(String what, int much) {
     if (count == keys.length) {
-      keys = PApplet.expand(keys);
-      values = PApplet.expand(values);
+      if (lookup.removed > count >> 2) {
+        pack();
+      } else {
+        keys = PApplet.expand(keys);
+        values = PApplet.expand(values);
+      }
     }
-    indices.put(what, Integer.valueOf(count));
     keys[count] = what;
     values[count] = much;
+    lookup.put(keys, count);
     count++;
   }
 
@@ -621,44 +646,40 @@ public class IntDict {
    * @webBrief Remove a key/value pair
    */
   public int remove(String key) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       throw new NoSuchElementException("'" + key + "' not found");
     }
     int value = values[index];
-    removeIndex(index);
+    removeEntry(index);
     return value;
   }
 
 
   public int removeIndex(int index) {
-    if (index < 0 || index >= count) {
+    if (index < 0 || index >= size()) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    int value = values[index];
-    indices.remove(keys[index]);
-    for (int i = index; i < count-1; i++) {
-      keys[i] = keys[i+1];
-      values[i] = values[i+1];
-      indices.put(keys[i], i);
-    }
-    count--;
-    keys[count] = null;
-    values[count] = 0;
+    return removeEntry(packed(index));
+  }
+
+
+  private int removeEntry(int entry) {
+    int value = values[entry];
+    lookup.remove(keys, entry);
     return value;
   }
 
 
   public void swap(int a, int b) {
+    packed(Math.max(a, b));
+    lookup.swap(keys, a, b);
     String tkey = keys[a];
     int tvalue = values[a];
     keys[a] = keys[b];
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
   }
 
 
@@ -724,37 +745,28 @@ public class IntDict {
 
   protected void sortImpl(final boolean useKeys, final boolean reverse,
                           final boolean stable) {
-    Sort s = new Sort() {
-      @Override
-      public int size() {
-        return count;
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        int diff = 0;
-        if (useKeys) {
-          diff = keys[a].compareToIgnoreCase(keys[b]);
-          if (diff == 0) {
-            diff = values[a] - values[b];
-          }
-        } else {  // sort values
-          diff = values[a] - values[b];
-          if (diff == 0 && stable) {
-            diff = keys[a].compareToIgnoreCase(keys[b]);
-          }
-        }
-        return reverse ? -diff : diff;
-      }
-
-      @Override
-      public void swap(int a, int b) {
-        IntDict.this.swap(a, b);
+    pack();
+    // Each pass is a stable sort, so the last pass decides the order,
+    // and the earlier passes break ties.
+    int[] order = IntList.fromRange(count).values();
+    if (useKeys) {
+      RadixSort.sortIndices(values, order, count, reverse);
+      RadixSort.sortIndices(RadixSort.rank(keys, count), order, count, reverse);
+    } else {
+      if (stable) {
+        RadixSort.sortIndices(RadixSort.rank(keys, count), order, count, reverse);
       }
-    };
-    s.run();
+      RadixSort.sortIndices(values, order, count, reverse);
+    }
 
-    // Set the indices after sort/swaps (performance fix 160411)
+    String[] newKeys = new String[keys.length];
+    int[] newValues = new int[values.length];
+    for (int i = 0; i < count; i++) {
+      newKeys[i] = keys[order[i]];
+      newValues[i] = values[order[i]];
+    }
+    keys = newKeys;
+    values = newValues;
     resetIndices();
   }
 
@@ -777,18 +789,18 @@ public class IntDict {
 
   /** Returns a duplicate copy of this object. */
   public IntDict copy() {
+    pack();
     IntDict outgoing = new IntDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
     outgoing.count = count;
+    outgoing.resetIndices();
     return outgoing;
   }
 
 
   public void print() {
+    pack();
     for (int i = 0; i < size(); i++) {
       System.out.println(keys[i] + " = " + values[i]);
     }
@@ -809,6 +821,7 @@ public class IntDict {
    * Write tab-delimited entries to a PrintWriter
    */
   public void write(PrintWriter writer) {
+    pack();
     for (int i = 0; i < count; i++) {
       writer.println(keys[i] + "\t" + values[i]);
     }
@@ -820,6 +833,7 @@ public class IntDict {
    * Return this dictionary as a String in JSON format.
    */
   public String toJSON() {
+    pack();
     StringList items = new StringList();
     for (int i = 0; i < count; i++) {
       items.append(JSONObject.quote(keys[i])+ ": " + values[i]);
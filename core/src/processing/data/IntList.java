@@ -5,6 +5,7 @@ import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Random;
+import java.util.function.IntUnaryOperator;
 
 import org.jetbrains.annotations.TestOnly;
 import processing.core.PApplet;
@@ -104,8 +105,9 @@ public class IntList implements Iterable<Integer> {
     int count = stop - start;
     IntList newbie = new IntList(count);
     for (int i = 0; i < count; i++) {
-      newbie.set(i, start+i);
+      newbie.data[i] = start+i;
     }
+    newbie.count = count;
     return newbie;
   }
 
@@ -581,6 +583,182 @@ public class IntList implements Iterable<Integer> {
     return sum;
   }
 
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+  // Math on the whole list. These are plain counted loops over the array,
+  // which HotSpot compiles to SIMD instructions where the CPU has them.
+
+
+  private void checkSize(IntList list, String functionName) {
+    if (list.count != count) {
+      String msg =
+        String.format("%s() needs lists of the same size, not %d and %d.",
+                      functionName, count, list.count);
+      throw new IllegalArgumentException(msg);
+    }
+  }
+
+
+  /** Add an amount to every value in the list. */
+  public void addEach(int amount) {
+    int[] data = this.data;
+    int n = count;
+    for (int i = 0; i < n; i++) {
+      data[i] += amount;
+    }
+  }
+
+
+  /** Add each value from another list (of the same size) to this one. */
+  public void addEach(IntList list) {
+    checkSize(list, "addEach");
+    int[] data = this.data;
+    int[] other = list.data;
+    int n = count;
+    for (int i = 0; i < n; i++) {
+      data[i] += other[i];
+    }
+  }
+
+
+  /** Subtract an amount from every value in the list. */
+  public void subEach(int amount) {
+    int[] data = this.data;
+    int n = count;
+    for (int i = 0; i < n; i++) {
+      data[i] -= amount;
+    }
+  }
+
+
+  /** Subtract each value of another list (of the same size) from this one. */
+  public void subEach(IntList list) {
+    checkSize(list, "subEach");
+    int[] data = this.data;
+    int[] other = list.data;
+    int n = count;
+    for (int i = 0; i < n; i++) {
+      data[i] -= other[i];
+    }
+  }
+
+
+  /** Multiply every value in the list by an amount. */
+  public void multEach(int amount) {
+    int[] data = this.data;
+    int n = count;
+    for (int i = 0; i < n; i++) {
+      data[i] *= amount;
+    }
+  }
+
+
+  /** Multiply each value by the matching value of another list. */
+  public void multEach(IntList list) {
+    checkSize(list, "multEach");
+    int[] data = this.data;
+    int[] other = list.data;
+    int n = count;
+    for (int i = 0; i < n; i++) {
+      data[i] *= other[i];
+    }
+  }
+
+
+  /** Divide every value in the list by an amount. */
+  public void divEach(int amount) {
+    int[] data = this.data;
+    int n = count;
+    for (int i = 0; i < n; i++) {
+      data[i] /= amount;
+    }
+  }
+
+
+  /** Divide each value by the matching value of another list. */
+  public void divEach(IntList list) {
+    checkSize(list, "divEach");
+    int[] data = this.data;
+    int[] other = list.data;
+    int n = count;
+    for (int i = 0; i < n; i++) {
+      data[i] /= other[i];
+    }
+  }
+
+
+  /** Limit every value in the list to the range from low to high. */
+  public void clamp(int low, int high) {
+    int[] data = this.data;
+    int n = count;
+    for (int i = 0; i < n; i++) {
+      data[i] = Math.min(Math.max(data[i], low), high);
+    }
+  }
+
+
+  /**
+   * Replace each value with the result of a function,
+   * as in <b>list.map(x -> x * x)</b>.
+   */
+  public void map(IntUnaryOperator function) {
+    int[] data = this.data;
+    int n = count;
+    for (int i = 0; i < n; i++) {
+      data[i] = function.applyAsInt(data[i]);
+    }
+  }
+
+
+  /** Sum of each value multiplied by the matching value in another list. */
+  public long dot(IntList list) {
+    checkSize(list, "dot");
+    int[] data = this.data;
+    int[] other = list.data;
+    int n = count;
+    // separate sums so that each addition needn't wait for the one before
+    long sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+    int i = 0;
+    for (; i < n - 3; i += 4) {
+      sum0 += (long) data[i] * other[i];
+      sum1 += (long) data[i+1] * other[i+1];
+      sum2 += (long) data[i+2] * other[i+2];
+      sum3 += (long) data[i+3] * other[i+3];
+    }
+    for (; i < n; i++) {
+      sum0 += (long) data[i] * other[i];
+    }
+    return (sum0 + sum1) + (sum2 + sum3);
+  }
+
+
+  /**
+   * Count how many values fall into each of a number of equal-sized
+   * bins between low and high. Values outside that range are ignored,
+   * and values equal to high are counted in the last bin.
+   */
+  public IntList histogram(int bins, int low, int high) {
+    if (bins <= 0 || !(high > low)) {
+      throw new IllegalArgumentException("histogram() needs at least one bin, and high > low");
+    }
+    int[] counts = new int[bins];
+    int[] data = this.data;
+    double scale = bins / ((double) high - low);
+    int n = count;
+    for (int i = 0; i < n; i++) {
+      int value = data[i];
+      if (value >= low && value <= high) {
+        int bin = (int) ((value - (double) low) * scale);
+        counts[Math.min(bin, bins - 1)]++;
+      }
+    }
+    IntList outgoing = new IntList(0);
+    outgoing.data = counts;
+    outgoing.count = bins;
+    return outgoing;
+  }
+
+
 
   /**
    * Sorts the array, lowest to highest.
@@ -589,7 +767,7 @@ public class IntList implements Iterable<Integer> {
    * @webBrief Sorts the array, lowest to highest
    */
   public void sort() {
-    Arrays.sort(data, 0, count);
+    RadixSort.sort(data, count);
   }
 
 
@@ -601,24 +779,8 @@ public class IntList implements Iterable<Integer> {
    * @webBrief Reverse sort, orders values from highest to lowest
    */
   public void sortReverse() {
-    new Sort() {
-      @Override
-      public int size() {
-        return count;
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        return data[b] - data[a];
-      }
-
-      @Override
-      public void swap(int a, int b) {
-        int temp = data[a];
-        data[a] = data[b];
-        data[b] = temp;
-      }
-    }.run();
+    RadixSort.sort(data, count);
+    reverse();
   }
 
 
@@ -793,15 +955,12 @@ public class IntList implements Iterable<Integer> {
    */
   @SuppressWarnings("unused")
   public FloatList getPercent() {
-    double sum = 0;
-    for (float value : array()) {
-      sum += value;
-    }
+    double sum = sumLong();
     FloatList outgoing = new FloatList(count);
     for (int i = 0; i < count; i++) {
-      double percent = data[i] / sum;
-      outgoing.set(i, (float) percent);
+      outgoing.data[i] = (float) (data[i] / sum);
     }
+    outgoing.count = count;
     return outgoing;
   }
 
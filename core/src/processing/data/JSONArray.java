@@ -38,10 +38,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
 
 import processing.core.PApplet;
@@ -107,9 +110,35 @@ import processing.core.PApplet;
 public class JSONArray {
 
   /**
-   * The arrayList where the JSONArray's properties are kept.
+   * The arrayList where the JSONArray's properties are kept,
+   * or null when the values are all numbers stored in one of the
+   * primitive arrays below.
    */
-  private final ArrayList<Object> myArrayList;
+  private ArrayList<Object> myArrayList;
+
+  // How the values are stored. Arrays that are all numbers (as from
+  // parsing a long list of coordinates) are kept unboxed, and only moved
+  // into myArrayList once something else is added to them.
+  static final int OBJECTS = 0;
+  static final int INTS = 1;
+  static final int LONGS = 2;
+  static final int FLOATS = 3;
+  static final int DOUBLES = 4;
+
+  private int kind;
+  private int[] ints;
+  private long[] longs;
+  private float[] floats;
+  private double[] doubles;
+  /** Number of values in the primitive array */
+  private int count;
+  /**
+   * For a DOUBLES array read from whole numbers and decimals together,
+   * the entries that were whole numbers in the text (all less than 1e7),
+   * so that those come back as Integer and the rest as Double, same as
+   * when each is parsed on its own. Null when there aren't any.
+   */
+  private BitSet wholes;
 
 
   /**
@@ -124,7 +153,8 @@ public class JSONArray {
    * @nowebref
    */
   public JSONArray(Reader reader) {
-    this(new JSONTokener(reader));
+    this();
+    new JSONReader(reader).readArray(this);
   }
 
 
@@ -172,10 +202,9 @@ public class JSONArray {
    * @nowebref
    */
   public JSONArray(IntList list) {
-    myArrayList = new ArrayList<>();
-    for (int item : list.values()) {
-      myArrayList.add(Integer.valueOf(item));
-    }
+    kind = INTS;
+    count = list.size();
+    ints = Arrays.copyOf(list.data, Math.max(count, 10));
   }
 
 
@@ -183,10 +212,9 @@ public class JSONArray {
    * @nowebref
    */
   public JSONArray(FloatList list) {
-    myArrayList = new ArrayList<>();
-    for (float item : list.values()) {
-      myArrayList.add(Float.valueOf(item));
-    }
+    kind = FLOATS;
+    count = list.size();
+    floats = Arrays.copyOf(list.data, Math.max(count, 10));
   }
 
 
@@ -210,7 +238,7 @@ public class JSONArray {
    */
   static public JSONArray parse(String source) {
     try {
-      return new JSONArray(new JSONTokener(source));
+      return new JSONArray(new StringReader(source));
     } catch (Exception e) {
       return null;
     }
@@ -260,10 +288,155 @@ public class JSONArray {
     if (index < 0 || index >= this.size()) {
       return null;
     }
+    switch (kind) {
+    case INTS:
+      return Integer.valueOf(ints[index]);
+    case LONGS:
+      long l = longs[index];
+      if (l == (int) l) {
+        return Integer.valueOf((int) l);  // same as when parsed
+      }
+      return Long.valueOf(l);
+    case FLOATS:
+      return Float.valueOf(floats[index]);
+    case DOUBLES:
+      double d = doubles[index];
+      if (wholes != null && wholes.get(index)) {
+        return Integer.valueOf((int) d);
+      }
+      return Double.valueOf(d);
+    }
     return myArrayList.get(index);
   }
 
 
+  /** True if the value at this index is held in one of the primitive arrays. */
+  private boolean isPrimitive(int index) {
+    return kind != OBJECTS && index >= 0 && index < count;
+  }
+
+
+  /**
+   * Move the values into myArrayList (boxing them if they were stored
+   * as primitives), so that something other than a number can be added.
+   */
+  private ArrayList<Object> objects() {
+    if (kind != OBJECTS) {
+      ArrayList<Object> list = new ArrayList<>(Math.max(count, 10));
+      for (int i = 0; i < count; i++) {
+        list.add(opt(i));
+      }
+      myArrayList = list;
+      kind = OBJECTS;
+      ints = null;
+      longs = null;
+      floats = null;
+      doubles = null;
+      count = 0;
+      wholes = null;
+    }
+    return myArrayList;
+  }
+
+
+  /** Make room in the primitive array for one more value. */
+  private void grow() {
+    if (kind == INTS && count == ints.length) {
+      ints = Arrays.copyOf(ints, count << 1);
+    } else if (kind == LONGS && count == longs.length) {
+      longs = Arrays.copyOf(longs, count << 1);
+    } else if (kind == FLOATS && count == floats.length) {
+      floats = Arrays.copyOf(floats, count << 1);
+    } else if (kind == DOUBLES && count == doubles.length) {
+      doubles = Arrays.copyOf(doubles, count << 1);
+    }
+  }
+
+
+  /** If nothing has been added yet, start storing primitives of this kind. */
+  private boolean startPrimitive(int newKind) {
+    if (kind == OBJECTS && myArrayList.isEmpty()) {
+      kind = newKind;
+      myArrayList = null;
+      switch (newKind) {
+      case INTS: ints = new int[10]; break;
+      case LONGS: longs = new long[10]; break;
+      case DOUBLES: doubles = new double[10]; break;
+      }
+      return true;
+    }
+    return false;
+  }
+
+
+  /**
+   * Add a whole number read by JSONReader. Arrays of these stay unboxed,
+   * moving from int to long as needed, or to double if decimals were
+   * already read and this is small enough to be written the same way.
+   */
+  void appendParsed(long value) {
+    boolean isInt = (value == (int) value);
+    startPrimitive(isInt ? INTS : LONGS);
+    if (kind == INTS && !isInt) {
+      longs = new long[Math.max(ints.length, 10)];
+      for (int i = 0; i < count; i++) {
+        longs[i] = ints[i];
+      }
+      ints = null;
+      kind = LONGS;
+    }
+    if (kind == INTS) {
+      grow();
+      ints[count++] = (int) value;
+    } else if (kind == LONGS) {
+      grow();
+      longs[count++] = value;
+    } else if (kind == DOUBLES && Math.abs(value) < 1e7) {
+      grow();
+      if (wholes == null) {
+        wholes = new BitSet();
+      }
+      wholes.set(count);
+      doubles[count++] = value;
+    } else if (isInt) {
+      objects().add(Integer.valueOf((int) value));
+    } else {
+      objects().add(Long.valueOf(value));
+    }
+  }
+
+
+  /**
+   * Add a number with a decimal point or exponent read by JSONReader.
+   * Whole numbers already read are moved to a double array along with
+   * it, as long as they're all small enough to be written the same way.
+   */
+  void appendParsed(double value) {
+    if (!startPrimitive(DOUBLES) && kind == INTS) {
+      boolean small = true;
+      for (int i = 0; i < count && small; i++) {
+        small = Math.abs(ints[i]) < 1e7;
+      }
+      if (small) {
+        doubles = new double[ints.length];
+        for (int i = 0; i < count; i++) {
+          doubles[i] = ints[i];
+        }
+        ints = null;
+        kind = DOUBLES;
+        wholes = new BitSet();
+        wholes.set(0, count);
+      }
+    }
+    if (kind == DOUBLES) {
+      grow();
+      doubles[count++] = value;
+    } else {
+      objects().add(Double.valueOf(value));
+    }
+  }
+
+
   /**
    * Get the object value associated with an index.
    * @param index must be between 0 and length() - 1
@@ -327,6 +500,14 @@ public class JSONArray {
    * @see JSONArray#getBoolean(int)
    */
   public int getInt(int index) {
+    if (isPrimitive(index)) {
+      switch (kind) {
+      case INTS: return ints[index];
+      case LONGS: return (int) longs[index];
+      case FLOATS: return (int) floats[index];
+      default: return (int) doubles[index];
+      }
+    }
     Object object = this.get(index);
     try {
       return object instanceof Number
@@ -364,6 +545,14 @@ public class JSONArray {
    *  be converted to a number.
    */
   public long getLong(int index) {
+    if (isPrimitive(index)) {
+      switch (kind) {
+      case INTS: return ints[index];
+      case LONGS: return longs[index];
+      case FLOATS: return (long) floats[index];
+      default: return (long) doubles[index];
+      }
+    }
     Object object = this.get(index);
     try {
       return object instanceof Number
@@ -425,6 +614,14 @@ public class JSONArray {
    *  be converted to a number.
    */
   public double getDouble(int index) {
+    if (isPrimitive(index)) {
+      switch (kind) {
+      case INTS: return ints[index];
+      case LONGS: return longs[index];
+      case FLOATS: return floats[index];
+      default: return doubles[index];
+      }
+    }
     Object object = this.get(index);
     try {
       return object instanceof Number
@@ -712,6 +909,9 @@ public class JSONArray {
    * @see JSONArray#getStringArray()
    */
   public int[] toIntArray() {
+    if (kind == INTS) {
+      return Arrays.copyOf(ints, count);
+    }
     int[] outgoing = new int[size()];
     for (int i = 0; i < size(); i++) {
       outgoing[i] = getInt(i);
@@ -725,6 +925,24 @@ public class JSONArray {
   }
 
 
+  /**
+   * Same as toIntList(), except that when this array is all ints, the list
+   * uses the same data rather than a copy, so changes made with set() or
+   * setInt() show up in both, and so do sort() and the other changes made
+   * to the list (until either one is resized).
+   * @nowebref
+   */
+  public IntList asIntList() {
+    if (kind == INTS) {
+      IntList list = new IntList(0);
+      list.data = ints;
+      list.count = count;
+      return list;
+    }
+    return toIntList();
+  }
+
+
   /** Use toLongArray() instead. */
   @Deprecated
   public long[] getLongArray() {
@@ -734,6 +952,9 @@ public class JSONArray {
 
   /** Get this entire array as a long array. Everything must be an long. */
   public long[] toLongArray() {
+    if (kind == LONGS) {
+      return Arrays.copyOf(longs, count);
+    }
     long[] outgoing = new long[size()];
     for (int i = 0; i < size(); i++) {
       outgoing[i] = getLong(i);
@@ -747,6 +968,21 @@ public class JSONArray {
   }
 
 
+  /**
+   * Shares its data with this array when possible, same as asIntList().
+   * @nowebref
+   */
+  public LongList asLongList() {
+    if (kind == LONGS) {
+      LongList list = new LongList(0);
+      list.data = longs;
+      list.count = count;
+      return list;
+    }
+    return toLongList();
+  }
+
+
   /** Use toFloatArray() instead. */
   @Deprecated
   public float[] getFloatArray() {
@@ -756,6 +992,9 @@ public class JSONArray {
 
   /** Get this entire array as a float array. Everything must be an float. */
   public float[] toFloatArray() {
+    if (kind == FLOATS) {
+      return Arrays.copyOf(floats, count);
+    }
     float[] outgoing = new float[size()];
     for (int i = 0; i < size(); i++) {
       outgoing[i] = getFloat(i);
@@ -769,6 +1008,23 @@ public class JSONArray {
   }
 
 
+  /**
+   * Shares its data with this array when it was made from a FloatList,
+   * same as asIntList(). Numbers read from JSON text are kept as doubles,
+   * so those are copied.
+   * @nowebref
+   */
+  public FloatList asFloatList() {
+    if (kind == FLOATS) {
+      FloatList list = new FloatList(0);
+      list.data = floats;
+      list.count = count;
+      return list;
+    }
+    return toFloatList();
+  }
+
+
   /** Use toDoubleArray() instead. */
   @Deprecated
   public double[] getDoubleArray() {
@@ -778,6 +1034,9 @@ public class JSONArray {
 
   /** Get this entire array as a double array. Everything must be an double. */
   public double[] toDoubleArray() {
+    if (kind == DOUBLES) {
+      return Arrays.copyOf(doubles, count);
+    }
     double[] outgoing = new double[size()];
     for (int i = 0; i < size(); i++) {
       outgoing[i] = getDouble(i);
@@ -791,6 +1050,23 @@ public class JSONArray {
   }
 
 
+  /**
+   * Shares its data with this array when possible, same as asIntList().
+   * Arrays read from whole numbers and decimals together are copied,
+   * since the whole numbers need to keep coming back as Integer.
+   * @nowebref
+   */
+  public DoubleList asDoubleList() {
+    if (kind == DOUBLES && wholes == null) {
+      DoubleList list = new DoubleList(0);
+      list.data = doubles;
+      list.count = count;
+      return list;
+    }
+    return toDoubleList();
+  }
+
+
   /** Use toBooleanArray() instead. */
   public boolean[] getBooleanArray() {
     return toBooleanArray();
@@ -897,7 +1173,16 @@ public class JSONArray {
    * @return this.
    */
   public JSONArray append(int value) {
-    this.append(Integer.valueOf(value));
+    startPrimitive(INTS);
+    if (kind == INTS) {
+      grow();
+      ints[count++] = value;
+    } else if (kind == LONGS) {
+      grow();
+      longs[count++] = value;
+    } else {
+      objects().add(Integer.valueOf(value));
+    }
     return this;
   }
 
@@ -939,7 +1224,13 @@ public class JSONArray {
   public JSONArray append(double value) {
     Double d = value;
     JSONObject.testValidity(d);
-    this.append(d);
+    startPrimitive(DOUBLES);
+    if (kind == DOUBLES) {
+      grow();
+      doubles[count++] = value;
+    } else {
+      objects().add(d);
+    }
     return this;
   }
 
@@ -984,7 +1275,7 @@ public class JSONArray {
    * @param value a JSONArray value
    */
   public JSONArray append(JSONArray value) {
-    myArrayList.add(value);
+    objects().add(value);
     return this;
   }
 
@@ -993,7 +1284,7 @@ public class JSONArray {
    * @param value a JSONObject value
    */
   public JSONArray append(JSONObject value) {
-    myArrayList.add(value);
+    objects().add(value);
     return this;
   }
 
@@ -1006,7 +1297,7 @@ public class JSONArray {
    * @return this.
    */
   protected JSONArray append(Object value) {
-    myArrayList.add(value);
+    objects().add(value);
     return this;
   }
 
@@ -1211,7 +1502,9 @@ public class JSONArray {
       throw new RuntimeException("JSONArray[" + index + "] not found.");
     }
     if (index < this.size()) {
-      this.myArrayList.set(index, value);
+      if (!setPrimitive(index, value)) {
+        objects().set(index, value);
+      }
     } else {
       while (index != this.size()) {
         this.append(JSONObject.NULL);
@@ -1222,6 +1515,27 @@ public class JSONArray {
   }
 
 
+  /** Store a number in place if it's the same kind as the others. */
+  private boolean setPrimitive(int index, Object value) {
+    if (value instanceof Integer) {
+      if (kind == INTS) {
+        ints[index] = (Integer) value;
+        return true;
+      } else if (kind == LONGS) {
+        longs[index] = (Integer) value;
+        return true;
+      }
+    } else if (value instanceof Double && kind == DOUBLES) {
+      doubles[index] = (Double) value;
+      if (wholes != null) {
+        wholes.clear(index);
+      }
+      return true;
+    }
+    return false;
+  }
+
+
   /**
    * Gets the total number of elements in a <b>JSONArray</b> (inclusive of null elements).
    *
@@ -1232,7 +1546,7 @@ public class JSONArray {
    * @see JSONArray#remove(int)
    */
   public int size() {
-    return myArrayList.size();
+    return (kind == OBJECTS) ? myArrayList.size() : count;
   }
 
 
@@ -1264,7 +1578,24 @@ public class JSONArray {
    */
   public Object remove(int index) {
     Object o = this.opt(index);
-    this.myArrayList.remove(index);
+    if (kind == OBJECTS) {
+      this.myArrayList.remove(index);
+    } else {
+      if (index < 0 || index >= count) {
+        throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + count);
+      }
+      Object array = (kind == INTS) ? ints : (kind == LONGS) ? longs :
+        (kind == FLOATS) ? (Object) floats : doubles;
+      System.arraycopy(array, index + 1, array, index, count - index - 1);
+      if (wholes != null) {
+        BitSet after = wholes.get(index + 1, count);
+        wholes.clear(index, count);
+        for (int i = after.nextSetBit(0); i >= 0; i = after.nextSetBit(i + 1)) {
+          wholes.set(index + i);
+        }
+      }
+      count--;
+    }
     return o;
   }
 
@@ -1325,7 +1656,8 @@ public class JSONArray {
         }
       }
     }
-    output.print(format(indentFactor));
+    // write straight through, rather than building one large String
+    writeInternal(output, indentFactor, 0);
     output.flush();
     return true;
   }
@@ -1400,8 +1732,7 @@ public class JSONArray {
       int thisFactor = (indentFactor == -1) ? 0 : indentFactor;
 
       if (length == 1) {
-        JSONObject.writeValue(writer, this.myArrayList.get(0),
-                              indentFactor, indent);
+        writeValue(writer, 0, indentFactor, indent);
 //                              thisFactor, indent);
       } else if (length != 0) {
         final int newIndent = indent + thisFactor;
@@ -1416,8 +1747,7 @@ public class JSONArray {
           JSONObject.indent(writer, newIndent);
 //          JSONObject.writeValue(writer, this.myArrayList.get(i),
 //                                thisFactor, newIndent);
-          JSONObject.writeValue(writer, this.myArrayList.get(i),
-                                indentFactor, newIndent);
+          writeValue(writer, i, indentFactor, newIndent);
           commanate = true;
         }
         if (indentFactor != -1) {
@@ -1433,6 +1763,35 @@ public class JSONArray {
   }
 
 
+  private void writeValue(Writer writer, int index,
+                          int indentFactor, int indent) throws IOException {
+    if (kind == OBJECTS) {
+      JSONObject.writeValue(writer, myArrayList.get(index), indentFactor, indent);
+    } else {
+      writer.write(numberToString(index));
+    }
+  }
+
+
+  /** Same text as JSONObject.numberToString(), but without boxing. */
+  private String numberToString(int index) {
+    switch (kind) {
+    case INTS:
+      return Integer.toString(ints[index]);
+    case LONGS:
+      return Long.toString(longs[index]);
+    case FLOATS:
+      float f = floats[index];
+      if (Float.isNaN(f) || Float.isInfinite(f)) {
+        throw new RuntimeException("JSON does not allow non-finite numbers.");
+      }
+      return JSONObject.trimZeros(Float.toString(f));
+    default:
+      return JSONObject.trimZeros(Double.toString(doubles[index]));
+    }
+  }
+
+
   /**
    * Make a string from the contents of this JSONArray. The
    * <code>separator</code> string is inserted between each element.
@@ -1449,7 +1808,11 @@ public class JSONArray {
       if (i > 0) {
         sb.append(separator);
       }
-      sb.append(JSONObject.valueToString(this.myArrayList.get(i)));
+      if (kind == OBJECTS) {
+        sb.append(JSONObject.valueToString(this.myArrayList.get(i)));
+      } else {
+        sb.append(numberToString(i));
+      }
     }
     return sb.toString();
   }
@@ -38,6 +38,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Method;
@@ -124,21 +125,6 @@ import processing.core.PApplet;
  * @see PApplet#saveJSONArray(JSONArray, String)
  */
 public class JSONObject {
-  /**
-   * The maximum number of keys in the key pool.
-   */
-  private static final int keyPoolSize = 100;
-
-  /**
-   * Key pooling is like string interning, but without permanently tying up
-   * memory. To help conserve memory, storage of duplicated key strings in
-   * JSONObjects will be avoided by using a key pool to manage unique key
-   * string objects. This is used by JSONObject.put(string, object).
-   */
-  private static HashMap<String, Object> keyPool =
-    new HashMap<>(keyPoolSize);
-
-
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
@@ -236,7 +222,8 @@ public class JSONObject {
    * @nowebref
    */
   public JSONObject(Reader reader) {
-    this(new JSONTokener(reader));
+    this();
+    new JSONReader(reader).readObject(this);
   }
 
 
@@ -411,7 +398,7 @@ public class JSONObject {
    *  string or a duplicated key.
    */
   static public JSONObject parse(String source) {
-    return new JSONObject(new JSONTokener(source));
+    return new JSONObject(new StringReader(source));
   }
 
 
@@ -1021,15 +1008,17 @@ public class JSONObject {
    * @return A String.
    * @throws RuntimeException If number is null or a non-finite number.
    */
-  private static String numberToString(Number number) {
+  static String numberToString(Number number) {
     if (number == null) {
       throw new RuntimeException("Null pointer");
     }
     testValidity(number);
+    return trimZeros(number.toString());
+  }
 
-    // Shave off trailing zeros and decimal point, if possible.
 
-    String string = number.toString();
+  /** Shave off trailing zeros and decimal point, if possible. */
+  static String trimZeros(String string) {
     if (string.indexOf('.') > 0 && string.indexOf('e') < 0 &&
       string.indexOf('E') < 0) {
       while (string.endsWith("0")) {
@@ -1371,20 +1360,22 @@ public class JSONObject {
    *  or if the key is null.
    */
   public JSONObject put(String key, Object value) {
-    String pooled;
+    return put(key, value, KeyPool.shared);
+  }
+
+
+  /**
+   * Same as put(), but with the key taken from a particular pool (to avoid
+   * storing duplicate key strings), or used as-is if the pool is null.
+   */
+  JSONObject put(String key, Object value, KeyPool pool) {
     if (key == null) {
       throw new RuntimeException("Null key.");
     }
     if (value != null) {
       testValidity(value);
-      pooled = (String)keyPool.get(key);
-      if (pooled == null) {
-        if (keyPool.size() >= keyPoolSize) {
-          keyPool = new HashMap<>(keyPoolSize);
-        }
-        keyPool.put(key, key);
-      } else {
-        key = pooled;
+      if (pool != null) {
+        key = pool.intern(key);
       }
       this.map.put(key, value);
     } else {
@@ -1404,12 +1395,17 @@ public class JSONObject {
    * @throws RuntimeException if the key is a duplicate, or if
    * {@link #put(String,Object)} throws.
    */
-  private JSONObject putOnce(String key, Object value) {
+  JSONObject putOnce(String key, Object value) {
+    return putOnce(key, value, KeyPool.shared);
+  }
+
+
+  JSONObject putOnce(String key, Object value, KeyPool pool) {
     if (key != null && value != null) {
       if (this.opt(key) != null) {
         throw new RuntimeException("Duplicate key \"" + key + "\"");
       }
-      this.put(key, value);
+      this.put(key, value, pool);
     }
     return this;
   }
@@ -1655,7 +1651,8 @@ public class JSONObject {
         }
       }
     }
-    output.print(format(indentFactor));
+    // write straight through, rather than building one large String
+    writeInternal(output, indentFactor, 0);
     output.flush();
     return true;
   }
@@ -0,0 +1,899 @@
+package processing.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * Reads JSON one piece at a time, instead of building a JSONObject or
+ * JSONArray for the whole thing. Use peek() to find out what's next
+ * (the start of an object, a name, a number, and so on), and then one
+ * of the next...() or begin/end methods to read it. Numbers can be read
+ * with nextDouble() or nextLong() without creating a Double or a Long,
+ * and text is read through a single buffer that's reused throughout.
+ * <p/>
+ * A file can hold any number of values one after another, which is how
+ * newline-delimited JSON (NDJSON) log files are laid out. Use objects()
+ * to read each one as a JSONObject, or read them with the other methods
+ * until peek() returns END_DOCUMENT.
+ * <pre>
+ * JSONReader reader = new JSONReader(createReader("events.ndjson"));
+ * while (reader.peek() != JSONReader.END_DOCUMENT) {
+ *   reader.beginObject();
+ *   while (reader.hasNext()) {
+ *     String name = reader.nextName();
+ *     if (name.equals("elapsed")) {
+ *       total += reader.nextDouble();
+ *     } else {
+ *       reader.skipValue();
+ *     }
+ *   }
+ *   reader.endObject();
+ * }
+ * reader.close();
+ * </pre>
+ * The same leniency as the JSONObject and JSONArray parsers is allowed:
+ * single-quoted and unquoted strings, '=' or '=&gt;' after a name,
+ * ';' between entries, trailing commas, and empty array elements
+ * (which are read as null).
+ *
+ * @nowebref
+ * @see JSONWriter
+ */
+public class JSONReader implements Closeable {
+  static public final int START_OBJECT = 0;
+  static public final int END_OBJECT = 1;
+  static public final int START_ARRAY = 2;
+  static public final int END_ARRAY = 3;
+  static public final int NAME = 4;
+  static public final int STRING = 5;
+  static public final int NUMBER = 6;
+  static public final int BOOLEAN = 7;
+  static public final int NULL = 8;
+  static public final int END_DOCUMENT = 9;
+
+  static final String[] eventNames = {
+    "START_OBJECT", "END_OBJECT", "START_ARRAY", "END_ARRAY", "NAME",
+    "STRING", "NUMBER", "BOOLEAN", "NULL", "END_DOCUMENT"
+  };
+
+  static final int NONE = -1;
+
+  // what's expected next at each level of nesting
+  static final int TOP = 0;
+  static final int OBJECT_FIRST = 1;  // a name or the closing brace
+  static final int OBJECT_NAME = 2;   // a separator and then a value
+  static final int OBJECT_NEXT = 3;   // a comma or the closing brace
+  static final int ARRAY_FIRST = 4;   // a value or the closing bracket
+  static final int ARRAY_NEXT = 5;    // a comma or the closing bracket
+
+  // kinds of NUMBER, so that trees get the same Integer, Long, or Double
+  static final int INT_NUMBER = 0;
+  static final int LONG_NUMBER = 1;
+  static final int DOUBLE_NUMBER = 2;
+
+  static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  Reader reader;
+  char[] buffer;
+  int pos;
+  int limit;
+  int line = 1;
+
+  int[] stack = new int[32];
+  int depth;
+
+  int peeked = NONE;
+
+  // the current value, after peek()
+  String string;
+  long longValue;
+  double doubleValue;
+  int numberKind;
+  boolean booleanValue;
+
+  // text that didn't fit in one stretch of the buffer
+  char[] scratch = new char[64];
+  int scratchLength;
+
+  // recent names, so that repeated keys don't each need a new String
+  String[] names = new String[512];
+
+  // where keys come from when building a JSONObject
+  KeyPool keyPool = KeyPool.shared;
+
+
+  public JSONReader(Reader reader) {
+    this(reader, 1 << 16);
+  }
+
+
+  public JSONReader(Reader reader, int bufferSize) {
+    this.reader = reader;
+    buffer = new char[bufferSize];
+    stack[depth++] = TOP;
+  }
+
+
+  @Override
+  public void close() {
+    try {
+      reader.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+
+  /**
+   * Use a different pool for the keys of the JSONObjects that are read,
+   * rather than the one shared with JSONObject.put(). With null, keys
+   * are only shared within this reader (through its own small cache).
+   */
+  public void setKeyPool(KeyPool pool) {
+    keyPool = pool;
+  }
+
+
+  /** Line number in the input, starting at 1, for error messages. */
+  public int getLineNumber() {
+    return line;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Return what's coming up next: START_OBJECT, END_OBJECT, START_ARRAY,
+   * END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, or END_DOCUMENT.
+   */
+  public int peek() {
+    if (peeked == NONE) {
+      peeked = readEvent();
+    }
+    return peeked;
+  }
+
+
+  /**
+   * True if the current object or array has more entries, or if there's
+   * another value at the top level.
+   */
+  public boolean hasNext() {
+    int event = peek();
+    return event != END_OBJECT && event != END_ARRAY && event != END_DOCUMENT;
+  }
+
+
+  public void beginObject() {
+    expect(START_OBJECT);
+    consumed();
+    push(OBJECT_FIRST);
+  }
+
+
+  public void endObject() {
+    expect(END_OBJECT);
+    peeked = NONE;
+    depth--;
+  }
+
+
+  public void beginArray() {
+    expect(START_ARRAY);
+    consumed();
+    push(ARRAY_FIRST);
+  }
+
+
+  public void endArray() {
+    expect(END_ARRAY);
+    peeked = NONE;
+    depth--;
+  }
+
+
+  public String nextName() {
+    expect(NAME);
+    peeked = NONE;
+    stack[depth - 1] = OBJECT_NAME;
+    return string;
+  }
+
+
+  /** Read a STRING, or the text of a NUMBER or BOOLEAN. */
+  public String nextString() {
+    int event = peek();
+    String outgoing;
+    if (event == STRING) {
+      outgoing = string;
+    } else if (event == NUMBER) {
+      outgoing = (string != null) ? string : numberText();
+    } else if (event == BOOLEAN) {
+      outgoing = String.valueOf(booleanValue);
+    } else {
+      throw unexpected(STRING, event);
+    }
+    consumed();
+    return outgoing;
+  }
+
+
+  public double nextDouble() {
+    expect(NUMBER);
+    consumed();
+    return (numberKind == DOUBLE_NUMBER) ? doubleValue : longValue;
+  }
+
+
+  public float nextFloat() {
+    return (float) nextDouble();
+  }
+
+
+  /**
+   * Read a NUMBER as a long. Numbers written with a decimal point or an
+   * exponent are fine, as long as they have no fractional part.
+   */
+  public long nextLong() {
+    expect(NUMBER);
+    long value = longValue;
+    if (numberKind == DOUBLE_NUMBER) {
+      value = (long) doubleValue;
+      if (value != doubleValue) {
+        throw error("Expected a whole number, got " + numberText());
+      }
+    }
+    consumed();
+    return value;
+  }
+
+
+  public int nextInt() {
+    long value = nextLong();
+    if (value != (int) value) {
+      throw error(value + " is too large for an int");
+    }
+    return (int) value;
+  }
+
+
+  public boolean nextBoolean() {
+    expect(BOOLEAN);
+    consumed();
+    return booleanValue;
+  }
+
+
+  public void nextNull() {
+    expect(NULL);
+    consumed();
+  }
+
+
+  /** Skip the next value, along with everything inside it. */
+  public void skipValue() {
+    int count = 0;
+    do {
+      switch (peek()) {
+      case START_OBJECT:
+        beginObject();
+        count++;
+        break;
+      case START_ARRAY:
+        beginArray();
+        count++;
+        break;
+      case END_OBJECT:
+        endObject();
+        count--;
+        break;
+      case END_ARRAY:
+        endArray();
+        count--;
+        break;
+      case NAME:
+        nextName();
+        break;
+      case END_DOCUMENT:
+        throw unexpected(NONE, END_DOCUMENT);
+      default:
+        consumed();
+      }
+    } while (count > 0);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Read the next value, building a JSONObject or JSONArray if necessary.
+   * Numbers come back as Integer, Long, or Double, and null as
+   * JSONObject.NULL, same as when getting values from a JSONObject.
+   */
+  public Object nextValue() {
+    switch (peek()) {
+    case START_OBJECT:
+      return nextObject();
+    case START_ARRAY:
+      return nextArray();
+    case STRING:
+      return nextString();
+    case NUMBER:
+      Object number;
+      if (numberKind == INT_NUMBER) {
+        number = Integer.valueOf((int) longValue);
+      } else if (numberKind == LONG_NUMBER) {
+        number = Long.valueOf(longValue);
+      } else {
+        number = Double.valueOf(doubleValue);
+      }
+      consumed();
+      return number;
+    case BOOLEAN:
+      return nextBoolean();
+    case NULL:
+      nextNull();
+      return JSONObject.NULL;
+    default:
+      throw unexpected(NONE, peek());
+    }
+  }
+
+
+  public JSONObject nextObject() {
+    if (peek() != START_OBJECT) {
+      throw error("A JSONObject text must begin with '{'");
+    }
+    JSONObject outgoing = new JSONObject();
+    readObject(outgoing);
+    return outgoing;
+  }
+
+
+  public JSONArray nextArray() {
+    if (peek() != START_ARRAY) {
+      throw error("A JSONArray text must start with '['");
+    }
+    JSONArray outgoing = new JSONArray();
+    readArray(outgoing);
+    return outgoing;
+  }
+
+
+  void readObject(JSONObject object) {
+    if (peek() != START_OBJECT) {
+      throw error("A JSONObject text must begin with '{'");
+    }
+    beginObject();
+    while (hasNext()) {
+      String name = nextName();
+      object.putOnce(name, nextValue(), keyPool);
+    }
+    endObject();
+  }
+
+
+  void readArray(JSONArray array) {
+    if (peek() != START_ARRAY) {
+      throw error("A JSONArray text must start with '['");
+    }
+    beginArray();
+    while (hasNext()) {
+      if (peek() == NUMBER) {
+        // handed over unboxed, so arrays of numbers can stay that way
+        if (numberKind == DOUBLE_NUMBER) {
+          array.appendParsed(doubleValue);
+        } else {
+          array.appendParsed(longValue);
+        }
+        consumed();
+      } else {
+        array.append(nextValue());
+      }
+    }
+    endArray();
+  }
+
+
+  /**
+   * Read each of the objects at the top level, one after another,
+   * such as the lines of a newline-delimited JSON (NDJSON) file.
+   */
+  public Iterable<JSONObject> objects() {
+    return () -> new Iterator<JSONObject>() {
+      public boolean hasNext() {
+        return peek() != END_DOCUMENT;
+      }
+
+      public JSONObject next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return nextObject();
+      }
+    };
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  private void expect(int event) {
+    int actual = peek();
+    if (actual != event) {
+      throw unexpected(event, actual);
+    }
+  }
+
+
+  /** Called once a value has been read, to move past it. */
+  private void consumed() {
+    peeked = NONE;
+    int context = stack[depth - 1];
+    if (context == OBJECT_NAME) {
+      stack[depth - 1] = OBJECT_NEXT;
+    } else if (context == ARRAY_FIRST) {
+      stack[depth - 1] = ARRAY_NEXT;
+    }
+  }
+
+
+  private void push(int context) {
+    if (depth == stack.length) {
+      int[] temp = new int[depth << 1];
+      System.arraycopy(stack, 0, temp, 0, depth);
+      stack = temp;
+    }
+    stack[depth++] = context;
+  }
+
+
+  private RuntimeException unexpected(int wanted, int actual) {
+    String msg = "Unexpected " + eventNames[actual];
+    if (wanted != NONE) {
+      msg = "Expected " + eventNames[wanted] + " but found " + eventNames[actual];
+    }
+    return error(msg);
+  }
+
+
+  private RuntimeException error(String message) {
+    return new RuntimeException(message + " on line " + line);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  private int readEvent() {
+    int c;
+    switch (stack[depth - 1]) {
+    case TOP:
+      c = nextClean();
+      if (c == -1) {
+        return END_DOCUMENT;
+      }
+      pos--;
+      return readValue(false);
+
+    case OBJECT_FIRST:
+      c = nextClean();
+      if (c == '}') {
+        return END_OBJECT;
+      }
+      return readName(c);
+
+    case OBJECT_NEXT:
+      c = nextClean();
+      if (c == '}') {
+        return END_OBJECT;
+      }
+      if (c != ',' && c != ';') {
+        throw error("Expected a ',' or '}'");
+      }
+      c = nextClean();
+      if (c == '}') {  // trailing comma
+        return END_OBJECT;
+      }
+      return readName(c);
+
+    case OBJECT_NAME:
+      c = nextClean();
+      if (c == '=') {
+        if (read() != '>') {
+          unread();
+        }
+      } else if (c != ':') {
+        throw error("Expected a ':' after a key");
+      }
+      return readValue(false);
+
+    case ARRAY_FIRST:
+      c = nextClean();
+      if (c == ']') {
+        return END_ARRAY;
+      }
+      unread();
+      return readValue(true);
+
+    case ARRAY_NEXT:
+      c = nextClean();
+      if (c == ']') {
+        return END_ARRAY;
+      }
+      if (c != ',' && c != ';') {
+        throw error("Expected a ',' or ']'");
+      }
+      c = nextClean();
+      if (c == ']') {  // trailing comma
+        return END_ARRAY;
+      }
+      unread();
+      return readValue(true);
+    }
+    throw new IllegalStateException();
+  }
+
+
+  private int readName(int c) {
+    if (c == -1) {
+      throw error("A JSONObject text must end with '}'");
+    }
+    if (c == '"' || c == '\'') {
+      readString((char) c, true);
+    } else {
+      unread();
+      readUnquoted();
+      string = makeString(scratch, 0, scratchLength, true);
+    }
+    return NAME;
+  }
+
+
+  private int readValue(boolean inArray) {
+    int c = nextClean();
+    switch (c) {
+    case -1:
+      throw error("Missing value");
+    case '"':
+    case '\'':
+      readString((char) c, false);
+      return STRING;
+    case '{':
+      return START_OBJECT;
+    case '[':
+      return START_ARRAY;
+    case ',':
+      if (inArray) {  // empty element
+        unread();
+        return NULL;
+      }
+    }
+    unread();
+    readUnquoted();
+    return classify();
+  }
+
+
+  /** Figure out what an unquoted value is, same as JSONObject.stringToValue(). */
+  private int classify() {
+    string = null;
+    if (parseNumber(scratch, scratchLength)) {
+      return NUMBER;
+    }
+    String text = new String(scratch, 0, scratchLength);
+    Object value = JSONObject.stringToValue(text);
+    if (value instanceof Boolean) {
+      booleanValue = (Boolean) value;
+      return BOOLEAN;
+    }
+    if (value == JSONObject.NULL) {
+      return NULL;
+    }
+    if (value instanceof Number) {
+      string = text;
+      if (value instanceof Double) {
+        numberKind = DOUBLE_NUMBER;
+        doubleValue = (Double) value;
+      } else {
+        longValue = ((Number) value).longValue();
+        numberKind = (value instanceof Integer) ? INT_NUMBER : LONG_NUMBER;
+      }
+      return NUMBER;
+    }
+    string = text;
+    return STRING;
+  }
+
+
+  /**
+   * Parse the common forms of numbers directly: up to 18 digits as a long,
+   * or up to 15 significant digits with a small exponent as a double, both
+   * of which come out exact. Everything else is left for Double.valueOf().
+   */
+  private boolean parseNumber(char[] c, int length) {
+    int i = 0;
+    boolean negative = false;
+    if (i < length && c[i] == '-') {
+      negative = true;
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int intStart = i;
+    while (i < length && c[i] >= '0' && c[i] <= '9') {
+      if (mantissa != 0 || c[i] != '0') {
+        digits++;
+      }
+      mantissa = mantissa * 10 + (c[i++] - '0');
+      if (digits > 18) {
+        return false;
+      }
+    }
+    if (i == intStart) {
+      return false;
+    }
+    if (i == length) {
+      longValue = negative ? -mantissa : mantissa;
+      numberKind = (longValue == (int) longValue) ? INT_NUMBER : LONG_NUMBER;
+      return true;
+    }
+
+    int exponent = 0;
+    if (c[i] == '.') {
+      i++;
+      int fracStart = i;
+      while (i < length && c[i] >= '0' && c[i] <= '9') {
+        if (mantissa != 0 || c[i] != '0') {
+          digits++;
+        }
+        mantissa = mantissa * 10 + (c[i++] - '0');
+        exponent--;
+        if (digits > 18) {
+          return false;
+        }
+      }
+      if (i == fracStart) {
+        return false;
+      }
+    }
+    if (i < length && (c[i] == 'e' || c[i] == 'E')) {
+      i++;
+      boolean negativeExponent = false;
+      if (i < length && (c[i] == '-' || c[i] == '+')) {
+        negativeExponent = c[i++] == '-';
+      }
+      int expStart = i;
+      int value = 0;
+      while (i < length && c[i] >= '0' && c[i] <= '9' && value < 1000) {
+        value = value * 10 + (c[i++] - '0');
+      }
+      if (i == expStart) {
+        return false;
+      }
+      exponent += negativeExponent ? -value : value;
+    }
+    if (i != length || digits > 15 ||
+        exponent < -22 || exponent > 22) {
+      return false;
+    }
+    // exact, since both the mantissa and the power of ten fit in a double
+    double value = (exponent < 0) ?
+      mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+    doubleValue = negative ? -value : value;
+    numberKind = DOUBLE_NUMBER;
+    return true;
+  }
+
+
+  private String numberText() {
+    if (numberKind == DOUBLE_NUMBER) {
+      return JSONObject.numberToString(doubleValue);
+    }
+    return String.valueOf(longValue);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  private int read() {
+    if (pos == limit && !fill()) {
+      return -1;
+    }
+    return buffer[pos++];
+  }
+
+
+  private void unread() {
+    if (pos > 0) {
+      pos--;
+    }
+  }
+
+
+  private boolean fill() {
+    try {
+      pos = 0;
+      limit = 0;
+      int count = reader.read(buffer, 0, buffer.length);
+      if (count > 0) {
+        limit = count;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return limit > 0;
+  }
+
+
+  /** Next character that isn't whitespace, or -1 at the end. */
+  private int nextClean() {
+    for (;;) {
+      while (pos < limit) {
+        char c = buffer[pos++];
+        if (c > ' ') {
+          return c;
+        }
+        if (c == '\n') {
+          line++;
+        }
+      }
+      if (!fill()) {
+        return -1;
+      }
+    }
+  }
+
+
+  /** Read an unquoted value or name into scratch, trimmed. */
+  private void readUnquoted() {
+    scratchLength = 0;
+    int c = read();
+    while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+      if (scratchLength == scratch.length) {
+        growScratch(scratchLength + 1);
+      }
+      scratch[scratchLength++] = (char) c;
+      c = read();
+    }
+    if (c != -1) {
+      unread();
+    }
+    while (scratchLength > 0 && scratch[scratchLength - 1] <= ' ') {
+      scratchLength--;
+    }
+    if (scratchLength == 0) {
+      throw error("Missing value");
+    }
+  }
+
+
+  private void readString(char quote, boolean name) {
+    // most strings are short and have no escapes, so try to use the buffer
+    int start = pos;
+    while (pos < limit) {
+      char c = buffer[pos];
+      if (c == quote) {
+        string = makeString(buffer, start, pos - start, name);
+        pos++;
+        return;
+      }
+      if (c == '\\' || c == '\n' || c == '\r') {
+        break;
+      }
+      pos++;
+    }
+
+    scratchLength = 0;
+    appendScratch(buffer, start, pos - start);
+    for (;;) {
+      int c = read();
+      switch (c) {
+      case -1:
+      case '\n':
+      case '\r':
+        throw error("Unterminated string");
+      case '\\':
+        c = read();
+        switch (c) {
+        case 'b': c = '\b'; break;
+        case 't': c = '\t'; break;
+        case 'n': c = '\n'; break;
+        case 'f': c = '\f'; break;
+        case 'r': c = '\r'; break;
+        case 'u':
+          int value = 0;
+          for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit == -1) {
+              throw error("Illegal escape.");
+            }
+            value = (value << 4) | digit;
+          }
+          c = value;
+          break;
+        case '"':
+        case '\'':
+        case '\\':
+        case '/':
+          break;
+        default:
+          throw error("Illegal escape.");
+        }
+        break;
+      default:
+        if (c == quote) {
+          string = makeString(scratch, 0, scratchLength, name);
+          return;
+        }
+        // copy the run of plain characters that follows
+        int runStart = pos - 1;
+        while (pos < limit) {
+          char d = buffer[pos];
+          if (d == quote || d == '\\' || d == '\n' || d == '\r') {
+            break;
+          }
+          pos++;
+        }
+        appendScratch(buffer, runStart, pos - runStart);
+        continue;
+      }
+      if (scratchLength == scratch.length) {
+        growScratch(scratchLength + 1);
+      }
+      scratch[scratchLength++] = (char) c;
+    }
+  }
+
+
+  private void appendScratch(char[] c, int start, int length) {
+    if (scratchLength + length > scratch.length) {
+      growScratch(scratchLength + length);
+    }
+    System.arraycopy(c, start, scratch, scratchLength, length);
+    scratchLength += length;
+  }
+
+
+  private void growScratch(int needed) {
+    char[] temp = new char[Math.max(needed, scratch.length << 1)];
+    System.arraycopy(scratch, 0, temp, 0, scratchLength);
+    scratch = temp;
+  }
+
+
+  /** Names are looked up in a small cache, since the same ones keep coming up. */
+  private String makeString(char[] c, int start, int length, boolean name) {
+    if (!name || length > 32) {
+      return new String(c, start, length);
+    }
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + c[start + i];
+    }
+    int index = (hash ^ (hash >>> 16)) & (names.length - 1);
+    String found = names[index];
+    if (found != null && found.length() == length) {
+      int i = 0;
+      while (i < length && found.charAt(i) == c[start + i]) {
+        i++;
+      }
+      if (i == length) {
+        return found;
+      }
+    }
+    String outgoing = new String(c, start, length);
+    names[index] = outgoing;
+    return outgoing;
+  }
+}
@@ -0,0 +1,433 @@
+package processing.data;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+
+/**
+ * Writes JSON one piece at a time, the counterpart to JSONReader. Rather
+ * than building a JSONObject or JSONArray and then saving it, call
+ * beginObject(), name(), value(), and so on, and the text goes out
+ * through a single buffer as it's written. Numbers are written without
+ * creating a Long or Double for each.
+ * <p/>
+ * Values written at the top level are put on separate lines, so a
+ * compact JSONWriter (the default) produces newline-delimited JSON.
+ * <pre>
+ * JSONWriter writer = new JSONWriter(createWriter("points.ndjson"));
+ * for (PVector p : points) {
+ *   writer.beginObject();
+ *   writer.name("x").value(p.x);
+ *   writer.name("y").value(p.y);
+ *   writer.endObject();
+ * }
+ * writer.close();
+ * </pre>
+ *
+ * @nowebref
+ * @see JSONReader
+ */
+public class JSONWriter implements Closeable, Flushable {
+  // what's been written so far at each level of nesting
+  static final int TOP_EMPTY = 0;
+  static final int TOP = 1;
+  static final int OBJECT_EMPTY = 2;
+  static final int OBJECT = 3;
+  static final int OBJECT_NAME = 4;
+  static final int ARRAY_EMPTY = 5;
+  static final int ARRAY = 6;
+
+  Writer writer;
+  char[] buffer = new char[1 << 13];
+  int count;
+
+  /** Spaces for each level, or -1 for no spaces or newlines (compact) */
+  int indentFactor;
+
+  int[] stack = new int[32];
+  int depth;
+
+
+  /** Write compact JSON, with no extra spaces or newlines. */
+  public JSONWriter(Writer writer) {
+    this(writer, -1);
+  }
+
+
+  /**
+   * @param indentFactor number of spaces for each level of indent,
+   *   or -1 for compact output, same as JSONObject.format()
+   */
+  public JSONWriter(Writer writer, int indentFactor) {
+    this.writer = writer;
+    this.indentFactor = indentFactor;
+    stack[depth++] = TOP_EMPTY;
+  }
+
+
+  @Override
+  public void flush() {
+    try {
+      writer.write(buffer, 0, count);
+      count = 0;
+      writer.flush();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+
+  @Override
+  public void close() {
+    flush();
+    try {
+      writer.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public JSONWriter beginObject() {
+    beforeValue();
+    write('{');
+    push(OBJECT_EMPTY);
+    return this;
+  }
+
+
+  public JSONWriter endObject() {
+    return close(OBJECT_EMPTY, OBJECT, '}');
+  }
+
+
+  public JSONWriter beginArray() {
+    beforeValue();
+    write('[');
+    push(ARRAY_EMPTY);
+    return this;
+  }
+
+
+  public JSONWriter endArray() {
+    return close(ARRAY_EMPTY, ARRAY, ']');
+  }
+
+
+  public JSONWriter name(String name) {
+    if (name == null) {
+      throw new RuntimeException("Null key.");
+    }
+    int context = stack[depth - 1];
+    if (context != OBJECT_EMPTY && context != OBJECT) {
+      throw new IllegalStateException("name() can only be used inside an object");
+    }
+    if (context == OBJECT) {
+      write(',');
+    }
+    newline(depth - 1);
+    quote(name);
+    write(':');
+    if (indentFactor > 0) {
+      write(' ');
+    }
+    stack[depth - 1] = OBJECT_NAME;
+    return this;
+  }
+
+
+  public JSONWriter value(String value) {
+    if (value == null) {
+      return nullValue();
+    }
+    beforeValue();
+    quote(value);
+    return this;
+  }
+
+
+  public JSONWriter value(long value) {
+    beforeValue();
+    writeLong(value);
+    return this;
+  }
+
+
+  /**
+   * Write a double, the same way that JSONObject would: whole numbers
+   * are written without the decimal point, and NaN and infinity aren't
+   * allowed since JSON has no way to represent them.
+   */
+  public JSONWriter value(double value) {
+    checkFinite(value);
+    beforeValue();
+    if (!writeWhole(value)) {
+      write(Double.toString(value));
+    }
+    return this;
+  }
+
+
+  /**
+   * Floats are written with only as many digits as they need,
+   * so 0.1f comes out as 0.1 rather than 0.10000000149011612.
+   */
+  public JSONWriter value(float value) {
+    checkFinite(value);
+    beforeValue();
+    if (!writeWhole(value)) {
+      write(Float.toString(value));
+    }
+    return this;
+  }
+
+
+  public JSONWriter value(boolean value) {
+    beforeValue();
+    write(value ? "true" : "false");
+    return this;
+  }
+
+
+  public JSONWriter nullValue() {
+    beforeValue();
+    write("null");
+    return this;
+  }
+
+
+  /**
+   * Write any of the values that can be stored in a JSONObject, including
+   * a JSONObject or JSONArray (which are written using the same indent).
+   */
+  public JSONWriter value(Object value) {
+    if (value == null || value.equals(null)) {
+      return nullValue();
+    }
+    if (value instanceof String) {
+      return value((String) value);
+    }
+    if (value instanceof Integer || value instanceof Long ||
+        value instanceof Short || value instanceof Byte) {
+      return value(((Number) value).longValue());
+    }
+    if (value instanceof Double) {
+      return value(((Double) value).doubleValue());
+    }
+    if (value instanceof Float) {
+      return value(((Float) value).floatValue());
+    }
+    if (value instanceof Boolean) {
+      return value(((Boolean) value).booleanValue());
+    }
+    beforeValue();
+    if (value instanceof JSONObject || value instanceof JSONArray) {
+      flushBuffer();
+      int indent = Math.max(0, indentFactor) * (depth - 1);
+      if (value instanceof JSONObject) {
+        ((JSONObject) value).writeInternal(writer, indentFactor, indent);
+      } else {
+        ((JSONArray) value).writeInternal(writer, indentFactor, indent);
+      }
+    } else {
+      write(JSONObject.valueToString(value));
+    }
+    return this;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  private void beforeValue() {
+    int context = stack[depth - 1];
+    switch (context) {
+    case TOP:
+      write('\n');  // one value per line
+      break;
+    case OBJECT_NAME:
+      stack[depth - 1] = OBJECT;
+      return;
+    case ARRAY:
+    case ARRAY_EMPTY:
+      if (context == ARRAY) {
+        write(',');
+      }
+      newline(depth - 1);
+      stack[depth - 1] = ARRAY;
+      return;
+    case OBJECT_EMPTY:
+    case OBJECT:
+      throw new IllegalStateException("Use name() before each value in an object");
+    }
+    stack[depth - 1] = TOP;
+  }
+
+
+  private JSONWriter close(int empty, int nonEmpty, char bracket) {
+    int context = stack[depth - 1];
+    if (context != empty && context != nonEmpty) {
+      throw new IllegalStateException("Nothing to close with " + bracket);
+    }
+    depth--;
+    if (context == nonEmpty) {
+      newline(depth - 1);
+    }
+    write(bracket);
+    return this;
+  }
+
+
+  private void push(int context) {
+    if (depth == stack.length) {
+      int[] temp = new int[depth << 1];
+      System.arraycopy(stack, 0, temp, 0, depth);
+      stack = temp;
+    }
+    stack[depth++] = context;
+  }
+
+
+  /** Start a new line indented for this many levels, unless compact. */
+  private void newline(int levels) {
+    if (indentFactor != -1) {
+      write('\n');
+      for (int i = indentFactor * levels; i > 0; i--) {
+        write(' ');
+      }
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  private void write(char c) {
+    if (count == buffer.length) {
+      flushBuffer();
+    }
+    buffer[count++] = c;
+  }
+
+
+  private void write(String s) {
+    int length = s.length();
+    if (count + length > buffer.length) {
+      flushBuffer();
+      if (length > buffer.length) {
+        try {
+          writer.write(s);
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+        return;
+      }
+    }
+    s.getChars(0, length, buffer, count);
+    count += length;
+  }
+
+
+  private void flushBuffer() {
+    try {
+      writer.write(buffer, 0, count);
+      count = 0;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+
+  private void checkFinite(double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new RuntimeException("JSON does not allow non-finite numbers.");
+    }
+  }
+
+
+  /**
+   * Write whole numbers the way JSONObject.numberToString() does, where
+   * the trailing .0 is removed unless the number was shown with an exponent.
+   */
+  private boolean writeWhole(double value) {
+    if (value == (long) value && Math.abs(value) < 1e7) {
+      if (value == 0 && 1 / value < 0) {
+        write("-0");
+      } else {
+        writeLong((long) value);
+      }
+      return true;
+    }
+    return false;
+  }
+
+
+  private void writeLong(long value) {
+    if (value == Long.MIN_VALUE) {
+      write("-9223372036854775808");
+      return;
+    }
+    if (count + 20 > buffer.length) {
+      flushBuffer();
+    }
+    if (value < 0) {
+      buffer[count++] = '-';
+      value = -value;
+    }
+    int digits = 1;
+    for (long v = value; v >= 10; v /= 10) {
+      digits++;
+    }
+    for (int i = count + digits - 1; i >= count; i--) {
+      buffer[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    count += digits;
+  }
+
+
+  /** Same escapes as JSONObject.quote(), written straight to the buffer. */
+  private void quote(String s) {
+    write('"');
+    int length = s.length();
+    char c = 0;
+    for (int i = 0; i < length; i++) {
+      char b = c;
+      c = s.charAt(i);
+      switch (c) {
+      case '\\':
+      case '"':
+        write('\\');
+        write(c);
+        break;
+      case '/':
+        if (b == '<') {
+          write('\\');
+        }
+        write(c);
+        break;
+      case '\b': write("\\b"); break;
+      case '\t': write("\\t"); break;
+      case '\n': write("\\n"); break;
+      case '\f': write("\\f"); break;
+      case '\r': write("\\r"); break;
+      default:
+        if (c < ' ' || (c >= '\u0080' && c < '\u00a0') ||
+            (c >= '\u2000' && c < '\u2100')) {
+          String hex = Integer.toHexString(c);
+          write("\\u");
+          write("0000".substring(hex.length()));
+          write(hex);
+        } else {
+          write(c);
+        }
+      }
+    }
+    write('"');
+  }
+}
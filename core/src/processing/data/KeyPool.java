@@ -0,0 +1,126 @@
+package processing.data;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A fixed-size pool of key strings, so that JSONObjects with the same
+ * keys share a single String for each instead of holding copies. Unlike
+ * String.intern(), the pool never grows: when a set of slots is full,
+ * the key that hasn't been used recently is replaced (CLOCK eviction),
+ * so keys that show up over and over stay in the pool while one-off keys
+ * pass through it.
+ * <p/>
+ * Safe to use from several threads at once without locking. Two threads
+ * adding the same new key at the same moment may each keep their own
+ * copy of it, but the pool is never left in a broken state.
+ * <p/>
+ * JSONObject.put() uses the shared pool. A JSONReader can be given its
+ * own pool (or none) with setKeyPool(), for instance so that a large
+ * file with many keys doesn't push out the keys used everywhere else.
+ *
+ * @nowebref
+ * @see JSONReader#setKeyPool(KeyPool)
+ */
+public class KeyPool {
+  static final int WAYS = 4;
+
+  static final KeyPool shared = new KeyPool(1024);
+
+  final AtomicReferenceArray<String> keys;
+  /** Set when a key is found, cleared as the clock hand passes it */
+  final byte[] used;
+  /** Next slot to consider replacing, for each set of WAYS slots */
+  final byte[] hands;
+  final int mask;
+
+  final LongAdder hits = new LongAdder();
+  final LongAdder misses = new LongAdder();
+
+
+  /**
+   * @param capacity number of keys to hold, rounded up to a power of two
+   */
+  public KeyPool(int capacity) {
+    int sets = 1;
+    while (sets * WAYS < capacity) {
+      sets <<= 1;
+    }
+    keys = new AtomicReferenceArray<>(sets * WAYS);
+    used = new byte[sets * WAYS];
+    hands = new byte[sets];
+    mask = sets - 1;
+  }
+
+
+  /** The pool used by JSONObject.put() and by default when reading. */
+  static public KeyPool shared() {
+    return shared;
+  }
+
+
+  /**
+   * Return the pooled copy of this key, adding it to the pool (and
+   * returning it as-is) if it isn't already there.
+   */
+  public String intern(String key) {
+    int hash = key.hashCode() * 0x9E3779B9;
+    int set = (hash ^ (hash >>> 16)) & mask;
+    int start = set * WAYS;
+    for (int i = start; i < start + WAYS; i++) {
+      String found = keys.get(i);
+      if (found != null && found.equals(key)) {
+        used[i] = 1;
+        hits.increment();
+        return found;
+      }
+    }
+    misses.increment();
+
+    // first empty slot, or the first one not used since the hand last
+    // passed it, clearing the used flags of the others along the way
+    int hand = hands[set];
+    int slot;
+    for (;;) {
+      slot = start + hand;
+      hand = (hand + 1) & (WAYS - 1);
+      if (keys.get(slot) == null || used[slot] == 0) {
+        break;
+      }
+      used[slot] = 0;
+    }
+    hands[set] = (byte) hand;
+    String victim = keys.get(slot);
+    if (keys.compareAndSet(slot, victim, key)) {
+      used[slot] = 0;
+    }
+    return key;
+  }
+
+
+  /** Number of keys that were found in the pool. */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+
+  /** Number of keys that had to be added to the pool. */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+
+  /** Remove all the keys, and reset the counts. */
+  public void clear() {
+    for (int i = 0; i < keys.length(); i++) {
+      keys.set(i, null);
+      used[i] = 0;
+    }
+    for (int i = 0; i < hands.length; i++) {
+      hands[i] = 0;
+    }
+    hits.reset();
+    misses.reset();
+  }
+}
@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -24,7 +23,7 @@ public class LongDict {
   protected long[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private DictHash lookup = new DictHash();
 
 
   public LongDict() {
@@ -44,6 +43,7 @@ public class LongDict {
     count = 0;
     keys = new String[length];
     values = new long[length];
+    lookup = new DictHash(length);
   }
 
 
@@ -63,7 +63,7 @@ public class LongDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseInt(pieces[1]);
-        indices.put(pieces[0], count);
+        lookup.put(keys, count);
         count++;
       }
     }
@@ -79,9 +79,7 @@ public class LongDict {
     this.keys = keys;
     this.values = values;
     count = keys.length;
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    resetIndices();
   }
 
 
@@ -101,8 +99,8 @@ public class LongDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Integer) pairs[i][1];
-      indices.put(keys[i], i);
     }
+    resetIndices();
   }
 
 
@@ -113,7 +111,7 @@ public class LongDict {
    * @webBrief Returns the number of key/value pairs
    */
   public int size() {
-    return count;
+    return count - lookup.removed;
   }
 
 
@@ -122,6 +120,7 @@ public class LongDict {
    * Helpful for situations like sorting and then grabbing the top 50 entries.
    */
   public void resize(int length) {
+    pack();
     if (length > count) {
       throw new IllegalArgumentException("resize() can only be used to shrink the dictionary");
     }
@@ -148,15 +147,32 @@ public class LongDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
+    lookup = new DictHash();
   }
 
 
   private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+    lookup.rebuild(keys, count);
+  }
+
+
+  /** Close up the gaps left by removed entries. */
+  private void pack() {
+    if (lookup.removed != 0) {
+      count = lookup.pack(keys, values, count);
+    }
+  }
+
+
+  /**
+   * Make sure that the entries up to and including this index are in
+   * order. Removing from the end of the list doesn't need a pack().
+   */
+  private int packed(int index) {
+    if (index >= lookup.firstRemoved) {
+      pack();
     }
+    return index;
   }
 
 
@@ -189,18 +205,16 @@ public class LongDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public Entry next() {
-        ++index;
-        Entry e = new Entry(keys[index], values[index]);
-        return e;
+        index = DictHash.next(keys, index, count);
+        return new Entry(keys[index], values[index]);
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -210,11 +224,12 @@ public class LongDict {
 
 
   public String key(int index) {
-    return keys[index];
+    return keys[packed(index)];
   }
 
 
   protected void crop() {
+    pack();
     if (count != keys.length) {
       keys = PApplet.subset(keys, 0, count);
       values = PApplet.subset(values, 0, count);
@@ -239,16 +254,16 @@ public class LongDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public String next() {
-        return key(++index);
+        index = DictHash.next(keys, index, count);
+        return keys[index];
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -267,6 +282,7 @@ public class LongDict {
 
 
   public String[] keyArray(String[] outgoing) {
+    pack();
     if (outgoing == null || outgoing.length != count) {
       outgoing = new String[count];
     }
@@ -276,7 +292,7 @@ public class LongDict {
 
 
   public long value(int index) {
-    return values[index];
+    return values[packed(index)];
   }
 
 
@@ -302,16 +318,16 @@ public class LongDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public Long next() {
-        return value(++index);
+        index = DictHash.next(keys, index, count);
+        return values[index];
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -337,6 +353,7 @@ public class LongDict {
    * @param array values to copy into the array
    */
   public int[] valueArray(int[] array) {
+    pack();
     if (array == null || array.length != size()) {
       array = new int[count];
     }
@@ -352,7 +369,7 @@ public class LongDict {
    * @webBrief Return a value for the specified key
    */
   public long get(String key) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       throw new IllegalArgumentException("No key named '" + key + "'");
     }
@@ -361,7 +378,7 @@ public class LongDict {
 
 
   public long get(String key, long alternate) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) return alternate;
     return values[index];
   }
@@ -374,7 +391,7 @@ public class LongDict {
    * @webBrief Create a new key/value pair or change the value of one
    */
   public void set(String key, long amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       create(key, amount);
     } else {
@@ -384,10 +401,10 @@ public class LongDict {
 
 
   public void setIndex(int index, String key, long value) {
-    if (index < 0 || index >= count) {
+    if (index < 0 || index >= size()) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    keys[index] = key;
+    lookup.rename(keys, packed(index), key);
     values[index] = value;
   }
 
@@ -399,7 +416,7 @@ public class LongDict {
    * @webBrief Check if a key is a part of the data structure
    */
   public boolean hasKey(String key) {
-    return index(key) != -1;
+    return lookup.find(keys, key) != -1;
   }
 
 
@@ -420,7 +437,7 @@ public class LongDict {
    * even though it's technically an add().
    */
   public void increment(LongDict dict) {
-    for (int i = 0; i < dict.count; i++) {
+    for (int i = 0; i < dict.size(); i++) {
       add(dict.key(i), dict.value(i));
     }
   }
@@ -433,7 +450,7 @@ public class LongDict {
    * @webBrief Add to a value
    */
   public void add(String key, long amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       create(key, amount);
     } else {
@@ -460,7 +477,7 @@ public class LongDict {
    * @webBrief Multiply a value
    */
   public void mult(String key, long amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index != -1) {
       values[index] *= amount;
     }
@@ -474,7 +491,7 @@ public class LongDict {
    * @webBrief Divide a value
    */
   public void div(String key, long amount) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index != -1) {
       values[index] /= amount;
     }
@@ -482,6 +499,7 @@ public class LongDict {
 
 
   private void checkMinMax(String functionName) {
+    pack();
     if (count == 0) {
       String msg =
         String.format("Cannot use %s() on an empty %s.",
@@ -493,6 +511,7 @@ public class LongDict {
 
   // return the index of the minimum value
   public int minIndex() {
+    pack();
     //checkMinMax("minIndex");
     if (count == 0) return -1;
 
@@ -528,6 +547,7 @@ public class LongDict {
 
   // return the index of the max value
   public int maxIndex() {
+    pack();
     //checkMinMax("maxIndex");
     if (count == 0) {
       return -1;
@@ -563,6 +583,7 @@ public class LongDict {
 
 
   public long sum() {
+    pack();
     long sum = 0;
     for (int i = 0; i < count; i++) {
       sum += values[i];
@@ -572,19 +593,23 @@ public class LongDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    pack();
+    return lookup.find(keys, what);
   }
 
 
   protected void create(String what, long much) {
     if (count == keys.length) {
-      keys = PApplet.expand(keys);
-      values = PApplet.expand(values);
+      if (lookup.removed > count >> 2) {
+        pack();
+      } else {
+        keys = PApplet.expand(keys);
+        values = PApplet.expand(values);
+      }
     }
-    indices.put(what, Integer.valueOf(count));
     keys[count] = what;
     values[count] = much;
+    lookup.put(keys, count);
     count++;
   }
 
@@ -596,44 +621,40 @@ public class LongDict {
    * @webBrief Remove a key/value pair
    */
   public long remove(String key) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       throw new NoSuchElementException("'" + key + "' not found");
     }
     long value = values[index];
-    removeIndex(index);
+    removeEntry(index);
     return value;
   }
 
 
   public long removeIndex(int index) {
-    if (index < 0 || index >= count) {
+    if (index < 0 || index >= size()) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    long value = values[index];
-    indices.remove(keys[index]);
-    for (int i = index; i < count-1; i++) {
-      keys[i] = keys[i+1];
-      values[i] = values[i+1];
-      indices.put(keys[i], i);
-    }
-    count--;
-    keys[count] = null;
-    values[count] = 0;
+    return removeEntry(packed(index));
+  }
+
+
+  private long removeEntry(int entry) {
+    long value = values[entry];
+    lookup.remove(keys, entry);
     return value;
   }
 
 
   public void swap(int a, int b) {
+    packed(Math.max(a, b));
+    lookup.swap(keys, a, b);
     String tkey = keys[a];
     long tvalue = values[a];
     keys[a] = keys[b];
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
   }
 
 
@@ -699,43 +720,28 @@ public class LongDict {
 
   protected void sortImpl(final boolean useKeys, final boolean reverse,
                           final boolean stable) {
-    Sort s = new Sort() {
-      @Override
-      public int size() {
-        return count;
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        long diff = 0;
-        if (useKeys) {
-          diff = keys[a].compareToIgnoreCase(keys[b]);
-          if (diff == 0) {
-            diff = values[a] - values[b];
-          }
-        } else {  // sort values
-          diff = values[a] - values[b];
-          if (diff == 0 && stable) {
-            diff = keys[a].compareToIgnoreCase(keys[b]);
-          }
-        }
-        if (diff == 0) {
-          return 0;
-        } else if (reverse) {
-          return diff < 0 ? 1 : -1;
-        } else {
-          return diff < 0 ? -1 : 1;
-        }
-      }
-
-      @Override
-      public void swap(int a, int b) {
-        LongDict.this.swap(a, b);
+    pack();
+    // Each pass is a stable sort, so the last pass decides the order,
+    // and the earlier passes break ties.
+    int[] order = IntList.fromRange(count).values();
+    if (useKeys) {
+      RadixSort.sortIndices(values, order, count, reverse);
+      RadixSort.sortIndices(RadixSort.rank(keys, count), order, count, reverse);
+    } else {
+      if (stable) {
+        RadixSort.sortIndices(RadixSort.rank(keys, count), order, count, reverse);
       }
-    };
-    s.run();
+      RadixSort.sortIndices(values, order, count, reverse);
+    }
 
-    // Set the indices after sort/swaps (performance fix 160411)
+    String[] newKeys = new String[keys.length];
+    long[] newValues = new long[values.length];
+    for (int i = 0; i < count; i++) {
+      newKeys[i] = keys[order[i]];
+      newValues[i] = values[order[i]];
+    }
+    keys = newKeys;
+    values = newValues;
     resetIndices();
   }
 
@@ -758,18 +764,18 @@ public class LongDict {
 
   /** Returns a duplicate copy of this object. */
   public LongDict copy() {
+    pack();
     LongDict outgoing = new LongDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
     outgoing.count = count;
+    outgoing.resetIndices();
     return outgoing;
   }
 
 
   public void print() {
+    pack();
     for (int i = 0; i < size(); i++) {
       System.out.println(keys[i] + " = " + values[i]);
     }
@@ -790,6 +796,7 @@ public class LongDict {
    * Write tab-delimited entries to a PrintWriter
    */
   public void write(PrintWriter writer) {
+    pack();
     for (int i = 0; i < count; i++) {
       writer.println(keys[i] + "\t" + values[i]);
     }
@@ -801,6 +808,7 @@ public class LongDict {
    * Return this dictionary as a String in JSON format.
    */
   public String toJSON() {
+    pack();
     StringList items = new StringList();
     for (int i = 0; i < count; i++) {
       items.append(JSONObject.quote(keys[i])+ ": " + values[i]);
@@ -585,7 +585,7 @@ public class LongList implements Iterable<Long> {
    * @webBrief Sorts the array, lowest to highest
    */
   public void sort() {
-    Arrays.sort(data, 0, count);
+    RadixSort.sort(data, count);
   }
 
 
@@ -596,25 +596,8 @@ public class LongList implements Iterable<Long> {
    * @webBrief Reverse sort, orders values from highest to lowest
    */
   public void sortReverse() {
-    new Sort() {
-      @Override
-      public int size() {
-        return count;
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        long diff = data[b] - data[a];
-        return diff == 0 ? 0 : (diff < 0 ? -1 : 1);
-      }
-
-      @Override
-      public void swap(int a, int b) {
-        long temp = data[a];
-        data[a] = data[b];
-        data[b] = temp;
-      }
-    }.run();
+    RadixSort.sort(data, count);
+    reverse();
   }
 
 
@@ -778,9 +761,9 @@ public class LongList implements Iterable<Long> {
     }
     FloatList outgoing = new FloatList(count);
     for (int i = 0; i < count; i++) {
-      double percent = data[i] / sum;
-      outgoing.set(i, (float) percent);
+      outgoing.data[i] = (float) (data[i] / sum);
     }
+    outgoing.count = count;
     return outgoing;
   }
 
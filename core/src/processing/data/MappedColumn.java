@@ -0,0 +1,256 @@
+package processing.data;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * A Table column that is read directly from a (usually memory-mapped)
+ * buffer written by Table.saveBinary(), or from an Arrow file. Numbers are read from the buffer
+ * on each access, and Strings are only decoded the first time they're used.
+ * A STRING column can also be held in a StringArena (the "compact" load
+ * option), which decodes its entries each time instead.
+ * The column is copied into a regular array by Table.unmapColumn() as soon
+ * as it needs to be modified.
+ * Advanced users only, not official API.
+ */
+class MappedColumn {
+  final Table table;
+  final int type;
+  final int rowCount;
+
+  IntBuffer ints;
+  LongBuffer longs;
+  FloatBuffer floats;
+  DoubleBuffer doubles;
+
+  // STRING entries, and the dictionary for CATEGORY columns
+  StringSection strings;
+  StringSection dictionary;
+
+  // STRING entries, when held in a compact arena instead
+  StringArena arena;
+
+  // CATEGORY names, when they're not read from a dictionary section
+  Table.HashMapBlows categories;
+
+
+  /**
+   * @param section the bytes for this column, as written by
+   *                Table.writeBinaryColumn()
+   */
+  MappedColumn(Table table, int type, int rowCount, ByteBuffer section) {
+    this.table = table;
+    this.type = type;
+    this.rowCount = rowCount;
+
+    switch (type) {
+      case Table.INT:
+        ints = section.slice(0, rowCount * 4).asIntBuffer();
+        break;
+      case Table.LONG:
+        longs = section.slice(0, rowCount * 8).asLongBuffer();
+        break;
+      case Table.FLOAT:
+        floats = section.slice(0, rowCount * 4).asFloatBuffer();
+        break;
+      case Table.DOUBLE:
+        doubles = section.slice(0, rowCount * 8).asDoubleBuffer();
+        break;
+      case Table.STRING:
+        strings = new StringSection(section, 0, rowCount);
+        break;
+      case Table.CATEGORY:
+        ints = section.slice(0, rowCount * 4).asIntBuffer();
+        int start = (int) Table.align(rowCount * 4L);
+        int count = section.getInt(start);
+        dictionary = new StringSection(section, start + 8, count);
+        break;
+      default:
+        throw new IllegalArgumentException(type + " is not a valid column type.");
+    }
+  }
+
+
+  /**
+   * A column of numbers (or the indices of a CATEGORY column) that's
+   * already an IntBuffer, LongBuffer, etc. in the right byte order,
+   * as set up by TableArrow.
+   */
+  MappedColumn(Table table, int type, int rowCount, Buffer values,
+               Table.HashMapBlows categories) {
+    this.table = table;
+    this.type = type;
+    this.rowCount = rowCount;
+    this.categories = categories;
+
+    switch (type) {
+      case Table.INT:
+      case Table.CATEGORY:
+        ints = (IntBuffer) values;
+        break;
+      case Table.LONG:
+        longs = (LongBuffer) values;
+        break;
+      case Table.FLOAT:
+        floats = (FloatBuffer) values;
+        break;
+      case Table.DOUBLE:
+        doubles = (DoubleBuffer) values;
+        break;
+      default:
+        throw new IllegalArgumentException(type + " is not a valid column type.");
+    }
+  }
+
+
+  MappedColumn(Table table, StringArena arena) {
+    this.table = table;
+    this.type = Table.STRING;
+    this.rowCount = arena.size();
+    this.arena = arena;
+  }
+
+
+  int getInt(int row) {
+    return ints.get(row);
+  }
+
+
+  long getLong(int row) {
+    return longs.get(row);
+  }
+
+
+  float getFloat(int row) {
+    return floats.get(row);
+  }
+
+
+  double getDouble(int row) {
+    return doubles.get(row);
+  }
+
+
+  /** Same results as Table.getString() for a column held in an array. */
+  String getString(int row) {
+    switch (type) {
+      case Table.STRING:
+        return (arena != null) ? arena.get(row) : strings.get(row);
+      case Table.CATEGORY:
+        int cat = ints.get(row);
+        if (cat == table.missingCategory) {
+          return table.missingString;
+        }
+        return (dictionary != null) ? dictionary.get(cat) : categories.key(cat);
+      case Table.INT:
+        return String.valueOf(ints.get(row));
+      case Table.LONG:
+        return String.valueOf(longs.get(row));
+      case Table.FLOAT:
+        float f = floats.get(row);
+        return Float.isNaN(f) ? null : String.valueOf(f);
+      case Table.DOUBLE:
+        double d = doubles.get(row);
+        return Double.isNaN(d) ? null : String.valueOf(d);
+    }
+    return null;
+  }
+
+
+  /** Copy the contents to the array type used by Table for this column. */
+  Object toArray() {
+    switch (type) {
+      case Table.INT:
+      case Table.CATEGORY:
+        int[] intData = new int[rowCount];
+        ints.get(0, intData);
+        return intData;
+      case Table.LONG:
+        long[] longData = new long[rowCount];
+        longs.get(0, longData);
+        return longData;
+      case Table.FLOAT:
+        float[] floatData = new float[rowCount];
+        floats.get(0, floatData);
+        return floatData;
+      case Table.DOUBLE:
+        double[] doubleData = new double[rowCount];
+        doubles.get(0, doubleData);
+        return doubleData;
+      case Table.STRING:
+        String[] stringData = new String[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+          stringData[i] = (arena != null) ? arena.get(i) : strings.get(i);
+        }
+        return stringData;
+    }
+    return null;
+  }
+
+
+  /** Decode the dictionary for a CATEGORY column. */
+  Table.HashMapBlows toCategories() {
+    Table.HashMapBlows outgoing = new Table.HashMapBlows();
+    int count = (dictionary != null) ? dictionary.count : categories.size();
+    for (int i = 0; i < count; i++) {
+      String name = (dictionary != null) ? dictionary.get(i) :
+        (categories.hasCategory(i) ? categories.key(i) : null);
+      if (name != null) {
+        outgoing.setCategory(i, name);
+      }
+    }
+    return outgoing;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * A list of UTF-8 Strings: count+1 long offsets, followed by the bytes.
+   * Each offset marks the end of the previous entry (and the start of the
+   * next), and is stored inverted (~offset) when that entry is null.
+   */
+  static class StringSection {
+    final LongBuffer offsets;
+    final ByteBuffer bytes;
+    final int count;
+    String[] decoded;
+
+    StringSection(ByteBuffer section, int start, int count) {
+      this.count = count;
+      offsets = section.slice(start, (count + 1) * 8).asLongBuffer();
+      long end = offsets.get(count);
+      int bytesStart = start + (count + 1) * 8;
+      bytes = section.slice(bytesStart, (int) (end < 0 ? ~end : end));
+    }
+
+    String get(int index) {
+      if (decoded == null) {
+        decoded = new String[count];
+      }
+      String s = decoded[index];
+      if (s == null) {
+        long stop = offsets.get(index + 1);
+        if (stop < 0) {
+          return null;
+        }
+        long begin = offsets.get(index);
+        if (begin < 0) {
+          begin = ~begin;
+        }
+        byte[] b = new byte[(int) (stop - begin)];
+        bytes.get((int) begin, b);
+        s = new String(b, StandardCharsets.UTF_8);
+        decoded[index] = s;
+      }
+      return s;
+    }
+  }
+}
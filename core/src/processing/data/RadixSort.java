@@ -0,0 +1,448 @@
+package processing.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Sorting kernels for primitive data, shared by the List, Dict, and Table
+ * classes. Numbers are sorted with an LSD radix sort, which takes the same
+ * time whether the data is random, presorted, or full of duplicates, and
+ * is stable, so that sorting on several keys in turn (least important
+ * first) orders by all of them. Float and double values are sorted by
+ * their "sortable bits": the IEEE bits with the lower bits of negative
+ * numbers flipped, so that the ordering of the integers matches the
+ * ordering of the numbers, with NaN values at the end.
+ * Advanced users only, not official API.
+ */
+class RadixSort {
+  // below this size, the sorts in java.util.Arrays are quicker
+  static final int ARRAYS_THRESHOLD = 1 << 10;
+  // above this size, sorts of indices are split across several threads
+  static final int PARALLEL_THRESHOLD = 1 << 20;
+
+  // 11 bits per pass: three passes for an int, six for a long
+  static final int BITS = 11;
+  static final int RADIX = 1 << BITS;
+  static final int MASK = RADIX - 1;
+
+
+  /** Sort the first count entries of data, lowest to highest. */
+  static void sort(int[] data, int count) {
+    if (count < ARRAYS_THRESHOLD) {
+      Arrays.sort(data, 0, count);
+    } else {
+      flip(data, count, Integer.MIN_VALUE);
+      radix(data, null, count);
+      flip(data, count, Integer.MIN_VALUE);
+    }
+  }
+
+
+  static void sort(long[] data, int count) {
+    if (count < ARRAYS_THRESHOLD) {
+      Arrays.sort(data, 0, count);
+    } else {
+      flip(data, count, Long.MIN_VALUE);
+      radix(data, null, count);
+      flip(data, count, Long.MIN_VALUE);
+    }
+  }
+
+
+  /** Sort lowest to highest, with any NaN values at the end. */
+  static void sort(float[] data, int count) {
+    if (count < ARRAYS_THRESHOLD) {
+      Arrays.sort(data, 0, count);
+    } else {
+      int[] keys = new int[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = floatKey(data[i]) ^ Integer.MIN_VALUE;
+      }
+      radix(keys, null, count);
+      for (int i = 0; i < count; i++) {
+        data[i] = fromFloatKey(keys[i] ^ Integer.MIN_VALUE);
+      }
+    }
+  }
+
+
+  static void sort(double[] data, int count) {
+    if (count < ARRAYS_THRESHOLD) {
+      Arrays.sort(data, 0, count);
+    } else {
+      long[] keys = new long[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = doubleKey(data[i]) ^ Long.MIN_VALUE;
+      }
+      radix(keys, null, count);
+      for (int i = 0; i < count; i++) {
+        data[i] = fromDoubleKey(keys[i] ^ Long.MIN_VALUE);
+      }
+    }
+  }
+
+
+  /** A signed int that sorts the same way as the float. */
+  static int floatKey(float value) {
+    int bits = Float.floatToIntBits(value);
+    return bits ^ ((bits >> 31) & 0x7fffffff);
+  }
+
+
+  /** Inverse of floatKey(), the bit twiddling undoes itself. */
+  static float fromFloatKey(int key) {
+    return Float.intBitsToFloat(key ^ ((key >> 31) & 0x7fffffff));
+  }
+
+
+  static long doubleKey(double value) {
+    long bits = Double.doubleToLongBits(value);
+    return bits ^ ((bits >> 63) & 0x7fffffffffffffffL);
+  }
+
+
+  static double fromDoubleKey(long key) {
+    return Double.longBitsToDouble(key ^ ((key >> 63) & 0x7fffffffffffffffL));
+  }
+
+
+  /**
+   * Ranks for a list of Strings, so that sorting by rank is the same as
+   * sorting by compareToIgnoreCase(). Entries that are equal (ignoring case)
+   * have the same rank, and null is treated the same as an empty String.
+   */
+  static int[] rank(String[] values, int count) {
+    String[] sorted = new String[count];
+    for (int i = 0; i < count; i++) {
+      sorted[i] = (values[i] == null) ? "" : values[i];
+    }
+    Arrays.sort(sorted, String.CASE_INSENSITIVE_ORDER);
+
+    HashMap<String, Integer> ranks = new HashMap<>();
+    int rank = -1;
+    String prev = null;
+    for (int i = 0; i < count; i++) {
+      String s = sorted[i];
+      if (prev == null || prev.compareToIgnoreCase(s) != 0) {
+        rank++;
+      }
+      ranks.put(s, rank);
+      prev = s;
+    }
+
+    int[] outgoing = new int[count];
+    for (int i = 0; i < count; i++) {
+      outgoing[i] = ranks.get((values[i] == null) ? "" : values[i]);
+    }
+    return outgoing;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Reorder a list of indices by keys[index], keeping entries with the
+   * same key in the order they were already in.
+   * @param keys the value to sort by, for each index
+   * @param order indices into keys, reordered in place
+   * @param count number of entries in order to be sorted
+   * @param reverse true to sort from highest to lowest
+   */
+  static void sortIndices(int[] keys, int[] order, int count, boolean reverse) {
+    // flipping the sign bit makes unsigned order match signed order,
+    // flipping the other bits as well reverses it
+    int flip = reverse ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+    int[] k = new int[count];
+    for (int i = 0; i < count; i++) {
+      k[i] = keys[order[i]] ^ flip;
+    }
+    if (count >= PARALLEL_THRESHOLD) {
+      ForkJoinPool.commonPool().invoke(new IntMergeTask(k, order, 0, count));
+    } else {
+      radix(k, order, count);
+    }
+  }
+
+
+  static void sortIndices(long[] keys, int[] order, int count, boolean reverse) {
+    long flip = reverse ? Long.MAX_VALUE : Long.MIN_VALUE;
+    long[] k = new long[count];
+    for (int i = 0; i < count; i++) {
+      k[i] = keys[order[i]] ^ flip;
+    }
+    if (count >= PARALLEL_THRESHOLD) {
+      ForkJoinPool.commonPool().invoke(new LongMergeTask(k, order, 0, count));
+    } else {
+      radix(k, order, count);
+    }
+  }
+
+
+  /**
+   * Keys for sorting a float column with sortIndices(), with NaN
+   * values at the end whether the sort is reversed or not.
+   */
+  static int[] floatKeys(float[] data, int count, boolean reverse) {
+    int[] keys = new int[count];
+    for (int i = 0; i < count; i++) {
+      float value = data[i];
+      keys[i] = (reverse && value != value) ? Integer.MIN_VALUE : floatKey(value);
+    }
+    return keys;
+  }
+
+
+  static long[] doubleKeys(double[] data, int count, boolean reverse) {
+    long[] keys = new long[count];
+    for (int i = 0; i < count; i++) {
+      double value = data[i];
+      keys[i] = (reverse && value != value) ? Long.MIN_VALUE : doubleKey(value);
+    }
+    return keys;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  static private void flip(int[] data, int count, int bits) {
+    for (int i = 0; i < count; i++) {
+      data[i] ^= bits;
+    }
+  }
+
+
+  static private void flip(long[] data, int count, long bits) {
+    for (int i = 0; i < count; i++) {
+      data[i] ^= bits;
+    }
+  }
+
+
+  /**
+   * LSD radix sort of unsigned keys, moving the entries of order
+   * (if not null) along with them. Passes where every key has the
+   * same digit are skipped, so narrow ranges of values are quick.
+   */
+  static void radix(int[] keys, int[] order, int count) {
+    radix(keys, order, 0, count);
+  }
+
+
+  static private void radix(int[] keys, int[] order, int start, int stop) {
+    if (stop - start < 2) {
+      return;
+    }
+    int passes = (32 + BITS - 1) / BITS;
+    int[][] counts = new int[passes][RADIX];
+    for (int i = start; i < stop; i++) {
+      int key = keys[i];
+      for (int pass = 0; pass < passes; pass++) {
+        counts[pass][(key >>> (pass * BITS)) & MASK]++;
+      }
+    }
+    int length = stop - start;
+    int[] src = keys;
+    int[] dst = new int[keys.length];
+    int[] srcOrder = order;
+    int[] dstOrder = (order == null) ? null : new int[order.length];
+    for (int pass = 0; pass < passes; pass++) {
+      int shift = pass * BITS;
+      int[] count = counts[pass];
+      if (count[(src[start] >>> shift) & MASK] == length) {
+        continue;  // all the same digit, nothing to do
+      }
+      int offset = start;
+      for (int digit = 0; digit < RADIX; digit++) {
+        int c = count[digit];
+        count[digit] = offset;
+        offset += c;
+      }
+      for (int i = start; i < stop; i++) {
+        int target = count[(src[i] >>> shift) & MASK]++;
+        dst[target] = src[i];
+        if (srcOrder != null) {
+          dstOrder[target] = srcOrder[i];
+        }
+      }
+      int[] temp = src; src = dst; dst = temp;
+      temp = srcOrder; srcOrder = dstOrder; dstOrder = temp;
+    }
+    if (src != keys) {
+      System.arraycopy(src, start, keys, start, length);
+      if (order != null) {
+        System.arraycopy(srcOrder, start, order, start, length);
+      }
+    }
+  }
+
+
+  static void radix(long[] keys, int[] order, int count) {
+    radix(keys, order, 0, count);
+  }
+
+
+  static private void radix(long[] keys, int[] order, int start, int stop) {
+    if (stop - start < 2) {
+      return;
+    }
+    int passes = (64 + BITS - 1) / BITS;
+    int[][] counts = new int[passes][RADIX];
+    for (int i = start; i < stop; i++) {
+      long key = keys[i];
+      for (int pass = 0; pass < passes; pass++) {
+        counts[pass][(int) (key >>> (pass * BITS)) & MASK]++;
+      }
+    }
+    int length = stop - start;
+    long[] src = keys;
+    long[] dst = new long[keys.length];
+    int[] srcOrder = order;
+    int[] dstOrder = (order == null) ? null : new int[order.length];
+    for (int pass = 0; pass < passes; pass++) {
+      int shift = pass * BITS;
+      int[] count = counts[pass];
+      if (count[(int) (src[start] >>> shift) & MASK] == length) {
+        continue;
+      }
+      int offset = start;
+      for (int digit = 0; digit < RADIX; digit++) {
+        int c = count[digit];
+        count[digit] = offset;
+        offset += c;
+      }
+      for (int i = start; i < stop; i++) {
+        int target = count[(int) (src[i] >>> shift) & MASK]++;
+        dst[target] = src[i];
+        if (srcOrder != null) {
+          dstOrder[target] = srcOrder[i];
+        }
+      }
+      long[] temp = src; src = dst; dst = temp;
+      int[] tempOrder = srcOrder; srcOrder = dstOrder; dstOrder = tempOrder;
+    }
+    if (src != keys) {
+      System.arraycopy(src, start, keys, start, length);
+      if (order != null) {
+        System.arraycopy(srcOrder, start, order, start, length);
+      }
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Parallel version of radix() for very large sorts: each half is sorted
+   * on a thread of its own (splitting further until the pieces are small
+   * enough), and the two halves are then merged, taking from the left half
+   * on ties so that the sort stays stable.
+   */
+  static class IntMergeTask extends RecursiveAction {
+    static private final long serialVersionUID = 1L;
+
+    final int[] keys;
+    final int[] order;
+    final int start, stop;
+
+    IntMergeTask(int[] keys, int[] order, int start, int stop) {
+      this.keys = keys;
+      this.order = order;
+      this.start = start;
+      this.stop = stop;
+    }
+
+    @Override
+    protected void compute() {
+      if (stop - start < PARALLEL_THRESHOLD / 4) {
+        // the scratch arrays are allocated at full size, so copy this
+        // piece out to keep them small
+        int length = stop - start;
+        int[] k = new int[length];
+        int[] o = new int[length];
+        System.arraycopy(keys, start, k, 0, length);
+        System.arraycopy(order, start, o, 0, length);
+        radix(k, o, 0, length);
+        System.arraycopy(k, 0, keys, start, length);
+        System.arraycopy(o, 0, order, start, length);
+        return;
+      }
+      int middle = (start + stop) >>> 1;
+      invokeAll(new IntMergeTask(keys, order, start, middle),
+                new IntMergeTask(keys, order, middle, stop));
+
+      int[] leftKeys = Arrays.copyOfRange(keys, start, middle);
+      int[] leftOrder = Arrays.copyOfRange(order, start, middle);
+      int i = 0, j = middle, target = start;
+      while (i < leftKeys.length && j < stop) {
+        if (Integer.compareUnsigned(keys[j], leftKeys[i]) < 0) {
+          keys[target] = keys[j];
+          order[target++] = order[j++];
+        } else {
+          keys[target] = leftKeys[i];
+          order[target++] = leftOrder[i++];
+        }
+      }
+      while (i < leftKeys.length) {
+        keys[target] = leftKeys[i];
+        order[target++] = leftOrder[i++];
+      }
+    }
+  }
+
+
+  static class LongMergeTask extends RecursiveAction {
+    static private final long serialVersionUID = 1L;
+
+    final long[] keys;
+    final int[] order;
+    final int start, stop;
+
+    LongMergeTask(long[] keys, int[] order, int start, int stop) {
+      this.keys = keys;
+      this.order = order;
+      this.start = start;
+      this.stop = stop;
+    }
+
+    @Override
+    protected void compute() {
+      if (stop - start < PARALLEL_THRESHOLD / 4) {
+        int length = stop - start;
+        long[] k = new long[length];
+        int[] o = new int[length];
+        System.arraycopy(keys, start, k, 0, length);
+        System.arraycopy(order, start, o, 0, length);
+        radix(k, o, 0, length);
+        System.arraycopy(k, 0, keys, start, length);
+        System.arraycopy(o, 0, order, start, length);
+        return;
+      }
+      int middle = (start + stop) >>> 1;
+      invokeAll(new LongMergeTask(keys, order, start, middle),
+                new LongMergeTask(keys, order, middle, stop));
+
+      long[] leftKeys = Arrays.copyOfRange(keys, start, middle);
+      int[] leftOrder = Arrays.copyOfRange(order, start, middle);
+      int i = 0, j = middle, target = start;
+      while (i < leftKeys.length && j < stop) {
+        if (Long.compareUnsigned(keys[j], leftKeys[i]) < 0) {
+          keys[target] = keys[j];
+          order[target++] = order[j++];
+        } else {
+          keys[target] = leftKeys[i];
+          order[target++] = leftOrder[i++];
+        }
+      }
+      while (i < leftKeys.length) {
+        keys[target] = leftKeys[i];
+        order[target++] = leftOrder[i++];
+      }
+    }
+  }
+}
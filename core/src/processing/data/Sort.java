@@ -19,12 +19,29 @@ public abstract class Sort implements Runnable {
 
 
   protected void sort(int i, int j) {
-    int pivotIndex = (i+j)/2;
-    swap(pivotIndex, j);
-    int k = partition(i-1, j);
-    swap(k, j);
-    if ((k-i) > 1) sort(i, k-1);
-    if ((j-k) > 1) sort(k+1, j);
+    // Recurse into the smaller side and loop on the larger one,
+    // so that the stack depth stays at O(log n) no matter the data.
+    while (j - i > 0) {
+      if (j - i == 1) {
+        if (compare(j, i) < 0) swap(i, j);
+        return;
+      }
+      // median of three, so presorted and reversed data don't hit the worst case
+      int pivotIndex = (i+j) >>> 1;
+      if (compare(pivotIndex, i) < 0) swap(pivotIndex, i);
+      if (compare(j, i) < 0) swap(j, i);
+      if (compare(j, pivotIndex) < 0) swap(j, pivotIndex);
+      swap(pivotIndex, j);
+      int k = partition(i-1, j);
+      swap(k, j);
+      if (k - i < j - k) {
+        if ((k-i) > 1) sort(i, k-1);
+        i = k + 1;
+      } else {
+        if ((j-k) > 1) sort(k+1, j);
+        j = k - 1;
+      }
+    }
   }
 
 
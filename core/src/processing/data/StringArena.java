@@ -0,0 +1,225 @@
+package processing.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * Compact storage for the entries of a STRING column. Each distinct value
+ * is stored once, as UTF-8, end to end in a single buffer (on the heap, or
+ * outside of it when direct), and every row is an int that refers to its
+ * value. A column of ten million entries takes 40 MB for the rows, plus the
+ * text of each distinct value, instead of a String object, a byte array,
+ * and a reference for every row. Values are decoded each time they're read,
+ * so it's best suited to tables that are loaded once and read many times.
+ * Used by Table (through MappedColumn) with the "compact" load option.
+ * Advanced users only, not official API.
+ */
+class StringArena {
+  static final int NULL_ENTRY = -1;
+
+  final boolean direct;
+
+  /** UTF-8 for every distinct value, one after another */
+  ByteBuffer bytes;
+  int byteCount;
+
+  /** Start of each value in bytes, with one extra for the end of the last */
+  int[] starts = new int[17];
+  int entryCount;
+
+  /** Finds the entry for a value from the hash of its bytes */
+  HashSlots slots = new HashSlots();
+
+  /** Entry for each row, or NULL_ENTRY */
+  int[] rows;
+  int rowCount;
+
+  // UTF-8 for the entry currently being added
+  byte[] scratch = new byte[64];
+  int scratchLength;
+
+
+  StringArena(boolean direct) {
+    this(direct, 16);
+  }
+
+
+  StringArena(boolean direct, int rowCapacity) {
+    this.direct = direct;
+    bytes = allocate(1024);
+    rows = new int[Math.max(rowCapacity, 16)];
+  }
+
+
+  private ByteBuffer allocate(int capacity) {
+    return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+  }
+
+
+  int size() {
+    return rowCount;
+  }
+
+
+  String get(int row) {
+    int entry = rows[row];
+    if (entry == NULL_ENTRY) {
+      return null;
+    }
+    int start = starts[entry];
+    byte[] b = new byte[starts[entry + 1] - start];
+    bytes.get(start, b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  void add(String value) {
+    if (value == null) {
+      addRow(NULL_ENTRY);
+    } else {
+      byte[] b = value.getBytes(StandardCharsets.UTF_8);
+      addRow(intern(b, b.length));
+    }
+  }
+
+
+  void add(String[] values, int count) {
+    for (int i = 0; i < count; i++) {
+      add(values[i]);
+    }
+  }
+
+
+  /** Add the rows from another arena, with its entries interned into this one. */
+  void add(StringArena other) {
+    int[] remap = new int[other.entryCount];
+    for (int entry = 0; entry < other.entryCount; entry++) {
+      int start = other.starts[entry];
+      int length = other.starts[entry + 1] - start;
+      if (scratch.length < length) {
+        scratch = new byte[length];
+      }
+      other.bytes.get(start, scratch, 0, length);
+      remap[entry] = intern(scratch, length);
+    }
+    for (int row = 0; row < other.rowCount; row++) {
+      int entry = other.rows[row];
+      addRow(entry == NULL_ENTRY ? NULL_ENTRY : remap[entry]);
+    }
+  }
+
+
+  /** Add null entries until there are count rows. */
+  void pad(int count) {
+    while (rowCount < count) {
+      addRow(NULL_ENTRY);
+    }
+  }
+
+
+  /** Add an entry straight from a run of chars, without making a String. */
+  void add(char[] c, int start, int length) {
+    addRow(intern(encode(c, start, length), scratchLength));
+  }
+
+
+  private void addRow(int entry) {
+    if (rowCount == rows.length) {
+      int[] temp = new int[rows.length << 1];
+      System.arraycopy(rows, 0, temp, 0, rowCount);
+      rows = temp;
+    }
+    rows[rowCount++] = entry;
+  }
+
+
+  /**
+   * Same bytes as String.getBytes(UTF_8) would produce,
+   * including '?' for any surrogates that aren't in pairs.
+   */
+  private byte[] encode(char[] c, int start, int length) {
+    if (scratch.length < length * 3) {
+      scratch = new byte[length * 3];
+    }
+    byte[] b = scratch;
+    int n = 0;
+    int stop = start + length;
+    for (int i = start; i < stop; i++) {
+      char ch = c[i];
+      if (ch < 0x80) {
+        b[n++] = (byte) ch;
+      } else if (ch < 0x800) {
+        b[n++] = (byte) (0xC0 | (ch >> 6));
+        b[n++] = (byte) (0x80 | (ch & 0x3F));
+      } else if (Character.isSurrogate(ch)) {
+        if (Character.isHighSurrogate(ch) && i + 1 < stop &&
+            Character.isLowSurrogate(c[i + 1])) {
+          int cp = Character.toCodePoint(ch, c[++i]);
+          b[n++] = (byte) (0xF0 | (cp >> 18));
+          b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+          b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+          b[n++] = (byte) (0x80 | (cp & 0x3F));
+        } else {
+          b[n++] = '?';
+        }
+      } else {
+        b[n++] = (byte) (0xE0 | (ch >> 12));
+        b[n++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+        b[n++] = (byte) (0x80 | (ch & 0x3F));
+      }
+    }
+    scratchLength = n;
+    return b;
+  }
+
+
+  /** Find the entry for these bytes, adding it if it's new. */
+  private int intern(byte[] b, int length) {
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + b[i];
+    }
+    hash = HashSlots.mix(hash);
+    for (int i = slots.candidates(hash, -1); i != -1; i = slots.candidates(hash, i)) {
+      int entry = slots.entry(i);
+      if (matches(entry, b, length)) {
+        return entry;
+      }
+    }
+
+    if (byteCount + length > bytes.capacity()) {
+      ByteBuffer temp = allocate(Math.max(bytes.capacity() << 1, byteCount + length));
+      temp.put(0, bytes, 0, byteCount);
+      bytes = temp;
+    }
+    bytes.put(byteCount, b, 0, length);
+    byteCount += length;
+
+    int entry = entryCount++;
+    if (entry + 1 == starts.length) {
+      starts = Arrays.copyOf(starts, (entry << 1) + 1);
+    }
+    starts[entry + 1] = byteCount;
+    slots.add(hash, entry);
+    return entry;
+  }
+
+
+  private boolean matches(int entry, byte[] b, int length) {
+    int start = starts[entry];
+    if (starts[entry + 1] - start != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (bytes.get(start + i) != b[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
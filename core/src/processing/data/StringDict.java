@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -26,7 +25,7 @@ public class StringDict {
   protected String[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private DictHash lookup = new DictHash();
 
 
   public StringDict() {
@@ -47,6 +46,7 @@ public class StringDict {
     count = 0;
     keys = new String[length];
     values = new String[length];
+    lookup = new DictHash(length);
   }
 
 
@@ -66,7 +66,7 @@ public class StringDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = pieces[1];
-        indices.put(keys[count], count);
+        lookup.put(keys, count);
         count++;
       }
     }
@@ -83,9 +83,7 @@ public class StringDict {
     this.keys = keys;
     this.values = values;
     count = keys.length;
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    resetIndices();
   }
 
 
@@ -106,8 +104,8 @@ public class StringDict {
     for (int i = 0; i < count; i++) {
       keys[i] = pairs[i][0];
       values[i] = pairs[i][1];
-      indices.put(keys[i], i);
     }
+    resetIndices();
   }
 
 
@@ -138,7 +136,7 @@ public class StringDict {
    * @webBrief Returns the number of key/value pairs
    */
   public int size() {
-    return count;
+    return count - lookup.removed;
   }
 
 
@@ -147,6 +145,7 @@ public class StringDict {
    * Helpful for situations like sorting and then grabbing the top 50 entries.
    */
   public void resize(int length) {
+    pack();
     if (length > count) {
       throw new IllegalArgumentException("resize() can only be used to shrink the dictionary");
     }
@@ -173,15 +172,32 @@ public class StringDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
+    lookup = new DictHash();
   }
 
 
   private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+    lookup.rebuild(keys, count);
+  }
+
+
+  /** Close up the gaps left by removed entries. */
+  private void pack() {
+    if (lookup.removed != 0) {
+      count = lookup.pack(keys, values, count);
+    }
+  }
+
+
+  /**
+   * Make sure that the entries up to and including this index are in
+   * order. Removing from the end of the list doesn't need a pack().
+   */
+  private int packed(int index) {
+    if (index >= lookup.firstRemoved) {
+      pack();
     }
+    return index;
   }
 
 
@@ -214,18 +230,16 @@ public class StringDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public Entry next() {
-        ++index;
-        Entry e = new Entry(keys[index], values[index]);
-        return e;
+        index = DictHash.next(keys, index, count);
+        return new Entry(keys[index], values[index]);
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -235,11 +249,12 @@ public class StringDict {
 
 
   public String key(int index) {
-    return keys[index];
+    return keys[packed(index)];
   }
 
 
   protected void crop() {
+    pack();
     if (count != keys.length) {
       keys = PApplet.subset(keys, 0, count);
       values = PApplet.subset(values, 0, count);
@@ -269,16 +284,16 @@ public class StringDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public String next() {
-        return key(++index);
+        index = DictHash.next(keys, index, count);
+        return keys[index];
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -297,6 +312,7 @@ public class StringDict {
 
 
   public String[] keyArray(String[] outgoing) {
+    pack();
     if (outgoing == null || outgoing.length != count) {
       outgoing = new String[count];
     }
@@ -306,7 +322,7 @@ public class StringDict {
 
 
   public String value(int index) {
-    return values[index];
+    return values[packed(index)];
   }
 
   /**
@@ -331,16 +347,16 @@ public class StringDict {
       int index = -1;
 
       public void remove() {
-        removeIndex(index);
-        index--;
+        removeEntry(index);
       }
 
       public String next() {
-        return value(++index);
+        index = DictHash.next(keys, index, count);
+        return values[index];
       }
 
       public boolean hasNext() {
-        return index+1 < size();
+        return DictHash.next(keys, index, count) < count;
       }
     };
   }
@@ -364,6 +380,7 @@ public class StringDict {
    * size as the number of values, a new array will be allocated and returned.
    */
   public String[] valueArray(String[] array) {
+    pack();
     if (array == null || array.length != size()) {
       array = new String[count];
     }
@@ -379,14 +396,14 @@ public class StringDict {
    * @webBrief Return a value for the specified key
    */
   public String get(String key) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) return null;
     return values[index];
   }
 
 
   public String get(String key, String alternate) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) return alternate;
     return values[index];
   }
@@ -399,7 +416,7 @@ public class StringDict {
    * @webBrief Create a new key/value pair or change the value of one
    */
   public void set(String key, String value) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       create(key, value);
     } else {
@@ -409,17 +426,17 @@ public class StringDict {
 
 
   public void setIndex(int index, String key, String value) {
-    if (index < 0 || index >= count) {
+    if (index < 0 || index >= size()) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    keys[index] = key;
+    lookup.rename(keys, packed(index), key);
     values[index] = value;
   }
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    pack();
+    return lookup.find(keys, what);
   }
 
 
@@ -430,18 +447,22 @@ public class StringDict {
    * @webBrief Check if a key is a part of the data structure
    */
   public boolean hasKey(String key) {
-    return index(key) != -1;
+    return lookup.find(keys, key) != -1;
   }
 
 
   protected void create(String key, String value) {
     if (count == keys.length) {
-      keys = PApplet.expand(keys);
-      values = PApplet.expand(values);
+      if (lookup.removed > count >> 2) {
+        pack();
+      } else {
+        keys = PApplet.expand(keys);
+        values = PApplet.expand(values);
+      }
     }
-    indices.put(key, Integer.valueOf(count));
     keys[count] = key;
     values[count] = value;
+    lookup.put(keys, count);
     count++;
   }
 
@@ -452,45 +473,42 @@ public class StringDict {
    * @webBrief Remove a key/value pair
    */
   public String remove(String key) {
-    int index = index(key);
+    int index = lookup.find(keys, key);
     if (index == -1) {
       throw new NoSuchElementException("'" + key + "' not found");
     }
     String value = values[index];
-    removeIndex(index);
+    removeEntry(index);
     return value;
   }
 
 
   public String removeIndex(int index) {
-    if (index < 0 || index >= count) {
+    if (index < 0 || index >= size()) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    String value = values[index];
-    indices.remove(keys[index]);
-    for (int i = index; i < count-1; i++) {
-      keys[i] = keys[i+1];
-      values[i] = values[i+1];
-      indices.put(keys[i], i);
-    }
-    count--;
-    keys[count] = null;
-    values[count] = null;
+    return removeEntry(packed(index));
+  }
+
+
+  private String removeEntry(int entry) {
+    String value = values[entry];
+    lookup.remove(keys, entry);
+    values[entry] = null;
     return value;
   }
 
 
 
   public void swap(int a, int b) {
+    packed(Math.max(a, b));
+    lookup.swap(keys, a, b);
     String tkey = keys[a];
     String tvalue = values[a];
     keys[a] = keys[b];
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
   }
 
 
@@ -538,6 +556,7 @@ public class StringDict {
 
 
   protected void sortImpl(final boolean useKeys, final boolean reverse) {
+    pack();
     Sort s = new Sort() {
       @Override
       public int size() {
@@ -575,18 +594,18 @@ public class StringDict {
 
   /** Returns a duplicate copy of this object. */
   public StringDict copy() {
+    pack();
     StringDict outgoing = new StringDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
     outgoing.count = count;
+    outgoing.resetIndices();
     return outgoing;
   }
 
 
   public void print() {
+    pack();
     for (int i = 0; i < size(); i++) {
       System.out.println(keys[i] + " = " + values[i]);
     }
@@ -607,6 +626,7 @@ public class StringDict {
    * Write tab-delimited entries to a PrintWriter
    */
   public void write(PrintWriter writer) {
+    pack();
     for (int i = 0; i < count; i++) {
       writer.println(keys[i] + "\t" + values[i]);
     }
@@ -618,6 +638,7 @@ public class StringDict {
    * Return this dictionary as a String in JSON format.
    */
   public String toJSON() {
+    pack();
     StringList items = new StringList();
     for (int i = 0; i < count; i++) {
       items.append(JSONObject.quote(keys[i])+ ": " + JSONObject.quote(values[i]));
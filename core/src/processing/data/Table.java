@@ -25,7 +25,14 @@ package processing.data;
 
 import java.io.*;
 import java.lang.reflect.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -33,13 +40,11 @@ import java.sql.Types;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
 
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLStreamException;
 
 import processing.core.PApplet;
 import processing.core.PConstants;
@@ -108,6 +113,12 @@ public class Table {
 
   protected RowIterator rowIterator;
 
+  // hash and sorted indices on columns, null if there aren't any
+  ArrayList<TableIndex> indexes;
+
+  // appends new rows to a file, null unless there's a TableLog
+  TableLog log;
+
   // 0 for doubling each time, otherwise the number of rows to increment on
   // each expansion.
   protected int expandIncrement;
@@ -135,10 +146,16 @@ public class Table {
    * @nowebref
    */
   public Table(File file, String options) throws IOException {
-    // uses createInput() to handle .gz (and eventually .bz2) files
     init();
-    parse(PApplet.createInput(file),
-          extensionOptions(true, file.getName(), options));
+    options = extensionOptions(true, file.getName(), options);
+    if (hasOption(options, "arrow")) {
+      if (!new TableArrow(this).map(file)) {
+        parse(PApplet.createInput(file), options);
+      }
+    } else if (!isBinaryOption(options) || !mapBinary(file)) {
+      // uses createInput() to handle .gz (and eventually .bz2) files
+      parse(PApplet.createInput(file), options);
+    }
   }
 
   /**
@@ -154,8 +171,16 @@ public class Table {
    * <ul>
    * <li>csv - parse the table as comma-separated values
    * <li>tsv - parse the table as tab-separated values
+   * <li>arrow - read an Apache Arrow IPC file (or stream)
    * <li>newlines - this CSV file contains newlines inside individual cells
    * <li>header - this table has a header (title) row
+   * <li>parallel - parse a large CSV or TSV file on several threads at once
+   * <li>infer - guess the type of each column from the first rows (or for
+   * .ods files, from the cell types), and read numbers directly as int,
+   * long, float, or double columns
+   * <li>compact - store the text of String columns as UTF-8, with each
+   * distinct entry kept only once (compact=offheap to keep it outside
+   * the Java heap); columns go back to String objects if they're modified
    * </ul>
    *
    * @nowebref
@@ -321,8 +346,8 @@ public class Table {
   */
 
 
-  static final String[] loadExtensions = { "csv", "tsv", "ods", "bin" };
-  static final String[] saveExtensions = { "csv", "tsv", "ods", "bin", "html" };
+  static final String[] loadExtensions = { "csv", "tsv", "ods", "bin", "arrow" };
+  static final String[] saveExtensions = { "csv", "tsv", "ods", "bin", "html", "arrow" };
 
   static public String extensionOptions(boolean loading, String filename, String options) {
     String extension = PApplet.checkExtension(filename);
@@ -343,11 +368,34 @@ public class Table {
   }
 
 
+  /** True if the "bin" option is set. */
+  static protected boolean isBinaryOption(String options) {
+    return hasOption(options, "bin");
+  }
+
+
+  /** True if this option is in the comma-separated list. */
+  static protected boolean hasOption(String options, String option) {
+    if (options != null) {
+      for (String opt : PApplet.trim(PApplet.split(options, ','))) {
+        if (opt.equals(option)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+
   protected void parse(InputStream input, String options) throws IOException {
 //    boolean awfulCSV = false;
     boolean header = false;
     String extension = null;
     boolean binary = false;
+    boolean parallel = false;
+    boolean infer = false;
+    boolean compact = false;
+    boolean offHeap = false;
     String encoding = "UTF-8";
 
     String worksheet = null;
@@ -370,8 +418,19 @@ public class Table {
         } else if (opt.equals("bin")) {
           binary = true;
           extension = "bin";
+        } else if (opt.equals("arrow")) {
+          extension = "arrow";
         } else if (opt.equals("header")) {
           header = true;
+        } else if (opt.equals("parallel")) {
+          parallel = true;
+        } else if (opt.equals("infer")) {
+          infer = true;
+        } else if (opt.equals("compact")) {
+          compact = true;
+        } else if (opt.equals("compact=offheap")) {
+          compact = true;
+          offHeap = true;
         } else if (opt.startsWith(sheetParam)) {
           worksheet = opt.substring(sheetParam.length());
         } else if (opt.startsWith("dictionary=")) {
@@ -391,8 +450,16 @@ public class Table {
     if (binary) {
       loadBinary(input);
 
+    } else if (extension.equals("arrow")) {
+      new TableArrow(this).read(input);
+
     } else if (extension.equals("ods")) {
-      odsParse(input, worksheet, header);
+      odsParse(input, worksheet, header, infer);
+
+    } else if (parallel || infer || compact) {
+      parseChunks(input, header, "tsv".equals(extension),
+                  Charset.forName(encoding), parallel, infer,
+                  compact, offHeap);
 
     } else {
       InputStreamReader isr = new InputStreamReader(input, encoding);
@@ -470,6 +537,265 @@ public class Table {
   }
 
 
+  /** Size of each block of the input handed to a thread by parseChunks(). */
+  static final int PARALLEL_CHUNK_SIZE = 1 << 22;
+
+  /** Number of records used by the "infer" option to guess column types. */
+  static final int INFER_SAMPLE_ROWS = 1000;
+
+
+  /**
+   * Parse CSV or TSV data straight into typed column arrays. The input is
+   * read in large blocks that are cut at the last record boundary (a newline
+   * that isn't inside a quoted field), each block is parsed separately
+   * (on the common ForkJoinPool when parallel is set), and the results
+   * are appended in order.
+   * <p>
+   * With infer set, the types of any String columns are guessed from the
+   * first rows of the data, and numeric columns are widened as necessary
+   * when later entries don't fit (an INT column becomes LONG or DOUBLE,
+   * a number column that has text in it becomes a STRING column, etc.)
+   * <p>
+   * With compact set, the entries of STRING columns are stored as UTF-8 in
+   * a StringArena rather than as String objects, both while each block is
+   * parsed and in the finished Table. The arena is allocated outside the
+   * Java heap when offHeap is set.
+   */
+  protected void parseChunks(InputStream input, boolean header, boolean tsv,
+                             Charset charset, boolean parallel,
+                             boolean infer, boolean compact,
+                             boolean offHeap) throws IOException {
+    if (!isDelimiterSafe(charset)) {
+      // re-encode as UTF-8 so that records can be found in the raw bytes
+      String text = new String(input.readAllBytes(), charset);
+      input = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+      charset = StandardCharsets.UTF_8;
+    }
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    // keep a limited number of blocks in flight so that memory use is
+    // bounded by the parsed data, not the size of the raw text
+    int window = 2 * Runtime.getRuntime().availableProcessors();
+    ArrayDeque<ForkJoinTask<TableChunk>> pending = new ArrayDeque<>();
+
+    int row = 0;
+    int line = 1;
+    boolean first = true;
+    // STRING columns for compact, kept out of the table until the end
+    ArrayList<StringArena> arenas = compact ? new ArrayList<>() : null;
+    // with infer, the rows of each column that weren't blank (see TableChunk)
+    ArrayList<BitSet> present = infer ? new ArrayList<>() : null;
+    byte[] carry = new byte[0];
+    int carryLength = 0;
+    boolean done = false;
+
+    while (!done) {
+      byte[] buffer = new byte[carryLength + PARALLEL_CHUNK_SIZE];
+      System.arraycopy(carry, 0, buffer, 0, carryLength);
+      int length = carryLength +
+        input.readNBytes(buffer, carryLength, PARALLEL_CHUNK_SIZE);
+      done = length < buffer.length;
+
+      // find the last newline that is not inside quotes
+      int boundary = 0;
+      int records = 0;
+      // lines in the file up to the boundary, counted the same way as
+      // TableChunk does (\r\n, \n, or \r alone), for error messages
+      int lines = 0;
+      int boundaryLines = 0;
+      boolean quoted = false;
+      for (int i = 0; i < length; i++) {
+        byte b = buffer[i];
+        if (b == '\"' && !tsv) {
+          // escaped quotes ("") toggle this back and forth, so it stays accurate
+          quoted = !quoted;
+        } else if (b == '\n') {
+          lines++;
+          if (!quoted) {
+            boundary = i + 1;
+            boundaryLines = lines;
+            records++;
+          }
+        } else if (b == '\r' && (i + 1 == length || buffer[i+1] != '\n')) {
+          lines++;
+        }
+      }
+      if (done) {
+        boundary = length;
+        boundaryLines = lines;
+        records++;
+      }
+
+      if (boundary == 0) {
+        // no complete record yet, keep reading
+        carry = buffer;
+        carryLength = length;
+
+      } else {
+        carryLength = length - boundary;
+        carry = new byte[carryLength];
+        System.arraycopy(buffer, boundary, carry, 0, carryLength);
+
+        TableChunk chunk =
+          new TableChunk(this, buffer, boundary, records,
+                         charset, tsv, first, first && header);
+        chunk.firstLine = line;
+        line += boundaryLines;
+        if (infer) {
+          if (first) {
+            inferColumnTypes(chunk.inferTypes(INFER_SAMPLE_ROWS));
+            chunk.types = columnTypes.clone();
+          }
+          chunk.widen = true;
+        }
+        chunk.compact = compact;
+        first = false;
+
+        if (parallel) {
+          pending.add(pool.submit(chunk));
+          while (pending.size() > window) {
+            row = appendChunk(pending.remove().join(), row, arenas, present, offHeap);
+          }
+        } else {
+          row = appendChunk(chunk.call(), row, arenas, present, offHeap);
+        }
+      }
+    }
+    while (!pending.isEmpty()) {
+      row = appendChunk(pending.remove().join(), row, arenas, present, offHeap);
+    }
+    // shorten or lengthen based on what's left
+    if (row != rowCount) {
+      resizeRows(row);
+    }
+    if (arenas != null) {
+      for (int col = 0; col < arenas.size(); col++) {
+        StringArena arena = arenas.get(col);
+        if (arena != null) {
+          arena.pad(row);
+          columns[col] = new MappedColumn(this, arena);
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Copy the rows from a parsed block onto the end of the table.
+   * @param chunk the parsed block
+   * @param row index of the first empty row in the table
+   * @param arenas compact STRING columns (by column), or null
+   * @param present rows of each column that weren't blank, or null
+   * @param offHeap whether new arenas are allocated outside the heap
+   * @return index of the first empty row after this chunk
+   */
+  protected int appendChunk(TableChunk chunk, int row,
+                            ArrayList<StringArena> arenas,
+                            ArrayList<BitSet> present, boolean offHeap) {
+    if (chunk.error != null) {
+      throw new RuntimeException("Error reading table on line " +
+                                 chunk.errorLine(), chunk.error);
+    }
+    if (chunk.titles != null) {
+      setColumnTitles(chunk.titles);
+    }
+    ensureColumn(chunk.columnCount - 1);
+
+    int needed = row + chunk.rowCount;
+    if (needed > rowCount) {
+      resizeRows(Math.max(needed, rowCount << 1));
+    }
+    for (int col = 0; col < chunk.columnCount; col++) {
+      BitSet tablePresent = null;
+      BitSet chunkPresent = chunk.widen ? chunk.present[col] : null;
+      if (present != null) {
+        while (present.size() <= col) {
+          present.add(new BitSet());
+        }
+        tablePresent = present.get(col);
+      }
+      int type = chunk.types[col];
+      if (type != columnTypes[col]) {
+        // one side was widened while parsing; bring both to the wider type
+        int wider = TableChunk.wider(type, columnTypes[col]);
+        if (wider != columnTypes[col]) {
+          columns[col] = TableChunk.convert(columns[col], row, columnTypes[col], wider, tablePresent);
+          columnTypes[col] = wider;
+        }
+        if (wider != type) {
+          chunk.columns[col] = TableChunk.convert(chunk.columns[col], chunk.rowCount, type, wider, chunkPresent);
+        }
+      }
+      if (tablePresent != null && chunkPresent != null) {
+        for (int i = chunkPresent.nextSetBit(0); i >= 0; i = chunkPresent.nextSetBit(i + 1)) {
+          tablePresent.set(row + i);
+        }
+      }
+      if (columnTypes[col] == CATEGORY) {
+        // map the chunk's category indices to the ones used by the table
+        HashMapBlows categories = chunk.categories[col];
+        int[] remap = new int[categories.size()];
+        for (int i = 0; i < remap.length; i++) {
+          remap[i] = columnCategories[col].index(categories.key(i));
+        }
+        int[] incoming = (int[]) chunk.columns[col];
+        int[] indexData = (int[]) columns[col];
+        for (int i = 0; i < chunk.rowCount; i++) {
+          int index = incoming[i];
+          indexData[row + i] = (index == missingCategory) ? index : remap[index];
+        }
+      } else if (arenas != null && columnTypes[col] == STRING) {
+        while (arenas.size() <= col) {
+          arenas.add(null);
+        }
+        StringArena arena = arenas.get(col);
+        if (arena == null) {
+          arena = new StringArena(offHeap, needed);
+          // entries from before this was a STRING column (or empty ones)
+          arena.add((String[]) columns[col], row);
+          arenas.set(col, arena);
+        }
+        arena.pad(row);  // earlier blocks may not have had this column
+        if (chunk.columns[col] instanceof StringArena) {
+          StringArena incoming = (StringArena) chunk.columns[col];
+          incoming.pad(chunk.rowCount);
+          arena.add(incoming);
+        } else {
+          arena.add((String[]) chunk.columns[col], chunk.rowCount);
+        }
+      } else {
+        System.arraycopy(chunk.columns[col], 0, columns[col], row, chunk.rowCount);
+      }
+    }
+    return needed;
+  }
+
+
+  /**
+   * Set the types of any String columns to the types guessed by
+   * TableChunk.inferTypes(). Columns that already have a type
+   * (from a dictionary, or setColumnType()) are left alone.
+   */
+  protected void inferColumnTypes(int[] inferred) {
+    ensureColumn(inferred.length - 1);
+    for (int col = 0; col < inferred.length; col++) {
+      if (columnTypes[col] == STRING && inferred[col] != STRING) {
+        setColumnType(col, inferred[col]);
+      }
+    }
+  }
+
+
+  /**
+   * Whether the newline, quote, comma, and tab characters are encoded as
+   * single ASCII bytes in this charset, so that the raw bytes can be split
+   * on record boundaries before decoding.
+   */
+  static protected boolean isDelimiterSafe(Charset charset) {
+    return Arrays.equals("\n\r\",\t".getBytes(charset),
+                         new byte[] { '\n', '\r', '\"', ',', '\t' });
+  }
+
+
 //  public void convertTSV(BufferedReader reader, File outputFile) throws IOException {
 //    convertBasic(reader, true, outputFile);
 //  }
@@ -758,6 +1084,24 @@ public class Table {
   }
 
 
+  /**
+   * Read the rows of a CSV or TSV file one at a time, without loading the
+   * whole file into a Table. Only one row is held in memory: the TableRow
+   * handed out by the iterator is reused, so copy out anything that needs
+   * to be kept before moving on to the next row. The stream is closed once
+   * the last row has been read. Possible options are the same as for
+   * loading a Table: csv, tsv, header, and encoding=.
+   *
+   * @nowebref
+   * @param input a stream of CSV or TSV data
+   * @param options csv or tsv, and header if the first row contains the titles
+   */
+  static public Iterable<TableRow> stream(InputStream input,
+                                          String options) throws IOException {
+    return new RowStream(input, options);
+  }
+
+
   CommaSeparatedLine csl;
 
   /**
@@ -840,191 +1184,22 @@ public class Table {
   */
 
 
-  /**
-   * Read a .ods (OpenDoc spreadsheet) zip file from an InputStream, and
-   * return the InputStream for content.xml contained inside.
-   */
-  private InputStream odsFindContentXML(InputStream input) {
-    ZipInputStream zis = new ZipInputStream(input);
-    ZipEntry entry = null;
-    try {
-      while ((entry = zis.getNextEntry()) != null) {
-        if (entry.getName().equals("content.xml")) {
-          return zis;
-        }
-      }
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
-    return null;
-  }
-
-
   protected void odsParse(InputStream input, String worksheet, boolean header) {
-    try {
-      InputStream contentStream = odsFindContentXML(input);
-      XML xml = new XML(contentStream);
-
-      // table files will have multiple sheets..
-      // <table:table table:name="Sheet1" table:style-name="ta1" table:print="false">
-      // <table:table table:name="Sheet2" table:style-name="ta1" table:print="false">
-      // <table:table table:name="Sheet3" table:style-name="ta1" table:print="false">
-      XML[] sheets =
-        xml.getChildren("office:body/office:spreadsheet/table:table");
-
-      boolean found = false;
-      for (XML sheet : sheets) {
-//        System.out.println(sheet.getAttribute("table:name"));
-        if (worksheet == null || worksheet.equals(sheet.getString("table:name"))) {
-          odsParseSheet(sheet, header);
-          found = true;
-          if (worksheet == null) {
-            break;  // only read the first sheet
-          }
-        }
-      }
-      if (!found) {
-        if (worksheet == null) {
-          throw new RuntimeException("No worksheets found in the ODS file.");
-        } else {
-          throw new RuntimeException("No worksheet named " + worksheet +
-                                     " found in the ODS file.");
-        }
-      }
-    } catch (UnsupportedEncodingException e) {
-      e.printStackTrace();
-    } catch (IOException e) {
-      e.printStackTrace();
-    } catch (ParserConfigurationException e) {
-      e.printStackTrace();
-    } catch (SAXException e) {
-      e.printStackTrace();
-    }
+    odsParse(input, worksheet, header, false);
   }
 
 
   /**
-   * Parses a single sheet of XML from this file.
-   * @param The XML object for a single worksheet from the ODS file
+   * Read a sheet from a .ods (OpenDoc spreadsheet) zip file. With infer,
+   * cells that have numbers are read into typed columns.
+   * @see TableODS#read(InputStream, String, boolean)
    */
-  private void odsParseSheet(XML sheet, boolean header) {
-    // Extra <p> or <a> tags inside the text tag for the cell will be stripped.
-    // Different from showing formulas, and not quite the same as 'save as
-    // displayed' option when saving from inside OpenOffice. Only time we
-    // wouldn't want this would be so that we could parse hyperlinks and
-    // styling information intact, but that's out of scope for the p5 version.
-    final boolean ignoreTags = true;
-
-    XML[] rows = sheet.getChildren("table:table-row");
-    //xml.getChildren("office:body/office:spreadsheet/table:table/table:table-row");
-
-    int rowIndex = 0;
-    for (XML row : rows) {
-      int rowRepeat = row.getInt("table:number-rows-repeated", 1);
-//      if (rowRepeat != 1) {
-//          System.out.println(rowRepeat + " " + rowCount + " " + (rowCount + rowRepeat));
-//      }
-      boolean rowNotNull = false;
-      XML[] cells = row.getChildren();
-      int columnIndex = 0;
-
-      for (XML cell : cells) {
-        int cellRepeat = cell.getInt("table:number-columns-repeated", 1);
-
-//        <table:table-cell table:formula="of:=SUM([.E7:.E8])" office:value-type="float" office:value="4150">
-//        <text:p>4150.00</text:p>
-//        </table:table-cell>
-
-        String cellData = ignoreTags ? cell.getString("office:value") : null;
-
-        // if there's an office:value in the cell, just roll with that
-        if (cellData == null) {
-          int cellKids = cell.getChildCount();
-          if (cellKids != 0) {
-            XML[] paragraphElements = cell.getChildren("text:p");
-            if (paragraphElements.length != 1) {
-              for (XML el : paragraphElements) {
-                System.err.println(el.toString());
-              }
-              throw new RuntimeException("found more than one text:p element");
-            }
-            XML textp = paragraphElements[0];
-            String textpContent = textp.getContent();
-            // if there are sub-elements, the content shows up as a child element
-            // (for which getName() returns null.. which seems wrong)
-            if (textpContent != null) {
-              cellData = textpContent;  // nothing fancy, the text is in the text:p element
-            } else {
-              XML[] textpKids = textp.getChildren();
-              StringBuilder cellBuffer = new StringBuilder();
-              for (XML kid : textpKids) {
-                String kidName = kid.getName();
-                if (kidName == null) {
-                  odsAppendNotNull(kid, cellBuffer);
-
-                } else if (kidName.equals("text:s")) {
-                  int spaceCount = kid.getInt("text:c", 1);
-                  for (int space = 0; space < spaceCount; space++) {
-                    cellBuffer.append(' ');
-                  }
-                } else if (kidName.equals("text:span")) {
-                  odsAppendNotNull(kid, cellBuffer);
-
-                } else if (kidName.equals("text:a")) {
-                  // <text:a xlink:href="http://blah.com/">blah.com</text:a>
-                  if (ignoreTags) {
-                    cellBuffer.append(kid.getString("xlink:href"));
-                  } else {
-                    odsAppendNotNull(kid, cellBuffer);
-                  }
-
-                } else {
-                  odsAppendNotNull(kid, cellBuffer);
-                  System.err.println(getClass().getName() + ": don't understand: " + kid);
-                  //throw new RuntimeException("I'm not used to this.");
-                }
-              }
-              cellData = cellBuffer.toString();
-            }
-            //setString(rowIndex, columnIndex, c); //text[0].getContent());
-            //columnIndex++;
-          }
-        }
-        for (int r = 0; r < cellRepeat; r++) {
-          if (cellData != null) {
-            //System.out.println("setting " + rowIndex + "," + columnIndex + " to " + cellData);
-            setString(rowIndex, columnIndex, cellData);
-          }
-          columnIndex++;
-          if (cellData != null) {
-//            if (columnIndex > columnMax) {
-//              columnMax = columnIndex;
-//            }
-            rowNotNull = true;
-          }
-        }
-      }
-      if (header) {
-        removeTitleRow();  // efficient enough on the first row
-        header = false;  // avoid infinite loop
-
-      } else {
-        if (rowNotNull && rowRepeat > 1) {
-          String[] rowStrings = getStringRow(rowIndex);
-          for (int r = 1; r < rowRepeat; r++) {
-            addRow(rowStrings);
-          }
-        }
-        rowIndex += rowRepeat;
-      }
-    }
-  }
-
-
-  private void odsAppendNotNull(XML kid, StringBuilder buffer) {
-    String content = kid.getContent();
-    if (content != null) {
-      buffer.append(content);
+  protected void odsParse(InputStream input, String worksheet,
+                          boolean header, boolean infer) {
+    try {
+      new TableODS(this, infer).read(input, worksheet, header);
+    } catch (IOException | XMLStreamException e) {
+      e.printStackTrace();
     }
   }
 
@@ -1046,162 +1221,92 @@ public class Table {
   // because that's passed to the constructor parameter (inserted by the
   // compiler) of an inner class by the runtime.
 
-  /** incomplete, do not use */
+  /**
+   * Fill an array field of enclosingObject (usually the sketch) with one
+   * object for each row, setting each object's fields from the columns
+   * with the same names, as in <b>table.parseInto(this, "records")</b>
+   * for a <b>Record[] records</b> field. Fields can be int, long, float,
+   * double, String, boolean, or char.
+   */
   public void parseInto(Object enclosingObject, String fieldName) {
-    Class<?> target = null;
-    Object outgoing = null;
     Field targetField = null;
-    try {
-      // Object targetObject,
-      // Class target -> get this from the type of fieldName
-//      Class sketchClass = sketch.getClass();
-      Class<?> sketchClass = enclosingObject.getClass();
-      targetField = sketchClass.getDeclaredField(fieldName);
-//      PApplet.println("found " + targetField);
-      Class<?> targetArray = targetField.getType();
-      if (!targetArray.isArray()) {
-        // fieldName is not an array
-      } else {
-        target = targetArray.getComponentType();
-        outgoing = Array.newInstance(target, getRowCount());
+    Class<?> sketchClass = enclosingObject.getClass();
+    while (targetField == null && sketchClass != null) {
+      try {
+        targetField = sketchClass.getDeclaredField(fieldName);
+      } catch (NoSuchFieldException e) {
+        sketchClass = sketchClass.getSuperclass();
       }
-    } catch (NoSuchFieldException e) {
-      e.printStackTrace();
-    } catch (SecurityException e) {
-      e.printStackTrace();
     }
-
-//    Object enclosingObject = sketch;
-//    PApplet.println("enclosing obj is " + enclosingObject);
-    Class<?> enclosingClass = target.getEnclosingClass();
-    Constructor<?> con = null;
-
+    if (targetField == null || !targetField.getType().isArray()) {
+      throw new IllegalArgumentException("No array named " + fieldName + " in " +
+                                         enclosingObject.getClass().getName());
+    }
+    Class<?> target = targetField.getType().getComponentType();
+    Object outgoing =
+      TableMapper.forTable(target, this).toObjects(this, enclosingObject);
     try {
-      if (enclosingClass == null) {
-        con = target.getDeclaredConstructor();  //new Class[] { });
-//        PApplet.println("no enclosing class");
-      } else {
-        con = target.getDeclaredConstructor(enclosingClass);
-//        PApplet.println("enclosed by " + enclosingClass.getName());
-      }
-      if (!con.canAccess(null)) {
-//        System.out.println("setting constructor to public");
-        con.setAccessible(true);
-      }
-    } catch (SecurityException e) {
-      e.printStackTrace();
-    } catch (NoSuchMethodException e) {
+      targetField.setAccessible(true);
+      // Set the array in the sketch
+      targetField.set(enclosingObject, outgoing);
+    } catch (IllegalAccessException e) {
       e.printStackTrace();
     }
+  }
 
-    Field[] fields = target.getDeclaredFields();
-    ArrayList<Field> inuse = new ArrayList<>();
-    for (Field field : fields) {
-      String name = field.getName();
-      if (getColumnIndex(name, false) != -1) {
-        inuse.add(field);
-      } else {
-//        System.out.println("skipping field " + name);
-      }
-    }
-
-    int index = 0;
-    try {
-      for (TableRow row : rows()) {
-        Object item = null;
-        if (enclosingClass == null) {
-          //item = target.newInstance();
-          item = con.newInstance();
-        } else {
-          item = con.newInstance(enclosingObject);
-        }
-
-        // Only needed once
-        if (index == 0) {
-          for (Field field : inuse) {
-            if (!field.canAccess(item)) {
-              // PApplet.println("  changing field access");
-              field.setAccessible(true);
-            }
-          }
-        }
-
-        //Object item = defaultCons.newInstance(new Object[] { });
-        for (Field field : inuse) {
-          String name = field.getName();
-          // PApplet.println("gonna set field " + name);
-
-          if (field.getType() == String.class) {
-            field.set(item, row.getString(name));
 
-          } else if (field.getType() == Integer.TYPE) {
-            field.setInt(item, row.getInt(name));
+  /**
+   * Create a Table from a list of objects, with a column for each of
+   * their int, long, float, double, String, boolean, and char fields,
+   * named after the field. The opposite of parseInto().
+   */
+  static public Table fromObjects(List<?> list) {
+    if (list.isEmpty()) {
+      return new Table();
+    }
+    return TableMapper.forClass(list.get(0).getClass()).toTable(list);
+  }
 
-          } else if (field.getType() == Long.TYPE) {
-            field.setLong(item, row.getLong(name));
 
-          } else if (field.getType() == Float.TYPE) {
-            field.setFloat(item, row.getFloat(name));
+  public boolean save(File file, String options) throws IOException {
+    options = Table.extensionOptions(false, file.getName(), options);
+    if (isBinaryOption(options) || hasOption(options, "arrow")) {
+      // the columns may be mapped from this same file, so don't truncate it
+      return saveReplacing(file, options);
+    }
+    return save(PApplet.createOutput(file), options);
+  }
 
-          } else if (field.getType() == Double.TYPE) {
-            field.setDouble(item, row.getDouble(name));
 
-          } else if (field.getType() == Boolean.TYPE) {
-            String content = row.getString(name);
-            if (content != null) {
-              // Only bother setting if it's true,
-              // otherwise false by default anyway.
-              if (content.toLowerCase().equals("true") ||
-                  content.equals("1")) {
-                field.setBoolean(item, true);
-              }
-            }
-//            if (content == null) {
-//              field.setBoolean(item, false);  // necessary?
-//            } else if (content.toLowerCase().equals("true")) {
-//              field.setBoolean(item, true);
-//            } else if (content.equals("1")) {
-//              field.setBoolean(item, true);
-//            } else {
-//              field.setBoolean(item, false);  // necessary?
-//            }
-          } else if (field.getType() == Character.TYPE) {
-            String content = row.getString(name);
-            if (content != null && content.length() > 0) {
-              // Otherwise set to \0 anyway
-              field.setChar(item, content.charAt(0));
-            }
-          }
-        }
-//        list.add(item);
-        Array.set(outgoing, index++, item);
+  /**
+   * Save to a temporary file next to this one, then move it into place,
+   * so that a table mapped from the file being replaced can still read
+   * its data while it's being written (and so that the old file is left
+   * alone if something goes wrong).
+   */
+  protected boolean saveReplacing(File file, String options) throws IOException {
+    PApplet.createPath(file);
+    File folder = file.getAbsoluteFile().getParentFile();
+    // end with the name, so that createOutput() still sees .gz
+    File temp = File.createTempFile(".table", "-" + file.getName(), folder);
+    try {
+      if (!save(PApplet.createOutput(temp), options)) {
+        return false;
       }
-      if (!targetField.canAccess(enclosingObject)) {
-//        PApplet.println("setting target field to public");
-        targetField.setAccessible(true);
+      try {
+        Files.move(temp.toPath(), file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
       }
-      // Set the array in the sketch
-//      targetField.set(sketch, outgoing);
-      targetField.set(enclosingObject, outgoing);
-
-    } catch (InstantiationException e) {
-      e.printStackTrace();
-    } catch (IllegalAccessException e) {
-      e.printStackTrace();
-    } catch (IllegalArgumentException e) {
-      e.printStackTrace();
-    } catch (InvocationTargetException e) {
-      e.printStackTrace();
+      return true;
+    } finally {
+      // only still there if the save didn't make it
+      temp.delete();
     }
   }
 
 
-  public boolean save(File file, String options) throws IOException {
-    return save(PApplet.createOutput(file),
-                Table.extensionOptions(false, file.getName(), options));
-  }
-
-
   public boolean save(OutputStream output, String options) {
     PrintWriter writer = PApplet.createWriter(output);
     String extension = null;
@@ -1244,6 +1349,13 @@ public class Table {
         e.printStackTrace();
         return false;
       }
+    } else if (extension.equals("arrow")) {
+      try {
+        new TableArrow(this).write(output);
+      } catch (IOException e) {
+        e.printStackTrace();
+        return false;
+      }
     }
     writer.flush();
     writer.close();
@@ -1264,23 +1376,28 @@ public class Table {
       writer.println();
     }
     for (int row = 0; row < rowCount; row++) {
-      for (int col = 0; col < getColumnCount(); col++) {
-        if (col != 0) {
-          writer.print('\t');
-        }
-        String entry = getString(row, col);
-        // just write null entries as blanks, rather than spewing 'null'
-        // all over the spreadsheet file.
-        if (entry != null) {
-          writer.print(entry);
-        }
-      }
-      writer.println();
+      writeRowTSV(writer, row);
     }
     writer.flush();
   }
 
 
+  protected void writeRowTSV(PrintWriter writer, int row) {
+    for (int col = 0; col < getColumnCount(); col++) {
+      if (col != 0) {
+        writer.print('\t');
+      }
+      String entry = getString(row, col);
+      // just write null entries as blanks, rather than spewing 'null'
+      // all over the spreadsheet file.
+      if (entry != null) {
+        writer.print(entry);
+      }
+    }
+    writer.println();
+  }
+
+
   protected void writeCSV(PrintWriter writer) {
     if (columnTitles != null) {
       for (int col = 0; col < getColumnCount(); col++) {
@@ -1300,24 +1417,29 @@ public class Table {
       writer.println();
     }
     for (int row = 0; row < rowCount; row++) {
-      for (int col = 0; col < getColumnCount(); col++) {
-        if (col != 0) {
-          writer.print(',');
-        }
-        String entry = getString(row, col);
-        // just write null entries as blanks, rather than spewing 'null'
-        // all over the spreadsheet file.
-        if (entry != null) {
-          writeEntryCSV(writer, entry);
-        }
-      }
-      // Prints the newline for the row, even if it's missing
-      writer.println();
+      writeRowCSV(writer, row);
     }
     writer.flush();
   }
 
 
+  protected void writeRowCSV(PrintWriter writer, int row) {
+    for (int col = 0; col < getColumnCount(); col++) {
+      if (col != 0) {
+        writer.print(',');
+      }
+      String entry = getString(row, col);
+      // just write null entries as blanks, rather than spewing 'null'
+      // all over the spreadsheet file.
+      if (entry != null) {
+        writeEntryCSV(writer, entry);
+      }
+    }
+    // Prints the newline for the row, even if it's missing
+    writer.println();
+  }
+
+
   protected void writeEntryCSV(PrintWriter writer, String entry) {
     if (entry != null) {
       if (entry.indexOf('\"') != -1) {  // convert quotes to double quotes
@@ -1433,286 +1555,421 @@ public class Table {
 
 
   protected void saveODS(OutputStream os) throws IOException {
-    ZipOutputStream zos = new ZipOutputStream(os);
-
-    final String xmlHeader = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
-
-    ZipEntry entry = new ZipEntry("META-INF/manifest.xml");
-    String[] lines = new String[] {
-      xmlHeader,
-      "<manifest:manifest xmlns:manifest=\"urn:oasis:names:tc:opendocument:xmlns:manifest:1.0\">",
-      "  <manifest:file-entry manifest:media-type=\"application/vnd.oasis.opendocument.spreadsheet\" manifest:version=\"1.2\" manifest:full-path=\"/\"/>",
-      "  <manifest:file-entry manifest:media-type=\"text/xml\" manifest:full-path=\"content.xml\"/>",
-      "  <manifest:file-entry manifest:media-type=\"text/xml\" manifest:full-path=\"styles.xml\"/>",
-      "  <manifest:file-entry manifest:media-type=\"text/xml\" manifest:full-path=\"meta.xml\"/>",
-      "  <manifest:file-entry manifest:media-type=\"text/xml\" manifest:full-path=\"settings.xml\"/>",
-      "</manifest:manifest>"
-    };
-    zos.putNextEntry(entry);
-    zos.write(PApplet.join(lines, "\n").getBytes());
-    zos.closeEntry();
-
-    /*
-    entry = new ZipEntry("meta.xml");
-    lines = new String[] {
-      xmlHeader,
-      "<office:document-meta office:version=\"1.0\"" +
-      " xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\" />"
-    };
-    zos.putNextEntry(entry);
-    zos.write(PApplet.join(lines, "\n").getBytes());
-    zos.closeEntry();
-
-    entry = new ZipEntry("meta.xml");
-    lines = new String[] {
-      xmlHeader,
-      "<office:document-settings office:version=\"1.0\"" +
-      " xmlns:config=\"urn:oasis:names:tc:opendocument:xmlns:config:1.0\"" +
-      " xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\"" +
-      " xmlns:ooo=\"http://openoffice.org/2004/office\"" +
-      " xmlns:xlink=\"http://www.w3.org/1999/xlink\" />"
-    };
-    zos.putNextEntry(entry);
-    zos.write(PApplet.join(lines, "\n").getBytes());
-    zos.closeEntry();
-
-    entry = new ZipEntry("settings.xml");
-    lines = new String[] {
-      xmlHeader,
-      "<office:document-settings office:version=\"1.0\"" +
-      " xmlns:config=\"urn:oasis:names:tc:opendocument:xmlns:config:1.0\"" +
-      " xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\"" +
-      " xmlns:ooo=\"http://openoffice.org/2004/office\"" +
-      " xmlns:xlink=\"http://www.w3.org/1999/xlink\" />"
-    };
-    zos.putNextEntry(entry);
-    zos.write(PApplet.join(lines, "\n").getBytes());
-    zos.closeEntry();
-
-    entry = new ZipEntry("styles.xml");
-    lines = new String[] {
-      xmlHeader,
-      "<office:document-styles office:version=\"1.0\"" +
-      " xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\" />"
-    };
-    zos.putNextEntry(entry);
-    zos.write(PApplet.join(lines, "\n").getBytes());
-    zos.closeEntry();
-    */
-
-    final String[] dummyFiles = new String[] {
-      "meta.xml", "settings.xml", "styles.xml"
-    };
-    lines = new String[] {
-      xmlHeader,
-      "<office:document-meta office:version=\"1.0\"" +
-      " xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\" />"
-    };
-    byte[] dummyBytes = PApplet.join(lines, "\n").getBytes();
-    for (String filename : dummyFiles) {
-      entry = new ZipEntry(filename);
-      zos.putNextEntry(entry);
-      zos.write(dummyBytes);
-      zos.closeEntry();
-    }
-
-    //
-
-    entry = new ZipEntry("mimetype");
-    zos.putNextEntry(entry);
-    zos.write("application/vnd.oasis.opendocument.spreadsheet".getBytes());
-    zos.closeEntry();
-
-    //
-
-    entry = new ZipEntry("content.xml");
-    zos.putNextEntry(entry);
-    //lines = new String[] {
-    writeUTF(zos, xmlHeader,
-            "<office:document-content" +
-              " xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\"" +
-              " xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\"" +
-              " xmlns:table=\"urn:oasis:names:tc:opendocument:xmlns:table:1.0\"" +
-              " office:version=\"1.2\">",
-            "  <office:body>",
-            "    <office:spreadsheet>",
-            "      <table:table table:name=\"Sheet1\" table:print=\"false\">");
-    //zos.write(PApplet.join(lines, "\n").getBytes());
-
-    byte[] rowStart = "        <table:table-row>\n".getBytes();
-    byte[] rowStop = "        </table:table-row>\n".getBytes();
-
-    if (hasColumnTitles()) {
-      zos.write(rowStart);
-      for (int i = 0; i < getColumnCount(); i++) {
-        saveStringODS(zos, columnTitles[i]);
-      }
-      zos.write(rowStop);
-    }
-
-    for (TableRow row : rows()) {
-      zos.write(rowStart);
-      for (int i = 0; i < getColumnCount(); i++) {
-        if (columnTypes[i] == STRING || columnTypes[i] == CATEGORY) {
-          saveStringODS(zos, row.getString(i));
-        } else {
-          saveNumberODS(zos, row.getString(i));
-        }
-      }
-      zos.write(rowStop);
-    }
-
-    //lines = new String[] {
-    writeUTF(zos, "      </table:table>",
-            "    </office:spreadsheet>",
-            "  </office:body>",
-            "</office:document-content>");
-    //zos.write(PApplet.join(lines, "\n").getBytes());
-    zos.closeEntry();
-
-    zos.flush();
-    zos.close();
-  }
-
-
-  void saveStringODS(OutputStream output, String text) throws IOException {
-    // At this point, I should have just used the XML library. But this does
-    // save us from having to create the entire document in memory again before
-    // writing to the file. So while it's dorky, the outcome is still useful.
-    StringBuilder sanitized = new StringBuilder();
-    if (text != null) {
-      char[] array = text.toCharArray();
-      for (char c : array) {
-        if (c == '&') {
-          sanitized.append("&amp;");
-        } else if (c == '\'') {
-          sanitized.append("&apos;");
-        } else if (c == '"') {
-          sanitized.append("&quot;");
-        } else if (c == '<') {
-          sanitized.append("&lt;");
-        } else if (c == '>') {
-          sanitized.append("&rt;");
-        } else if (c < 32 || c > 127) {
-          sanitized.append("&#" + ((int) c) + ";");
-        } else {
-          sanitized.append(c);
-        }
-      }
-    }
-
-    writeUTF(output,
-             "          <table:table-cell office:value-type=\"string\">",
-             "            <text:p>" + sanitized + "</text:p>",
-             "          </table:table-cell>");
+    new TableODS(this, false).write(os);
   }
 
 
-  void saveNumberODS(OutputStream output, String text) throws IOException {
-    writeUTF(output,
-             "          <table:table-cell office:value-type=\"float\" office:value=\"" + text + "\">",
-             "            <text:p>" + text + "</text:p>",
-             "          </table:table-cell>");
-  }
+  /** Magic number at the start of all .bin files written by Table. */
+  static final int BINARY_MAGIC = 0x9007AB1E;
 
-
-  static Charset utf8;
-
-  static void writeUTF(OutputStream output, String... lines) throws IOException {
-    if (utf8 == null) {
-      utf8 = Charset.forName("UTF-8");
-    }
-    for (String str : lines) {
-      output.write(str.getBytes(utf8));
-      output.write('\n');
-    }
-  }
+  /**
+   * Version tag for the column-major format, stored right after the magic
+   * number. Older (row-major) files have the row count in this position,
+   * which can never be negative.
+   */
+  static final int BINARY_COLUMNS = -2;
 
 
+  /**
+   * Write the table in a column-major format that can be memory-mapped
+   * by loadBinary(). The header (row and column counts, titles, types, and
+   * missing values) is followed by each column, starting on an 8-byte
+   * boundary, then a directory with the file offset of each column, and
+   * finally the offset of the directory itself.
+   */
   protected void saveBinary(OutputStream os) throws IOException {
-    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(os));
-    output.writeInt(0x9007AB1E);  // version
+    CountingOutputStream counter =
+      new CountingOutputStream(new BufferedOutputStream(os, 1 << 16));
+    DataOutputStream output = new DataOutputStream(counter);
+    output.writeInt(BINARY_MAGIC);
+    output.writeInt(BINARY_COLUMNS);
     output.writeInt(getRowCount());
     output.writeInt(getColumnCount());
     if (columnTitles != null) {
       output.writeBoolean(true);
       for (String title : columnTitles) {
-        output.writeUTF(title);
+        writeBinaryString(output, title);
       }
     } else {
       output.writeBoolean(false);
     }
     for (int i = 0; i < getColumnCount(); i++) {
-      //System.out.println(i + " is " + columnTypes[i]);
       output.writeInt(columnTypes[i]);
     }
-
-    for (int i = 0; i < getColumnCount(); i++) {
-      if (columnTypes[i] == CATEGORY) {
-        columnCategories[i].write(output);
-      }
-    }
-    if (missingString == null) {
-      output.writeBoolean(false);
-    } else {
-      output.writeBoolean(true);
-      output.writeUTF(missingString);
-    }
+    writeBinaryString(output, missingString);
     output.writeInt(missingInt);
     output.writeLong(missingLong);
     output.writeFloat(missingFloat);
     output.writeDouble(missingDouble);
     output.writeInt(missingCategory);
 
-    for (TableRow row : rows()) {
-      for (int col = 0; col < getColumnCount(); col++) {
-        switch (columnTypes[col]) {
-        case STRING:
-          String str = row.getString(col);
-          if (str == null) {
-            output.writeBoolean(false);
-          } else {
-            output.writeBoolean(true);
-            output.writeUTF(str);
-          }
-          break;
-        case INT:
-          output.writeInt(row.getInt(col));
-          break;
-        case LONG:
-          output.writeLong(row.getLong(col));
-          break;
-        case FLOAT:
-          output.writeFloat(row.getFloat(col));
-          break;
-        case DOUBLE:
-          output.writeDouble(row.getDouble(col));
-          break;
-        case CATEGORY:
-          String peace = row.getString(col);
-          if (peace.equals(missingString)) {
-            output.writeInt(missingCategory);
-          } else {
-            output.writeInt(columnCategories[col].index(peace));
-          }
-          break;
-        }
-      }
+    long[] directory = new long[getColumnCount() + 1];
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    for (int col = 0; col < getColumnCount(); col++) {
+      writeBinaryPadding(output, counter.count);
+      directory[col] = counter.count;
+      writeBinaryColumn(output, col, buffer);
     }
+    writeBinaryPadding(output, counter.count);
+    directory[getColumnCount()] = counter.count;
+
+    for (long offset : directory) {
+      output.writeLong(offset);
+    }
+    output.writeLong(directory[getColumnCount()]);
 
     output.flush();
     output.close();
   }
 
 
+  protected void writeBinaryColumn(DataOutputStream output, int col,
+                                   ByteBuffer buffer) throws IOException {
+    Object data = columns[col];
+    if (data instanceof MappedColumn) {
+      data = ((MappedColumn) data).toArray();
+    }
+    switch (columnTypes[col]) {
+      case INT: {
+        int[] intData = (int[]) data;
+        for (int row = 0; row < rowCount; ) {
+          buffer.clear();
+          int count = Math.min(rowCount - row, buffer.capacity() / 4);
+          buffer.asIntBuffer().put(intData, row, count);
+          output.write(buffer.array(), 0, count * 4);
+          row += count;
+        }
+        break;
+      }
+      case LONG: {
+        long[] longData = (long[]) data;
+        for (int row = 0; row < rowCount; ) {
+          buffer.clear();
+          int count = Math.min(rowCount - row, buffer.capacity() / 8);
+          buffer.asLongBuffer().put(longData, row, count);
+          output.write(buffer.array(), 0, count * 8);
+          row += count;
+        }
+        break;
+      }
+      case FLOAT: {
+        float[] floatData = (float[]) data;
+        for (int row = 0; row < rowCount; ) {
+          buffer.clear();
+          int count = Math.min(rowCount - row, buffer.capacity() / 4);
+          buffer.asFloatBuffer().put(floatData, row, count);
+          output.write(buffer.array(), 0, count * 4);
+          row += count;
+        }
+        break;
+      }
+      case DOUBLE: {
+        double[] doubleData = (double[]) data;
+        for (int row = 0; row < rowCount; ) {
+          buffer.clear();
+          int count = Math.min(rowCount - row, buffer.capacity() / 8);
+          buffer.asDoubleBuffer().put(doubleData, row, count);
+          output.write(buffer.array(), 0, count * 8);
+          row += count;
+        }
+        break;
+      }
+      case STRING:
+        writeBinaryStrings(output, (String[]) data, rowCount);
+        break;
+      case CATEGORY: {
+        int[] indexData = (int[]) data;
+        for (int row = 0; row < rowCount; ) {
+          buffer.clear();
+          int count = Math.min(rowCount - row, buffer.capacity() / 4);
+          buffer.asIntBuffer().put(indexData, row, count);
+          output.write(buffer.array(), 0, count * 4);
+          row += count;
+        }
+        writeBinaryPadding(output, rowCount * 4L);
+        HashMapBlows categories = (columns[col] instanceof MappedColumn) ?
+          ((MappedColumn) columns[col]).toCategories() : columnCategories[col];
+        String[] names = categories.keys();
+        output.writeInt(names.length);
+        output.writeInt(0);  // keep the offsets aligned
+        writeBinaryStrings(output, names, names.length);
+        break;
+      }
+    }
+  }
+
+
+  /** Write a list of Strings in the layout read by MappedColumn.StringSection */
+  static protected void writeBinaryStrings(DataOutputStream output,
+                                           String[] list, int count) throws IOException {
+    long offset = 0;
+    output.writeLong(0);
+    for (int i = 0; i < count; i++) {
+      String str = list[i];
+      if (str == null) {
+        output.writeLong(~offset);
+      } else {
+        offset += utf8Length(str);
+        output.writeLong(offset);
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      if (list[i] != null) {
+        output.write(list[i].getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+
+  /**
+   * Number of bytes used by String.getBytes() for UTF-8, without
+   * encoding the String. Unpaired surrogates are replaced with '?'.
+   */
+  static protected long utf8Length(String str) {
+    long length = 0;
+    int count = str.length();
+    for (int i = 0; i < count; i++) {
+      char c = str.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < count &&
+                 Character.isLowSurrogate(str.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        length++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+
+  static protected void writeBinaryString(DataOutputStream output,
+                                          String str) throws IOException {
+    if (str == null) {
+      output.writeInt(-1);
+    } else {
+      byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+
+  static protected String readBinaryString(ByteBuffer input) {
+    int length = input.getInt();
+    if (length == -1) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    input.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+
+  /** Pad the output with zeroes so that the next entry is 8-byte aligned. */
+  static protected void writeBinaryPadding(DataOutputStream output,
+                                           long position) throws IOException {
+    for (long i = position; i < align(position); i++) {
+      output.write(0);
+    }
+  }
+
+
+  static long align(long offset) {
+    return (offset + 7) & ~7L;
+  }
+
+
+  static class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream output) {
+      super(output);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+
+
+  /**
+   * Something that can hand out sections of a file written by saveBinary(),
+   * either by memory-mapping the file or by slicing a buffer already in
+   * memory.
+   */
+  interface BinarySource {
+    long size();
+    ByteBuffer map(long offset, long length) throws IOException;
+  }
+
+
+  /**
+   * Load a table using the column-major .bin format, by memory-mapping the
+   * file. Returns false if the file is not in that format, in which case it
+   * should be read with parse() instead.
+   */
+  protected boolean mapBinary(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < 16) {
+        return false;
+      }
+      ByteBuffer start = ByteBuffer.allocate(8);
+      while (start.hasRemaining()) {
+        if (channel.read(start, start.position()) == -1) {
+          return false;
+        }
+      }
+      if (start.getInt(0) != BINARY_MAGIC || start.getInt(4) != BINARY_COLUMNS) {
+        return false;
+      }
+      loadBinary(mappedSource(file, channel));
+      return true;
+    }
+  }
+
+
+  /**
+   * Sections of a file, memory-mapped from an open channel. The mappings
+   * stay valid after the channel has been closed.
+   */
+  static BinarySource mappedSource(File file, FileChannel channel) throws IOException {
+    final long size = channel.size();
+    return new BinarySource() {
+      public long size() {
+        return size;
+      }
+
+      public ByteBuffer map(long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+          throw new IOException("A section of " + file.getName() +
+                                " is too large to be memory-mapped");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+      }
+    };
+  }
+
+
+  /** Sections of a buffer that's already in memory. */
+  static BinarySource bufferSource(final ByteBuffer buffer) {
+    return new BinarySource() {
+      public long size() {
+        return buffer.capacity();
+      }
+
+      public ByteBuffer map(long offset, long length) {
+        return buffer.slice((int) offset, (int) length);
+      }
+    };
+  }
+
+
+  /**
+   * Read a table written in the column-major format. Only the header is
+   * read up front; the columns are used in place by MappedColumn until
+   * they need to be modified.
+   */
+  protected void loadBinary(BinarySource source) throws IOException {
+    long size = source.size();
+    long directoryOffset = source.map(size - 8, 8).getLong(0);
+    ByteBuffer directoryBuffer =
+      source.map(directoryOffset, size - 8 - directoryOffset);
+    long[] directory = new long[directoryBuffer.capacity() / 8];
+    directoryBuffer.asLongBuffer().get(directory);
+
+    ByteBuffer header = source.map(0, directory[0]);
+    header.position(8);  // skip magic and version
+    int newRowCount = header.getInt();
+    int columnCount = header.getInt();
+    if (columnCount != directory.length - 1) {
+      throw new IOException("This binary table file is damaged or incomplete");
+    }
+    String[] titles = null;
+    if (header.get() != 0) {
+      titles = new String[columnCount];
+      for (int col = 0; col < columnCount; col++) {
+        titles[col] = readBinaryString(header);
+      }
+    }
+    int[] types = new int[columnCount];
+    for (int col = 0; col < columnCount; col++) {
+      types[col] = header.getInt();
+    }
+    missingString = readBinaryString(header);
+    missingInt = header.getInt();
+    missingLong = header.getLong();
+    missingFloat = header.getFloat();
+    missingDouble = header.getDouble();
+    missingCategory = header.getInt();
+
+    rowCount = newRowCount;
+    columnTypes = types;
+    columnCategories = new HashMapBlows[columnCount];
+    columns = new Object[columnCount];
+    setColumnTitles(titles);
+    for (int col = 0; col < columnCount; col++) {
+      ByteBuffer section =
+        source.map(directory[col], directory[col+1] - directory[col]);
+      columns[col] = new MappedColumn(this, types[col], rowCount, section);
+    }
+  }
+
+
+  /**
+   * Copy a column that is still backed by a (memory-mapped) binary file
+   * into a regular array, so that it can be modified.
+   */
+  protected void unmapColumn(int column) {
+    if (columns[column] instanceof MappedColumn) {
+      MappedColumn mapped = (MappedColumn) columns[column];
+      if (mapped.type == CATEGORY) {
+        columnCategories[column] = mapped.toCategories();
+      }
+      columns[column] = mapped.toArray();
+    }
+  }
+
+
+  protected void unmapColumns() {
+    for (int col = 0; col < columns.length; col++) {
+      unmapColumn(col);
+    }
+  }
+
+
   protected void loadBinary(InputStream is) throws IOException {
     DataInputStream input = new DataInputStream(new BufferedInputStream(is));
 
     int magic = input.readInt();
-    if (magic != 0x9007AB1E) {
+    if (magic != BINARY_MAGIC) {
       throw new IOException("Not a compatible binary table (magic was " + PApplet.hex(magic) + ")");
     }
     int rowCount = input.readInt();
+    if (rowCount == BINARY_COLUMNS) {
+      // Streams can't be mapped, so read the rest of the file into memory
+      // and use the same column-major reader on that.
+      byte[] rest = input.readAllBytes();
+      final ByteBuffer buffer = ByteBuffer.allocate(8 + rest.length);
+      buffer.putInt(magic).putInt(rowCount).put(rest);
+      input.close();
+      loadBinary(bufferSource(buffer));
+      return;
+    }
     setRowCount(rowCount);
     int columnCount = input.readInt();
     setColumnCount(columnCount);
@@ -1886,6 +2143,14 @@ public class Table {
       case STRING: columns[index] = new String[rowCount]; break;
       case CATEGORY: columns[index] = new int[rowCount]; break;
     }
+
+    if (indexes != null) {
+      for (TableIndex ti : indexes) {
+        if (ti.column >= index) {
+          ti.column++;
+        }
+      }
+    }
   }
 
   /**
@@ -1909,21 +2174,33 @@ public class Table {
    */
   public void removeColumn(int column) {
     int newCount = columns.length - 1;
+    removeIndex(column);
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        if (index.column > column) {
+          index.column--;
+        }
+      }
+    }
 
     Object[] columnsTemp = new Object[newCount];
     HashMapBlows[] catTemp = new HashMapBlows[newCount];
+    int[] typesTemp = new int[newCount];
 
     for (int i = 0; i < column; i++) {
       columnsTemp[i] = columns[i];
       catTemp[i] = columnCategories[i];
+      typesTemp[i] = columnTypes[i];
     }
     for (int i = column; i < newCount; i++) {
       columnsTemp[i] = columns[i+1];
       catTemp[i] = columnCategories[i+1];
+      typesTemp[i] = columnTypes[i+1];
     }
 
     columns = columnsTemp;
     columnCategories = catTemp;
+    columnTypes = typesTemp;
 
     if (columnTitles != null) {
       String[] titlesTemp = new String[newCount];
@@ -1959,6 +2236,9 @@ public class Table {
    */
   public void setColumnCount(int newCount) {
     int oldCount = columns.length;
+    for (int col = newCount; col < oldCount; col++) {
+      removeIndex(col);
+    }
     if (oldCount != newCount) {
       columns = (Object[]) PApplet.expand(columns, newCount);
       // create new columns, default to String as the data type
@@ -2097,6 +2377,7 @@ public class Table {
     }
 //    System.out.println("new type is " + newType);
     columnTypes[column] = newType;
+    invalidateIndex(column);
   }
 
 
@@ -2321,7 +2602,16 @@ public class Table {
 
 
   public void setRowCount(int newCount) {
+    int oldCount = rowCount;
+    if (log != null && newCount > rowCount) {
+      // the rows so far are complete, since a new one is being started
+      log.rowsAdded(rowCount);
+    }
     if (newCount != rowCount) {
+      unmapColumns();
+      if (newCount < rowCount) {
+        invalidateIndexes();
+      }
       if (newCount > 1000000) {
         System.out.print("Note: setting maximum row count to " + PApplet.nfc(newCount));
       }
@@ -2349,6 +2639,30 @@ public class Table {
       }
     }
     rowCount = newCount;
+    for (int row = oldCount; row < newCount; row++) {
+      indexAddRow(row);
+    }
+  }
+
+
+  /**
+   * Same as setRowCount(), but without pausing for the garbage collector
+   * when working with large tables.
+   */
+  protected void resizeRows(int newCount) {
+    unmapColumns();
+    invalidateIndexes();
+    for (int col = 0; col < columns.length; col++) {
+      switch (columnTypes[col]) {
+        case INT: columns[col] = PApplet.expand((int[]) columns[col], newCount); break;
+        case LONG: columns[col] = PApplet.expand((long[]) columns[col], newCount); break;
+        case FLOAT: columns[col] = PApplet.expand((float[]) columns[col], newCount); break;
+        case DOUBLE: columns[col] = PApplet.expand((double[]) columns[col], newCount); break;
+        case STRING: columns[col] = PApplet.expand((String[]) columns[col], newCount); break;
+        case CATEGORY: columns[col] = PApplet.expand((int[]) columns[col], newCount); break;
+      }
+    }
+    rowCount = newCount;
   }
 
 
@@ -2403,10 +2717,10 @@ public class Table {
         break;
       case CATEGORY:
         int index = source.getInt(col);
-        setInt(row, col, index);
         if (!columnCategories[col].hasCategory(index)) {
           columnCategories[col].setCategory(index, source.getString(col));
         }
+        setInt(row, col, index);
         break;
 
       default:
@@ -2436,6 +2750,7 @@ public class Table {
 
 
   public void insertRow(int insert, Object[] columnData) {
+    unmapColumns();
     for (int col = 0; col < columns.length; col++) {
       switch (columnTypes[col]) {
         case CATEGORY:
@@ -2479,6 +2794,13 @@ public class Table {
     // Need to increment before setRow(), because it calls ensureBounds()
     // https://github.com/processing/processing/issues/5406
     ++rowCount;
+    logChange(insert);
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        index.shiftRows(insert, 1);
+      }
+      indexAddRow(insert);
+    }
     setRow(insert, columnData);
   }
 
@@ -2493,6 +2815,12 @@ public class Table {
    * @see Table#clearRows()
    */
   public void removeRow(int row) {
+    unmapColumns();
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        index.remove(row);
+      }
+    }
     for (int col = 0; col < columns.length; col++) {
       switch (columnTypes[col]) {
         case CATEGORY:
@@ -2545,6 +2873,12 @@ public class Table {
       }
     }
     rowCount--;
+    logChange(row);
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        index.shiftRows(row + 1, -1);
+      }
+    }
   }
 
 
@@ -2609,6 +2943,8 @@ public class Table {
 
 
   protected void setRowCol(int row, int col, Object piece) {
+    unmapColumn(col);
+    indexRemove(row, col);
     switch (columnTypes[col]) {
       case STRING:
         String[] stringData = (String[]) columns[col];
@@ -2686,6 +3022,7 @@ public class Table {
       default:
         throw new IllegalArgumentException("That's not a valid column type.");
     }
+    indexAdd(row, col);
   }
 
 
@@ -2911,6 +3248,116 @@ public class Table {
   }
 
 
+  /**
+   * Iterator for Table.stream(). The current line is parsed into
+   * row 0 of a one-row Table, which is then returned as a RowPointer.
+   */
+  static class RowStream implements Iterable<TableRow>, Iterator<TableRow>, Closeable {
+    LineNumberReader reader;
+    boolean tsv;
+    Table table;
+    RowPointer rp;
+    String line;
+    /** Line of the file (starting at 1) where the current row begins */
+    int lineNumber;
+
+    RowStream(InputStream input, String options) throws IOException {
+      boolean header = false;
+      String extension = null;
+      String encoding = "UTF-8";
+      if (options != null) {
+        for (String opt : PApplet.trim(PApplet.split(options, ','))) {
+          if (opt.equals("tsv")) {
+            extension = "tsv";
+          } else if (opt.equals("csv")) {
+            extension = "csv";
+          } else if (opt.equals("header")) {
+            header = true;
+          } else if (opt.startsWith("encoding=")) {
+            encoding = opt.substring(9);
+          } else {
+            throw new IllegalArgumentException("'" + opt + "' is not a valid option for streaming a Table");
+          }
+        }
+      }
+      if (extension == null) {
+        throw new IllegalArgumentException("No extension specified for this Table");
+      }
+      tsv = extension.equals("tsv");
+
+      reader = new LineNumberReader(new InputStreamReader(input, encoding));
+      // strip out the Unicode BOM, if present
+      reader.mark(1);
+      if (reader.read() != '\uFEFF') {
+        reader.reset();
+      }
+
+      table = new Table();
+      table.setRowCount(1);
+      rp = new RowPointer(table, 0);
+      readLine();
+      if (header && line != null) {
+        table.setColumnTitles(split());
+        readLine();
+      }
+      if (line == null) {
+        close();
+      }
+    }
+
+    /** Read the first line of the next row, and note its line number. */
+    protected void readLine() throws IOException {
+      line = reader.readLine();
+      // the number of lines read so far, which includes this one
+      lineNumber = reader.getLineNumber();
+    }
+
+    public Iterator<TableRow> iterator() {
+      return this;
+    }
+
+    public boolean hasNext() {
+      return line != null;
+    }
+
+    public TableRow next() {
+      if (line == null) {
+        throw new NoSuchElementException();
+      }
+      int start = lineNumber;
+      try {
+        String[] pieces = split();
+        table.setRow(0, pieces);
+        // clear anything left over from a longer row
+        for (int col = pieces.length; col < table.getColumnCount(); col++) {
+          table.setString(0, col, null);
+        }
+        readLine();
+        if (line == null) {
+          close();
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Error reading table on line " + start, e);
+      } catch (RuntimeException e) {
+        throw new RuntimeException("Error reading table on line " + start, e);
+      }
+      return rp;
+    }
+
+    protected String[] split() throws IOException {
+      if (tsv) {
+        return PApplet.split(line, '\t');
+      }
+      return table.splitLineCSV(line, reader);
+    }
+
+    public void close() throws IOException {
+      line = null;
+      reader.close();
+    }
+  }
+
+
   static class RowIndexIterator implements Iterator<TableRow> {
     Table table;
     RowPointer rp;
@@ -3120,6 +3567,9 @@ public class Table {
     checkBounds(row, column);
     if (columnTypes[column] == INT ||
         columnTypes[column] == CATEGORY) {
+      if (columns[column] instanceof MappedColumn) {
+        return ((MappedColumn) columns[column]).getInt(row);
+      }
       int[] intData = (int[]) columns[column];
       return intData[row];
     }
@@ -3164,12 +3614,15 @@ public class Table {
 
     } else {
       ensureBounds(row, column);
+      unmapColumn(column);
       if (columnTypes[column] != INT &&
           columnTypes[column] != CATEGORY) {
         throw new IllegalArgumentException("Column " + column + " is not an int column.");
       }
+      indexRemove(row, column);
       int[] intData = (int[]) columns[column];
       intData[row] = value;
+      indexAdd(row, column);
     }
   }
 
@@ -3212,6 +3665,9 @@ public class Table {
   public long getLong(int row, int column) {
     checkBounds(row, column);
     if (columnTypes[column] == LONG) {
+      if (columns[column] instanceof MappedColumn) {
+        return ((MappedColumn) columns[column]).getLong(row);
+      }
       long[] longData = (long[]) columns[column];
       return longData[row];
     }
@@ -3243,11 +3699,14 @@ public class Table {
 
     } else {
       ensureBounds(row, column);
+      unmapColumn(column);
       if (columnTypes[column] != LONG) {
         throw new IllegalArgumentException("Column " + column + " is not a 'long' column.");
       }
+      indexRemove(row, column);
       long[] longData = (long[]) columns[column];
       longData[row] = value;
+      indexAdd(row, column);
     }
   }
 
@@ -3303,6 +3762,9 @@ public class Table {
   public float getFloat(int row, int column) {
     checkBounds(row, column);
     if (columnTypes[column] == FLOAT) {
+      if (columns[column] instanceof MappedColumn) {
+        return ((MappedColumn) columns[column]).getFloat(row);
+      }
       float[] floatData = (float[]) columns[column];
       return floatData[row];
     }
@@ -3349,11 +3811,14 @@ public class Table {
 
     } else {
       ensureBounds(row, column);
+      unmapColumn(column);
       if (columnTypes[column] != FLOAT) {
         throw new IllegalArgumentException("Column " + column + " is not a float column.");
       }
+      indexRemove(row, column);
       float[] longData = (float[]) columns[column];
       longData[row] = value;
+      indexAdd(row, column);
     }
   }
 
@@ -3395,6 +3860,9 @@ public class Table {
   public double getDouble(int row, int column) {
     checkBounds(row, column);
     if (columnTypes[column] == DOUBLE) {
+      if (columns[column] instanceof MappedColumn) {
+        return ((MappedColumn) columns[column]).getDouble(row);
+      }
       double[] doubleData = (double[]) columns[column];
       return doubleData[row];
     }
@@ -3426,11 +3894,14 @@ public class Table {
 
     } else {
       ensureBounds(row, column);
+      unmapColumn(column);
       if (columnTypes[column] != DOUBLE) {
         throw new IllegalArgumentException("Column " + column + " is not a 'double' column.");
       }
+      indexRemove(row, column);
       double[] doubleData = (double[]) columns[column];
       doubleData[row] = value;
+      indexAdd(row, column);
     }
   }
 
@@ -3541,6 +4012,9 @@ public class Table {
    */
   public String getString(int row, int column) {
     checkBounds(row, column);
+    if (columns[column] instanceof MappedColumn) {
+      return ((MappedColumn) columns[column]).getString(row);
+    }
     if (columnTypes[column] == STRING) {
       String[] stringData = (String[]) columns[column];
       return stringData[row];
@@ -3598,11 +4072,14 @@ public class Table {
    */
   public void setString(int row, int column, String value) {
     ensureBounds(row, column);
+    unmapColumn(column);
     if (columnTypes[column] != STRING) {
       throw new IllegalArgumentException("Column " + column + " is not a String column.");
     }
+    indexRemove(row, column);
     String[] stringData = (String[]) columns[column];
     stringData[row] = value;
+    indexAdd(row, column);
   }
 
   /**
@@ -3658,21 +4135,272 @@ public class Table {
 
 
   /**
-   * Return the row that contains the first String that matches.
-   * @param value the String to match
-   * @param column ID number of the column to search
+   * Create a hash index on a column, so that findRowIndex(), findRowIndices(),
+   * findRow(), and findRows() no longer need to look through every row.
+   * The index is kept up to date as the table changes, and uses some extra
+   * memory for each row, so it's most useful for large tables that are
+   * searched often, like lookup tables.
+   *
+   * @nowebref
+   * @param column ID number of the column to index
    */
-  public int findRowIndex(String value, int column) {
+  public void createIndex(int column) {
     checkColumn(column);
-    if (columnTypes[column] == STRING) {
-      String[] stringData = (String[]) columns[column];
-      if (value == null) {
-        for (int row = 0; row < rowCount; row++) {
-          if (stringData[row] == null) return row;
-        }
-      } else {
-        for (int row = 0; row < rowCount; row++) {
-          if (stringData[row] != null && stringData[row].equals(value)) {
+    if (getIndex(column, false) == null) {
+      addIndex(new TableIndex.Hash(this, column));
+    }
+  }
+
+
+  /**
+   * @param columnName title of the column to index
+   */
+  public void createIndex(String columnName) {
+    createIndex(checkColumnIndex(columnName));
+  }
+
+
+  /**
+   * Create a sorted index on a column, for quick range queries with
+   * findRowIndicesBetween() and findRowsBetween().
+   *
+   * @nowebref
+   * @param column ID number of the column to index
+   */
+  public void createSortedIndex(int column) {
+    checkColumn(column);
+    if (getIndex(column, true) == null) {
+      addIndex(new TableIndex.Sorted(this, column));
+    }
+  }
+
+
+  /**
+   * @param columnName title of the column to index
+   */
+  public void createSortedIndex(String columnName) {
+    createSortedIndex(checkColumnIndex(columnName));
+  }
+
+
+  /**
+   * Remove any indices (hashed or sorted) that were created for a column.
+   *
+   * @nowebref
+   */
+  public void removeIndex(int column) {
+    if (indexes != null) {
+      indexes.removeIf(index -> index.column == column);
+      if (indexes.isEmpty()) {
+        indexes = null;
+      }
+    }
+  }
+
+
+  public void removeIndex(String columnName) {
+    removeIndex(checkColumnIndex(columnName));
+  }
+
+
+  protected void addIndex(TableIndex index) {
+    if (indexes == null) {
+      indexes = new ArrayList<>();
+    }
+    indexes.add(index);
+  }
+
+
+  protected TableIndex getIndex(int column, boolean sorted) {
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        if (index.column == column && (index instanceof TableIndex.Sorted) == sorted) {
+          return index;
+        }
+      }
+    }
+    return null;
+  }
+
+
+  /** Call before the value at this row and column is changed. */
+  protected void indexRemove(int row, int column) {
+    logChange(row);
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        if (index.column == column) {
+          index.remove(row);
+        }
+      }
+    }
+  }
+
+
+  /** Call after the value at this row and column has been changed. */
+  protected void indexAdd(int row, int column) {
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        if (index.column == column) {
+          index.add(row);
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Call before changing rows from this one onward, so that a TableLog
+   * knows to write the file again if they've already been written.
+   */
+  protected void logChange(int row) {
+    if (log != null && row < log.logged) {
+      log.changed = true;
+    }
+  }
+
+
+  /** Add a new row to all indices, with whatever values it has. */
+  protected void indexAddRow(int row) {
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        index.add(row);
+      }
+    }
+  }
+
+
+  /** Rebuild the indices for this column the next time they're used. */
+  protected void invalidateIndex(int column) {
+    logChange(0);
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        if (index.column == column) {
+          index.invalidate();
+        }
+      }
+    }
+  }
+
+
+  protected void invalidateIndexes() {
+    logChange(0);
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        index.invalidate();
+      }
+    }
+  }
+
+
+  /**
+   * Return the rows with a value between low and high (inclusive) in a
+   * numeric column, lowest row first. Uses the index from
+   * createSortedIndex() when there is one. NaN values never match.
+   *
+   * @nowebref
+   * @param low lowest value to match
+   * @param high highest value to match
+   * @param column ID number of the column to search
+   */
+  public int[] findRowIndicesBetween(double low, double high, int column) {
+    checkColumn(column);
+    TableIndex.Sorted index = (TableIndex.Sorted) getIndex(column, true);
+    if (index != null && index.isNumeric()) {
+      return index.findBetween(low, high);
+    }
+    int[] outgoing = new int[rowCount];
+    int count = 0;
+    for (int row = 0; row < rowCount; row++) {
+      double value = getDouble(row, column);
+      if (value >= low && value <= high) {
+        outgoing[count++] = row;
+      }
+    }
+    return PApplet.subset(outgoing, 0, count);
+  }
+
+
+  public int[] findRowIndicesBetween(double low, double high, String columnName) {
+    return findRowIndicesBetween(low, high, getColumnIndex(columnName));
+  }
+
+
+  /**
+   * Return the rows with a String between low and high (inclusive), ignoring
+   * case, and treating empty (null) entries as "", the same as sort().
+   *
+   * @nowebref
+   */
+  public int[] findRowIndicesBetween(String low, String high, int column) {
+    checkColumn(column);
+    TableIndex.Sorted index = (TableIndex.Sorted) getIndex(column, true);
+    if (index != null && !index.isNumeric()) {
+      return index.findBetween(low, high);
+    }
+    int[] outgoing = new int[rowCount];
+    int count = 0;
+    for (int row = 0; row < rowCount; row++) {
+      String value = getString(row, column);
+      if (TableIndex.Sorted.compareStrings(value, low) >= 0 &&
+          TableIndex.Sorted.compareStrings(value, high) <= 0) {
+        outgoing[count++] = row;
+      }
+    }
+    return PApplet.subset(outgoing, 0, count);
+  }
+
+
+  public int[] findRowIndicesBetween(String low, String high, String columnName) {
+    return findRowIndicesBetween(low, high, getColumnIndex(columnName));
+  }
+
+
+  /**
+   * @nowebref
+   */
+  public Iterable<TableRow> findRowsBetween(double low, double high, int column) {
+    return rows(findRowIndicesBetween(low, high, column));
+  }
+
+
+  public Iterable<TableRow> findRowsBetween(double low, double high, String columnName) {
+    return rows(findRowIndicesBetween(low, high, columnName));
+  }
+
+
+  public Iterable<TableRow> findRowsBetween(String low, String high, int column) {
+    return rows(findRowIndicesBetween(low, high, column));
+  }
+
+
+  public Iterable<TableRow> findRowsBetween(String low, String high, String columnName) {
+    return rows(findRowIndicesBetween(low, high, columnName));
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Return the row that contains the first String that matches.
+   * @param value the String to match
+   * @param column ID number of the column to search
+   */
+  public int findRowIndex(String value, int column) {
+    checkColumn(column);
+    TableIndex.Hash index = (TableIndex.Hash) getIndex(column, false);
+    if (index != null) {
+      return index.find(value);
+    }
+    if (columns[column] instanceof String[]) {  // not memory-mapped
+      String[] stringData = (String[]) columns[column];
+      if (value == null) {
+        for (int row = 0; row < rowCount; row++) {
+          if (stringData[row] == null) return row;
+        }
+      } else {
+        for (int row = 0; row < rowCount; row++) {
+          if (stringData[row] != null && stringData[row].equals(value)) {
             return row;
           }
         }
@@ -3710,11 +4438,15 @@ public class Table {
    * @param column ID number of the column to search
    */
   public int[] findRowIndices(String value, int column) {
+    checkColumn(column);
+    TableIndex.Hash index = (TableIndex.Hash) getIndex(column, false);
+    if (index != null) {
+      return index.findAll(value);
+    }
+
     int[] outgoing = new int[rowCount];
     int count = 0;
-
-    checkColumn(column);
-    if (columnTypes[column] == STRING) {
+    if (columns[column] instanceof String[]) {  // not memory-mapped
       String[] stringData = (String[]) columns[column];
       if (value == null) {
         for (int row = 0; row < rowCount; row++) {
@@ -3849,7 +4581,7 @@ public class Table {
    */
   public int matchRowIndex(String regexp, int column) {
     checkColumn(column);
-    if (columnTypes[column] == STRING) {
+    if (columns[column] instanceof String[]) {  // not memory-mapped
       String[] stringData = (String[]) columns[column];
       for (int row = 0; row < rowCount; row++) {
         if (stringData[row] != null &&
@@ -3891,7 +4623,7 @@ public class Table {
     int count = 0;
 
     checkColumn(column);
-    if (columnTypes[column] == STRING) {
+    if (columns[column] instanceof String[]) {  // not memory-mapped
       String[] stringData = (String[]) columns[column];
       for (int row = 0; row < rowCount; row++) {
         if (stringData[row] != null &&
@@ -4028,6 +4760,8 @@ public class Table {
 
   public void replace(String orig, String replacement, int col) {
     if (columnTypes[col] == STRING) {
+      unmapColumn(col);
+      invalidateIndex(col);
       String[] stringData = (String[]) columns[col];
 
       if (orig != null) {
@@ -4065,6 +4799,8 @@ public class Table {
   public void replaceAll(String regex, String replacement, int column) {
     checkColumn(column);
     if (columnTypes[column] == STRING) {
+      unmapColumn(column);
+      invalidateIndex(column);
       String[] stringData = (String[]) columns[column];
       for (int row = 0; row < rowCount; row++) {
         if (stringData[row] != null) {
@@ -4232,6 +4968,8 @@ public class Table {
    */
   public void trim(int column) {
     if (columnTypes[column] == STRING) {
+      invalidateIndex(column);
+      unmapColumn(column);
       String[] stringData = (String[]) columns[column];
       for (int row = 0; row < rowCount; row++) {
         if (stringData[row] != null) {
@@ -4301,9 +5039,17 @@ public class Table {
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
+  /**
+   * Dictionary for a CATEGORY column, numbering each name in the order
+   * they're added. Names are kept in an array by number, and looked up
+   * by name with an open addressing table of (number + 1), where zero is
+   * an empty slot, so that no Integer objects are created for each entry.
+   */
   static class HashMapBlows {
-    HashMap<String,Integer> dataToIndex = new HashMap<>();
-    ArrayList<String> indexToData = new ArrayList<>();
+    String[] names = new String[8];  // [index]
+    HashSlots slots = new HashSlots();
+    /** one more than the highest index in use */
+    int count;
 
     HashMapBlows() { }
 
@@ -4313,47 +5059,82 @@ public class Table {
 
     /** gets the index, and creates one if it doesn't already exist. */
     int index(String key) {
-      Integer value = dataToIndex.get(key);
-      if (value != null) {
+      int value = find(key);
+      if (value != -1) {
         return value;
       }
 
-      int v = dataToIndex.size();
-      dataToIndex.put(key, v);
-      indexToData.add(key);
+      int v = count;
+      setCategory(v, key);
       return v;
     }
 
+    /** gets the index, or -1 if this name isn't in the dictionary. */
+    int find(String key) {
+      int slot = slotOf(key, HashSlots.hash(key));
+      return (slot == -1) ? -1 : slots.entry(slot);
+    }
+
+    private int slotOf(String key, int hash) {
+      for (int i = slots.candidates(hash, -1); i != -1; i = slots.candidates(hash, i)) {
+        if (Objects.equals(names[slots.entry(i)], key)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
     String key(int index) {
-      return indexToData.get(index);
+      if (index >= count) {
+        throw new IndexOutOfBoundsException("No category " + index);
+      }
+      return names[index];
     }
 
     boolean hasCategory(int index) {
-      return index < size() && indexToData.get(index) != null;
+      return index < count && names[index] != null;
     }
 
     void setCategory(int index, String name) {
-      while (indexToData.size() <= index) {
-        indexToData.add(null);
+      if (index >= names.length) {
+        int length = Math.max(names.length << 1, index + 1);
+        names = Arrays.copyOf(names, length);
+      }
+      if (index < count) {
+        // the old name for this index no longer finds it
+        slots.remove(HashSlots.hash(names[index]), index);
+      }
+      count = Math.max(count, index + 1);
+      names[index] = name;
+
+      int hash = HashSlots.hash(name);
+      int slot = slotOf(name, hash);
+      if (slot != -1) {
+        slots.set(slot, index);  // the name now belongs to this index
+      } else {
+        slots.add(hash, index);
       }
-      indexToData.set(index, name);
-      dataToIndex.put(name, index);
     }
 
     int size() {
-      return dataToIndex.size();
+      return count;
+    }
+
+    /** All the names, by index. */
+    String[] keys() {
+      return Arrays.copyOf(names, count);
     }
 
     void write(DataOutputStream output) throws IOException {
       output.writeInt(size());
-      for (String str : indexToData) {
-        output.writeUTF(str);
+      for (int i = 0; i < count; i++) {
+        output.writeUTF(names[i]);
       }
     }
 
     private void writeln(PrintWriter writer) throws IOException {
-      for (String str : indexToData) {
-        writer.println(str);
+      for (int i = 0; i < count; i++) {
+        writer.println(names[i]);
       }
       writer.flush();
       writer.close();
@@ -4362,12 +5143,10 @@ public class Table {
     void read(DataInputStream input) throws IOException {
       int count = input.readInt();
       //System.out.println("found " + count + " entries in category map");
-      dataToIndex = new HashMap<>(count);
       for (int i = 0; i < count; i++) {
         String str = input.readUTF();
         //System.out.println(i + " " + str);
-        dataToIndex.put(str, i);
-        indexToData.add(str);
+        setCategory(i, str);
       }
     }
   }
@@ -4417,6 +5196,28 @@ public class Table {
   }
 
 
+  /**
+   * Sort on several columns at once: rows are ordered by the first column,
+   * rows with the same value there are ordered by the second column, etc.
+   * Rows that are the same in every one of the columns stay in the order
+   * they were already in.
+   *
+   * @nowebref
+   * @param columnNames names of the columns to sort, most important first
+   */
+  public void sort(String... columnNames) {
+    sort(getColumnIndices(columnNames), false);
+  }
+
+
+  /**
+   * @nowebref
+   */
+  public void sort(int... columnIndices) {
+    sort(columnIndices, false);
+  }
+
+
   public void sortReverse(String columnName) {
     sort(getColumnIndex(columnName), true);
   }
@@ -4427,108 +5228,214 @@ public class Table {
   }
 
 
+  /**
+   * @nowebref
+   */
+  public void sortReverse(String... columnNames) {
+    sort(getColumnIndices(columnNames), true);
+  }
+
+
+  /**
+   * @nowebref
+   */
+  public void sortReverse(int... columnIndices) {
+    sort(columnIndices, true);
+  }
+
+
+  protected int[] getColumnIndices(String[] columnNames) {
+    int[] indices = new int[columnNames.length];
+    for (int i = 0; i < columnNames.length; i++) {
+      indices[i] = getColumnIndex(columnNames[i]);
+    }
+    return indices;
+  }
+
+
   protected void sort(final int column, final boolean reverse) {
-    final int[] order = IntList.fromRange(getRowCount()).array();
-    Sort s = new Sort() {
+    sort(new int[] { column }, reverse);
+  }
+
 
-      @Override
-      public int size() {
-        return getRowCount();
+  /**
+   * Sorts are stable, so sorting on the least important column first,
+   * and then on each of the others in turn, orders by all of them.
+   * Numbers (and category indices) are sorted with a radix sort, and
+   * Strings are replaced by their (case-insensitive) rank, see RadixSort.
+   * Very large tables are sorted on several threads.
+   */
+  protected void sort(int[] sortColumns, boolean reverse) {
+    unmapColumns();
+    final int count = getRowCount();
+    final int[] order = IntList.fromRange(count).values();
+    for (int i = sortColumns.length - 1; i >= 0; --i) {
+      int column = sortColumns[i];
+      checkColumn(column);
+      switch (getColumnType(column)) {
+      case INT:
+      case CATEGORY:
+        RadixSort.sortIndices((int[]) columns[column], order, count, reverse);
+        break;
+      case LONG:
+        RadixSort.sortIndices((long[]) columns[column], order, count, reverse);
+        break;
+      case FLOAT:
+        RadixSort.sortIndices(RadixSort.floatKeys((float[]) columns[column], count, reverse),
+                              order, count, reverse);
+        break;
+      case DOUBLE:
+        RadixSort.sortIndices(RadixSort.doubleKeys((double[]) columns[column], count, reverse),
+                              order, count, reverse);
+        break;
+      case STRING:
+        RadixSort.sortIndices(RadixSort.rank((String[]) columns[column], count),
+                              order, count, reverse);
+        break;
+      default:
+        throw new IllegalArgumentException("Invalid column type: " + getColumnType(column));
+      }
+    }
+
+    if (count >= RadixSort.PARALLEL_THRESHOLD) {
+      IntStream.range(0, getColumnCount()).parallel().forEach(col -> reorderColumn(col, order));
+    } else {
+      for (int col = 0; col < getColumnCount(); col++) {
+        reorderColumn(col, order);
       }
+    }
+    invalidateIndexes();
+  }
 
-      @Override
-      public int compare(int index1, int index2) {
-        int a = reverse ? order[index2] : order[index1];
-        int b = reverse ? order[index1] : order[index2];
 
-        switch (getColumnType(column)) {
-        case INT:
-          return getInt(a, column) - getInt(b, column);
-        case LONG:
-          long diffl = getLong(a, column) - getLong(b, column);
-          return diffl == 0 ? 0 : (diffl < 0 ? -1 : 1);
-        case FLOAT:
-          float difff = getFloat(a, column) - getFloat(b, column);
-          return difff == 0 ? 0 : (difff < 0 ? -1 : 1);
-        case DOUBLE:
-          double diffd = getDouble(a, column) - getDouble(b, column);
-          return diffd == 0 ? 0 : (diffd < 0 ? -1 : 1);
-        case STRING:
-          String string1 = getString(a, column);
-          if (string1 == null) {
-            string1 = "";  // avoid NPE when cells are left empty
-          }
-          String string2 = getString(b, column);
-          if (string2 == null) {
-            string2 = "";
-          }
-          return string1.compareToIgnoreCase(string2);
-        case CATEGORY:
-          return getInt(a, column) - getInt(b, column);
-        default:
-          throw new IllegalArgumentException("Invalid column type: " + getColumnType(column));
-        }
+  protected void reorderColumn(int col, int[] order) {
+    switch (getColumnType(col)) {
+    case INT:
+    case CATEGORY:
+      int[] oldInt = (int[]) columns[col];
+      int[] newInt = new int[rowCount];
+      for (int row = 0; row < getRowCount(); row++) {
+        newInt[row] = oldInt[order[row]];
+      }
+      columns[col] = newInt;
+      break;
+    case LONG:
+      long[] oldLong = (long[]) columns[col];
+      long[] newLong = new long[rowCount];
+      for (int row = 0; row < getRowCount(); row++) {
+        newLong[row] = oldLong[order[row]];
+      }
+      columns[col] = newLong;
+      break;
+    case FLOAT:
+      float[] oldFloat = (float[]) columns[col];
+      float[] newFloat = new float[rowCount];
+      for (int row = 0; row < getRowCount(); row++) {
+        newFloat[row] = oldFloat[order[row]];
+      }
+      columns[col] = newFloat;
+      break;
+    case DOUBLE:
+      double[] oldDouble = (double[]) columns[col];
+      double[] newDouble = new double[rowCount];
+      for (int row = 0; row < getRowCount(); row++) {
+        newDouble[row] = oldDouble[order[row]];
+      }
+      columns[col] = newDouble;
+      break;
+    case STRING:
+      String[] oldString = (String[]) columns[col];
+      String[] newString = new String[rowCount];
+      for (int row = 0; row < getRowCount(); row++) {
+        newString[row] = oldString[order[row]];
       }
+      columns[col] = newString;
+      break;
+    }
+  }
 
-      @Override
-      public void swap(int a, int b) {
-        int temp = order[a];
-        order[a] = order[b];
-        order[b] = temp;
+
+  /** The array for a column, copied out if it's memory-mapped. */
+  protected Object columnArray(int column) {
+    Object data = columns[column];
+    return (data instanceof MappedColumn) ? ((MappedColumn) data).toArray() : data;
+  }
+
+
+  /** A copy of the categories for a column, with the same numbering. */
+  protected HashMapBlows copyCategories(int column) {
+    if (columns[column] instanceof MappedColumn) {
+      return ((MappedColumn) columns[column]).toCategories();
+    }
+    HashMapBlows incoming = columnCategories[column];
+    HashMapBlows outgoing = new HashMapBlows();
+    for (int i = 0; i < incoming.size(); i++) {
+      if (incoming.hasCategory(i)) {
+        outgoing.setCategory(i, incoming.key(i));
       }
+    }
+    return outgoing;
+  }
 
-    };
-    s.run();
 
-    //Object[] newColumns = new Object[getColumnCount()];
-    for (int col = 0; col < getColumnCount(); col++) {
-      switch (getColumnType(col)) {
+  /**
+   * Add a column with the same title and type as a column from another
+   * table, filled with the values from the rows listed in rows[] (one for
+   * each row of this table). A row of -1 leaves a missing value instead.
+   * Categories keep their numbers, since the dictionary is copied along.
+   */
+  protected void addColumn(String title, Table from, int column, int[] rows) {
+    int type = from.getColumnType(column);
+    addColumn(title, type);
+    int index = columns.length - 1;
+    if (type == CATEGORY) {
+      columnCategories[index] = from.copyCategories(column);
+    }
+
+    Object incoming = from.columnArray(column);
+    switch (type) {
       case INT:
       case CATEGORY:
-        int[] oldInt = (int[]) columns[col];
-        int[] newInt = new int[rowCount];
-        for (int row = 0; row < getRowCount(); row++) {
-          newInt[row] = oldInt[order[row]];
+        int[] intData = (int[]) incoming;
+        int[] newInt = (int[]) columns[index];
+        int missing = (type == INT) ? missingInt : missingCategory;
+        for (int row = 0; row < rowCount; row++) {
+          newInt[row] = (rows[row] == -1) ? missing : intData[rows[row]];
         }
-        columns[col] = newInt;
         break;
       case LONG:
-        long[] oldLong = (long[]) columns[col];
-        long[] newLong = new long[rowCount];
-        for (int row = 0; row < getRowCount(); row++) {
-          newLong[row] = oldLong[order[row]];
+        long[] longData = (long[]) incoming;
+        long[] newLong = (long[]) columns[index];
+        for (int row = 0; row < rowCount; row++) {
+          newLong[row] = (rows[row] == -1) ? missingLong : longData[rows[row]];
         }
-        columns[col] = newLong;
         break;
       case FLOAT:
-        float[] oldFloat = (float[]) columns[col];
-        float[] newFloat = new float[rowCount];
-        for (int row = 0; row < getRowCount(); row++) {
-          newFloat[row] = oldFloat[order[row]];
+        float[] floatData = (float[]) incoming;
+        float[] newFloat = (float[]) columns[index];
+        for (int row = 0; row < rowCount; row++) {
+          newFloat[row] = (rows[row] == -1) ? missingFloat : floatData[rows[row]];
         }
-        columns[col] = newFloat;
         break;
       case DOUBLE:
-        double[] oldDouble = (double[]) columns[col];
-        double[] newDouble = new double[rowCount];
-        for (int row = 0; row < getRowCount(); row++) {
-          newDouble[row] = oldDouble[order[row]];
+        double[] doubleData = (double[]) incoming;
+        double[] newDouble = (double[]) columns[index];
+        for (int row = 0; row < rowCount; row++) {
+          newDouble[row] = (rows[row] == -1) ? missingDouble : doubleData[rows[row]];
         }
-        columns[col] = newDouble;
         break;
       case STRING:
-        String[] oldString = (String[]) columns[col];
-        String[] newString = new String[rowCount];
-        for (int row = 0; row < getRowCount(); row++) {
-          newString[row] = oldString[order[row]];
+        String[] stringData = (String[]) incoming;
+        String[] newString = (String[]) columns[index];
+        for (int row = 0; row < rowCount; row++) {
+          newString[row] = (rows[row] == -1) ? missingString : stringData[rows[row]];
         }
-        columns[col] = newString;
         break;
-      }
     }
   }
 
 
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
@@ -4565,6 +5472,63 @@ public class Table {
   }
 
 
+  /**
+   * Group the rows by the values in one or more columns, for aggregates
+   * like sum(), mean(), and count(). The result is a new Table with one
+   * row for each group, which has the key columns and gets one more
+   * column for each aggregate:
+   * <pre>
+   * Table totals = table.groupBy("region").sum("sales").mean("price").count();
+   * </pre>
+   */
+  public TableGroup groupBy(String... columnNames) {
+    return groupBy(getColumnIndices(columnNames));
+  }
+
+
+  public TableGroup groupBy(int... columns) {
+    return new TableGroup(this, columns);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  static public enum JoinType {
+    /** Only rows that have a match in the other table */
+    INNER,
+    /** All rows of this table, with empty values when there's no match */
+    LEFT
+  }
+
+
+  public Table join(Table other, String leftKey, String rightKey, JoinType type) {
+    return join(other, getColumnIndex(leftKey), other.getColumnIndex(rightKey), type);
+  }
+
+
+  /**
+   * Make a new Table that combines the rows of this table with the rows
+   * of another table that have the same key. The result has the columns
+   * of this table, followed by the columns of the other table except for
+   * its key column. Titles that are already used get a suffix like "_2".
+   * <p>
+   * Rows are in the same order as this table. A row that matches several
+   * rows in the other table is repeated for each of them, in their order.
+   * With JoinType.LEFT, rows that don't match anything are kept as well,
+   * with missing values for the columns from the other table.
+   * <p>
+   * Keys are compared as numbers when both columns are numbers, by name
+   * when both are categories, and as Strings otherwise. Empty keys (null,
+   * NaN, or a missing category) never match. The smaller of the two tables
+   * is put into a hash, and each column of the result is copied over as a
+   * whole, so column types (and category dictionaries) stay the same.
+   */
+  public Table join(Table other, int leftKey, int rightKey, JoinType type) {
+    return new TableJoin(this, leftKey, other, rightKey).join(type == JoinType.LEFT);
+  }
+
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
@@ -0,0 +1,1132 @@
+package processing.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+
+/**
+ * Reads and writes Apache Arrow IPC files for Table, the format used by
+ * pyarrow, pandas, Polars, R and others to hand tables to each other
+ * without parsing them. Columns are stored one after another as the same
+ * little-endian arrays that Table keeps in memory, so when a file is
+ * memory-mapped, INT, LONG, FLOAT and DOUBLE columns (and the indices of
+ * CATEGORY columns) are used in place by MappedColumn rather than read.
+ * <p/>
+ * Tables are written as a single record batch, with CATEGORY columns as
+ * dictionary-encoded UTF-8 strings. Both the file and the stream flavors
+ * can be read, with any number of batches; 8, 16 and 32-bit integers are
+ * read as INT columns, 64-bit integers (and unsigned 32-bit) as LONG, and
+ * booleans as an INT of 0 or 1. Nulls become the Table's missing values.
+ * Compressed files and nested types (lists, structs) aren't supported.
+ * <p/>
+ * The metadata is written with FlatBuffers, which is small enough for the
+ * few tables needed here that it's handled by FlatBuilder below, rather
+ * than adding a library to core.
+ * Advanced users only, not official API.
+ */
+class TableArrow {
+  static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+  static final int CONTINUATION = 0xFFFFFFFF;
+  static final short METADATA_V5 = 4;
+
+  // MessageHeader union
+  static final byte SCHEMA = 1;
+  static final byte DICTIONARY_BATCH = 2;
+  static final byte RECORD_BATCH = 3;
+
+  // Type union
+  static final byte INT = 2;
+  static final byte FLOATING_POINT = 3;
+  static final byte UTF8 = 5;
+  static final byte BOOL = 6;
+  static final byte LARGE_UTF8 = 20;
+
+  // FloatingPoint precision
+  static final short SINGLE = 1;
+  static final short DOUBLE = 2;
+
+  final Table table;
+
+
+  TableArrow(Table table) {
+    this.table = table;
+  }
+
+
+  /** A column as declared in the schema. */
+  static class Field {
+    String name;
+    byte typeType;
+    /** Bits in each value for INT (1 for BOOL) */
+    int bitWidth;
+    boolean signed;
+    short precision;
+    /** Dictionary for CATEGORY columns, otherwise -1 */
+    long dictionaryId = -1;
+    int indexWidth;
+    boolean indexSigned;
+    /** The Table type this will be read as */
+    int columnType;
+
+    boolean isString() {
+      return typeType == UTF8 || typeType == LARGE_UTF8;
+    }
+  }
+
+
+  /** The data for one column of one record batch. */
+  static class Piece {
+    int length;
+    long nullCount;
+    ByteBuffer validity;
+    /** Values, or the offsets for strings */
+    ByteBuffer values;
+    /** Bytes for strings */
+    ByteBuffer data;
+
+    boolean isNull(int index) {
+      return nullCount != 0 && validity.capacity() != 0 &&
+        (validity.get(index >> 3) & (1 << (index & 7))) == 0;
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Load the file by memory-mapping it. Returns false if it doesn't look
+   * like an Arrow file (for instance because it's gzipped), in which case
+   * it should be read as a stream instead.
+   */
+  boolean map(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer start = ByteBuffer.allocate(4);
+      while (start.hasRemaining()) {
+        if (channel.read(start, start.position()) == -1) {
+          return false;
+        }
+      }
+      if (start.getInt(0) != CONTINUATION && !hasMagic(start)) {
+        return false;
+      }
+      read(Table.mappedSource(file, channel));
+      return true;
+    }
+  }
+
+
+  void read(InputStream input) throws IOException {
+    byte[] bytes = input.readAllBytes();
+    input.close();
+    read(Table.bufferSource(ByteBuffer.wrap(bytes)));
+  }
+
+
+  void read(Table.BinarySource source) throws IOException {
+    long size = source.size();
+    long position = 0;
+    if (size >= 8 && hasMagic(source.map(0, 8))) {
+      position = 8;  // the file flavor is the stream flavor with a footer
+    }
+    Field[] fields = null;
+    HashMap<Long, ArrayList<String>> dictionaries = new HashMap<>();
+    ArrayList<Piece[]> batches = new ArrayList<>();
+    long rows = 0;
+
+    while (position + 4 <= size) {
+      ByteBuffer prefix = little(source.map(position, Math.min(8, size - position)));
+      int length = prefix.getInt(0);
+      position += 4;
+      if (length == CONTINUATION) {
+        if (prefix.capacity() < 8) {
+          break;
+        }
+        length = prefix.getInt(4);
+        position += 4;
+      }
+      if (length == 0) {
+        break;  // end of the stream
+      }
+      ByteBuffer meta = little(source.map(position, length));
+      position += length;
+      int message = meta.getInt(0);
+      byte headerType = getByte(meta, message, 1);
+      int header = getTable(meta, message, 2);
+      long bodyLength = getLong(meta, message, 3);
+      if (bodyLength > Integer.MAX_VALUE) {
+        throw new IOException("Record batches larger than 2 GB are not supported");
+      }
+      ByteBuffer body = (bodyLength == 0) ?
+        ByteBuffer.allocate(0) : source.map(position, bodyLength);
+      position += bodyLength;
+
+      if (headerType == SCHEMA) {
+        fields = readSchema(meta, header);
+
+      } else if (headerType == DICTIONARY_BATCH) {
+        long id = getLong(meta, header, 0);
+        Field values = null;
+        for (Field field : checkSchema(fields)) {
+          if (field.dictionaryId == id) {
+            // the batch holds the values themselves, not indices
+            values = new Field();
+            values.typeType = field.typeType;
+          }
+        }
+        if (values == null) {
+          throw new IOException("No column uses dictionary " + id);
+        }
+        Piece piece = readBatch(meta, getTable(meta, header, 1),
+                                body, new Field[] { values })[0];
+        String[] names = readStrings(piece, values.typeType == LARGE_UTF8);
+        ArrayList<String> list = dictionaries.get(id);
+        if (list == null || !getBoolean(meta, header, 2)) {  // isDelta
+          list = new ArrayList<>();
+          dictionaries.put(id, list);
+        }
+        list.addAll(Arrays.asList(names));
+
+      } else if (headerType == RECORD_BATCH) {
+        Piece[] batch = readBatch(meta, header, body, checkSchema(fields));
+        if (batch.length != 0) {
+          rows += batch[0].length;
+        }
+        batches.add(batch);
+      }
+    }
+    if (rows > Integer.MAX_VALUE) {
+      throw new IOException("Too many rows for a Table");
+    }
+    build(checkSchema(fields), dictionaries, batches, (int) rows);
+  }
+
+
+  static private Field[] checkSchema(Field[] fields) throws IOException {
+    if (fields == null) {
+      throw new IOException("Not an Arrow file, or the schema is missing");
+    }
+    return fields;
+  }
+
+
+  static private Field[] readSchema(ByteBuffer meta, int schema) throws IOException {
+    if (getShort(meta, schema, 0) != 0) {
+      throw new IOException("Big-endian Arrow files are not supported");
+    }
+    int vector = getTable(meta, schema, 1);
+    int count = (vector == 0) ? 0 : meta.getInt(vector);
+    Field[] fields = new Field[count];
+    for (int i = 0; i < count; i++) {
+      int at = vector + 4 + i*4;
+      int table = at + meta.getInt(at);
+      Field field = new Field();
+      field.name = getString(meta, table, 0);
+      field.typeType = getByte(meta, table, 2);
+      int type = getTable(meta, table, 3);
+      switch (field.typeType) {
+        case INT:
+          field.bitWidth = getInt(meta, type, 0);
+          field.signed = getBoolean(meta, type, 1);
+          if (field.bitWidth == 64 || (field.bitWidth == 32 && !field.signed)) {
+            field.columnType = Table.LONG;
+          } else {
+            field.columnType = Table.INT;
+          }
+          break;
+        case BOOL:
+          field.bitWidth = 1;
+          field.columnType = Table.INT;
+          break;
+        case FLOATING_POINT:
+          field.precision = getShort(meta, type, 0);
+          if (field.precision == SINGLE) {
+            field.columnType = Table.FLOAT;
+          } else if (field.precision == DOUBLE) {
+            field.columnType = Table.DOUBLE;
+          } else {
+            throw new IOException("Column " + describe(field, i) +
+                                  " uses half-precision floats, which are not supported");
+          }
+          break;
+        case UTF8:
+        case LARGE_UTF8:
+          field.columnType = Table.STRING;
+          break;
+        default:
+          throw new IOException("Column " + describe(field, i) +
+                                " has an Arrow type (" + field.typeType +
+                                ") that can't be read into a Table");
+      }
+      int dictionary = getTable(meta, table, 4);
+      if (dictionary != 0) {
+        if (!field.isString()) {
+          throw new IOException("Column " + describe(field, i) +
+                                " is a dictionary of something other than text," +
+                                " which is not supported");
+        }
+        field.dictionaryId = getLong(meta, dictionary, 0);
+        int indexType = getTable(meta, dictionary, 1);
+        field.indexWidth = (indexType == 0) ? 32 : getInt(meta, indexType, 0);
+        field.indexSigned = (indexType == 0) || getBoolean(meta, indexType, 1);
+        field.columnType = Table.CATEGORY;
+      }
+      fields[i] = field;
+    }
+    return fields;
+  }
+
+
+  static private String describe(Field field, int index) {
+    return (field.name != null) ? "'" + field.name + "'" : String.valueOf(index);
+  }
+
+
+  static private Piece[] readBatch(ByteBuffer meta, int batch,
+                                   ByteBuffer body, Field[] fields) throws IOException {
+    if (getTable(meta, batch, 3) != 0) {
+      throw new IOException("Compressed Arrow files are not supported");
+    }
+    int nodes = getTable(meta, batch, 1);
+    int buffers = getTable(meta, batch, 2);
+    int bufferCount = (buffers == 0) ? 0 : meta.getInt(buffers);
+    if (nodes == 0 || meta.getInt(nodes) < fields.length) {
+      throw new IOException("This Arrow file is damaged or incomplete");
+    }
+    Piece[] pieces = new Piece[fields.length];
+    int b = 0;
+    for (int i = 0; i < fields.length; i++) {
+      int node = nodes + 4 + i*16;
+      Piece piece = new Piece();
+      piece.length = (int) meta.getLong(node);
+      piece.nullCount = meta.getLong(node + 8);
+      int needed = (fields[i].isString() && fields[i].dictionaryId == -1) ? 3 : 2;
+      if (b + needed > bufferCount) {
+        throw new IOException("This Arrow file is damaged or incomplete");
+      }
+      piece.validity = slice(meta, buffers, b++, body);
+      piece.values = slice(meta, buffers, b++, body);
+      if (needed == 3) {
+        piece.data = slice(meta, buffers, b++, body);
+      }
+      pieces[i] = piece;
+    }
+    return pieces;
+  }
+
+
+  static private ByteBuffer slice(ByteBuffer meta, int buffers, int index,
+                                  ByteBuffer body) {
+    int at = buffers + 4 + index*16;
+    int offset = (int) meta.getLong(at);
+    int length = (int) meta.getLong(at + 8);
+    return little(body.slice(offset, length));
+  }
+
+
+  static private String[] readStrings(Piece piece, boolean large) {
+    String[] outgoing = new String[piece.length];
+    for (int i = 0; i < piece.length; i++) {
+      if (!piece.isNull(i)) {
+        int start = large ? (int) piece.values.getLong(i*8) : piece.values.getInt(i*4);
+        int stop = large ? (int) piece.values.getLong(i*8 + 8) : piece.values.getInt(i*4 + 4);
+        byte[] bytes = new byte[stop - start];
+        piece.data.get(start, bytes);
+        outgoing[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+    return outgoing;
+  }
+
+
+  /** An integer (or boolean) value, widened to a long. */
+  static private long readInteger(ByteBuffer values, int index,
+                                  int bitWidth, boolean signed) {
+    switch (bitWidth) {
+      case 1:
+        return (values.get(index >> 3) >> (index & 7)) & 1;
+      case 8:
+        return signed ? values.get(index) : values.get(index) & 0xFF;
+      case 16:
+        return signed ? values.getShort(index*2) : values.getShort(index*2) & 0xFFFF;
+      case 32:
+        return signed ? values.getInt(index*4) : values.getInt(index*4) & 0xFFFFFFFFL;
+      default:
+        return values.getLong(index*8);
+    }
+  }
+
+
+  /**
+   * Put the columns into the Table. With a single batch and no nulls,
+   * columns that are already stored the way Table needs them are used
+   * in place; everything else is copied into arrays.
+   */
+  private void build(Field[] fields, HashMap<Long, ArrayList<String>> dictionaries,
+                     ArrayList<Piece[]> batches, int rows) throws IOException {
+    int columnCount = fields.length;
+    Object[] columns = new Object[columnCount];
+    Table.HashMapBlows[] categories = new Table.HashMapBlows[columnCount];
+    int[] types = new int[columnCount];
+    String[] titles = null;
+
+    for (int col = 0; col < columnCount; col++) {
+      Field field = fields[col];
+      types[col] = field.columnType;
+      if (field.name != null && !field.name.isEmpty()) {
+        if (titles == null) {
+          titles = new String[columnCount];
+        }
+        titles[col] = field.name;
+      }
+      if (field.columnType == Table.CATEGORY) {
+        ArrayList<String> names = dictionaries.get(field.dictionaryId);
+        if (names == null) {
+          throw new IOException("Dictionary " + field.dictionaryId + " is missing");
+        }
+        categories[col] = new Table.HashMapBlows();
+        for (int i = 0; i < names.size(); i++) {
+          if (names.get(i) != null) {
+            categories[col].setCategory(i, names.get(i));
+          }
+        }
+      }
+      Piece only = (batches.size() == 1) ? batches.get(0)[col] : null;
+      if (only != null && only.nullCount == 0) {
+        ByteBuffer values = only.values;
+        switch (field.columnType) {
+          case Table.INT:
+            if (field.typeType == INT && field.bitWidth == 32) {
+              columns[col] = new MappedColumn(table, Table.INT, rows,
+                little(values.slice(0, rows*4)).asIntBuffer(), null);
+            }
+            break;
+          case Table.LONG:
+            if (field.bitWidth == 64) {
+              columns[col] = new MappedColumn(table, Table.LONG, rows,
+                little(values.slice(0, rows*8)).asLongBuffer(), null);
+            }
+            break;
+          case Table.FLOAT:
+            columns[col] = new MappedColumn(table, Table.FLOAT, rows,
+              little(values.slice(0, rows*4)).asFloatBuffer(), null);
+            break;
+          case Table.DOUBLE:
+            columns[col] = new MappedColumn(table, Table.DOUBLE, rows,
+              little(values.slice(0, rows*8)).asDoubleBuffer(), null);
+            break;
+          case Table.CATEGORY:
+            if (field.indexWidth == 32) {
+              columns[col] = new MappedColumn(table, Table.CATEGORY, rows,
+                little(values.slice(0, rows*4)).asIntBuffer(), categories[col]);
+              categories[col] = null;
+            }
+            break;
+        }
+      }
+      if (columns[col] == null) {
+        columns[col] = copyColumn(field, batches, col, rows);
+      }
+    }
+
+    table.rowCount = rows;
+    table.columnTypes = types;
+    table.columnCategories = categories;
+    table.columns = columns;
+    table.setColumnTitles(titles);
+  }
+
+
+  private Object copyColumn(Field field, ArrayList<Piece[]> batches,
+                            int col, int rows) {
+    int row = 0;
+    switch (field.columnType) {
+      case Table.INT:
+      case Table.CATEGORY: {
+        boolean category = field.columnType == Table.CATEGORY;
+        int missing = category ? table.missingCategory : table.missingInt;
+        int bitWidth = category ? field.indexWidth : field.bitWidth;
+        boolean signed = category ? field.indexSigned : field.signed;
+        int[] outgoing = new int[rows];
+        for (Piece[] batch : batches) {
+          Piece piece = batch[col];
+          for (int i = 0; i < piece.length; i++) {
+            outgoing[row++] = piece.isNull(i) ? missing :
+              (int) readInteger(piece.values, i, bitWidth, signed);
+          }
+        }
+        return outgoing;
+      }
+      case Table.LONG: {
+        long[] outgoing = new long[rows];
+        for (Piece[] batch : batches) {
+          Piece piece = batch[col];
+          for (int i = 0; i < piece.length; i++) {
+            outgoing[row++] = piece.isNull(i) ? table.missingLong :
+              readInteger(piece.values, i, field.bitWidth, field.signed);
+          }
+        }
+        return outgoing;
+      }
+      case Table.FLOAT: {
+        float[] outgoing = new float[rows];
+        for (Piece[] batch : batches) {
+          Piece piece = batch[col];
+          piece.values.asFloatBuffer().get(0, outgoing, row, piece.length);
+          for (int i = 0; i < piece.length; i++) {
+            if (piece.isNull(i)) {
+              outgoing[row + i] = table.missingFloat;
+            }
+          }
+          row += piece.length;
+        }
+        return outgoing;
+      }
+      case Table.DOUBLE: {
+        double[] outgoing = new double[rows];
+        for (Piece[] batch : batches) {
+          Piece piece = batch[col];
+          piece.values.asDoubleBuffer().get(0, outgoing, row, piece.length);
+          for (int i = 0; i < piece.length; i++) {
+            if (piece.isNull(i)) {
+              outgoing[row + i] = table.missingDouble;
+            }
+          }
+          row += piece.length;
+        }
+        return outgoing;
+      }
+      default: {
+        String[] outgoing = new String[rows];
+        for (Piece[] batch : batches) {
+          String[] strings = readStrings(batch[col], field.typeType == LARGE_UTF8);
+          System.arraycopy(strings, 0, outgoing, row, strings.length);
+          row += strings.length;
+        }
+        return outgoing;
+      }
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Buffers in the body of a record batch, and where each one goes. */
+  static class Batch {
+    int length;
+    ArrayList<long[]> nodes = new ArrayList<>();  // length, null count
+    ArrayList<long[]> layout = new ArrayList<>();  // offset, length
+    ArrayList<Object> buffers = new ArrayList<>();
+    long bodyLength;
+
+    void add(Object data, long byteLength) {
+      layout.add(new long[] { bodyLength, byteLength });
+      buffers.add(data);
+      bodyLength += Table.align(byteLength);
+    }
+  }
+
+
+  /** Text to be written as UTF-8, one entry after another. */
+  static class Utf8 {
+    String[] list;
+    int count;
+
+    Utf8(String[] list, int count) {
+      this.list = list;
+      this.count = count;
+    }
+  }
+
+
+  void write(OutputStream os) throws IOException {
+    Table.CountingOutputStream counter =
+      new Table.CountingOutputStream(new BufferedOutputStream(os, 1 << 16));
+    DataOutputStream output = new DataOutputStream(counter);
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    int columnCount = table.getColumnCount();
+    int rowCount = table.getRowCount();
+
+    output.write(MAGIC);
+    output.writeShort(0);  // padding
+
+    FlatBuilder builder = new FlatBuilder();
+    writeMessage(output, counter, SCHEMA, schema(builder), builder, null, buffer);
+
+    ArrayList<long[]> dictionaryBlocks = new ArrayList<>();
+    Batch batch = new Batch();
+    batch.length = rowCount;
+    for (int col = 0; col < columnCount; col++) {
+      Object data = table.columnArray(col);
+      switch (table.getColumnType(col)) {
+        case Table.INT:
+          batch.nodes.add(new long[] { rowCount, 0 });
+          batch.add(null, 0);
+          batch.add(data, rowCount * 4L);
+          break;
+        case Table.LONG:
+          batch.nodes.add(new long[] { rowCount, 0 });
+          batch.add(null, 0);
+          batch.add(data, rowCount * 8L);
+          break;
+        case Table.FLOAT:
+          batch.nodes.add(new long[] { rowCount, 0 });
+          batch.add(null, 0);
+          batch.add(data, rowCount * 4L);
+          break;
+        case Table.DOUBLE:
+          batch.nodes.add(new long[] { rowCount, 0 });
+          batch.add(null, 0);
+          batch.add(data, rowCount * 8L);
+          break;
+        case Table.STRING:
+          addStrings(batch, (String[]) data, rowCount);
+          break;
+        case Table.CATEGORY: {
+          Table.HashMapBlows categories = (table.columns[col] instanceof MappedColumn) ?
+            ((MappedColumn) table.columns[col]).toCategories() : table.columnCategories[col];
+          String[] names = categories.keys();
+          Batch dictionary = new Batch();
+          dictionary.length = names.length;
+          addStrings(dictionary, names, names.length);
+          builder = new FlatBuilder();
+          int header = dictionaryBatch(builder, col, dictionary);
+          dictionaryBlocks.add(writeMessage(output, counter, DICTIONARY_BATCH,
+                                            header, builder, dictionary, buffer));
+
+          int[] indices = (int[]) data;
+          byte[] validity = new byte[(rowCount + 7) / 8];
+          int nullCount = 0;
+          for (int row = 0; row < rowCount; row++) {
+            int index = indices[row];
+            if (index < 0 || !categories.hasCategory(index)) {
+              if (nullCount++ == 0) {
+                indices = Arrays.copyOf(indices, rowCount);
+              }
+              indices[row] = 0;
+            } else {
+              validity[row >> 3] |= 1 << (row & 7);
+            }
+          }
+          batch.nodes.add(new long[] { rowCount, nullCount });
+          batch.add(nullCount == 0 ? null : validity, nullCount == 0 ? 0 : validity.length);
+          batch.add(indices, rowCount * 4L);
+          break;
+        }
+      }
+    }
+    builder = new FlatBuilder();
+    long[] batchBlock = writeMessage(output, counter, RECORD_BATCH,
+                                     recordBatch(builder, batch), builder, batch, buffer);
+
+    output.writeInt(CONTINUATION);
+    output.writeInt(0);  // end of the stream
+
+    builder = new FlatBuilder();
+    int schema = schema(builder);
+    int dictionaries = blocks(builder, dictionaryBlocks);
+    int batches = blocks(builder, Arrays.asList(batchBlock));
+    builder.startTable(4);
+    builder.addOffset(1, schema);
+    builder.addOffset(2, dictionaries);
+    builder.addOffset(3, batches);
+    builder.addShort(0, METADATA_V5);
+    builder.finish(builder.endTable());
+    byte[] footer = builder.bytes();
+    output.write(footer);
+    output.writeInt(Integer.reverseBytes(footer.length));
+    output.write(MAGIC);
+
+    output.flush();
+    output.close();
+  }
+
+
+  static private void addStrings(Batch batch, String[] list, int count) throws IOException {
+    byte[] validity = new byte[(count + 7) / 8];
+    int[] offsets = new int[count + 1];
+    int nullCount = 0;
+    long offset = 0;
+    for (int i = 0; i < count; i++) {
+      if (list[i] == null) {
+        nullCount++;
+      } else {
+        validity[i >> 3] |= 1 << (i & 7);
+        offset += Table.utf8Length(list[i]);
+        if (offset > Integer.MAX_VALUE) {
+          throw new IOException("Too much text in one column to save as Arrow");
+        }
+      }
+      offsets[i + 1] = (int) offset;
+    }
+    batch.nodes.add(new long[] { count, nullCount });
+    batch.add(nullCount == 0 ? null : validity, nullCount == 0 ? 0 : validity.length);
+    batch.add(offsets, (count + 1) * 4L);
+    batch.add(new Utf8(list, count), offset);
+  }
+
+
+  /**
+   * Write one message: a continuation marker, the length of the metadata,
+   * the metadata (padded to 8 bytes), and the body if there is one.
+   * Returns the offset, metadata length, and body length for the footer.
+   */
+  static private long[] writeMessage(DataOutputStream output,
+                                     Table.CountingOutputStream counter,
+                                     byte headerType, int header,
+                                     FlatBuilder builder, Batch batch,
+                                     ByteBuffer buffer) throws IOException {
+    long bodyLength = (batch == null) ? 0 : batch.bodyLength;
+    builder.startTable(5);
+    builder.addLong(3, bodyLength);
+    builder.addOffset(2, header);
+    builder.addShort(0, METADATA_V5);
+    builder.addByte(1, headerType);
+    builder.finish(builder.endTable());
+    byte[] meta = builder.bytes();
+
+    long start = counter.count;
+    int padded = (int) Table.align(meta.length);
+    output.writeInt(CONTINUATION);
+    output.writeInt(Integer.reverseBytes(padded));
+    output.write(meta);
+    for (int i = meta.length; i < padded; i++) {
+      output.write(0);
+    }
+    if (batch != null) {
+      for (int i = 0; i < batch.buffers.size(); i++) {
+        long length = batch.layout.get(i)[1];
+        writeBuffer(output, batch.buffers.get(i), length, buffer);
+        Table.writeBinaryPadding(output, length);
+      }
+    }
+    return new long[] { start, 8 + padded, bodyLength };
+  }
+
+
+  static private void writeBuffer(DataOutputStream output, Object data,
+                                  long length, ByteBuffer buffer) throws IOException {
+    if (data instanceof byte[]) {
+      output.write((byte[]) data, 0, (int) length);
+
+    } else if (data instanceof int[]) {
+      int[] array = (int[]) data;
+      int total = (int) (length / 4);
+      for (int i = 0; i < total; ) {
+        buffer.clear();
+        int count = Math.min(total - i, buffer.capacity() / 4);
+        buffer.asIntBuffer().put(array, i, count);
+        output.write(buffer.array(), 0, count * 4);
+        i += count;
+      }
+    } else if (data instanceof long[]) {
+      long[] array = (long[]) data;
+      int total = (int) (length / 8);
+      for (int i = 0; i < total; ) {
+        buffer.clear();
+        int count = Math.min(total - i, buffer.capacity() / 8);
+        buffer.asLongBuffer().put(array, i, count);
+        output.write(buffer.array(), 0, count * 8);
+        i += count;
+      }
+    } else if (data instanceof float[]) {
+      float[] array = (float[]) data;
+      int total = (int) (length / 4);
+      for (int i = 0; i < total; ) {
+        buffer.clear();
+        int count = Math.min(total - i, buffer.capacity() / 4);
+        buffer.asFloatBuffer().put(array, i, count);
+        output.write(buffer.array(), 0, count * 4);
+        i += count;
+      }
+    } else if (data instanceof double[]) {
+      double[] array = (double[]) data;
+      int total = (int) (length / 8);
+      for (int i = 0; i < total; ) {
+        buffer.clear();
+        int count = Math.min(total - i, buffer.capacity() / 8);
+        buffer.asDoubleBuffer().put(array, i, count);
+        output.write(buffer.array(), 0, count * 8);
+        i += count;
+      }
+    } else if (data instanceof Utf8) {
+      Utf8 text = (Utf8) data;
+      for (int i = 0; i < text.count; i++) {
+        if (text.list[i] != null) {
+          output.write(text.list[i].getBytes(StandardCharsets.UTF_8));
+        }
+      }
+    }
+  }
+
+
+  private int schema(FlatBuilder builder) {
+    int columnCount = table.getColumnCount();
+    int[] fields = new int[columnCount];
+    for (int col = 0; col < columnCount; col++) {
+      fields[col] = field(builder, col);
+    }
+    int vector = builder.createOffsets(fields);
+    builder.startTable(4);
+    builder.addOffset(1, vector);
+    return builder.endTable();
+  }
+
+
+  private int field(FlatBuilder builder, int col) {
+    String title = table.getColumnTitle(col);
+    int name = (title == null) ? 0 : builder.createString(title);
+    int columnType = table.getColumnType(col);
+    byte typeType;
+    int type;
+    switch (columnType) {
+      case Table.INT:
+        typeType = INT;
+        type = intType(builder, 32);
+        break;
+      case Table.LONG:
+        typeType = INT;
+        type = intType(builder, 64);
+        break;
+      case Table.FLOAT:
+      case Table.DOUBLE:
+        typeType = FLOATING_POINT;
+        builder.startTable(1);
+        builder.addShort(0, columnType == Table.FLOAT ? SINGLE : DOUBLE);
+        type = builder.endTable();
+        break;
+      default:
+        typeType = UTF8;
+        builder.startTable(0);
+        type = builder.endTable();
+        break;
+    }
+    int dictionary = 0;
+    if (columnType == Table.CATEGORY) {
+      int indexType = intType(builder, 32);
+      builder.startTable(4);
+      builder.addLong(0, col);
+      builder.addOffset(1, indexType);
+      dictionary = builder.endTable();
+    }
+    int children = builder.createOffsets(new int[0]);
+    builder.startTable(7);
+    if (name != 0) {
+      builder.addOffset(0, name);
+    }
+    builder.addOffset(3, type);
+    if (dictionary != 0) {
+      builder.addOffset(4, dictionary);
+    }
+    builder.addOffset(5, children);
+    builder.addBoolean(1, true);  // nullable
+    builder.addByte(2, typeType);
+    return builder.endTable();
+  }
+
+
+  static private int intType(FlatBuilder builder, int bitWidth) {
+    builder.startTable(2);
+    builder.addInt(0, bitWidth);
+    builder.addBoolean(1, true);
+    return builder.endTable();
+  }
+
+
+  static private int recordBatch(FlatBuilder builder, Batch batch) {
+    builder.startStructs(16, batch.nodes.size(), 8);
+    for (int i = batch.nodes.size() - 1; i >= 0; i--) {
+      long[] node = batch.nodes.get(i);
+      builder.putLong(node[1]);  // null count
+      builder.putLong(node[0]);  // length
+    }
+    int nodes = builder.endVector(batch.nodes.size());
+    builder.startStructs(16, batch.layout.size(), 8);
+    for (int i = batch.layout.size() - 1; i >= 0; i--) {
+      long[] layout = batch.layout.get(i);
+      builder.putLong(layout[1]);  // length
+      builder.putLong(layout[0]);  // offset
+    }
+    int buffers = builder.endVector(batch.layout.size());
+    builder.startTable(5);
+    builder.addLong(0, batch.length);
+    builder.addOffset(1, nodes);
+    builder.addOffset(2, buffers);
+    return builder.endTable();
+  }
+
+
+  static private int dictionaryBatch(FlatBuilder builder, long id, Batch batch) {
+    int data = recordBatch(builder, batch);
+    builder.startTable(3);
+    builder.addLong(0, id);
+    builder.addOffset(1, data);
+    return builder.endTable();
+  }
+
+
+  /** Vector of Block structs (offset, metadata length, body length) for the footer. */
+  static private int blocks(FlatBuilder builder, java.util.List<long[]> blocks) {
+    builder.startStructs(24, blocks.size(), 8);
+    for (int i = blocks.size() - 1; i >= 0; i--) {
+      long[] block = blocks.get(i);
+      builder.putLong(block[2]);
+      builder.putInt(0);  // padding
+      builder.putInt((int) block[1]);
+      builder.putLong(block[0]);
+    }
+    return builder.endVector(blocks.size());
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  static private boolean hasMagic(ByteBuffer start) {
+    for (int i = 0; i < 4; i++) {
+      if (start.get(i) != MAGIC[i]) {
+        return false;
+      }
+    }
+    return start.capacity() < 6 || (start.get(4) == MAGIC[4] && start.get(5) == MAGIC[5]);
+  }
+
+
+  static private ByteBuffer little(ByteBuffer buffer) {
+    return buffer.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+
+  // Reading FlatBuffers. Each table starts with the (signed) distance back
+  // to its vtable, which has its own size, the size of the table, and then
+  // the position of each field inside the table, or 0 if it isn't set.
+
+
+  /** Position of a field in a table, or 0 if it's not there. */
+  static private int field(ByteBuffer bb, int table, int id) {
+    int vtable = table - bb.getInt(table);
+    int entry = 4 + id*2;
+    if (entry >= (bb.getShort(vtable) & 0xFFFF)) {
+      return 0;
+    }
+    int offset = bb.getShort(vtable + entry) & 0xFFFF;
+    return (offset == 0) ? 0 : table + offset;
+  }
+
+
+  static private byte getByte(ByteBuffer bb, int table, int id) {
+    int at = field(bb, table, id);
+    return (at == 0) ? 0 : bb.get(at);
+  }
+
+
+  static private boolean getBoolean(ByteBuffer bb, int table, int id) {
+    return getByte(bb, table, id) != 0;
+  }
+
+
+  static private short getShort(ByteBuffer bb, int table, int id) {
+    int at = field(bb, table, id);
+    return (at == 0) ? 0 : bb.getShort(at);
+  }
+
+
+  static private int getInt(ByteBuffer bb, int table, int id) {
+    int at = field(bb, table, id);
+    return (at == 0) ? 0 : bb.getInt(at);
+  }
+
+
+  static private long getLong(ByteBuffer bb, int table, int id) {
+    int at = field(bb, table, id);
+    return (at == 0) ? 0 : bb.getLong(at);
+  }
+
+
+  /** Position of a table, vector, or string field, or 0 if it's not there. */
+  static private int getTable(ByteBuffer bb, int table, int id) {
+    int at = field(bb, table, id);
+    return (at == 0) ? 0 : at + bb.getInt(at);
+  }
+
+
+  static private String getString(ByteBuffer bb, int table, int id) {
+    int at = getTable(bb, table, id);
+    if (at == 0) {
+      return null;
+    }
+    byte[] bytes = new byte[bb.getInt(at)];
+    bb.get(at + 4, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+
+  /**
+   * Writes FlatBuffers the same way as the official library: back to front,
+   * so that everything a table points to is written before the table
+   * itself, and offsets are counted from the end of the buffer until
+   * it's finished.
+   */
+  static class FlatBuilder {
+    ByteBuffer bb = little(ByteBuffer.allocate(1024));
+    /** Bytes still free at the start of bb */
+    int space = bb.capacity();
+    int minAlign = 1;
+    int[] vtable;
+    int objectStart;
+
+    int offset() {
+      return bb.capacity() - space;
+    }
+
+    /**
+     * Pad so that after writing additional bytes, the next value of
+     * size bytes will be aligned, and make room for all of it.
+     */
+    void prep(int size, int additional) {
+      minAlign = Math.max(minAlign, size);
+      int alignSize = -(offset() + additional) & (size - 1);
+      while (space < alignSize + size + additional) {
+        int old = bb.capacity();
+        ByteBuffer bigger = little(ByteBuffer.allocate(old * 2));
+        System.arraycopy(bb.array(), 0, bigger.array(), old, old);
+        bb = bigger;
+        space += old;
+      }
+      for (int i = 0; i < alignSize; i++) {
+        bb.put(--space, (byte) 0);
+      }
+    }
+
+    void putByte(byte value) {
+      bb.put(--space, value);
+    }
+
+    void putShort(short value) {
+      space -= 2;
+      bb.putShort(space, value);
+    }
+
+    void putInt(int value) {
+      space -= 4;
+      bb.putInt(space, value);
+    }
+
+    void putLong(long value) {
+      space -= 8;
+      bb.putLong(space, value);
+    }
+
+    void startTable(int fieldCount) {
+      vtable = new int[fieldCount];
+      objectStart = offset();
+    }
+
+    void addByte(int id, byte value) {
+      prep(1, 0);
+      putByte(value);
+      vtable[id] = offset();
+    }
+
+    void addBoolean(int id, boolean value) {
+      addByte(id, (byte) (value ? 1 : 0));
+    }
+
+    void addShort(int id, short value) {
+      prep(2, 0);
+      putShort(value);
+      vtable[id] = offset();
+    }
+
+    void addInt(int id, int value) {
+      prep(4, 0);
+      putInt(value);
+      vtable[id] = offset();
+    }
+
+    void addLong(int id, long value) {
+      prep(8, 0);
+      putLong(value);
+      vtable[id] = offset();
+    }
+
+    void addOffset(int id, int target) {
+      prep(4, 0);
+      putInt(offset() - target + 4);
+      vtable[id] = offset();
+    }
+
+    int endTable() {
+      prep(4, 0);
+      putInt(0);  // replaced with the distance to the vtable below
+      int object = offset();
+      int fieldCount = vtable.length;
+      while (fieldCount > 0 && vtable[fieldCount - 1] == 0) {
+        fieldCount--;
+      }
+      for (int i = fieldCount - 1; i >= 0; i--) {
+        prep(2, 0);
+        putShort((short) (vtable[i] == 0 ? 0 : object - vtable[i]));
+      }
+      prep(2, 0);
+      putShort((short) (object - objectStart));
+      putShort((short) ((fieldCount + 2) * 2));
+      bb.putInt(bb.capacity() - object, offset() - object);
+      vtable = null;
+      return object;
+    }
+
+    int createString(String s) {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      prep(4, bytes.length + 1);
+      putByte((byte) 0);
+      space -= bytes.length;
+      System.arraycopy(bytes, 0, bb.array(), space, bytes.length);
+      putInt(bytes.length);
+      return offset();
+    }
+
+    /** Vector of tables or strings. */
+    int createOffsets(int[] targets) {
+      prep(4, targets.length * 4);
+      for (int i = targets.length - 1; i >= 0; i--) {
+        putInt(offset() - targets[i] + 4);
+      }
+      putInt(targets.length);
+      return offset();
+    }
+
+    /** Make room for a vector of structs, to be put in reverse order. */
+    void startStructs(int size, int count, int alignment) {
+      prep(4, size * count);
+      prep(alignment, size * count);
+    }
+
+    int endVector(int count) {
+      putInt(count);
+      return offset();
+    }
+
+    void finish(int root) {
+      prep(minAlign, 4);
+      putInt(offset() - root + 4);
+    }
+
+    byte[] bytes() {
+      return Arrays.copyOfRange(bb.array(), space, bb.capacity());
+    }
+  }
+}
@@ -0,0 +1,809 @@
+package processing.data;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+
+import processing.core.PApplet;
+
+
+/**
+ * A block of CSV or TSV records parsed straight into typed column arrays.
+ * Used by Table when loading with the "parallel" or "infer" options: the
+ * input is cut into byte ranges that end on a record boundary, each range
+ * is parsed (on a thread of its own, when parallel), and the results are
+ * appended to the Table in order.
+ * Advanced users only, not official API.
+ */
+class TableChunk implements Callable<TableChunk> {
+  static final int DELIMITER = 0;
+  static final int END_OF_RECORD = 1;
+
+  byte[] bytes;
+  int byteCount;
+  final Charset charset;
+  final boolean tsv;
+  final boolean first;
+  final boolean header;
+  // line of the file (counting from 1) that this chunk starts on
+  int firstLine = 1;
+
+  // column types and missing values from the Table when the load started
+  int[] types;
+  // whether numeric columns can be widened (INT to LONG, FLOAT to DOUBLE,
+  // and so on) when an entry doesn't fit, rather than storing a missing value
+  boolean widen;
+  // with widen, the rows of each column that weren't blank, so that blank
+  // entries in an INT or LONG column don't become "0" if it turns to STRING
+  BitSet[] present;
+  // whether STRING entries are stored in a StringArena instead of a String[]
+  boolean compact;
+  final String missingString;
+  final int missingInt;
+  final long missingLong;
+  final float missingFloat;
+  final double missingDouble;
+  final int missingCategory;
+
+  // results, read by Table after call() has returned
+  String[] titles;
+  int rowCount;
+  int columnCount;
+  Object[] columns;
+  Table.HashMapBlows[] categories;
+  RuntimeException error;
+
+  // decoded text for this chunk
+  char[] c;
+  int pos;
+  int limit;
+  // newlines read so far, including those inside quoted fields,
+  // and the count at the start of the current record
+  int lines;
+  int recordLines;
+
+  // the most recent field; either points into c, or into the scratch
+  // buffer when quotes had to be removed from the entry
+  char[] fieldChars;
+  int fieldStart;
+  int fieldLength;
+  char[] scratch = new char[64];
+
+  int capacity;
+
+
+  TableChunk(Table table, byte[] bytes, int byteCount, int records,
+             Charset charset, boolean tsv, boolean first, boolean header) {
+    this.bytes = bytes;
+    this.byteCount = byteCount;
+    this.charset = charset;
+    this.tsv = tsv;
+    this.first = first;
+    this.header = header;
+
+    types = table.columnTypes.clone();
+    missingString = table.missingString;
+    missingInt = table.missingInt;
+    missingLong = table.missingLong;
+    missingFloat = table.missingFloat;
+    missingDouble = table.missingDouble;
+    missingCategory = table.missingCategory;
+
+    capacity = Math.max(records, 16);
+    columns = new Object[0];
+    categories = new Table.HashMapBlows[0];
+    present = new BitSet[0];
+  }
+
+
+  public TableChunk call() {
+    try {
+      if (c == null) {
+        decode();
+      }
+      if (header && pos < limit) {
+        recordLines = lines;
+        titles = readTitles();
+      }
+      while (pos < limit) {
+        recordLines = lines;
+        readRecord();
+      }
+    } catch (RuntimeException e) {
+      error = e;
+    }
+    // release the text, only the typed columns are needed from here on
+    bytes = null;
+    c = null;
+    scratch = null;
+    return this;
+  }
+
+
+  /** Line of the file where the record that couldn't be read begins. */
+  int errorLine() {
+    return firstLine + recordLines;
+  }
+
+
+  protected void decode() {
+    CharBuffer cb = charset.decode(ByteBuffer.wrap(bytes, 0, byteCount));
+    bytes = null;
+    c = cb.array();
+    pos = cb.arrayOffset() + cb.position();
+    limit = cb.arrayOffset() + cb.limit();
+    // strip out the Unicode BOM, if present
+    if (first && pos < limit && c[pos] == '\uFEFF') {
+      pos++;
+    }
+  }
+
+
+  protected String[] readTitles() {
+    StringList list = new StringList();
+    int end;
+    do {
+      end = readField();
+      list.append(new String(fieldChars, fieldStart, fieldLength));
+    } while (end != END_OF_RECORD);
+    return list.toArray();
+  }
+
+
+  protected void readRecord() {
+    if (rowCount == capacity) {
+      expand(capacity << 1);
+    }
+    int col = 0;
+    int end;
+    do {
+      end = readField();
+      store(col++);
+    } while (end != END_OF_RECORD);
+    rowCount++;
+  }
+
+
+  /**
+   * Read the next field, setting fieldChars/fieldStart/fieldLength,
+   * and return whether it was followed by a delimiter or the end of a record.
+   */
+  protected int readField() {
+    char delim = tsv ? '\t' : ',';
+    int start = pos;
+
+    if (!tsv && pos < limit && c[pos] == '\"') {
+      return readQuotedField();
+    }
+    boolean escaped = false;
+    while (pos < limit) {
+      char ch = c[pos];
+      if (ch == delim) {
+        setField(start, pos, escaped);
+        pos++;
+        return DELIMITER;
+
+      } else if (ch == '\n' || ch == '\r') {
+        setField(start, pos, escaped);
+        skipNewline();
+        return END_OF_RECORD;
+
+      } else if (ch == '\"' && !tsv) {
+        if (pos + 1 < limit && c[pos+1] == '\"') {
+          // step over this crummy quote escape
+          escaped = true;
+          pos += 2;
+        } else if (pos + 1 == limit || c[pos+1] == '\n' || c[pos+1] == '\r') {
+          throw new RuntimeException("Unterminated quote at end of line");
+        } else {
+          throw new RuntimeException("Unterminated quoted field mid-line");
+        }
+      } else {
+        pos++;
+      }
+    }
+    setField(start, pos, escaped);
+    return END_OF_RECORD;
+  }
+
+
+  private int readQuotedField() {
+    pos++;  // step over the quote
+    int length = 0;
+    while (pos < limit) {
+      char ch = c[pos];
+      if (ch == '\"') {
+        if (pos + 1 == limit) {
+          pos++;
+          setScratch(length);
+          return END_OF_RECORD;
+        }
+        char next = c[pos+1];
+        if (next == '\"') {
+          // an escaped quote inside a quoted field
+          ch = '\"';
+          pos += 2;
+        } else if (next == ',') {
+          pos += 2;
+          setScratch(length);
+          return DELIMITER;
+        } else if (next == '\n' || next == '\r') {
+          pos++;
+          skipNewline();
+          setScratch(length);
+          return END_OF_RECORD;
+        } else {
+          // This is a lone-wolf quote, occasionally seen in exports.
+          pos++;
+        }
+      } else if (ch == '\r' || ch == '\n') {
+        // newlines inside quotes are converted to \n
+        skipNewline();
+        ch = '\n';
+      } else {
+        pos++;
+      }
+      if (length == scratch.length) {
+        char[] temp = new char[length << 1];
+        System.arraycopy(scratch, 0, temp, 0, length);
+        scratch = temp;
+      }
+      scratch[length++] = ch;
+    }
+    throw new RuntimeException("Found a quoted line that wasn't terminated properly.");
+  }
+
+
+  private void skipNewline() {
+    if (c[pos] == '\r' && pos + 1 < limit && c[pos+1] == '\n') {
+      pos++;
+    }
+    pos++;
+    lines++;
+  }
+
+
+  private void setField(int start, int stop, boolean escaped) {
+    if (escaped) {
+      int length = 0;
+      if (scratch.length < stop - start) {
+        scratch = new char[stop - start];
+      }
+      for (int i = start; i < stop; i++) {
+        if (c[i] == '\"') {
+          ++i;  // step over the quote
+        }
+        scratch[length++] = c[i];
+      }
+      setScratch(length);
+    } else {
+      fieldChars = c;
+      fieldStart = start;
+      fieldLength = stop - start;
+    }
+  }
+
+
+  private void setScratch(int length) {
+    fieldChars = scratch;
+    fieldStart = 0;
+    fieldLength = length;
+  }
+
+
+  protected String fieldString() {
+    return new String(fieldChars, fieldStart, fieldLength);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  protected void store(int col) {
+    if (col >= columnCount) {
+      addColumns(col + 1);
+    }
+    if (widen && fieldLength != 0) {
+      present[col].set(rowCount);
+      int type = types[col];
+      if (type != Table.STRING && type != Table.CATEGORY) {
+        int needed = wider(type, classify(fieldChars, fieldStart, fieldLength));
+        if (needed != type) {
+          columns[col] = convert(columns[col], rowCount, type, needed, present[col]);
+          types[col] = needed;
+        }
+      }
+    }
+    switch (types[col]) {
+      case Table.STRING:
+        if (columns[col] instanceof StringArena) {
+          StringArena arena = (StringArena) columns[col];
+          arena.pad(rowCount);  // rows that were short on fields
+          arena.add(fieldChars, fieldStart, fieldLength);
+        } else {
+          ((String[]) columns[col])[rowCount] = fieldString();
+        }
+        break;
+      case Table.INT:
+        ((int[]) columns[col])[rowCount] =
+          parseInt(fieldChars, fieldStart, fieldLength, missingInt);
+        break;
+      case Table.LONG:
+        ((long[]) columns[col])[rowCount] =
+          parseLong(fieldChars, fieldStart, fieldLength, missingLong);
+        break;
+      case Table.FLOAT:
+        ((float[]) columns[col])[rowCount] =
+          parseFloat(fieldChars, fieldStart, fieldLength, missingFloat);
+        break;
+      case Table.DOUBLE:
+        ((double[]) columns[col])[rowCount] =
+          parseDouble(fieldChars, fieldStart, fieldLength, missingDouble);
+        break;
+      case Table.CATEGORY:
+        String peace = fieldString();
+        ((int[]) columns[col])[rowCount] = peace.equals(missingString) ?
+          missingCategory : categories[col].index(peace);
+        break;
+      default:
+        throw new IllegalArgumentException("That's not a valid column type.");
+    }
+  }
+
+
+  protected void addColumns(int count) {
+    if (count > types.length) {
+      int[] temp = new int[count];
+      System.arraycopy(types, 0, temp, 0, types.length);
+      // additional columns default to String, as with Table.setColumnCount()
+      types = temp;
+    }
+    Object[] columnsTemp = new Object[count];
+    System.arraycopy(columns, 0, columnsTemp, 0, columnCount);
+    Table.HashMapBlows[] catTemp = new Table.HashMapBlows[count];
+    System.arraycopy(categories, 0, catTemp, 0, columnCount);
+    BitSet[] presentTemp = new BitSet[count];
+    System.arraycopy(present, 0, presentTemp, 0, columnCount);
+    for (int col = columnCount; col < count; col++) {
+      columnsTemp[col] = (compact && types[col] == Table.STRING) ?
+        new StringArena(false, capacity) : allocate(types[col], capacity);
+      if (types[col] == Table.CATEGORY) {
+        catTemp[col] = new Table.HashMapBlows();
+      }
+      presentTemp[col] = new BitSet();
+    }
+    columns = columnsTemp;
+    categories = catTemp;
+    present = presentTemp;
+    columnCount = count;
+  }
+
+
+  protected void expand(int newCapacity) {
+    for (int col = 0; col < columnCount; col++) {
+      if (columns[col] instanceof StringArena) {
+        continue;  // grows on its own
+      }
+      Object temp = allocate(types[col], newCapacity);
+      System.arraycopy(columns[col], 0, temp, 0, rowCount);
+      columns[col] = temp;
+    }
+    capacity = newCapacity;
+  }
+
+
+  static Object allocate(int type, int count) {
+    switch (type) {
+      case Table.INT:
+      case Table.CATEGORY: return new int[count];
+      case Table.LONG: return new long[count];
+      case Table.FLOAT: return new float[count];
+      case Table.DOUBLE: return new double[count];
+      case Table.STRING: return new String[count];
+      default: throw new IllegalArgumentException("That's not a valid column type.");
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Guess the type of each column from the first few records of this chunk,
+   * without storing anything. Numeric columns use the narrowest type that
+   * fits every (non-empty) entry in the sample. Other columns are CATEGORY
+   * when the same values keep coming up, and STRING otherwise.
+   * The read position is left where it was, so call() can follow.
+   */
+  int[] inferTypes(int sampleRows) {
+    if (c == null) {
+      decode();
+    }
+    int mark = pos;
+    int markLines = lines;
+    IntList inferred = new IntList();
+    IntList counts = new IntList();
+    ArrayList<HashSet<String>> distinct = new ArrayList<>();
+    try {
+      if (header && pos < limit) {
+        readTitles();
+      }
+      for (int row = 0; row < sampleRows && pos < limit; row++) {
+        int col = 0;
+        int end;
+        do {
+          end = readField();
+          if (col == inferred.size()) {
+            inferred.append(-1);
+            counts.append(0);
+            distinct.add(new HashSet<>());
+          }
+          if (fieldLength != 0) {
+            int type = classify(fieldChars, fieldStart, fieldLength);
+            int prev = inferred.get(col);
+            inferred.set(col, (prev == -1) ? type : wider(prev, type));
+            counts.increment(col);
+            HashSet<String> values = distinct.get(col);
+            // no need to keep track once it's clearly not a category
+            if (values.size() <= sampleRows / 4) {
+              values.add(fieldString());
+            }
+          }
+          col++;
+        } while (end != END_OF_RECORD);
+      }
+    } catch (RuntimeException e) {
+      // badly formed data; go with what's been seen so far,
+      // and let call() report the error
+    }
+    pos = mark;
+    lines = markLines;
+
+    int[] outgoing = new int[inferred.size()];
+    for (int col = 0; col < outgoing.length; col++) {
+      int type = inferred.get(col);
+      if (type == -1) {
+        type = Table.STRING;  // nothing but empty entries
+      } else if (type == Table.STRING &&
+                 distinct.get(col).size() * 4 <= counts.get(col)) {
+        type = Table.CATEGORY;
+      }
+      outgoing[col] = type;
+    }
+    return outgoing;
+  }
+
+
+  /**
+   * Return the narrowest column type that can hold this entry:
+   * INT or LONG for whole numbers, FLOAT for decimals that have no more
+   * than 7 significant digits, DOUBLE for other numbers, and STRING for
+   * everything else, including whole numbers with leading zeroes
+   * (zip codes, IDs) that would lose them if parsed.
+   */
+  static int classify(char[] c, int start, int length) {
+    int stop = start + length;
+    int i = start;
+    if (i < stop && (c[i] == '-' || c[i] == '+')) {
+      i++;
+    }
+    int firstDigit = i;
+    int digits = 0;
+    int significant = 0;
+    for (; i < stop && c[i] >= '0' && c[i] <= '9'; i++) {
+      digits++;
+      if (significant != 0 || c[i] != '0') significant++;
+    }
+    int wholeDigits = significant;
+    int fractionZeroes = 0;
+    boolean decimal = false;
+    if (i < stop && c[i] == '.') {
+      decimal = true;
+      for (i++; i < stop && c[i] >= '0' && c[i] <= '9'; i++) {
+        digits++;
+        if (significant != 0 || c[i] != '0') {
+          significant++;
+        } else {
+          fractionZeroes++;
+        }
+      }
+    }
+    if (digits == 0) {
+      return Table.STRING;
+    }
+    int exponent = 0;
+    if (i < stop && (c[i] == 'e' || c[i] == 'E')) {
+      decimal = true;
+      i++;
+      boolean negative = false;
+      if (i < stop && (c[i] == '-' || c[i] == '+')) {
+        negative = c[i] == '-';
+        i++;
+      }
+      int expStart = i;
+      for (; i < stop && c[i] >= '0' && c[i] <= '9'; i++) {
+        if (exponent < 1000) exponent = exponent * 10 + (c[i] - '0');
+      }
+      if (i == expStart) {
+        return Table.STRING;
+      }
+      if (negative) exponent = -exponent;
+    }
+    if (i != stop) {
+      return Table.STRING;
+    }
+
+    if (!decimal) {
+      if (digits > 1 && c[firstDigit] == '0') {
+        return Table.STRING;
+      }
+      if (digits <= 9) {
+        return Table.INT;
+      }
+      if (digits <= 19) {
+        try {
+          long value = Long.parseLong(new String(c, start, length));
+          return (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) ?
+            Table.INT : Table.LONG;
+        } catch (NumberFormatException nfe) { }  // too large for a long
+      }
+      return Table.DOUBLE;
+    }
+    // rough power of ten for the number, to avoid overflow or underflow
+    int magnitude = exponent +
+      ((wholeDigits != 0) ? wholeDigits - 1 : -(fractionZeroes + 1));
+    return (significant <= 7 && magnitude > -38 && magnitude < 38) ?
+      Table.FLOAT : Table.DOUBLE;
+  }
+
+
+  /**
+   * The narrowest type that can hold values of both types.
+   * Whole numbers stay whole (INT to LONG), and anything that
+   * mixes longs with decimals, or doubles with anything, is a DOUBLE.
+   */
+  static int wider(int a, int b) {
+    if (a == b) {
+      return a;
+    }
+    if (a == Table.STRING || b == Table.STRING ||
+        a == Table.CATEGORY || b == Table.CATEGORY) {
+      return Table.STRING;
+    }
+    if (a == Table.INT) {
+      return b;
+    }
+    if (b == Table.INT) {
+      return a;
+    }
+    return Table.DOUBLE;  // LONG and FLOAT, or either with DOUBLE
+  }
+
+
+  /**
+   * Convert the first count entries of a column to a wider type
+   * (see wider()). The new array has the same length as the old one.
+   * @param present the entries that weren't blank, or null if all of them;
+   *                the others become null when converting INT or LONG to STRING
+   */
+  static Object convert(Object data, int count, int from, int to, BitSet present) {
+    int length = java.lang.reflect.Array.getLength(data);
+    switch (to) {
+      case Table.LONG: {
+        int[] incoming = (int[]) data;
+        long[] outgoing = new long[length];
+        for (int i = 0; i < count; i++) {
+          outgoing[i] = incoming[i];
+        }
+        return outgoing;
+      }
+      case Table.FLOAT: {
+        int[] incoming = (int[]) data;
+        float[] outgoing = new float[length];
+        for (int i = 0; i < count; i++) {
+          outgoing[i] = incoming[i];
+        }
+        return outgoing;
+      }
+      case Table.DOUBLE: {
+        double[] outgoing = new double[length];
+        if (from == Table.INT) {
+          int[] incoming = (int[]) data;
+          for (int i = 0; i < count; i++) {
+            outgoing[i] = incoming[i];
+          }
+        } else if (from == Table.LONG) {
+          long[] incoming = (long[]) data;
+          for (int i = 0; i < count; i++) {
+            outgoing[i] = incoming[i];
+          }
+        } else {
+          float[] incoming = (float[]) data;
+          for (int i = 0; i < count; i++) {
+            float f = incoming[i];
+            // go through the String so that 0.1f becomes 0.1, not 0.10000000149
+            outgoing[i] = Float.isNaN(f) ? Double.NaN : Double.parseDouble(Float.toString(f));
+          }
+        }
+        return outgoing;
+      }
+      case Table.STRING: {
+        String[] outgoing = new String[length];
+        for (int i = 0; i < count; i++) {
+          if (present != null && !present.get(i)) {
+            continue;  // left as null, same as the NaN entries below
+          }
+          switch (from) {
+            case Table.INT:
+              outgoing[i] = String.valueOf(((int[]) data)[i]);
+              break;
+            case Table.LONG:
+              outgoing[i] = String.valueOf(((long[]) data)[i]);
+              break;
+            case Table.FLOAT:
+              float f = ((float[]) data)[i];
+              outgoing[i] = Float.isNaN(f) ? null : String.valueOf(f);
+              break;
+            case Table.DOUBLE:
+              double d = ((double[]) data)[i];
+              outgoing[i] = Double.isNaN(d) ? null : String.valueOf(d);
+              break;
+          }
+        }
+        return outgoing;
+      }
+    }
+    throw new IllegalArgumentException("Cannot convert column type " + from + " to " + to);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  // The parse functions below handle the common cases directly from the
+  // char array, and hand everything else (exponents, whitespace, "NaN",
+  // very long numbers) to the String versions so that the results match
+  // the ones from PApplet.parseInt(), Long.parseLong(), and so on.
+
+  static final double[] DOUBLE_POW10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  static final float[] FLOAT_POW10 = {
+    1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+  };
+
+
+  /** Same as PApplet.parseInt(), which truncates at the decimal point. */
+  static int parseInt(char[] c, int start, int length, int missing) {
+    int stop = start + length;
+    int i = start;
+    boolean negative = false;
+    if (i < stop && (c[i] == '-' || c[i] == '+')) {
+      negative = c[i] == '-';
+      i++;
+    }
+    int digitStart = i;
+    long value = 0;
+    while (i < stop && i - digitStart < 10) {
+      char ch = c[i];
+      if (ch >= '0' && ch <= '9') {
+        value = value * 10 + (ch - '0');
+        i++;
+      } else {
+        break;
+      }
+    }
+    if (i == digitStart || i - digitStart == 10 ||
+        (i < stop && c[i] != '.')) {
+      // no digits, too many digits, or something other than a decimal
+      return PApplet.parseInt(new String(c, start, length), missing);
+    }
+    return (int) (negative ? -value : value);
+  }
+
+
+  static long parseLong(char[] c, int start, int length, long missing) {
+    int stop = start + length;
+    int i = start;
+    boolean negative = false;
+    if (i < stop && (c[i] == '-' || c[i] == '+')) {
+      negative = c[i] == '-';
+      i++;
+    }
+    if (i == stop || stop - i > 18) {
+      return parseLongString(c, start, length, missing);
+    }
+    long value = 0;
+    for (; i < stop; i++) {
+      char ch = c[i];
+      if (ch < '0' || ch > '9') {
+        return parseLongString(c, start, length, missing);
+      }
+      value = value * 10 + (ch - '0');
+    }
+    return negative ? -value : value;
+  }
+
+
+  static private long parseLongString(char[] c, int start, int length, long missing) {
+    try {
+      return Long.parseLong(new String(c, start, length));
+    } catch (NumberFormatException nfe) {
+      return missing;
+    }
+  }
+
+
+  static float parseFloat(char[] c, int start, int length, float missing) {
+    int stop = start + length;
+    int i = start;
+    boolean negative = false;
+    if (i < stop && (c[i] == '-' || c[i] == '+')) {
+      negative = c[i] == '-';
+      i++;
+    }
+    int digits = 0;
+    int decimals = -1;
+    int mantissa = 0;
+    for (; i < stop; i++) {
+      char ch = c[i];
+      if (ch >= '0' && ch <= '9') {
+        mantissa = mantissa * 10 + (ch - '0');
+        if (decimals != -1) decimals++;
+        if (++digits > 7) break;
+      } else if (ch == '.' && decimals == -1) {
+        decimals = 0;
+      } else {
+        break;
+      }
+    }
+    if (i != stop || digits == 0 || decimals >= FLOAT_POW10.length) {
+      return PApplet.parseFloat(new String(c, start, length), missing);
+    }
+    // both values are exact, so the division is correctly rounded
+    float value = (decimals <= 0) ? mantissa : mantissa / FLOAT_POW10[decimals];
+    return negative ? -value : value;
+  }
+
+
+  static double parseDouble(char[] c, int start, int length, double missing) {
+    int stop = start + length;
+    int i = start;
+    boolean negative = false;
+    if (i < stop && (c[i] == '-' || c[i] == '+')) {
+      negative = c[i] == '-';
+      i++;
+    }
+    int digits = 0;
+    int decimals = -1;
+    long mantissa = 0;
+    for (; i < stop; i++) {
+      char ch = c[i];
+      if (ch >= '0' && ch <= '9') {
+        mantissa = mantissa * 10 + (ch - '0');
+        if (decimals != -1) decimals++;
+        if (++digits > 15) break;
+      } else if (ch == '.' && decimals == -1) {
+        decimals = 0;
+      } else {
+        break;
+      }
+    }
+    if (i != stop || digits == 0 || decimals >= DOUBLE_POW10.length) {
+      try {
+        return Double.parseDouble(new String(c, start, length));
+      } catch (NumberFormatException nfe) {
+        return missing;
+      }
+    }
+    // both values are exact, so the division is correctly rounded
+    double value = (decimals <= 0) ? mantissa : mantissa / DOUBLE_POW10[decimals];
+    return negative ? -value : value;
+  }
+}
@@ -0,0 +1,629 @@
+package processing.data;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+
+/**
+ * The result of Table.groupBy(): a Table with one row for each distinct
+ * value (or combination of values) in the key columns, in the order that
+ * they first appear. Aggregates are added as new columns, and each returns
+ * the same object so that they can be chained:
+ * <pre>
+ * Table totals = table.groupBy("region").sum("sales").mean("price").count();
+ * </pre>
+ * The rows of the original table are numbered by group once, when the
+ * TableGroup is created, and each aggregate after that is a single pass
+ * over the primitive array for its column. Nothing is boxed along the way.
+ * Large tables are split into partitions that run across cores. Partitions
+ * depend only on the number of rows, so the results (including rounding of
+ * float sums) are the same no matter how many cores there are.
+ * <p>
+ * The groups are a snapshot: if rows are added to or removed from the
+ * original table, call groupBy() again.
+ *
+ * @see Table#groupBy(String...)
+ */
+public class TableGroup extends Table {
+  /** Tables with at least this many rows are split across cores. */
+  static final int PARALLEL_THRESHOLD = 1 << 20;
+  static final int PARTITION_SIZE = 1 << 16;
+  static final int MAX_PARTITIONS = 64;
+
+  protected Table source;
+  /** Group number for each row of the source table. */
+  protected int[] groups;
+  /** Number of rows from the source in each group. */
+  protected int[] groupSizes;
+
+
+  protected TableGroup(Table source, int[] keyColumns) {
+    this.source = source;
+    for (int col : keyColumns) {
+      source.checkColumn(col);
+    }
+    int rows = source.getRowCount();
+    groups = new int[rows];
+
+    int count;
+    if (keyColumns.length == 0) {
+      count = (rows == 0) ? 0 : 1;  // everything in one group
+    } else {
+      count = columnGroups(keyColumns[0], groups);
+      for (int i = 1; i < keyColumns.length; i++) {
+        final int[] outer = groups;
+        final int[] inner = new int[rows];
+        columnGroups(keyColumns[i], inner);
+        groups = new int[rows];
+        count = longGroups(rows, (start, stop, keys) -> {
+          for (int row = start; row < stop; row++) {
+            keys[row - start] = ((long) outer[row] << 32) | inner[row];
+          }
+        }, groups);
+      }
+    }
+
+    // group numbers are handed out in order, so the first row
+    // of each group is the one where its number first shows up
+    int[] firstRows = new int[count];
+    groupSizes = new int[count];
+    int seen = 0;
+    for (int row = 0; row < rows; row++) {
+      int group = groups[row];
+      if (group == seen) {
+        firstRows[seen++] = row;
+      }
+      groupSizes[group]++;
+    }
+
+    rowCount = count;
+    for (int col : keyColumns) {
+      addColumn(source.getColumnTitle(col), source, col, firstRows);
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Add a column named "count" with the number of rows in each group.
+   */
+  public TableGroup count() {
+    addResult("count", INT, groupSizes.clone());
+    return this;
+  }
+
+
+  public TableGroup sum(String columnName) {
+    return sum(source.getColumnIndex(columnName));
+  }
+
+
+  /**
+   * Add a column with the total for each group, named "sum(title)".
+   * INT and LONG columns are added up as a LONG column, and FLOAT and
+   * DOUBLE columns as a DOUBLE column. NaN values are skipped.
+   */
+  public TableGroup sum(int column) {
+    int type = numericType(column, "sum");
+    if (type == INT || type == LONG) {
+      addResult(resultTitle("sum", column), LONG, sumLongs(column));
+    } else {
+      addResult(resultTitle("sum", column), DOUBLE, sumDoubles(column, null));
+    }
+    return this;
+  }
+
+
+  public TableGroup mean(String columnName) {
+    return mean(source.getColumnIndex(columnName));
+  }
+
+
+  /**
+   * Add a DOUBLE column with the average for each group, named
+   * "mean(title)". NaN values are skipped, and groups without any
+   * other values get NaN.
+   */
+  public TableGroup mean(int column) {
+    int type = numericType(column, "mean");
+    double[] means;
+    if (type == INT || type == LONG) {
+      long[] sums = sumLongs(column);
+      means = new double[rowCount];
+      for (int group = 0; group < rowCount; group++) {
+        means[group] = (double) sums[group] / groupSizes[group];
+      }
+    } else {
+      int[] counts = new int[rowCount];
+      means = sumDoubles(column, counts);
+      for (int group = 0; group < rowCount; group++) {
+        means[group] /= counts[group];  // 0/0 is NaN
+      }
+    }
+    addResult(resultTitle("mean", column), DOUBLE, means);
+    return this;
+  }
+
+
+  public TableGroup min(String columnName) {
+    return min(source.getColumnIndex(columnName));
+  }
+
+
+  /**
+   * Add a column with the lowest value in each group, named "min(title)",
+   * and the same type as the original. NaN values are skipped.
+   */
+  public TableGroup min(int column) {
+    return extreme(column, "min", false);
+  }
+
+
+  public TableGroup max(String columnName) {
+    return max(source.getColumnIndex(columnName));
+  }
+
+
+  /**
+   * Add a column with the highest value in each group, named "max(title)",
+   * and the same type as the original. NaN values are skipped.
+   */
+  public TableGroup max(int column) {
+    return extreme(column, "max", true);
+  }
+
+
+  private TableGroup extreme(int column, String name, boolean max) {
+    int type = numericType(column, name);
+    String title = resultTitle(name, column);
+    if (type == INT) {
+      long[] values = extremeLongs(column, max);
+      int[] outgoing = new int[rowCount];
+      for (int group = 0; group < rowCount; group++) {
+        outgoing[group] = (int) values[group];
+      }
+      addResult(title, INT, outgoing);
+
+    } else if (type == LONG) {
+      addResult(title, LONG, extremeLongs(column, max));
+
+    } else if (type == FLOAT) {
+      double[] values = extremeDoubles(column, max);
+      float[] outgoing = new float[rowCount];
+      for (int group = 0; group < rowCount; group++) {
+        outgoing[group] = (float) values[group];
+      }
+      addResult(title, FLOAT, outgoing);
+
+    } else {
+      addResult(title, DOUBLE, extremeDoubles(column, max));
+    }
+    return this;
+  }
+
+
+  private int numericType(int column, String name) {
+    source.checkColumn(column);
+    if (groups.length != source.getRowCount()) {
+      throw new IllegalStateException("The rows of the Table have changed " +
+                                      "since groupBy() was used");
+    }
+    int type = source.getColumnType(column);
+    if (type == STRING || type == CATEGORY) {
+      throw new IllegalArgumentException(name + "() only works with " +
+                                         "INT, LONG, FLOAT, or DOUBLE columns");
+    }
+    return type;
+  }
+
+
+  private String resultTitle(String name, int column) {
+    String title = source.getColumnTitle(column);
+    return name + "(" + (title == null ? String.valueOf(column) : title) + ")";
+  }
+
+
+  private void addResult(String title, int type, Object data) {
+    addColumn(title, type);
+    columns[columns.length - 1] = data;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Sums of an INT or LONG column for each group. */
+  private long[] sumLongs(int column) {
+    final Object data = source.columnArray(column);
+    final int parts = aggregateParts();
+    final long[][] partial = new long[parts][rowCount];
+    partitions(groups.length, parts, (start, stop, part) -> {
+      long[] sums = partial[part];
+      if (data instanceof int[]) {
+        int[] values = (int[]) data;
+        for (int row = start; row < stop; row++) {
+          sums[groups[row]] += values[row];
+        }
+      } else {
+        long[] values = (long[]) data;
+        for (int row = start; row < stop; row++) {
+          sums[groups[row]] += values[row];
+        }
+      }
+    });
+    long[] sums = partial[0];
+    for (int part = 1; part < parts; part++) {
+      for (int group = 0; group < rowCount; group++) {
+        sums[group] += partial[part][group];
+      }
+    }
+    return sums;
+  }
+
+
+  /**
+   * Sums of a FLOAT or DOUBLE column for each group, skipping NaN.
+   * If counts is not null, it's filled with the number of values used.
+   */
+  private double[] sumDoubles(int column, int[] counts) {
+    final Object data = source.columnArray(column);
+    final int parts = aggregateParts();
+    final double[][] partial = new double[parts][rowCount];
+    final int[][] partialCounts = new int[parts][rowCount];
+    partitions(groups.length, parts, (start, stop, part) -> {
+      double[] sums = partial[part];
+      int[] found = partialCounts[part];
+      if (data instanceof float[]) {
+        float[] values = (float[]) data;
+        for (int row = start; row < stop; row++) {
+          float value = values[row];
+          if (value == value) {
+            sums[groups[row]] += value;
+            found[groups[row]]++;
+          }
+        }
+      } else {
+        double[] values = (double[]) data;
+        for (int row = start; row < stop; row++) {
+          double value = values[row];
+          if (value == value) {
+            sums[groups[row]] += value;
+            found[groups[row]]++;
+          }
+        }
+      }
+    });
+    double[] sums = partial[0];
+    for (int part = 1; part < parts; part++) {
+      for (int group = 0; group < rowCount; group++) {
+        sums[group] += partial[part][group];
+        partialCounts[0][group] += partialCounts[part][group];
+      }
+    }
+    if (counts != null) {
+      System.arraycopy(partialCounts[0], 0, counts, 0, rowCount);
+    }
+    return sums;
+  }
+
+
+  /** Lowest or highest value of an INT or LONG column for each group. */
+  private long[] extremeLongs(int column, final boolean max) {
+    final Object data = source.columnArray(column);
+    final int parts = aggregateParts();
+    final long[][] partial = new long[parts][rowCount];
+    partitions(groups.length, parts, (start, stop, part) -> {
+      long[] found = partial[part];
+      Arrays.fill(found, max ? Long.MIN_VALUE : Long.MAX_VALUE);
+      if (data instanceof int[]) {
+        int[] values = (int[]) data;
+        for (int row = start; row < stop; row++) {
+          int group = groups[row];
+          found[group] = max ?
+            Math.max(found[group], values[row]) :
+            Math.min(found[group], values[row]);
+        }
+      } else {
+        long[] values = (long[]) data;
+        for (int row = start; row < stop; row++) {
+          int group = groups[row];
+          found[group] = max ?
+            Math.max(found[group], values[row]) :
+            Math.min(found[group], values[row]);
+        }
+      }
+    });
+    long[] found = partial[0];
+    for (int part = 1; part < parts; part++) {
+      for (int group = 0; group < rowCount; group++) {
+        found[group] = max ?
+          Math.max(found[group], partial[part][group]) :
+          Math.min(found[group], partial[part][group]);
+      }
+    }
+    return found;
+  }
+
+
+  /**
+   * Lowest or highest value of a FLOAT or DOUBLE column for each group,
+   * skipping NaN. Groups that only have NaN values are left as NaN.
+   */
+  private double[] extremeDoubles(int column, final boolean max) {
+    final Object data = source.columnArray(column);
+    final int parts = aggregateParts();
+    final double[][] partial = new double[parts][rowCount];
+    partitions(groups.length, parts, (start, stop, part) -> {
+      double[] found = partial[part];
+      Arrays.fill(found, Double.NaN);
+      if (data instanceof float[]) {
+        float[] values = (float[]) data;
+        for (int row = start; row < stop; row++) {
+          float value = values[row];
+          int group = groups[row];
+          if (value == value && !(max ? value <= found[group] : value >= found[group])) {
+            found[group] = value;
+          }
+        }
+      } else {
+        double[] values = (double[]) data;
+        for (int row = start; row < stop; row++) {
+          double value = values[row];
+          int group = groups[row];
+          if (value == value && !(max ? value <= found[group] : value >= found[group])) {
+            found[group] = value;
+          }
+        }
+      }
+    });
+    double[] found = partial[0];
+    for (int part = 1; part < parts; part++) {
+      for (int group = 0; group < rowCount; group++) {
+        double value = partial[part][group];
+        if (value == value && !(max ? value <= found[group] : value >= found[group])) {
+          found[group] = value;
+        }
+      }
+    }
+    return found;
+  }
+
+
+  /**
+   * Each partition keeps its own totals for every group, so only split
+   * up the work when there are plenty of rows for each group.
+   */
+  private int aggregateParts() {
+    int parts = partitionCount(groups.length);
+    return ((long) parts * rowCount > groups.length) ? 1 : parts;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  interface Partition {
+    void run(int start, int stop, int part);
+  }
+
+
+  interface KeyFill {
+    /** Set keys[0..stop-start] to the keys for rows start..stop-1. */
+    void fill(int start, int stop, long[] keys);
+  }
+
+
+  static int partitionCount(int rows) {
+    if (rows < PARALLEL_THRESHOLD) {
+      return 1;
+    }
+    return Math.min(MAX_PARTITIONS, (rows + PARTITION_SIZE - 1) / PARTITION_SIZE);
+  }
+
+
+  /** Split rows into equal partitions, and run them across cores. */
+  static void partitions(final int rows, final int parts, final Partition task) {
+    if (parts == 1) {
+      task.run(0, rows, 0);
+    } else {
+      IntStream.range(0, parts).parallel().forEach(part ->
+        task.run((int) ((long) rows * part / parts),
+                 (int) ((long) rows * (part + 1) / parts), part));
+    }
+  }
+
+
+  /**
+   * Number each row by the distinct values in a column, in order of
+   * first appearance. Returns the number of distinct values.
+   */
+  private int columnGroups(int column, int[] ids) {
+    final Object data = source.columnArray(column);
+    int rows = ids.length;
+    switch (source.getColumnType(column)) {
+      case STRING:
+        return stringGroups((String[]) data, ids);
+      case INT:
+      case CATEGORY:
+        return longGroups(rows, (start, stop, keys) -> {
+          int[] values = (int[]) data;
+          for (int row = start; row < stop; row++) {
+            keys[row - start] = values[row];
+          }
+        }, ids);
+      case LONG:
+        return longGroups(rows, (start, stop, keys) ->
+          System.arraycopy((long[]) data, start, keys, 0, stop - start), ids);
+      case FLOAT:
+        return longGroups(rows, (start, stop, keys) -> {
+          float[] values = (float[]) data;
+          for (int row = start; row < stop; row++) {
+            // adding 0 turns -0 into 0, and floatToIntBits() has a single NaN
+            keys[row - start] = Float.floatToIntBits(values[row] + 0.0f);
+          }
+        }, ids);
+      case DOUBLE:
+        return longGroups(rows, (start, stop, keys) -> {
+          double[] values = (double[]) data;
+          for (int row = start; row < stop; row++) {
+            keys[row - start] = Double.doubleToLongBits(values[row] + 0.0);
+          }
+        }, ids);
+    }
+    throw new IllegalArgumentException("Unknown column type");
+  }
+
+
+  /**
+   * Each partition numbers its own keys, then the partitions are merged
+   * in order, so the numbers come out the same as a single pass would.
+   */
+  static int longGroups(final int rows, final KeyFill fill, final int[] ids) {
+    final int parts = partitionCount(rows);
+    final LongHash[] hashes = new LongHash[parts];
+    partitions(rows, parts, (start, stop, part) -> {
+      long[] keys = new long[stop - start];
+      fill.fill(start, stop, keys);
+      LongHash hash = new LongHash();
+      for (int i = 0; i < keys.length; i++) {
+        ids[start + i] = hash.add(keys[i]);
+      }
+      hashes[part] = hash;
+    });
+
+    final int[][] remap = new int[parts][];
+    LongHash merged = hashes[0];
+    for (int part = 1; part < parts; part++) {
+      LongHash hash = hashes[part];
+      remap[part] = new int[hash.count];
+      for (int i = 0; i < hash.count; i++) {
+        remap[part][i] = merged.add(hash.keys[i]);
+      }
+    }
+    renumber(rows, parts, remap, ids);
+    return merged.count;
+  }
+
+
+  static int stringGroups(final String[] data, final int[] ids) {
+    final int rows = ids.length;
+    final int parts = partitionCount(rows);
+    final StringHash[] hashes = new StringHash[parts];
+    partitions(rows, parts, (start, stop, part) -> {
+      StringHash hash = new StringHash();
+      for (int row = start; row < stop; row++) {
+        ids[row] = hash.add(data[row]);
+      }
+      hashes[part] = hash;
+    });
+
+    final int[][] remap = new int[parts][];
+    StringHash merged = hashes[0];
+    for (int part = 1; part < parts; part++) {
+      StringHash hash = hashes[part];
+      remap[part] = new int[hash.count];
+      for (int i = 0; i < hash.count; i++) {
+        remap[part][i] = merged.add(hash.keys[i]);
+      }
+    }
+    renumber(rows, parts, remap, ids);
+    return merged.count;
+  }
+
+
+  /** Switch the numbers from each partition over to the merged ones. */
+  static private void renumber(int rows, int parts, final int[][] remap, final int[] ids) {
+    if (parts > 1) {
+      partitions(rows, parts, (start, stop, part) -> {
+        if (part != 0) {  // the first partition is already merged
+          int[] lookup = remap[part];
+          for (int row = start; row < stop; row++) {
+            ids[row] = lookup[ids[row]];
+          }
+        }
+      });
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Numbers each distinct long key in the order they're added,
+   * with the lookups done by HashSlots.
+   */
+  static class LongHash {
+    long[] keys = new long[8];  // [number]
+    HashSlots slots = new HashSlots();
+    int count;
+
+    int add(long key) {
+      int hash = HashSlots.mix(key);
+      int number = find(key, hash);
+      if (number != -1) {
+        return number;
+      }
+      if (count == keys.length) {
+        keys = Arrays.copyOf(keys, count << 1);
+      }
+      keys[count] = key;
+      slots.add(hash, count);
+      return count++;
+    }
+
+    /** The number for a key, or -1 if it hasn't been added. */
+    int find(long key) {
+      return find(key, HashSlots.mix(key));
+    }
+
+    private int find(long key, int hash) {
+      for (int i = slots.candidates(hash, -1); i != -1; i = slots.candidates(hash, i)) {
+        int number = slots.entry(i);
+        if (keys[number] == key) {
+          return number;
+        }
+      }
+      return -1;
+    }
+  }
+
+
+  /** Same as LongHash, for Strings (including null). */
+  static class StringHash {
+    String[] keys = new String[8];  // [number]
+    HashSlots slots = new HashSlots();
+    int count;
+
+    int add(String key) {
+      int hash = HashSlots.hash(key);
+      int number = find(key, hash);
+      if (number != -1) {
+        return number;
+      }
+      if (count == keys.length) {
+        keys = Arrays.copyOf(keys, count << 1);
+      }
+      keys[count] = key;
+      slots.add(hash, count);
+      return count++;
+    }
+
+    int find(String key) {
+      return find(key, HashSlots.hash(key));
+    }
+
+    private int find(String key, int hash) {
+      for (int i = slots.candidates(hash, -1); i != -1; i = slots.candidates(hash, i)) {
+        int number = slots.entry(i);
+        if (Objects.equals(keys[number], key)) {
+          return number;
+        }
+      }
+      return -1;
+    }
+  }
+}
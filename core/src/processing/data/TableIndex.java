@@ -0,0 +1,415 @@
+package processing.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+
+/**
+ * An index on a single column of a Table, created with createIndex() or
+ * createSortedIndex(). The Table keeps its indices up to date as rows are
+ * set, added, inserted, and removed: remove() is called with the old value
+ * still in place, and add() once the new value has been set. Changes that
+ * touch the whole column (sorting, replace(), setColumnType(), etc.) mark
+ * the index as stale instead, and it's rebuilt the next time it's used.
+ * Advanced users only, not official API.
+ */
+abstract class TableIndex {
+  final Table table;
+  int column;
+  boolean stale = true;
+
+
+  TableIndex(Table table, int column) {
+    this.table = table;
+    this.column = column;
+  }
+
+
+  void invalidate() {
+    stale = true;
+  }
+
+
+  /** Rebuild the index if it's stale. */
+  void update() {
+    if (stale) {
+      rebuild();
+      stale = false;
+    }
+  }
+
+
+  abstract void rebuild();
+
+  /** Add a row to the index, using its current value. */
+  abstract void add(int row);
+
+  /** Remove a row from the index, using its current value. */
+  abstract void remove(int row);
+
+  /** Add delta to the numbers of all rows at or after start. */
+  abstract void shiftRows(int start, int delta);
+
+
+  /**
+   * Same as table.getString() for this column, except that a CATEGORY
+   * entry that hasn't been set yet (in a row that was just added, before
+   * there's a category for it to point at) is null instead of an exception.
+   */
+  String getString(int row) {
+    if (table.getColumnType(column) == Table.CATEGORY) {
+      int index = table.getInt(row, column);
+      if (index != table.missingCategory &&
+          (index < 0 || index >= table.columnCategories[column].size())) {
+        return null;
+      }
+    }
+    return table.getString(row, column);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Put a row number into a list of rows that's sorted low to high. */
+  static void insertSorted(IntList list, int row) {
+    int count = list.count;
+    if (count == 0 || list.data[count - 1] < row) {
+      list.append(row);  // usually the case, rows are mostly added at the end
+    } else {
+      int index = Arrays.binarySearch(list.data, 0, count, row);
+      if (index < 0) {
+        index = -(index + 1);
+        list.append(0);  // make room
+        System.arraycopy(list.data, index, list.data, index + 1, count - index);
+        list.data[index] = row;
+      }
+    }
+  }
+
+
+  static void removeSorted(IntList list, int row) {
+    int index = Arrays.binarySearch(list.data, 0, list.count, row);
+    if (index >= 0) {
+      list.remove(index);
+    }
+  }
+
+
+  static void shiftSorted(IntList list, int start, int delta) {
+    int index = Arrays.binarySearch(list.data, 0, list.count, start);
+    for (int i = (index < 0) ? -(index + 1) : index; i < list.count; i++) {
+      list.data[i] += delta;
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Hash index for findRowIndex() and findRowIndices(). Entries are looked
+   * up by the same String that getString() returns for each row, so the
+   * results are identical to searching the column one row at a time.
+   */
+  static class Hash extends TableIndex {
+    HashMap<String, IntList> rows = new HashMap<>();
+
+    Hash(Table table, int column) {
+      super(table, column);
+    }
+
+    void rebuild() {
+      rows.clear();
+      int rowCount = table.getRowCount();
+      for (int row = 0; row < rowCount; row++) {
+        append(row);
+      }
+    }
+
+    private void append(int row) {
+      String key = getString(row);
+      IntList list = rows.get(key);
+      if (list == null) {
+        list = new IntList(1);
+        rows.put(key, list);
+      }
+      insertSorted(list, row);
+    }
+
+    void add(int row) {
+      if (!stale) {
+        append(row);
+      }
+    }
+
+    void remove(int row) {
+      if (!stale) {
+        String key = getString(row);
+        IntList list = rows.get(key);
+        if (list != null) {
+          removeSorted(list, row);
+          if (list.size() == 0) {
+            rows.remove(key);
+          }
+        }
+      }
+    }
+
+    void shiftRows(int start, int delta) {
+      if (!stale) {
+        for (IntList list : rows.values()) {
+          shiftSorted(list, start, delta);
+        }
+      }
+    }
+
+    /** Return the first row with this value, or -1 if there isn't one. */
+    int find(String value) {
+      update();
+      IntList list = rows.get(value);
+      return (list == null) ? -1 : list.get(0);
+    }
+
+    /** All rows with this value, lowest to highest. */
+    int[] findAll(String value) {
+      update();
+      IntList list = rows.get(value);
+      return (list == null) ? new int[0] : list.toArray();
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Sorted index for findRowIndicesBetween(). Row numbers are kept sorted
+   * by the value in the column (numerically for numbers, ignoring case for
+   * Strings, the same order as Table.sort()), and by row number for
+   * identical values. Categories are ordered by name, ignoring case, so
+   * that ranges of names can be found; Table.sort() orders them by their
+   * category index instead. Rows that are added go into a pending
+   * list, which is sorted and merged in the next time the index is used,
+   * so that adding many rows in a row doesn't shuffle the array each time.
+   */
+  static class Sorted extends TableIndex {
+    int[] sorted = new int[0];
+    int count;
+    IntList pending = new IntList();
+
+    Sorted(Table table, int column) {
+      super(table, column);
+    }
+
+    void rebuild() {
+      count = 0;
+      pending.clear();
+      int rowCount = table.getRowCount();
+      for (int row = 0; row < rowCount; row++) {
+        pending.append(row);
+      }
+      merge();
+    }
+
+    @Override
+    void update() {
+      super.update();
+      if (pending.size() != 0) {
+        merge();
+      }
+    }
+
+    void add(int row) {
+      if (!stale) {
+        pending.append(row);
+      }
+    }
+
+    void remove(int row) {
+      if (!stale) {
+        // search from the end, since the most recently added rows
+        // are usually the ones being set
+        for (int i = pending.size() - 1; i >= 0; --i) {
+          if (pending.data[i] == row) {
+            pending.remove(i);
+            return;
+          }
+        }
+        int index = search(row);
+        if (index != -1) {
+          System.arraycopy(sorted, index + 1, sorted, index, count - index - 1);
+          count--;
+        }
+      }
+    }
+
+    void shiftRows(int start, int delta) {
+      if (!stale) {
+        // moving every row past a point by the same amount keeps the order
+        for (int i = 0; i < count; i++) {
+          if (sorted[i] >= start) {
+            sorted[i] += delta;
+          }
+        }
+        for (int i = 0; i < pending.count; i++) {
+          if (pending.data[i] >= start) {
+            pending.data[i] += delta;
+          }
+        }
+      }
+    }
+
+    /** Binary search for where this row is in the sorted list. */
+    private int search(int row) {
+      int lo = 0;
+      int hi = count - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        int diff = compareRows(sorted[mid], row);
+        if (diff < 0) {
+          lo = mid + 1;
+        } else if (diff > 0) {
+          hi = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+
+    private void merge() {
+      final int[] incoming = pending.toArray();
+      pending.clear();
+      new Sort() {
+        @Override
+        public int size() {
+          return incoming.length;
+        }
+
+        @Override
+        public int compare(int a, int b) {
+          return compareRows(incoming[a], incoming[b]);
+        }
+
+        @Override
+        public void swap(int a, int b) {
+          int temp = incoming[a];
+          incoming[a] = incoming[b];
+          incoming[b] = temp;
+        }
+      }.run();
+
+      int[] outgoing = new int[count + incoming.length];
+      int i = 0, j = 0, k = 0;
+      while (i < count && j < incoming.length) {
+        if (compareRows(incoming[j], sorted[i]) < 0) {
+          outgoing[k++] = incoming[j++];
+        } else {
+          outgoing[k++] = sorted[i++];
+        }
+      }
+      while (i < count) {
+        outgoing[k++] = sorted[i++];
+      }
+      while (j < incoming.length) {
+        outgoing[k++] = incoming[j++];
+      }
+      sorted = outgoing;
+      count = outgoing.length;
+    }
+
+    /** Order by value, then by row number, so every entry has its place. */
+    int compareRows(int a, int b) {
+      int diff;
+      switch (table.getColumnType(column)) {
+        case Table.INT:
+          diff = Integer.compare(table.getInt(a, column), table.getInt(b, column));
+          break;
+        case Table.LONG:
+          diff = Long.compare(table.getLong(a, column), table.getLong(b, column));
+          break;
+        case Table.FLOAT:
+          diff = Float.compare(table.getFloat(a, column), table.getFloat(b, column));
+          break;
+        case Table.DOUBLE:
+          diff = Double.compare(table.getDouble(a, column), table.getDouble(b, column));
+          break;
+        default:
+          diff = compareStrings(getString(a), getString(b));
+      }
+      return (diff != 0) ? diff : Integer.compare(a, b);
+    }
+
+    static int compareStrings(String a, String b) {
+      // avoid NPE when cells are left empty, same as Table.sort()
+      return (a == null ? "" : a).compareToIgnoreCase(b == null ? "" : b);
+    }
+
+    boolean isNumeric() {
+      int type = table.getColumnType(column);
+      return type != Table.STRING && type != Table.CATEGORY;
+    }
+
+    /** Compare the value in a row (of a numeric column) to a number. */
+    int compareValue(int row, double value) {
+      double d;
+      switch (table.getColumnType(column)) {
+        case Table.INT: d = table.getInt(row, column); break;
+        case Table.LONG: d = table.getLong(row, column); break;
+        case Table.FLOAT: d = table.getFloat(row, column); break;
+        default: d = table.getDouble(row, column);
+      }
+      // NaN sorts after everything else, and never matches
+      return (d != d) ? 1 : (d < value ? -1 : (d > value ? 1 : 0));
+    }
+
+    /**
+     * Rows with values from low to high (inclusive), lowest row first.
+     * Numbers for numeric columns, Strings otherwise.
+     */
+    int[] findBetween(double low, double high) {
+      update();
+      int start = lowerBound(low, null, true, true);
+      int stop = lowerBound(high, null, true, false);
+      return rowsBetween(start, stop);
+    }
+
+    int[] findBetween(String low, String high) {
+      update();
+      int start = lowerBound(0, low, false, true);
+      int stop = lowerBound(0, high, false, false);
+      return rowsBetween(start, stop);
+    }
+
+    /**
+     * Index of the first entry that's greater than or equal to the
+     * value (inclusive) or just greater than the value (!inclusive).
+     */
+    private int lowerBound(double number, String string,
+                           boolean numeric, boolean inclusive) {
+      int lo = 0;
+      int hi = count;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        int diff = numeric ? compareValue(sorted[mid], number) :
+          compareStrings(getString(sorted[mid]), string);
+        if (diff < 0 || (diff == 0 && !inclusive)) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    private int[] rowsBetween(int start, int stop) {
+      if (stop <= start) {
+        return new int[0];
+      }
+      int[] outgoing = Arrays.copyOfRange(sorted, start, stop);
+      RadixSort.sort(outgoing, outgoing.length);
+      return outgoing;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package processing.data;
+
+
+/**
+ * Hash join for Table.join(). The distinct keys in the smaller table are
+ * numbered using a hash, and the rows of the larger table are looked up
+ * by key. The rows of the result are worked out as pairs of row numbers,
+ * and then each column is copied over in one go with Table.addColumn().
+ * Advanced users only, not official API.
+ */
+class TableJoin {
+  /** INT and LONG columns, or two CATEGORY columns */
+  static final int LONG_KEYS = 0;
+  /** FLOAT or DOUBLE together with any other number column */
+  static final int DOUBLE_KEYS = 1;
+  /** Everything else is compared using getString() */
+  static final int STRING_KEYS = 2;
+
+  final Table left;
+  final int leftKey;
+  final Table right;
+  final int rightKey;
+  final int kind;
+
+  /** Category numbers in the right table mapped to the left, or -1. */
+  int[] categoryMap;
+
+  TableGroup.LongHash longHash = new TableGroup.LongHash();
+  TableGroup.StringHash stringHash = new TableGroup.StringHash();
+
+
+  TableJoin(Table left, int leftKey, Table right, int rightKey) {
+    left.checkColumn(leftKey);
+    right.checkColumn(rightKey);
+    this.left = left;
+    this.leftKey = leftKey;
+    this.right = right;
+    this.rightKey = rightKey;
+
+    int leftType = left.getColumnType(leftKey);
+    int rightType = right.getColumnType(rightKey);
+    if (leftType == Table.CATEGORY && rightType == Table.CATEGORY) {
+      kind = LONG_KEYS;
+      // the names match up, not the numbers
+      Table.HashMapBlows leftCategories = left.copyCategories(leftKey);
+      Table.HashMapBlows rightCategories = right.copyCategories(rightKey);
+      categoryMap = new int[rightCategories.size()];
+      for (int i = 0; i < categoryMap.length; i++) {
+        categoryMap[i] = rightCategories.hasCategory(i) ?
+          leftCategories.find(rightCategories.key(i)) : -1;
+      }
+    } else if (isNumber(leftType) && isNumber(rightType)) {
+      boolean whole =
+        (leftType == Table.INT || leftType == Table.LONG) &&
+        (rightType == Table.INT || rightType == Table.LONG);
+      kind = whole ? LONG_KEYS : DOUBLE_KEYS;
+    } else {
+      kind = STRING_KEYS;
+    }
+  }
+
+
+  static boolean isNumber(int type) {
+    return type != Table.STRING && type != Table.CATEGORY;
+  }
+
+
+  Table join(boolean outer) {
+    // hash whichever side is smaller, and look up the other one
+    boolean buildLeft = left.getRowCount() < right.getRowCount();
+    int[] leftIds;
+    int[] rightIds;
+    if (buildLeft) {
+      leftIds = number(left, leftKey, null, true);
+      rightIds = number(right, rightKey, categoryMap, false);
+    } else {
+      rightIds = number(right, rightKey, categoryMap, true);
+      leftIds = number(left, leftKey, null, false);
+    }
+    int count = (kind == STRING_KEYS) ? stringHash.count : longHash.count;
+
+    // list the rows of the right table for each key, in order
+    int[] starts = new int[count + 1];
+    for (int id : rightIds) {
+      if (id != -1) {
+        starts[id + 1]++;
+      }
+    }
+    for (int id = 0; id < count; id++) {
+      starts[id + 1] += starts[id];
+    }
+    int[] next = starts.clone();
+    int[] rightRows = new int[starts[count]];
+    for (int row = 0; row < rightIds.length; row++) {
+      int id = rightIds[row];
+      if (id != -1) {
+        rightRows[next[id]++] = row;
+      }
+    }
+
+    IntList outLeft = new IntList();
+    IntList outRight = new IntList();
+    for (int row = 0; row < leftIds.length; row++) {
+      int id = leftIds[row];
+      int start = (id == -1) ? 0 : starts[id];
+      int stop = (id == -1) ? 0 : starts[id + 1];
+      for (int i = start; i < stop; i++) {
+        outLeft.append(row);
+        outRight.append(rightRows[i]);
+      }
+      if (start == stop && outer) {
+        outLeft.append(row);
+        outRight.append(-1);
+      }
+    }
+
+    Table outgoing = new Table();
+    outgoing.rowCount = outLeft.size();
+    for (int col = 0; col < left.getColumnCount(); col++) {
+      outgoing.addColumn(left.getColumnTitle(col), left, col, outLeft.data);
+    }
+    for (int col = 0; col < right.getColumnCount(); col++) {
+      if (col != rightKey) {
+        String title = right.getColumnTitle(col);
+        if (title != null && outgoing.getColumnIndex(title, false) != -1) {
+          int suffix = 2;
+          while (outgoing.getColumnIndex(title + "_" + suffix, false) != -1) {
+            suffix++;
+          }
+          title += "_" + suffix;
+        }
+        outgoing.addColumn(title, right, col, outRight.data);
+      }
+    }
+    return outgoing;
+  }
+
+
+  /**
+   * Number the key for each row in a column, adding the keys to the hash
+   * (build) or looking them up. Rows with empty keys (null, NaN, or a
+   * missing category) and keys that aren't found are given -1.
+   */
+  private int[] number(Table table, int column, int[] categories, boolean build) {
+    int rows = table.getRowCount();
+    int[] ids = new int[rows];
+    if (kind == STRING_KEYS) {
+      for (int row = 0; row < rows; row++) {
+        String key = table.getString(row, column);
+        if (key == null) {
+          ids[row] = -1;
+        } else {
+          ids[row] = build ? stringHash.add(key) : stringHash.find(key);
+        }
+      }
+      return ids;
+    }
+
+    Object data = table.columnArray(column);
+    for (int row = 0; row < rows; row++) {
+      long key;
+      if (data instanceof int[]) {
+        int value = ((int[]) data)[row];
+        if (categoryMap != null) {  // two CATEGORY columns
+          if (categories != null) {
+            value = (value >= 0 && value < categories.length) ? categories[value] : -1;
+          }
+          if (value < 0) {
+            ids[row] = -1;
+            continue;
+          }
+        }
+        key = (kind == DOUBLE_KEYS) ? Double.doubleToLongBits(value) : value;
+
+      } else if (data instanceof long[]) {
+        long value = ((long[]) data)[row];
+        key = (kind == DOUBLE_KEYS) ? Double.doubleToLongBits(value) : value;
+
+      } else {
+        double value = (data instanceof float[]) ?
+          ((float[]) data)[row] : ((double[]) data)[row];
+        if (value != value) {
+          ids[row] = -1;
+          continue;
+        }
+        key = Double.doubleToLongBits(value + 0.0);  // so that -0 matches 0
+      }
+      ids[row] = build ? longHash.add(key) : longHash.find(key);
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,287 @@
+package processing.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import processing.core.PApplet;
+
+
+/**
+ * Keeps a Table saved in a CSV or TSV file by adding new rows to the end
+ * of the file, rather than writing the whole thing with saveTable() each
+ * time, so that saving costs the same however large the Table grows.
+ * <pre>
+ * table = new Table();
+ * table.addColumn("time", Table.LONG);
+ * table.addColumn("reading", Table.FLOAT);
+ * log = new TableLog(table, new File(sketchPath("readings.csv")));
+ * ...
+ * TableRow row = table.addRow();
+ * row.setLong("time", System.currentTimeMillis());
+ * row.setFloat("reading", sensor.read());
+ * </pre>
+ * Rows that are already in the file are read back into the Table when
+ * the log is created, so a sketch that's restarted picks up where it left
+ * off. If the sketch stopped while a row was being written, the partial
+ * row is removed from the file. The file has a header row if the Table
+ * has column titles.
+ * <p/>
+ * New rows are written in batches: once setFlushRows() rows are waiting
+ * (1000 by default), or setFlushInterval() milliseconds (also 1000) have
+ * passed, the next time a row is added. The newest row isn't written
+ * then, because its values are usually still being set. flush() writes
+ * everything, and close() does the same before detaching the log.
+ * <p/>
+ * If rows that are already in the file are changed, removed, or sorted,
+ * the whole Table is written to the file again by the next flush, which
+ * can also be done any time with compact(). Changes to the columns aren't
+ * tracked, so call compact() after adding or removing one.
+ *
+ * @nowebref
+ */
+public class TableLog {
+  final Table table;
+  final File file;
+  final boolean tsv;
+
+  OutputStream output;
+  /** Number of rows that are in the file */
+  int logged;
+  /** Set by the Table when rows that are in the file have been changed */
+  boolean changed;
+
+  int flushRows = 1000;
+  int flushInterval = 1000;
+  long lastFlush = System.currentTimeMillis();
+
+
+  /**
+   * Start logging a Table to a file ending in .csv or .tsv. Rows already
+   * in the file are added to the end of the Table, using its column types.
+   */
+  public TableLog(Table table, File file) throws IOException {
+    String extension = PApplet.checkExtension(file.getName());
+    if (!"csv".equals(extension) && !"tsv".equals(extension)) {
+      throw new IllegalArgumentException("A TableLog file must end in .csv or .tsv");
+    }
+    this.table = table;
+    this.file = file;
+    this.tsv = extension.equals("tsv");
+
+    int existing = table.getRowCount();
+    if (file.length() > 0 && replay()) {
+      logged = table.getRowCount();
+      if (existing != 0) {
+        // the file's rows went after the ones that were already in memory
+        writeAll();
+      }
+    } else {
+      output = new FileOutputStream(file);
+      if (table.hasColumnTitles()) {
+        output.write(encode(-1, 0));
+      }
+    }
+    if (output == null) {
+      output = new FileOutputStream(file, true);
+    }
+    table.log = this;
+  }
+
+
+  /** Write new rows once this many are waiting. */
+  public void setFlushRows(int count) {
+    flushRows = count;
+  }
+
+
+  /** Write new rows once this many milliseconds have passed. */
+  public void setFlushInterval(int millis) {
+    flushInterval = millis;
+  }
+
+
+  /** Write all the rows that aren't in the file yet. */
+  public boolean flush() {
+    try {
+      write(table.getRowCount());
+      return true;
+    } catch (IOException e) {
+      e.printStackTrace();
+      return false;
+    }
+  }
+
+
+  /**
+   * Write the whole Table to the file again, replacing what's there, for
+   * instance after rows have been changed. The new version is written to
+   * a temporary file first, so the old one is kept if this fails partway.
+   */
+  public boolean compact() {
+    try {
+      writeAll();
+      return true;
+    } catch (IOException e) {
+      e.printStackTrace();
+      return false;
+    }
+  }
+
+
+  /** Write any remaining rows, close the file, and stop logging. */
+  public boolean close() {
+    boolean success = flush();
+    try {
+      output.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+      success = false;
+    }
+    if (table.log == this) {
+      table.log = null;
+    }
+    return success;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Called by the Table before it adds rows; rows before complete are done. */
+  void rowsAdded(int complete) {
+    int waiting = complete - logged;
+    if (waiting >= flushRows ||
+        (waiting > 0 && System.currentTimeMillis() - lastFlush >= flushInterval)) {
+      try {
+        write(complete);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+
+  /** Add the rows up to (but not including) end to the file. */
+  void write(int end) throws IOException {
+    if (changed) {
+      writeAll();
+    } else if (end > logged) {
+      output.write(encode(logged, end));
+      output.flush();
+      logged = end;
+    }
+    lastFlush = System.currentTimeMillis();
+  }
+
+
+  void writeAll() throws IOException {
+    File temp = new File(file.getPath() + ".tmp");
+    try (OutputStream os = new FileOutputStream(temp)) {
+      if (table.hasColumnTitles()) {
+        os.write(encode(-1, 0));
+      }
+      os.write(encode(0, table.getRowCount()));
+    }
+    if (output != null) {
+      output.close();
+    }
+    try {
+      Files.move(temp.toPath(), file.toPath(),
+                 StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    output = new FileOutputStream(file, true);
+    logged = table.getRowCount();
+    changed = false;
+    lastFlush = System.currentTimeMillis();
+  }
+
+
+  /** Rows from start to end as UTF-8 text, or the titles if start is -1. */
+  byte[] encode(int start, int end) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrintWriter writer =
+      new PrintWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8));
+    if (start == -1) {
+      for (int col = 0; col < table.getColumnCount(); col++) {
+        if (col != 0) {
+          writer.print(tsv ? '\t' : ',');
+        }
+        String title = table.getColumnTitle(col);
+        if (title != null) {
+          if (tsv) {
+            writer.print(title);
+          } else {
+            table.writeEntryCSV(writer, title);
+          }
+        }
+      }
+      writer.println();
+    } else {
+      for (int row = start; row < end; row++) {
+        if (tsv) {
+          table.writeRowTSV(writer, row);
+        } else {
+          table.writeRowCSV(writer, row);
+        }
+      }
+    }
+    writer.flush();
+    return bytes.toByteArray();
+  }
+
+
+  /**
+   * Read the rows in the file into the Table, after cutting off a row
+   * that was only partly written. Returns false if there are no rows.
+   */
+  boolean replay() throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      long end = raf.length();
+      byte[] buffer = new byte[8192];
+      while (end > 0) {
+        int length = (int) Math.min(buffer.length, end);
+        raf.seek(end - length);
+        raf.readFully(buffer, 0, length);
+        int i = length - 1;
+        while (i >= 0 && buffer[i] != '\n') {
+          i--;
+        }
+        if (i >= 0) {
+          end = end - length + i + 1;
+          break;
+        }
+        end -= length;
+      }
+      if (end < raf.length()) {
+        raf.setLength(end);
+      }
+      if (end == 0) {
+        return false;
+      }
+    }
+    String options = tsv ? "tsv" : "csv";
+    if (table.hasColumnTitles()) {
+      options += ",header";
+    }
+    Table loaded = new Table(file, options);
+    int start = table.getRowCount();
+    int count = loaded.getRowCount();
+    table.setRowCount(start + count);
+    for (int row = 0; row < count; row++) {
+      table.setRow(start + row, loaded.getStringRow(row));
+    }
+    return true;
+  }
+}
@@ -0,0 +1,327 @@
+package processing.data;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+
+/**
+ * Copies Table rows into the fields of objects for Table.parseInto(), and
+ * objects into a Table for Table.fromObjects(). The fields and constructor
+ * are found once and turned into MethodHandles, and the result is kept
+ * for each class and column layout, so the work for each row is only the
+ * calls to the handles. Large tables are handled in chunks on several
+ * threads at once.
+ * <p/>
+ * Fields of type int, long, float, double, and String are used, along
+ * with boolean and char (which are stored as CATEGORY and STRING columns).
+ * Static, transient, and synthetic fields are skipped, as are final
+ * fields when filling objects.
+ * Advanced users only, not official API.
+ */
+class TableMapper {
+  static final int BOOLEAN = 100;
+  static final int CHAR = 101;
+
+  static final int PARALLEL_THRESHOLD = 1 << 14;
+  static final int CHUNK_SIZE = 1 << 12;
+
+  /** Mappers for each class, by column layout ("" for fromObjects) */
+  static final ClassValue<ConcurrentHashMap<String, TableMapper>> cache =
+    new ClassValue<ConcurrentHashMap<String, TableMapper>>() {
+      @Override
+      protected ConcurrentHashMap<String, TableMapper> computeValue(Class<?> type) {
+        return new ConcurrentHashMap<>();
+      }
+    };
+
+  final Class<?> target;
+  /** Creates an item: ()Object, or (Object)Object for an inner class */
+  MethodHandle constructor;
+  boolean inner;
+
+  // one entry for each field that's used
+  String[] names;
+  int[] kinds;
+  /** Column in the Table for parseInto(), otherwise the same as the index */
+  int[] columns;
+  /** (Object, value)void for each field, for filling objects */
+  MethodHandle[] setters;
+  /** (Object)value for each field, for reading objects */
+  MethodHandle[] getters;
+
+
+  private TableMapper(Class<?> target) {
+    this.target = target;
+  }
+
+
+  /** Mapper for filling objects from rows with this Table's column layout. */
+  static TableMapper forTable(Class<?> target, Table table) {
+    StringBuilder layout = new StringBuilder();
+    for (int col = 0; col < table.getColumnCount(); col++) {
+      layout.append(table.getColumnTitle(col)).append('\t');
+      layout.append(table.getColumnType(col)).append('\n');
+    }
+    return cache.get(target).computeIfAbsent(layout.toString(), k -> {
+      TableMapper mapper = new TableMapper(target);
+      mapper.resolve(table);
+      return mapper;
+    });
+  }
+
+
+  /** Mapper for turning objects of this class into Table rows. */
+  static TableMapper forClass(Class<?> target) {
+    return cache.get(target).computeIfAbsent("", k -> {
+      TableMapper mapper = new TableMapper(target);
+      mapper.resolve(null);
+      return mapper;
+    });
+  }
+
+
+  /**
+   * Find the fields to use: those with a matching column in the table,
+   * or all of the usable ones if table is null.
+   */
+  private void resolve(Table table) {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    ArrayList<Field> found = new ArrayList<>();
+    ArrayList<Integer> foundColumns = new ArrayList<>();
+    for (Field field : target.getDeclaredFields()) {
+      int mod = field.getModifiers();
+      if (Modifier.isStatic(mod) || Modifier.isTransient(mod) ||
+          field.isSynthetic() || kind(field.getType()) == -1) {
+        continue;
+      }
+      if (table == null) {
+        foundColumns.add(found.size());
+        found.add(field);
+      } else if (!Modifier.isFinal(mod)) {
+        int column = table.getColumnIndex(field.getName(), false);
+        if (column != -1) {
+          foundColumns.add(column);
+          found.add(field);
+        }
+      }
+    }
+
+    int count = found.size();
+    names = new String[count];
+    kinds = new int[count];
+    columns = new int[count];
+    setters = new MethodHandle[count];
+    getters = new MethodHandle[count];
+    try {
+      for (int i = 0; i < count; i++) {
+        Field field = found.get(i);
+        field.setAccessible(true);
+        Class<?> type = field.getType();
+        names[i] = field.getName();
+        kinds[i] = kind(type);
+        columns[i] = foundColumns.get(i);
+        getters[i] = lookup.unreflectGetter(field)
+          .asType(MethodType.methodType(type, Object.class));
+        if (table != null) {
+          setters[i] = lookup.unreflectSetter(field)
+            .asType(MethodType.methodType(void.class, Object.class, type));
+        }
+      }
+      if (table != null) {
+        Class<?> enclosing = target.getEnclosingClass();
+        inner = enclosing != null && !Modifier.isStatic(target.getModifiers());
+        Constructor<?> con = inner ?
+          target.getDeclaredConstructor(enclosing) : target.getDeclaredConstructor();
+        con.setAccessible(true);
+        constructor = lookup.unreflectConstructor(con)
+          .asType(inner ? MethodType.methodType(Object.class, Object.class) :
+                          MethodType.methodType(Object.class));
+      }
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException(target.getName() +
+                                         " needs a constructor with no parameters", e);
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException("Could not use the fields of " +
+                                         target.getName(), e);
+    }
+  }
+
+
+  static private int kind(Class<?> type) {
+    if (type == Integer.TYPE) return Table.INT;
+    if (type == Long.TYPE) return Table.LONG;
+    if (type == Float.TYPE) return Table.FLOAT;
+    if (type == Double.TYPE) return Table.DOUBLE;
+    if (type == String.class) return Table.STRING;
+    if (type == Boolean.TYPE) return BOOLEAN;
+    if (type == Character.TYPE) return CHAR;
+    return -1;
+  }
+
+
+  /** Run task on chunks of rows, on several threads if there are many. */
+  static private void chunks(int rows, ChunkTask task) {
+    int chunkCount = (rows + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    IntStream chunks = IntStream.range(0, chunkCount);
+    if (rows >= PARALLEL_THRESHOLD) {
+      chunks = chunks.parallel();
+    }
+    chunks.forEach(chunk -> {
+      int start = chunk * CHUNK_SIZE;
+      try {
+        task.run(start, Math.min(rows, start + CHUNK_SIZE));
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new RuntimeException(t);
+      }
+    });
+  }
+
+
+  interface ChunkTask {
+    void run(int start, int stop) throws Throwable;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * An array of the target class with an item for each row.
+   * @param enclosing the object that holds an inner class, or null
+   */
+  Object[] toObjects(Table table, Object enclosing) {
+    int rows = table.getRowCount();
+    Object[] outgoing = (Object[]) Array.newInstance(target, rows);
+    chunks(rows, (start, stop) -> {
+      for (int row = start; row < stop; row++) {
+        Object item = inner ?
+          (Object) constructor.invokeExact(enclosing) :
+          (Object) constructor.invokeExact();
+        for (int i = 0; i < kinds.length; i++) {
+          int col = columns[i];
+          MethodHandle setter = setters[i];
+          switch (kinds[i]) {
+            case Table.INT:
+              setter.invokeExact(item, table.getInt(row, col));
+              break;
+            case Table.LONG:
+              setter.invokeExact(item, table.getLong(row, col));
+              break;
+            case Table.FLOAT:
+              setter.invokeExact(item, table.getFloat(row, col));
+              break;
+            case Table.DOUBLE:
+              setter.invokeExact(item, table.getDouble(row, col));
+              break;
+            case Table.STRING:
+              setter.invokeExact(item, table.getString(row, col));
+              break;
+            case BOOLEAN: {
+              String content = table.getString(row, col);
+              setter.invokeExact(item, content != null &&
+                                 (content.equalsIgnoreCase("true") || content.equals("1")));
+              break;
+            }
+            case CHAR: {
+              String content = table.getString(row, col);
+              if (content != null && content.length() > 0) {
+                setter.invokeExact(item, content.charAt(0));
+              }
+              break;
+            }
+          }
+        }
+        outgoing[row] = item;
+      }
+    });
+    return outgoing;
+  }
+
+
+  /** A Table with a column for each field, and a row for each item. */
+  Table toTable(List<?> list) {
+    Object[] items = list.toArray();
+    int rows = items.length;
+    Table table = new Table();
+    for (int i = 0; i < kinds.length; i++) {
+      int type = (kinds[i] == BOOLEAN) ? Table.CATEGORY :
+        (kinds[i] == CHAR) ? Table.STRING : kinds[i];
+      table.addColumn(names[i], type);
+      if (kinds[i] == BOOLEAN) {
+        table.columnCategories[i].setCategory(0, "false");
+        table.columnCategories[i].setCategory(1, "true");
+      }
+    }
+    table.resizeRows(rows);
+
+    Object[] data = table.columns;
+    chunks(rows, (start, stop) -> {
+      for (int i = 0; i < kinds.length; i++) {
+        MethodHandle getter = getters[i];
+        switch (kinds[i]) {
+          case Table.INT: {
+            int[] column = (int[]) data[i];
+            for (int row = start; row < stop; row++) {
+              column[row] = (int) getter.invokeExact(items[row]);
+            }
+            break;
+          }
+          case Table.LONG: {
+            long[] column = (long[]) data[i];
+            for (int row = start; row < stop; row++) {
+              column[row] = (long) getter.invokeExact(items[row]);
+            }
+            break;
+          }
+          case Table.FLOAT: {
+            float[] column = (float[]) data[i];
+            for (int row = start; row < stop; row++) {
+              column[row] = (float) getter.invokeExact(items[row]);
+            }
+            break;
+          }
+          case Table.DOUBLE: {
+            double[] column = (double[]) data[i];
+            for (int row = start; row < stop; row++) {
+              column[row] = (double) getter.invokeExact(items[row]);
+            }
+            break;
+          }
+          case Table.STRING: {
+            String[] column = (String[]) data[i];
+            for (int row = start; row < stop; row++) {
+              column[row] = (String) getter.invokeExact(items[row]);
+            }
+            break;
+          }
+          case BOOLEAN: {
+            int[] column = (int[]) data[i];
+            for (int row = start; row < stop; row++) {
+              column[row] = (boolean) getter.invokeExact(items[row]) ? 1 : 0;
+            }
+            break;
+          }
+          case CHAR: {
+            String[] column = (String[]) data[i];
+            for (int row = start; row < stop; row++) {
+              column[row] = String.valueOf((char) getter.invokeExact(items[row]));
+            }
+            break;
+          }
+        }
+      }
+    });
+    return table;
+  }
+}
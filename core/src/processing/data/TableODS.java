@@ -0,0 +1,598 @@
+package processing.data;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import processing.core.PApplet;
+
+
+/**
+ * Reads and writes .ods (OpenDocument spreadsheet) files for Table, one
+ * element at a time. content.xml is read with a StAX parser that puts each
+ * cell straight into the column arrays, and written with a StAX writer
+ * that goes straight into the zip stream, so that neither side needs the
+ * whole document in memory. Runs of empty cells and rows are skipped
+ * (table:number-columns-repeated and table:number-rows-repeated), rather
+ * than expanded, so the thousands of blank columns and million-odd blank
+ * rows that spreadsheet programs add at the end don't cost anything.
+ * Advanced users only, not official API.
+ */
+class TableODS {
+  static final String OFFICE = "urn:oasis:names:tc:opendocument:xmlns:office:1.0";
+  static final String TABLE = "urn:oasis:names:tc:opendocument:xmlns:table:1.0";
+  static final String TEXT = "urn:oasis:names:tc:opendocument:xmlns:text:1.0";
+  static final String XLINK = "http://www.w3.org/1999/xlink";
+
+  static final String MIMETYPE = "application/vnd.oasis.opendocument.spreadsheet";
+
+  final Table table;
+  final boolean infer;
+
+  /** Number of rows with data so far */
+  int rows;
+  /** For each column, the rows before this are set or already missing */
+  int[] filled = new int[0];
+  /** For infer, whether each column has had a value yet */
+  boolean[] typed = new boolean[0];
+  /** For infer, the rows of each column that have a value */
+  BitSet[] present = new BitSet[0];
+  /** Titles, while reading the header row */
+  StringList titles;
+
+
+  TableODS(Table table, boolean infer) {
+    this.table = table;
+    this.infer = infer;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Read a sheet from an .ods file: the one named worksheet, or the first
+   * one when worksheet is null. When header is set, the first row is used
+   * for the column titles. With infer, cells with a number type are read
+   * into INT, LONG, FLOAT, or DOUBLE columns (widened as necessary), and
+   * the columns stay as Strings otherwise.
+   */
+  void read(InputStream input, String worksheet,
+            boolean header) throws IOException, XMLStreamException {
+    InputStream content = findContent(input);
+    if (content == null) {
+      throw new RuntimeException("No content.xml found in the ODS file.");
+    }
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    XMLStreamReader reader = factory.createXMLStreamReader(content);
+
+    boolean found = false;
+    boolean inSheet = false;
+    int depth = 0;  // of table:table elements inside the sheet
+    int row = 0;
+    int col = 0;
+    int rowRepeat = 1;
+    boolean rowHasData = false;
+    titles = header ? new StringList() : null;
+
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (!TABLE.equals(reader.getNamespaceURI())) {
+          continue;
+        }
+        String name = reader.getLocalName();
+        if (name.equals("table")) {
+          if (inSheet) {
+            depth++;  // a sub-table, its cells are read as part of the sheet
+          } else if (found || (worksheet != null &&
+                               !worksheet.equals(reader.getAttributeValue(TABLE, "name")))) {
+            skipElement(reader);
+          } else {
+            inSheet = true;
+            found = true;
+          }
+
+        } else if (!inSheet) {
+          // not in the sheet being read
+
+        } else if (name.equals("table-row")) {
+          rowRepeat = intAttribute(reader, "number-rows-repeated");
+          rowHasData = false;
+          col = 0;
+
+        } else if (name.equals("table-cell") || name.equals("covered-table-cell")) {
+          int repeat = intAttribute(reader, "number-columns-repeated");
+          String valueType = reader.getAttributeValue(OFFICE, "value-type");
+          // if there's an office:value in the cell, just roll with that
+          String value = reader.getAttributeValue(OFFICE, "value");
+          boolean number = value != null &&
+            ("float".equals(valueType) ||
+             "percentage".equals(valueType) ||
+             "currency".equals(valueType));
+          String text = readText(reader);
+          if (value == null) {
+            value = text;
+          }
+          if (value != null) {
+            for (int i = 0; i < repeat; i++) {
+              if (titles != null) {
+                while (titles.size() < col) {
+                  titles.append((String) null);
+                }
+                titles.append(value);
+              } else {
+                store(row, col, value, number);
+              }
+              col++;
+            }
+            rowHasData = true;
+          } else {
+            col += repeat;  // empty cells, possibly thousands of them
+          }
+        }
+
+      } else if (event == XMLStreamConstants.END_ELEMENT && inSheet &&
+                 TABLE.equals(reader.getNamespaceURI())) {
+        String name = reader.getLocalName();
+        if (name.equals("table-row")) {
+          if (titles != null) {
+            table.setColumnTitles(titles.toArray());
+            titles = null;
+          } else {
+            if (rowHasData) {
+              copyRow(row, rowRepeat - 1);
+            }
+            row += rowRepeat;
+          }
+        } else if (name.equals("table")) {
+          if (depth == 0) {
+            inSheet = false;
+            if (worksheet == null) {
+              break;  // only read the first sheet
+            }
+          } else {
+            depth--;
+          }
+        }
+      }
+    }
+    reader.close();
+
+    if (!found) {
+      if (worksheet == null) {
+        throw new RuntimeException("No worksheets found in the ODS file.");
+      } else {
+        throw new RuntimeException("No worksheet named " + worksheet +
+                                   " found in the ODS file.");
+      }
+    }
+    table.resizeRows(rows);
+    for (int c = 0; c < filled.length; c++) {
+      fillMissing(c, rows);
+    }
+  }
+
+
+  /**
+   * Find content.xml inside the zip file, and return a stream positioned
+   * at the start of it.
+   */
+  static InputStream findContent(InputStream input) throws IOException {
+    ZipInputStream zis = new ZipInputStream(input);
+    ZipEntry entry;
+    while ((entry = zis.getNextEntry()) != null) {
+      if (entry.getName().equals("content.xml")) {
+        return zis;
+      }
+    }
+    return null;
+  }
+
+
+  static int intAttribute(XMLStreamReader reader, String name) {
+    String value = reader.getAttributeValue(TABLE, name);
+    return (value == null) ? 1 : Math.max(1, PApplet.parseInt(value, 1));
+  }
+
+
+  static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+
+  /**
+   * Read the text of a cell, through to the end of the cell element.
+   * Returns null if the cell doesn't have any text:p elements. Formatting
+   * tags are dropped, links are replaced by their target (href), and
+   * separate paragraphs are put on separate lines.
+   */
+  static String readText(XMLStreamReader reader) throws XMLStreamException {
+    StringBuilder sb = null;
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        String name = TEXT.equals(reader.getNamespaceURI()) ? reader.getLocalName() : "";
+        if (depth == 1) {
+          if (name.equals("p") || name.equals("h")) {
+            if (sb == null) {
+              sb = new StringBuilder();
+            } else {
+              sb.append('\n');
+            }
+          } else {
+            // comments (office:annotation) and the like aren't cell text
+            skipElement(reader);
+            continue;
+          }
+        } else if (name.equals("s")) {
+          String count = reader.getAttributeValue(TEXT, "c");
+          for (int i = (count == null) ? 1 : PApplet.parseInt(count, 1); i > 0; --i) {
+            sb.append(' ');
+          }
+        } else if (name.equals("tab")) {
+          sb.append('\t');
+        } else if (name.equals("line-break")) {
+          sb.append('\n');
+        } else if (name.equals("a")) {
+          // <text:a xlink:href="http://blah.com/">blah.com</text:a>
+          sb.append(reader.getAttributeValue(XLINK, "href"));
+          skipElement(reader);
+          continue;
+        }
+        depth++;
+
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+
+      } else if ((event == XMLStreamConstants.CHARACTERS ||
+                  event == XMLStreamConstants.CDATA) && depth > 1) {
+        sb.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+      }
+    }
+    return (sb == null) ? null : sb.toString();
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Make sure the table has room for this cell. */
+  private void ensure(int row, int col) {
+    if (row >= table.rowCount) {
+      // grow by doubling, and trim at the end
+      table.resizeRows(Math.max(row + 1, table.rowCount << 1));
+    }
+    table.ensureColumn(col);
+    if (col >= filled.length) {
+      int count = table.getColumnCount();
+      filled = Arrays.copyOf(filled, count);
+      typed = Arrays.copyOf(typed, count);
+      int before = present.length;
+      present = Arrays.copyOf(present, count);
+      for (int i = before; i < count; i++) {
+        present[i] = new BitSet();
+      }
+    }
+    rows = Math.max(rows, row + 1);
+  }
+
+
+  private void store(int row, int col, String value, boolean number) {
+    ensure(row, col);
+    if (infer) {
+      int type = table.columnTypes[col];
+      int incoming = number ?
+        TableChunk.classify(value.toCharArray(), 0, value.length()) : Table.STRING;
+      if (!typed[col]) {
+        typed[col] = true;
+        if (incoming != type) {
+          table.setColumnType(col, incoming);  // nothing but empty cells so far
+        }
+      } else {
+        int wider = TableChunk.wider(type, incoming);
+        if (wider != type) {
+          table.setColumnType(col, wider);
+          if (wider == Table.STRING) {
+            clearBlanks(col, row);
+          }
+        }
+      }
+      present[col].set(row);
+    }
+    fillMissing(col, row);
+
+    Object data = table.columns[col];
+    switch (table.columnTypes[col]) {
+      case Table.STRING:
+        ((String[]) data)[row] = value;
+        break;
+      case Table.INT:
+        ((int[]) data)[row] = PApplet.parseInt(value, table.missingInt);
+        break;
+      case Table.LONG:
+        try {
+          ((long[]) data)[row] = Long.parseLong(value);
+        } catch (NumberFormatException nfe) {
+          ((long[]) data)[row] = table.missingLong;
+        }
+        break;
+      case Table.FLOAT:
+        ((float[]) data)[row] = PApplet.parseFloat(value, table.missingFloat);
+        break;
+      case Table.DOUBLE:
+        try {
+          ((double[]) data)[row] = Double.parseDouble(value);
+        } catch (NumberFormatException nfe) {
+          ((double[]) data)[row] = table.missingDouble;
+        }
+        break;
+      default:
+        table.setString(row, col, value);
+    }
+    filled[col] = row + 1;
+  }
+
+
+  /**
+   * Empty cells in an INT or LONG column were zeroes, so after it has
+   * been changed to STRING they'd read "0"; set them back to null.
+   */
+  private void clearBlanks(int col, int row) {
+    String[] data = (String[]) table.columns[col];
+    for (int i = present[col].nextClearBit(0); i < row; i = present[col].nextClearBit(i + 1)) {
+      data[i] = null;
+    }
+  }
+
+
+  /**
+   * Empty cells in FLOAT and DOUBLE columns are NaN, not the zeroes
+   * that new rows start with, so fill them in up to this row.
+   */
+  private void fillMissing(int col, int row) {
+    int type = table.columnTypes[col];
+    if (filled[col] < row) {
+      if (type == Table.FLOAT) {
+        Arrays.fill((float[]) table.columns[col], filled[col], row, table.missingFloat);
+      } else if (type == Table.DOUBLE) {
+        Arrays.fill((double[]) table.columns[col], filled[col], row, table.missingDouble);
+      }
+      filled[col] = row;
+    }
+  }
+
+
+  /** Copy a row that has number-rows-repeated set into the rows after it. */
+  private void copyRow(int row, int count) {
+    if (count <= 0) {
+      return;
+    }
+    ensure(row + count, 0);
+    for (int col = 0; col < filled.length; col++) {
+      fillMissing(col, row + 1);
+      Object data = table.columns[col];
+      for (int i = 1; i <= count; i++) {
+        System.arraycopy(data, row, data, row + i, 1);  // any array type
+      }
+      if (infer && present[col].get(row)) {
+        present[col].set(row + 1, row + count + 1);
+      }
+      filled[col] = row + count + 1;
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Write the table as the first (and only) sheet of an .ods file. */
+  void write(OutputStream os) throws IOException {
+    ZipOutputStream zos = new ZipOutputStream(os);
+
+    // has to be first, and not compressed, so the file type can be identified
+    byte[] mimetype = MIMETYPE.getBytes(StandardCharsets.US_ASCII);
+    CRC32 crc = new CRC32();
+    crc.update(mimetype);
+    ZipEntry entry = new ZipEntry("mimetype");
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(mimetype.length);
+    entry.setCompressedSize(mimetype.length);
+    entry.setCrc(crc.getValue());
+    zos.putNextEntry(entry);
+    zos.write(mimetype);
+    zos.closeEntry();
+
+    final String xmlHeader = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    String[] lines = new String[] {
+      xmlHeader,
+      "<manifest:manifest xmlns:manifest=\"urn:oasis:names:tc:opendocument:xmlns:manifest:1.0\">",
+      "  <manifest:file-entry manifest:media-type=\"" + MIMETYPE + "\" manifest:version=\"1.2\" manifest:full-path=\"/\"/>",
+      "  <manifest:file-entry manifest:media-type=\"text/xml\" manifest:full-path=\"content.xml\"/>",
+      "  <manifest:file-entry manifest:media-type=\"text/xml\" manifest:full-path=\"styles.xml\"/>",
+      "  <manifest:file-entry manifest:media-type=\"text/xml\" manifest:full-path=\"meta.xml\"/>",
+      "  <manifest:file-entry manifest:media-type=\"text/xml\" manifest:full-path=\"settings.xml\"/>",
+      "</manifest:manifest>"
+    };
+    zos.putNextEntry(new ZipEntry("META-INF/manifest.xml"));
+    zos.write(PApplet.join(lines, "\n").getBytes(StandardCharsets.UTF_8));
+    zos.closeEntry();
+
+    lines = new String[] {
+      xmlHeader,
+      "<office:document-meta office:version=\"1.0\"" +
+      " xmlns:office=\"" + OFFICE + "\" />"
+    };
+    byte[] dummyBytes = PApplet.join(lines, "\n").getBytes(StandardCharsets.UTF_8);
+    for (String filename : new String[] { "meta.xml", "settings.xml", "styles.xml" }) {
+      zos.putNextEntry(new ZipEntry(filename));
+      zos.write(dummyBytes);
+      zos.closeEntry();
+    }
+
+    zos.putNextEntry(new ZipEntry("content.xml"));
+    // buffered so that the deflater gets large blocks, not single elements
+    BufferedOutputStream output = new BufferedOutputStream(zos, 1 << 16);
+    try {
+      writeContent(output);
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+    output.flush();
+    zos.closeEntry();
+
+    zos.flush();
+    zos.close();
+  }
+
+
+  void writeContent(OutputStream output) throws XMLStreamException {
+    XMLStreamWriter writer =
+      XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+    writer.writeStartDocument("UTF-8", "1.0");
+    writer.writeStartElement("office", "document-content", OFFICE);
+    writer.writeNamespace("office", OFFICE);
+    writer.writeNamespace("text", TEXT);
+    writer.writeNamespace("table", TABLE);
+    writer.writeAttribute("office", OFFICE, "version", "1.2");
+    writer.writeStartElement("office", "body", OFFICE);
+    writer.writeStartElement("office", "spreadsheet", OFFICE);
+    writer.writeStartElement("table", "table", TABLE);
+    writer.writeAttribute("table", TABLE, "name", "Sheet1");
+    writer.writeAttribute("table", TABLE, "print", "false");
+
+    int columnCount = table.getColumnCount();
+    if (table.hasColumnTitles()) {
+      writer.writeStartElement("table", "table-row", TABLE);
+      int empty = 0;
+      for (int col = 0; col < columnCount; col++) {
+        String title = table.getColumnTitle(col);
+        if (title == null) {
+          empty++;
+        } else {
+          empty = writeEmpty(writer, empty);
+          writeCell(writer, title, false);
+        }
+      }
+      writeEmpty(writer, empty);
+      writer.writeEndElement();
+    }
+
+    int rowCount = table.getRowCount();
+    for (int row = 0; row < rowCount; row++) {
+      writer.writeStartElement("table", "table-row", TABLE);
+      int empty = 0;
+      for (int col = 0; col < columnCount; col++) {
+        int type = table.getColumnType(col);
+        // NaN comes back as null from getString()
+        String value = table.getString(row, col);
+        if (value == null) {
+          empty++;
+        } else {
+          empty = writeEmpty(writer, empty);
+          writeCell(writer, value, type != Table.STRING && type != Table.CATEGORY);
+        }
+      }
+      writeEmpty(writer, empty);
+      writer.writeEndElement();
+    }
+
+    writer.writeEndDocument();  // closes the open elements
+    writer.flush();
+    writer.close();
+  }
+
+
+  /** Write a run of empty cells as a single element. */
+  static int writeEmpty(XMLStreamWriter writer, int count) throws XMLStreamException {
+    if (count > 0) {
+      writer.writeEmptyElement("table", "table-cell", TABLE);
+      if (count > 1) {
+        writer.writeAttribute("table", TABLE, "number-columns-repeated", String.valueOf(count));
+      }
+    }
+    return 0;
+  }
+
+
+  static void writeCell(XMLStreamWriter writer, String value,
+                        boolean number) throws XMLStreamException {
+    writer.writeStartElement("table", "table-cell", TABLE);
+    if (number) {
+      writer.writeAttribute("office", OFFICE, "value-type", "float");
+      writer.writeAttribute("office", OFFICE, "value", value);
+    } else {
+      writer.writeAttribute("office", OFFICE, "value-type", "string");
+    }
+    writer.writeStartElement("text", "p", TEXT);
+    writeText(writer, value);
+    writer.writeEndElement();
+    writer.writeEndElement();
+  }
+
+
+  /**
+   * Write the text for a text:p element. Spreadsheets collapse runs of
+   * spaces (and drop a leading one), so those are written as text:s,
+   * along with text:tab and text:line-break for tabs and newlines.
+   * Other control characters aren't allowed in XML, and are left out.
+   */
+  static void writeText(XMLStreamWriter writer, String text) throws XMLStreamException {
+    int length = text.length();
+    int start = 0;  // start of the plain text that hasn't been written yet
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c >= ' ' && !(c == ' ' && (i == 0 || text.charAt(i - 1) == ' '))) {
+        continue;
+      }
+      if (start < i) {
+        writer.writeCharacters(text.substring(start, i));
+      }
+      if (c == ' ') {
+        int stop = i;
+        while (stop < length && text.charAt(stop) == ' ') {
+          stop++;
+        }
+        writer.writeEmptyElement("text", "s", TEXT);
+        if (stop - i > 1) {
+          writer.writeAttribute("text", TEXT, "c", String.valueOf(stop - i));
+        }
+        i = stop - 1;
+      } else if (c == '\t') {
+        writer.writeEmptyElement("text", "tab", TEXT);
+      } else if (c == '\n') {
+        writer.writeEmptyElement("text", "line-break", TEXT);
+      }
+      start = i + 1;
+    }
+    if (start < length) {
+      writer.writeCharacters(text.substring(start));
+    }
+  }
+}
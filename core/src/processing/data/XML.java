@@ -24,8 +24,15 @@
 package processing.data;
 
 import java.io.*;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import javax.xml.parsers.*;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.*;
 import org.xml.sax.*;
@@ -69,6 +76,19 @@ public class XML implements Serializable {
   /** Child elements, once loaded. */
   protected XML[] children;
 
+  /**
+   * For the root element, bumped whenever anything in its document is
+   * changed, so that XMLQuery knows when the results and name index that
+   * it keeps may be out of date.
+   */
+  transient int modCount;
+
+  /** For the root element, its elements by name, built by XMLQuery. */
+  transient HashMap<String, XML[]> nameIndex;
+  transient int nameIndexVersion;
+  /** Position of each element in nameIndex's list of all of them, or null */
+  transient IdentityHashMap<XML, Integer> documentOrder;
+
   /**
    * @nowebref
    */
@@ -276,6 +296,138 @@ public class XML implements Serializable {
   }
 
 
+  /**
+   * Read a document into a compact, read-only form that takes a fraction
+   * of the memory of the usual DOM tree. All the methods for getting
+   * names, attributes, content, and children work as usual (and lookups
+   * with getChild() are remembered), but the methods that make changes
+   * throw an UnsupportedOperationException.
+   *
+   * @nowebref
+   */
+  static public XML parseReadOnly(InputStream input) throws IOException {
+    try {
+      return readOnly(XMLTree.createFactory().createXMLStreamReader(input));
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+
+  /**
+   * @nowebref
+   */
+  static public XML parseReadOnly(Reader reader) throws IOException {
+    try {
+      return readOnly(XMLTree.createFactory().createXMLStreamReader(reader));
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+
+  static private XML readOnly(XMLStreamReader reader) throws XMLStreamException {
+    while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+      if (!reader.hasNext()) {
+        throw new XMLStreamException("No elements found");
+      }
+      reader.next();
+    }
+    XMLTree tree = XMLTree.read(reader, new HashMap<>());
+    reader.close();
+    tree.trim();
+    return tree.view(0);
+  }
+
+
+  /**
+   * Read the elements with this name one at a time, for files too large to
+   * load all at once. Each is read-only (same as with parseReadOnly()) and
+   * includes everything inside it, but not its parent, and only that one
+   * element is in memory at a time. Nested elements with the same name are
+   * included with the outer one, rather than returned separately.
+   * <pre>
+   * for (XML node : XML.stream(createInput("map.osm"), "node")) {
+   *   float lat = node.getFloat("lat");
+   *   float lon = node.getFloat("lon");
+   * }
+   * </pre>
+   * The stream isn't closed afterwards. Errors in the file are thrown
+   * as a RuntimeException while iterating.
+   *
+   * @nowebref
+   * @param name element name, with its prefix if it has one (svg:path)
+   */
+  static public Iterable<XML> stream(InputStream input, String name) {
+    return () -> {
+      try {
+        return new ElementIterator(XMLTree.createFactory().createXMLStreamReader(input), name);
+      } catch (XMLStreamException e) {
+        throw new RuntimeException(e);
+      }
+    };
+  }
+
+
+  /**
+   * @nowebref
+   */
+  static public Iterable<XML> stream(Reader reader, String name) {
+    return () -> {
+      try {
+        return new ElementIterator(XMLTree.createFactory().createXMLStreamReader(reader), name);
+      } catch (XMLStreamException e) {
+        throw new RuntimeException(e);
+      }
+    };
+  }
+
+
+  static private class ElementIterator implements Iterator<XML> {
+    final XMLStreamReader reader;
+    final String name;
+    // element and attribute names shared by everything that's read
+    final HashMap<String, String> pool = new HashMap<>();
+    boolean found;
+    boolean done;
+
+    ElementIterator(XMLStreamReader reader, String name) {
+      this.reader = reader;
+      this.name = name;
+    }
+
+    public boolean hasNext() {
+      try {
+        while (!found && !done) {
+          int event = reader.next();
+          if (event == XMLStreamConstants.START_ELEMENT) {
+            found = name.equals(XMLTree.qualifiedName(reader.getPrefix(), reader.getLocalName()));
+          } else if (event == XMLStreamConstants.END_DOCUMENT) {
+            reader.close();
+            done = true;
+          }
+        }
+        return found;
+      } catch (XMLStreamException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    public XML next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      try {
+        found = false;
+        XMLTree tree = XMLTree.read(reader, pool);
+        return tree.view(0);
+      } catch (XMLStreamException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+
 //  protected boolean save(OutputStream output) {
 //    return write(PApplet.createWriter(output));
 //  }
@@ -314,6 +466,22 @@ public class XML implements Serializable {
     return this.parent;
   }
 
+
+  /** The element at the top of the document that holds this one. */
+  XML root() {
+    XML root = this;
+    while (root.getParent() != null) {
+      root = root.getParent();
+    }
+    return root;
+  }
+
+
+  /** Note a change to this document, for XMLQuery. */
+  void changed() {
+    root().modCount++;
+  }
+
   /**
    * Internal function; not included in reference.
    */
@@ -341,6 +509,7 @@ public class XML implements Serializable {
    * @webBrief Sets the element's name
    */
   public void setName(String newName) {
+    changed();
     Document document = node.getOwnerDocument();
     node = document.renameNode(node, null, newName);
 //    name = node.getNodeName();
@@ -488,6 +657,43 @@ public class XML implements Serializable {
   }
 
 
+  /**
+   * Parse a path once, for use with getChild() or getChildren() as many
+   * times as necessary. In addition to the paths used with getChild(),
+   * this handles * and // as wildcards and [@attribute='value'] to pick
+   * out particular elements. See XMLQuery for the details.
+   *
+   * @nowebref
+   * @throws IllegalArgumentException if the path can't be read
+   */
+  static public XMLQuery compile(String path) {
+    return new XMLQuery(path);
+  }
+
+
+  /**
+   * Get the first element in the document that matches a query from
+   * compile(). Note that for a plain path like <b>b/c</b>, this is not
+   * always the same as getChild(String), which only looks inside the
+   * first <b>b</b> element, rather than inside all of them.
+   *
+   * @return the first match, or null if there are none
+   */
+  public XML getChild(XMLQuery query) {
+    XML[] matches = query.find(this);
+    return (matches.length > 0) ? matches[0] : null;
+  }
+
+
+  /**
+   * Get all the elements that match a query from compile(), in the order
+   * they appear in the document.
+   */
+  public XML[] getChildren(XMLQuery query) {
+    return query.find(this).clone();
+  }
+
+
   /**
    * Internal helper function for getChild(String).
    *
@@ -596,6 +802,7 @@ public class XML implements Serializable {
 
   /** Internal handler to add the node structure. */
   protected XML appendChild(Node newNode) {
+    changed();
     node.appendChild(newNode);
     XML newbie = new XML(this, newNode);
     if (children != null) {
@@ -614,6 +821,7 @@ public class XML implements Serializable {
 	 * @webBrief Removes the specified child
 	 */
   public void removeChild(XML kid) {
+    changed();
     node.removeChild(kid.node);
     children = null;  // TODO not efficient
   }
@@ -627,6 +835,7 @@ public class XML implements Serializable {
    * @webBrief Removes whitespace nodes
    */
   public void trim() {
+    changed();
     try {
       XPathFactory xpathFactory = XPathFactory.newInstance();
       XPathExpression xpathExp =
@@ -790,6 +999,7 @@ public class XML implements Serializable {
    * @webBrief Sets the content of an attribute as a <b>String</b>
    */
   public void setString(String name, String value) {
+    changed();
     ((Element) node).setAttribute(name, value);
   }
 
@@ -934,7 +1144,7 @@ public class XML implements Serializable {
 
 
   public String getContent(String defaultValue) {
-    String s = node.getTextContent();
+    String s = getContent();
     return (s != null) ? s : defaultValue;
   }
 
@@ -958,7 +1168,7 @@ public class XML implements Serializable {
    * @param defaultValue the default value of the attribute
    */
   public int getIntContent(int defaultValue) {
-    return PApplet.parseInt(node.getTextContent(), defaultValue);
+    return PApplet.parseInt(getContent(), defaultValue);
   }
 
 
@@ -981,7 +1191,7 @@ public class XML implements Serializable {
    * @param defaultValue the default value of the attribute
    */
   public float getFloatContent(float defaultValue) {
-    return PApplet.parseFloat(node.getTextContent(), defaultValue);
+    return PApplet.parseFloat(getContent(), defaultValue);
   }
 
 
@@ -991,7 +1201,7 @@ public class XML implements Serializable {
 
 
   public long getLongContent(long defaultValue) {
-    String c = node.getTextContent();
+    String c = getContent();
     if (c != null) {
       try {
         return Long.parseLong(c);
@@ -1007,7 +1217,7 @@ public class XML implements Serializable {
 
 
   public double getDoubleContent(double defaultValue) {
-    String c = node.getTextContent();
+    String c = getContent();
     if (c != null) {
       try {
         return Double.parseDouble(c);
@@ -1024,6 +1234,7 @@ public class XML implements Serializable {
    * @webBrief Sets the content of an element
    */
   public void setContent(String text) {
+    changed();
     node.setTextContent(text);
   }
 
@@ -0,0 +1,353 @@
+package processing.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+
+/**
+ * A path into an XML document, parsed once by XML.compile() so that it can
+ * be used over and over with getChild() and getChildren(). Paths work the
+ * same as with getChild(String), elements separated by slashes (with a
+ * number to pick a child by its index), plus a few pieces of XPath:
+ * <ul>
+ * <li><code>*</code> for any element</li>
+ * <li><code>//</code> for elements at any depth, as in <code>//path</code> or
+ *   <code>svg//path</code>, which are found with an index of the names in
+ *   the document that's built the first time it's needed</li>
+ * <li><code>[@name]</code> for elements with an attribute, and
+ *   <code>[@name='value']</code> for a particular value</li>
+ * <li><code>[n]</code> for the nth match (counting from 0, same as other
+ *   indices in Processing)</li>
+ * </ul>
+ * <pre>
+ * XMLQuery paths = XML.compile("//g[@id='layer1']/path");
+ * for (XML path : svg.getChildren(paths)) { ... }
+ * </pre>
+ * Matches are returned in the order they appear in the document. The
+ * matches are remembered until the document changes, so asking again
+ * with the same starting element doesn't have to look again.
+ *
+ * @nowebref
+ * @see XML#compile(String)
+ */
+public class XMLQuery {
+  final String path;
+  final Step[] steps;
+
+  /** Most recent result, replaced as a whole so it's safe to share */
+  private volatile Result cached;
+
+
+  static class Step {
+    /** Anywhere below, rather than only the children */
+    boolean descendant;
+    /** Element name, or null for any element */
+    String name;
+    /** Child at this index (for a number), otherwise -1 */
+    int index = -1;
+    /** Only the nth match, otherwise -1 */
+    int position = -1;
+    String[] attrNames = new String[0];
+    /** Value for each attribute, or null if it only needs to be present */
+    String[] attrValues = new String[0];
+  }
+
+
+  static class Result {
+    final XML context;
+    final int version;
+    final XML[] matches;
+
+    Result(XML context, int version, XML[] matches) {
+      this.context = context;
+      this.version = version;
+      this.matches = matches;
+    }
+  }
+
+
+  XMLQuery(String path) {
+    this.path = path;
+    this.steps = parse(path);
+  }
+
+
+  @Override
+  public String toString() {
+    return path;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  static private Step[] parse(String path) {
+    ArrayList<Step> steps = new ArrayList<>();
+    int length = path.length();
+    int i = 0;
+    if (path.startsWith("/") && !path.startsWith("//")) {
+      throw new IllegalArgumentException("A query should not begin with a single slash");
+    }
+    while (i < length) {
+      Step step = new Step();
+      if (path.startsWith("//", i)) {
+        step.descendant = true;
+        i += 2;
+      } else if (!steps.isEmpty()) {
+        if (path.charAt(i) != '/') {
+          throw bad(path, i);
+        }
+        i++;
+      }
+      int start = i;
+      while (i < length && path.charAt(i) != '/' && path.charAt(i) != '[') {
+        i++;
+      }
+      String name = path.substring(start, i);
+      if (name.isEmpty()) {
+        throw bad(path, start);
+      } else if (isNumber(name)) {
+        if (step.descendant) {
+          throw bad(path, start);
+        }
+        step.index = Integer.parseInt(name);
+      } else if (!name.equals("*")) {
+        step.name = name;
+      }
+      while (i < length && path.charAt(i) == '[') {
+        i = parsePredicate(path, i + 1, step);
+      }
+      steps.add(step);
+    }
+    if (steps.isEmpty()) {
+      throw new IllegalArgumentException("Empty query");
+    }
+    return steps.toArray(new Step[0]);
+  }
+
+
+  /** Parse what's inside [ ], and return the index after the ]. */
+  static private int parsePredicate(String path, int i, Step step) {
+    int length = path.length();
+    if (i < length && path.charAt(i) == '@') {
+      int start = ++i;
+      while (i < length && path.charAt(i) != '=' && path.charAt(i) != ']') {
+        i++;
+      }
+      String name = path.substring(start, i).trim();
+      String value = null;
+      if (i < length && path.charAt(i) == '=') {
+        i++;
+        char quote = (i < length) ? path.charAt(i) : 0;
+        if (quote != '\'' && quote != '"') {
+          throw bad(path, i);
+        }
+        int end = path.indexOf(quote, i + 1);
+        if (end == -1) {
+          throw bad(path, i);
+        }
+        value = path.substring(i + 1, end);
+        i = end + 1;
+      }
+      if (name.isEmpty()) {
+        throw bad(path, start);
+      }
+      step.attrNames = append(step.attrNames, name);
+      step.attrValues = append(step.attrValues, value);
+    } else {
+      int start = i;
+      while (i < length && path.charAt(i) != ']') {
+        i++;
+      }
+      String number = path.substring(start, i).trim();
+      if (!isNumber(number)) {
+        throw bad(path, start);
+      }
+      step.position = Integer.parseInt(number);
+    }
+    if (i >= length || path.charAt(i) != ']') {
+      throw bad(path, i);
+    }
+    return i + 1;
+  }
+
+
+  static private String[] append(String[] array, String value) {
+    String[] outgoing = new String[array.length + 1];
+    System.arraycopy(array, 0, outgoing, 0, array.length);
+    outgoing[array.length] = value;
+    return outgoing;
+  }
+
+
+  static private boolean isNumber(String s) {
+    if (s.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      if (!Character.isDigit(s.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  static private IllegalArgumentException bad(String path, int index) {
+    return new IllegalArgumentException("Could not read the query \"" + path +
+                                        "\" at position " + index);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Everything that matches, starting from context. Don't modify this. */
+  XML[] find(XML context) {
+    Result result = cached;
+    int version = context.root().modCount;
+    if (result != null && result.context == context && result.version == version) {
+      return result.matches;
+    }
+    XML[] current = { context };
+    for (Step step : steps) {
+      current = apply(step, current);
+    }
+    cached = new Result(context, version, current);
+    return current;
+  }
+
+
+  static private XML[] apply(Step step, XML[] contexts) {
+    ArrayList<XML> outgoing = new ArrayList<>();
+    // the same element can be below more than one context with //
+    IdentityHashMap<XML, Boolean> seen =
+      (step.descendant && contexts.length > 1) ? new IdentityHashMap<>() : null;
+    for (XML context : contexts) {
+      int found = 0;
+      // everything in the index is below the root, other than itself
+      boolean fromRoot = context.getParent() == null;
+      if (step.index != -1) {
+        if (step.index < context.getChildCount()) {
+          outgoing.add(context.getChild(step.index));
+        }
+        continue;
+      }
+      XML[] candidates = step.descendant ?
+        indexed(context, step.name) : context.getChildren();
+      for (XML kid : candidates) {
+        boolean below = step.descendant &&
+          kid != context && (fromRoot || isBelow(kid, context));
+        if (below || (!step.descendant && matches(kid, step.name))) {
+          if (hasAttributes(kid, step)) {
+            if (step.position == -1 || step.position == found) {
+              if (seen == null || seen.put(kid, Boolean.TRUE) == null) {
+                outgoing.add(kid);
+              }
+            }
+            found++;
+          }
+        }
+      }
+    }
+    if (contexts.length > 1) {
+      // matches were collected one context at a time, and the contexts
+      // can be nested (as with //a/b), so put them back in document order
+      sortByDocument(outgoing, contexts[0]);
+    }
+    return outgoing.toArray(new XML[0]);
+  }
+
+
+  static private void sortByDocument(ArrayList<XML> list, XML context) {
+    XML root = context.root();
+    XML[] all = indexed(root, null);  // rebuilt (clearing the order) if stale
+    IdentityHashMap<XML, Integer> order = root.documentOrder;
+    if (order == null) {
+      order = new IdentityHashMap<>(all.length);
+      for (int i = 0; i < all.length; i++) {
+        order.put(all[i], i);
+      }
+      root.documentOrder = order;
+    }
+    IdentityHashMap<XML, Integer> positions = order;
+    list.sort((a, b) -> Integer.compare(positions.get(a), positions.get(b)));
+  }
+
+
+  static private boolean matches(XML xml, String name) {
+    String actual = xml.getName();
+    if (name == null) {
+      return actual != null && !actual.startsWith("#");
+    }
+    return name.equals(actual);
+  }
+
+
+  static private boolean hasAttributes(XML xml, Step step) {
+    for (int i = 0; i < step.attrNames.length; i++) {
+      String value = xml.getString(step.attrNames[i]);
+      if (value == null ||
+          (step.attrValues[i] != null && !step.attrValues[i].equals(value))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  static private boolean isBelow(XML xml, XML ancestor) {
+    for (XML p = xml.getParent(); p != null; p = p.getParent()) {
+      if (p == ancestor) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  /**
+   * All the elements with this name (or all elements, for null) in the
+   * document that holds context, in document order, using the index
+   * kept with the document's root element.
+   */
+  static private XML[] indexed(XML context, String name) {
+    XML root = context.root();
+    HashMap<String, XML[]> index = root.nameIndex;
+    if (index == null || root.nameIndexVersion != root.modCount) {
+      index = buildIndex(root);
+      root.nameIndex = index;
+      root.nameIndexVersion = root.modCount;
+      root.documentOrder = null;
+    }
+    XML[] found = index.get(name == null ? "*" : name);
+    return (found != null) ? found : new XML[0];
+  }
+
+
+  static private HashMap<String, XML[]> buildIndex(XML root) {
+    HashMap<String, ArrayList<XML>> lists = new HashMap<>();
+    ArrayList<XML> all = new ArrayList<>();
+    ArrayList<XML> stack = new ArrayList<>();
+    stack.add(root);
+    while (!stack.isEmpty()) {
+      XML xml = stack.remove(stack.size() - 1);
+      String name = xml.getName();
+      if (name != null && !name.startsWith("#")) {
+        all.add(xml);
+        lists.computeIfAbsent(name, k -> new ArrayList<>()).add(xml);
+        XML[] kids = xml.getChildren();
+        for (int i = kids.length - 1; i >= 0; i--) {
+          stack.add(kids[i]);
+        }
+      }
+    }
+    HashMap<String, XML[]> index = new HashMap<>();
+    for (String name : lists.keySet()) {
+      index.put(name, lists.get(name).toArray(new XML[0]));
+    }
+    index.put("*", all.toArray(new XML[0]));
+    return index;
+  }
+}
@@ -0,0 +1,453 @@
+package processing.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+
+/**
+ * A read-only XML tree kept in a handful of arrays instead of a DOM: the
+ * name, parent, first child, and next sibling of each node are stored by
+ * node number, and the attributes of all the elements are in two shared
+ * arrays. Node numbers follow the order of the document, so an element's
+ * attributes run from attrStart[node] to attrStart[node + 1]. Names are
+ * shared between nodes, and the XML objects handed out for each node
+ * (View) are only made once they're asked for.
+ * <p/>
+ * Built from a StAX reader by XML.parseReadOnly() for whole documents,
+ * and by XML.stream() for one element at a time.
+ * <p/>
+ * Advanced users only, not official API.
+ */
+class XMLTree {
+  static final String TEXT = "#text";
+  static final String CDATA = "#cdata-section";
+  static final String COMMENT = "#comment";
+
+  int count;
+  String[] names = new String[16];
+  /** Text for #text, #cdata-section, and #comment nodes, null for elements */
+  String[] texts = new String[16];
+  int[] parents = new int[16];
+  int[] firstChild = new int[16];
+  int[] nextSibling = new int[16];
+
+  int attrCount;
+  int[] attrStart = new int[17];
+  String[] attrNames = new String[16];
+  String[] attrValues = new String[16];
+
+  /** The XML for each node, once it's been asked for */
+  View[] views;
+
+
+  static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    // same as the DOM version, no loading DTDs from www.w3.org
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    try {
+      // keep CDATA sections apart from the text around them, as the DOM does
+      factory.setProperty("http://java.sun.com/xml/stream/properties/report-cdata-event", true);
+    } catch (IllegalArgumentException e) {
+      // ignore this; not all StAX implementations have it
+    }
+    return factory;
+  }
+
+
+  /**
+   * Read the element at the reader's current START_ELEMENT, and everything
+   * inside it, leaving the reader on its END_ELEMENT. The pool is used to
+   * share name strings, and can be shared between trees.
+   */
+  static XMLTree read(XMLStreamReader reader,
+                      HashMap<String, String> pool) throws XMLStreamException {
+    XMLTree tree = new XMLTree();
+    StringBuilder text = new StringBuilder();
+    int current = tree.addElement(reader, -1, pool);
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (text.length() != 0 &&
+          event != XMLStreamConstants.CHARACTERS &&
+          event != XMLStreamConstants.SPACE) {
+        tree.addNode(TEXT, text.toString(), current);
+        text.setLength(0);
+      }
+      switch (event) {
+      case XMLStreamConstants.START_ELEMENT:
+        current = tree.addElement(reader, current, pool);
+        depth++;
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        depth--;
+        if (depth > 0) {
+          current = tree.parents[current];
+        }
+        break;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.SPACE:
+        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+        break;
+      case XMLStreamConstants.CDATA:
+        tree.addNode(CDATA, reader.getText(), current);
+        break;
+      case XMLStreamConstants.COMMENT:
+        tree.addNode(COMMENT, reader.getText(), current);
+        break;
+      }
+    }
+    tree.attrStart[tree.count] = tree.attrCount;
+    return tree;
+  }
+
+
+  static String qualifiedName(String prefix, String local) {
+    return (prefix == null || prefix.isEmpty()) ? local : prefix + ":" + local;
+  }
+
+
+  static private String pooled(HashMap<String, String> pool, String s) {
+    String found = pool.putIfAbsent(s, s);
+    return (found != null) ? found : s;
+  }
+
+
+  private int addElement(XMLStreamReader reader, int parent,
+                         HashMap<String, String> pool) {
+    String name = qualifiedName(reader.getPrefix(), reader.getLocalName());
+    int node = addNode(pooled(pool, name), null, parent);
+    // namespace declarations are attributes as far as the DOM is concerned
+    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+      String prefix = reader.getNamespacePrefix(i);
+      String attr = (prefix == null || prefix.isEmpty()) ? "xmlns" : "xmlns:" + prefix;
+      addAttribute(pooled(pool, attr), reader.getNamespaceURI(i));
+    }
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String attr = qualifiedName(reader.getAttributePrefix(i),
+                                  reader.getAttributeLocalName(i));
+      addAttribute(pooled(pool, attr), reader.getAttributeValue(i));
+    }
+    return node;
+  }
+
+
+  private int addNode(String name, String text, int parent) {
+    if (count == names.length) {
+      int length = count << 1;
+      names = Arrays.copyOf(names, length);
+      texts = Arrays.copyOf(texts, length);
+      parents = Arrays.copyOf(parents, length);
+      firstChild = Arrays.copyOf(firstChild, length);
+      nextSibling = Arrays.copyOf(nextSibling, length);
+      attrStart = Arrays.copyOf(attrStart, length + 1);
+    }
+    int node = count++;
+    names[node] = name;
+    texts[node] = text;
+    parents[node] = parent;
+    firstChild[node] = -1;
+    nextSibling[node] = -1;
+    attrStart[node] = attrCount;
+    if (parent != -1) {
+      int kid = firstChild[parent];
+      if (kid == -1) {
+        firstChild[parent] = node;
+      } else {
+        // the last child is the one before this node that has no next
+        // sibling yet, found by walking from the previous node's ancestors
+        int prev = node - 1;
+        while (parents[prev] != parent) {
+          prev = parents[prev];
+        }
+        nextSibling[prev] = node;
+      }
+    }
+    return node;
+  }
+
+
+  private void addAttribute(String name, String value) {
+    if (attrCount == attrNames.length) {
+      attrNames = Arrays.copyOf(attrNames, attrCount << 1);
+      attrValues = Arrays.copyOf(attrValues, attrCount << 1);
+    }
+    attrNames[attrCount] = name;
+    attrValues[attrCount] = value;
+    attrCount++;
+  }
+
+
+  /** Make the arrays no larger than they need to be, once reading is done. */
+  void trim() {
+    names = Arrays.copyOf(names, count);
+    texts = Arrays.copyOf(texts, count);
+    parents = Arrays.copyOf(parents, count);
+    firstChild = Arrays.copyOf(firstChild, count);
+    nextSibling = Arrays.copyOf(nextSibling, count);
+    attrStart = Arrays.copyOf(attrStart, count + 1);
+    attrNames = Arrays.copyOf(attrNames, attrCount);
+    attrValues = Arrays.copyOf(attrValues, attrCount);
+  }
+
+
+  View view(int node) {
+    if (views == null) {
+      views = new View[count];
+    }
+    if (views[node] == null) {
+      views[node] = new View(this, node);
+    }
+    return views[node];
+  }
+
+
+  int findAttribute(int node, String name) {
+    for (int i = attrStart[node]; i < attrStart[node + 1]; i++) {
+      if (attrNames[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+
+  /** Same as getTextContent() for a DOM node: all the text inside it. */
+  String content(int node) {
+    if (texts[node] != null) {
+      return texts[node];
+    }
+    StringBuilder sb = new StringBuilder();
+    int end = subtreeEnd(node);
+    for (int i = node + 1; i < end; i++) {
+      if (names[i] == TEXT || names[i] == CDATA) {
+        sb.append(texts[i]);
+      }
+    }
+    return sb.toString();
+  }
+
+
+  /** The node after the last one inside this node. */
+  private int subtreeEnd(int node) {
+    for (int n = node; n != -1; n = parents[n]) {
+      if (nextSibling[n] != -1) {
+        return nextSibling[n];
+      }
+    }
+    return count;
+  }
+
+
+  /** Copy a node and everything inside it into a DOM document. */
+  Node toDOM(int node, Document document) {
+    if (names[node] == TEXT) {
+      return document.createTextNode(texts[node]);
+    } else if (names[node] == CDATA) {
+      return document.createCDATASection(texts[node]);
+    } else if (names[node] == COMMENT) {
+      return document.createComment(texts[node]);
+    }
+    Element element = document.createElement(names[node]);
+    for (int i = attrStart[node]; i < attrStart[node + 1]; i++) {
+      element.setAttribute(attrNames[i], attrValues[i]);
+    }
+    for (int kid = firstChild[node]; kid != -1; kid = nextSibling[kid]) {
+      element.appendChild(toDOM(kid, document));
+    }
+    return element;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * One node of an XMLTree, with the same methods as any other XML object
+   * for reading, but none of the ones for making changes. Unlike the DOM
+   * version, namespace (xmlns) attributes aren't copied to child elements.
+   */
+  static class View extends XML {
+    static private final long serialVersionUID = 1L;
+
+    final XMLTree tree;
+    final int index;
+    /** Results of getChild(String), which is often called over and over */
+    HashMap<String, XML> lookups;
+
+
+    View(XMLTree tree, int index) {
+      this.tree = tree;
+      this.index = index;
+    }
+
+
+    @Override
+    public XML getParent() {
+      int p = tree.parents[index];
+      return (p == -1) ? null : tree.view(p);
+    }
+
+
+    /** A DOM copy, so that this can be added to another XML object. */
+    @Override
+    protected Object getNative() {
+      try {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        Document document = factory.newDocumentBuilder().newDocument();
+        return tree.toDOM(index, document);
+      } catch (ParserConfigurationException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+
+    @Override
+    public String getName() {
+      return tree.names[index];
+    }
+
+
+    @Override
+    public String getLocalName() {
+      String name = tree.names[index];
+      return name.substring(name.indexOf(':') + 1);
+    }
+
+
+    @Override
+    protected void checkChildren() {
+      if (children == null) {
+        int childCount = 0;
+        for (int kid = tree.firstChild[index]; kid != -1; kid = tree.nextSibling[kid]) {
+          childCount++;
+        }
+        children = new XML[childCount];
+        int i = 0;
+        for (int kid = tree.firstChild[index]; kid != -1; kid = tree.nextSibling[kid]) {
+          children[i++] = tree.view(kid);
+        }
+      }
+    }
+
+
+    @Override
+    public XML getChild(String name) {
+      if (lookups == null) {
+        lookups = new HashMap<>();
+      } else if (lookups.containsKey(name)) {
+        return lookups.get(name);
+      }
+      XML found = super.getChild(name);
+      lookups.put(name, found);
+      return found;
+    }
+
+
+    @Override
+    public int getAttributeCount() {
+      return tree.attrStart[index + 1] - tree.attrStart[index];
+    }
+
+
+    @Override
+    public String[] listAttributes() {
+      int start = tree.attrStart[index];
+      return Arrays.copyOfRange(tree.attrNames, start, tree.attrStart[index + 1]);
+    }
+
+
+    @Override
+    public boolean hasAttribute(String name) {
+      return tree.findAttribute(index, name) != -1;
+    }
+
+
+    @Override
+    public String getString(String name, String defaultValue) {
+      int attr = tree.findAttribute(index, name);
+      return (attr == -1) ? defaultValue : tree.attrValues[attr];
+    }
+
+
+    @Override
+    public String getContent() {
+      return tree.content(index);
+    }
+
+
+    @Override
+    public String format(int indent) {
+      XML xml = new XML();
+      xml.node = (Node) getNative();
+      return xml.format(indent);
+    }
+
+
+    // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+    private RuntimeException readOnly() {
+      return new UnsupportedOperationException("This XML object is read-only");
+    }
+
+
+    @Override
+    public void setName(String newName) {
+      throw readOnly();
+    }
+
+
+    @Override
+    protected XML appendChild(Node newNode) {
+      throw readOnly();
+    }
+
+
+    @Override
+    public XML addChild(String tag) {
+      throw readOnly();
+    }
+
+
+    @Override
+    public XML addChild(XML child) {
+      throw readOnly();
+    }
+
+
+    @Override
+    public void removeChild(XML kid) {
+      throw readOnly();
+    }
+
+
+    @Override
+    public void trim() {
+      throw readOnly();
+    }
+
+
+    @Override
+    public void setString(String name, String value) {
+      throw readOnly();
+    }
+
+
+    @Override
+    public void setContent(String text) {
+      throw readOnly();
+    }
+  }
+}
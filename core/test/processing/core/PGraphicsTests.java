@@ -2,6 +2,10 @@ package processing.core;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import processing.awt.PGraphicsJava2D;
 import processing.core.PGraphics;
 
 public class PGraphicsTests {
@@ -16,4 +20,47 @@ public class PGraphicsTests {
         assertEquals(200, pg.width);
         assertEquals(150, pg.height);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testJava2DDirectPixels() {
+        PGraphicsJava2D pg = new PGraphicsJava2D();
+        pg.setParent(new PApplet());
+        pg.setPrimary(false);
+        pg.setSize(40, 30);
+        pg.hint(PConstants.ENABLE_DIRECT_PIXELS);
+        pg.beginDraw();
+        pg.background(0xffff0000);
+        pg.loadPixels();
+        int[] direct = pg.pixels;
+        assertEquals(0xffff0000, direct[0]);
+
+        // writes show up without updatePixels(), and drawing shows up in pixels[]
+        direct[5] = 0xff0000ff;
+        assertEquals(0xff0000ff, pg.get(5, 0));
+        pg.noStroke();
+        pg.fill(0xff00ff00);
+        pg.rect(0, 10, 40, 10);
+        assertEquals(0xff00ff00, direct[15 * 40]);
+
+        pg.setModified(false);
+        pg.updatePixels(4, 2, 6, 3);
+        assertTrue(pg.isModified());
+        assertEquals(4, pg.getModifiedX1());
+        assertEquals(2, pg.getModifiedY1());
+        assertEquals(10, pg.getModifiedX2());
+        assertEquals(5, pg.getModifiedY2());
+        pg.endDraw();
+        pg.loadPixels();
+        assertSame(direct, pg.pixels);
+
+        // back to copying, so a separate array that needs updatePixels()
+        pg.hint(PConstants.DISABLE_DIRECT_PIXELS);
+        pg.loadPixels();
+        assertNotSame(direct, pg.pixels);
+        assertEquals(0xff0000ff, pg.pixels[5]);
+        pg.pixels[6] = 0xff123456;
+        assertEquals(0xffff0000, pg.get(6, 0));
+        pg.updatePixels();
+        assertEquals(0xff123456, pg.get(6, 0));
+    }
+}
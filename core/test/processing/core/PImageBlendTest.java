@@ -0,0 +1,145 @@
+package processing.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import processing.awt.PGraphicsJava2D;
+
+
+/**
+ * Randomized checks that the row-at-a-time blend kernels give the same
+ * results as blendColor() one pixel at a time.
+ */
+public class PImageBlendTest {
+
+    static final int[] MODES = {
+        PConstants.REPLACE, PConstants.BLEND, PConstants.ADD, PConstants.SUBTRACT,
+        PConstants.LIGHTEST, PConstants.DARKEST, PConstants.DIFFERENCE,
+        PConstants.EXCLUSION, PConstants.MULTIPLY, PConstants.SCREEN,
+        PConstants.OVERLAY, PConstants.HARD_LIGHT, PConstants.SOFT_LIGHT,
+        PConstants.DODGE, PConstants.BURN
+    };
+
+    // the channel values most likely to show rounding problems
+    static final int[] EDGES = { 0x00, 0x01, 0x7e, 0x7f, 0x80, 0x81, 0xfe, 0xff };
+
+
+    /** Random colors, with channels often pinned to one of the EDGES. */
+    static int[] randomColors(Random random, int count) {
+        int[] outgoing = new int[count];
+        for (int i = 0; i < count; i++) {
+            int c = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                int channel = random.nextBoolean() ?
+                    EDGES[random.nextInt(EDGES.length)] : random.nextInt(256);
+                c |= channel << shift;
+            }
+            outgoing[i] = c;
+        }
+        return outgoing;
+    }
+
+
+    @Test
+    public void blendPixelsMatchesBlendColor() {
+        Random random = new Random(23);
+        for (int mode : MODES) {
+            for (int trial = 0; trial < 20; trial++) {
+                int count = random.nextInt(2000);
+                int dstOffset = random.nextInt(50);
+                int srcOffset = random.nextInt(50);
+                int[] dst = randomColors(random, dstOffset + count + 10);
+                int[] src = randomColors(random, srcOffset + count);
+
+                int[] expected = dst.clone();
+                for (int i = 0; i < count; i++) {
+                    expected[dstOffset + i] =
+                        PImage.blendColor(dst[dstOffset + i], src[srcOffset + i], mode);
+                }
+                PImage.blendPixels(dst, dstOffset, src, srcOffset, count, mode);
+                for (int i = 0; i < dst.length; i++) {
+                    assertEquals("mode " + mode + " at " + i, expected[i], dst[i]);
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void imageBlendMatchesBlendColor() {
+        Random random = new Random(24);
+        for (int mode : MODES) {
+            PImage dst = new PImage(97, 61, PConstants.ARGB);
+            PImage src = new PImage(97, 61, PConstants.ARGB);
+            dst.pixels = randomColors(random, dst.pixels.length);
+            src.pixels = randomColors(random, src.pixels.length);
+            int[] before = dst.pixels.clone();
+
+            // same size, so the bilinear sampling reads each pixel exactly
+            dst.blend(src, 0, 0, 97, 61, 0, 0, 97, 61, mode);
+            for (int i = 0; i < before.length; i++) {
+                assertEquals("mode " + mode + " at " + i,
+                             PImage.blendColor(before[i], src.pixels[i], mode),
+                             dst.pixels[i]);
+            }
+        }
+    }
+
+
+    @Test
+    public void java2DBlendModeMatchesBlendColor() {
+        // the modes that blendMode() supports with JAVA2D
+        int[] modes = {
+            PConstants.ADD, PConstants.SUBTRACT, PConstants.LIGHTEST,
+            PConstants.DARKEST, PConstants.DIFFERENCE, PConstants.EXCLUSION,
+            PConstants.MULTIPLY, PConstants.SCREEN, PConstants.REPLACE
+        };
+        Random random = new Random(25);
+        for (int mode : modes) {
+            PGraphicsJava2D pg = new PGraphicsJava2D();
+            pg.setParent(new PApplet());
+            pg.setPrimary(false);
+            pg.setSize(64, 48);
+            pg.beginDraw();
+            pg.loadPixels();
+            int[] before = randomColors(random, pg.pixels.length);
+            System.arraycopy(before, 0, pg.pixels, 0, before.length);
+            pg.updatePixels();
+
+            PImage src = new PImage(64, 48, PConstants.ARGB);
+            src.pixels = randomColors(random, src.pixels.length);
+            pg.blendMode(mode);
+            pg.image(src, 0, 0);
+            pg.endDraw();
+
+            pg.loadPixels();
+            for (int i = 0; i < before.length; i++) {
+                assertEquals("mode " + mode + " at " + i,
+                             PImage.blendColor(before[i], src.pixels[i], mode),
+                             pg.pixels[i]);
+            }
+        }
+    }
+
+
+    @Test
+    public void posterizeMatchesFormula() {
+        Random random = new Random(26);
+        for (int levels = 2; levels <= 255; levels += 17) {
+            PImage img = new PImage(40, 30, PConstants.ARGB);
+            img.pixels = randomColors(random, img.pixels.length);
+            int[] before = img.pixels.clone();
+            img.filter(PConstants.POSTERIZE, levels);
+            for (int i = 0; i < before.length; i++) {
+                int c = before[i];
+                int r = (((((c >> 16) & 0xff) * levels) >> 8) * 255) / (levels - 1);
+                int g = (((((c >> 8) & 0xff) * levels) >> 8) * 255) / (levels - 1);
+                int b = ((((c & 0xff) * levels) >> 8) * 255) / (levels - 1);
+                assertEquals((c & 0xff000000) | r << 16 | g << 8 | b, img.pixels[i]);
+            }
+        }
+    }
+}
@@ -314,4 +314,187 @@ public class PImageTest {
     assertEquals(PConstants.ARGB, transImg.format);
   }
   
+
+  @Test
+  public void testParallelFiltersMatchSerial() {
+    // large enough that PixelBands splits the work up
+    int[][] filters = {
+      { PConstants.GRAY }, { PConstants.INVERT }, { PConstants.THRESHOLD },
+      { PConstants.ERODE }, { PConstants.DILATE }, { PConstants.BLUR, 5 },
+      { PConstants.POSTERIZE, 4 }
+    };
+    int[] modes = { PConstants.BLEND, PConstants.ADD, PConstants.MULTIPLY,
+                    PConstants.OVERLAY, PConstants.REPLACE };
+    try {
+      for (int format : new int[] { PConstants.RGB, PConstants.ARGB, PConstants.ALPHA }) {
+        for (int[] filter : filters) {
+          int[][] results = new int[2][];
+          for (int pass = 0; pass < 2; pass++) {
+            PImage.setFilterParallelism(pass == 0 ? 1 : 4);
+            PImage big = randomImage(640, 480, format, 1);
+            if (filter.length == 1) {
+              big.filter(filter[0]);
+            } else {
+              big.filter(filter[0], filter[1]);
+            }
+            results[pass] = big.pixels;
+          }
+          assertArrayEquals("filter " + filter[0] + " format " + format,
+                            results[0], results[1]);
+        }
+      }
+      for (int mode : modes) {
+        int[][] results = new int[2][];
+        for (int pass = 0; pass < 2; pass++) {
+          PImage.setFilterParallelism(pass == 0 ? 1 : 4);
+          PImage dest = randomImage(800, 600, PConstants.ARGB, 2);
+          PImage src = randomImage(300, 200, PConstants.ARGB, 3);
+          dest.blend(src, 0, 0, 300, 200, -20, 10, 820, 590, mode);
+          results[pass] = dest.pixels;
+        }
+        assertArrayEquals("blend mode " + mode, results[0], results[1]);
+      }
+    } finally {
+      PImage.setFilterParallelism(0);
+    }
+  }
+
+
+  @Test
+  public void testBlendOffEdge() {
+    // destinations entirely off the left or top edge leave it alone
+    PImage src = randomImage(10, 10, PConstants.ARGB, 4);
+    PImage dest = randomImage(10, 10, PConstants.ARGB, 5);
+    int[] before = dest.pixels.clone();
+    dest.blend(src, 0, 0, 10, 10, -5, 0, 2, 10, PConstants.BLEND);
+    dest.blend(src, 0, 0, 10, 10, 0, -8, 10, 3, PConstants.ADD);
+    dest.copy(src, 0, 0, 10, 10, -5, -5, 4, 4);
+    dest.blend(dest, 0, 0, 10, 10, -5, 0, 2, 10, PConstants.BLEND);
+    assertArrayEquals(before, dest.pixels);
+  }
+
+
+  @Test
+  public void testBoxBlur() {
+    // a flat image stays flat, including at the edges
+    PImage flat = new PImage(120, 80, PConstants.ARGB);
+    Arrays.fill(flat.pixels, 0x80336699);
+    flat.filter(PConstants.BLUR, 6);
+    for (int c : flat.pixels) {
+      assertEquals(0x80336699, c);
+    }
+
+    // close to the exact kernel, which is still used when asked for
+    PImage source = new PImage(200, 150, PConstants.RGB);
+    for (int y = 0; y < 150; y++) {
+      for (int x = 0; x < 200; x++) {
+        int v = ((x / 25 + y / 25) % 2 == 0) ? 220 : 30;
+        source.pixels[y*200 + x] = 0xff000000 | v << 16 | v << 8 | (x + y) / 2;
+      }
+    }
+    for (float radius : new float[] { 2, 5, 12 }) {
+      PImage box = source.copy();
+      box.filter(PConstants.BLUR, radius);
+      PImage exact = source.copy();
+      exact.setExactBlur(true);
+      exact.filter(PConstants.BLUR, radius);
+      PImage other = source.copy();  // not affected by exact's setting
+      other.filter(PConstants.BLUR, radius);
+      assertArrayEquals(box.pixels, other.pixels);
+      PImage direct = source.copy();
+      direct.blurRGB(radius);
+      assertArrayEquals(direct.pixels, exact.pixels);
+
+      long total = 0;
+      for (int i = 0; i < box.pixels.length; i++) {
+        assertEquals(0xff, box.pixels[i] >>> 24);
+        for (int shift = 0; shift < 24; shift += 8) {
+          total += Math.abs((box.pixels[i] >> shift & 0xff) -
+                            (exact.pixels[i] >> shift & 0xff));
+        }
+      }
+      double mean = total / (box.pixels.length * 3.0);
+      assertTrue("radius " + radius + " differs by " + mean, mean < 2);
+    }
+
+    // narrow kernels (including the default) use the exact version
+    for (float radius : new float[] { 0.7f, 1, 2 }) {
+      PImage box = source.copy();
+      box.filter(PConstants.BLUR, radius);
+      PImage direct = source.copy();
+      direct.blurRGB(radius);
+      assertArrayEquals("radius " + radius, direct.pixels, box.pixels);
+    }
+    PImage plain = source.copy();
+    plain.filter(PConstants.BLUR);
+    assertFalse(Arrays.equals(source.pixels, plain.pixels));
+    for (int radius = 2; radius < BoxBlur.MIN_RADIUS; radius++) {
+      int[] radii = BoxBlur.boxRadii(BoxBlur.kernelVariance(radius));
+      assertTrue(radii[0] + radii[1] + radii[2] > 0);
+    }
+  }
+
+
+  @Test
+  public void testResizeModes() {
+    int[] modes = { PConstants.NEAREST_NEIGHBOR, PConstants.BILINEAR,
+                    PConstants.BICUBIC, PConstants.LANCZOS, PConstants.AREA };
+    // flat colors stay flat, translucent ones included
+    for (int mode : modes) {
+      for (int[] size : new int[][] { { 40, 25 }, { 250, 130 }, { 97, 61 } }) {
+        PImage flat = new PImage(97, 61, PConstants.ARGB);
+        Arrays.fill(flat.pixels, 0x80336699);
+        flat.resize(size[0], size[1], mode);
+        assertEquals(size[0] * size[1], flat.pixels.length);
+        for (int c : flat.pixels) {
+          assertEquals("mode " + mode, 0x80336699, c);
+        }
+      }
+    }
+
+    // shrinking by half with AREA averages each 2x2 block
+    PImage noise = randomImage(64, 48, PConstants.RGB, 4);
+    PImage half = noise.copy();
+    half.resize(32, 24, PConstants.AREA);
+    for (int y = 0; y < 24; y++) {
+      for (int x = 0; x < 32; x++) {
+        int c = half.pixels[y*32 + x];
+        assertEquals(0xff, c >>> 24);
+        for (int shift = 0; shift < 24; shift += 8) {
+          int sum = 0;
+          for (int i = 0; i < 4; i++) {
+            sum += noise.pixels[(y*2 + i/2)*64 + x*2 + i%2] >> shift & 0xff;
+          }
+          assertEquals(sum / 4.0, c >> shift & 0xff, 1);
+        }
+      }
+    }
+
+    // transparent pixels don't tint the ones next to them
+    PImage edge = new PImage(40, 20, PConstants.ARGB);
+    for (int i = 0; i < edge.pixels.length; i++) {
+      edge.pixels[i] = (i % 40 < 20) ? 0x00ff0000 : 0xff0000ff;
+    }
+    for (int mode : modes) {
+      PImage small = edge.copy();
+      small.resize(13, 7, mode);
+      for (int c : small.pixels) {
+        if ((c >>> 24) != 0) {
+          assertEquals("mode " + mode, 0, (c >> 16) & 0xff);
+        }
+      }
+    }
+  }
+
+
+  private PImage randomImage(int w, int h, int format, long seed) {
+    java.util.Random random = new java.util.Random(seed);
+    PImage outgoing = new PImage(w, h, format);
+    for (int i = 0; i < outgoing.pixels.length; i++) {
+      outgoing.pixels[i] = (format == PConstants.ALPHA) ?
+        random.nextInt(256) : random.nextInt();
+    }
+    return outgoing;
+  }
+
 }
\ No newline at end of file
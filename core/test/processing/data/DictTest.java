@@ -0,0 +1,190 @@
+package processing.data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * IntDict, LongDict, FloatDict, DoubleDict, and StringDict share DictHash
+ * for lookups. Removed entries are left as gaps until something needs the
+ * entries numbered in order, so these check that insertion order and the
+ * index-based methods still behave as if each removal had shifted the rest.
+ */
+public class DictTest {
+
+    @Test
+    public void removeKeepsOrder() {
+        IntDict dict = new IntDict();
+        for (int i = 0; i < 10; i++) {
+            dict.set("k" + i, i);
+        }
+        assertEquals(3, dict.remove("k3"));
+        assertEquals(7, dict.remove("k7"));
+        assertEquals(8, dict.size());
+        assertFalse(dict.hasKey("k3"));
+        assertEquals(5, dict.get("k5"));
+
+        // positions close up, same as before
+        assertEquals("k4", dict.key(3));
+        assertEquals(4, dict.index("k5"));
+        assertArrayEquals(new String[] { "k0", "k1", "k2", "k4", "k5", "k6", "k8", "k9" },
+                          dict.keyArray());
+        assertArrayEquals(new int[] { 0, 1, 2, 4, 5, 6, 8, 9 }, dict.valueArray());
+
+        // a removed key that comes back goes to the end
+        dict.set("k3", 33);
+        assertEquals(8, dict.index("k3"));
+        assertEquals("{ \"k0\": 0, \"k1\": 1, \"k2\": 2, \"k4\": 4, \"k5\": 5, " +
+                     "\"k6\": 6, \"k8\": 8, \"k9\": 9, \"k3\": 33 }", dict.toJSON());
+    }
+
+    @Test
+    public void removeIndex() {
+        StringDict dict = new StringDict(new String[][] {
+            { "a", "1" }, { "b", "2" }, { "c", "3" }, { "d", "4" }, { "e", "5" }
+        });
+        // from the back, then from the front
+        assertEquals("4", dict.removeIndex(3));
+        assertEquals("3", dict.removeIndex(2));
+        assertEquals("1", dict.removeIndex(0));
+        assertEquals(2, dict.size());
+        assertEquals("b", dict.key(0));
+        assertEquals("e", dict.key(1));
+        assertEquals("5", dict.get("e"));
+        assertNull(dict.get("c"));
+
+        try {
+            dict.removeIndex(2);
+            fail();
+        } catch (ArrayIndexOutOfBoundsException expected) { }
+    }
+
+    @Test
+    public void iteratorRemove() {
+        FloatDict dict = new FloatDict();
+        for (int i = 0; i < 100; i++) {
+            dict.set(String.valueOf(i), i);
+        }
+        Iterator<String> it = dict.keyIterator();
+        while (it.hasNext()) {
+            if (Integer.parseInt(it.next()) % 3 != 0) {
+                it.remove();
+            }
+        }
+        assertEquals(34, dict.size());
+
+        int seen = 0;
+        for (FloatDict.Entry e : dict.entries()) {
+            assertEquals(seen * 3, e.value, 0);
+            assertEquals(String.valueOf(seen * 3), e.key);
+            seen++;
+        }
+        assertEquals(34, seen);
+        assertEquals(33, dict.maxIndex());
+        assertEquals("99", dict.key(33));
+    }
+
+    @Test
+    public void swapAndSetIndex() {
+        LongDict dict = new LongDict(new Object[][] {
+            { "x", 1 }, { "y", 2 }, { "z", 3 }
+        });
+        dict.swap(0, 2);
+        assertEquals(0, dict.index("z"));
+        assertEquals(2, dict.index("x"));
+        assertEquals(1, dict.get("x"));
+
+        dict.setIndex(1, "w", 9);
+        assertFalse(dict.hasKey("y"));
+        assertEquals(9, dict.get("w"));
+        assertEquals(1, dict.index("w"));
+
+        dict.sortValues();
+        assertArrayEquals(new String[] { "x", "z", "w" }, dict.keyArray());
+        assertEquals(2, dict.index("w"));
+    }
+
+    @Test
+    public void removeThenSum() {
+        IntDict ints = new IntDict();
+        LongDict longs = new LongDict();
+        FloatDict floats = new FloatDict();
+        DoubleDict doubles = new DoubleDict();
+        String[] keys = { "a", "b", "c" };
+        int[] amounts = { 1, 10, 100 };
+        for (int i = 0; i < keys.length; i++) {
+            ints.set(keys[i], amounts[i]);
+            longs.set(keys[i], amounts[i]);
+            floats.set(keys[i], amounts[i]);
+            doubles.set(keys[i], amounts[i]);
+        }
+        ints.remove("a");
+        longs.remove("a");
+        floats.remove("a");
+        doubles.remove("a");
+        assertEquals(110, ints.sum());
+        assertEquals(110, longs.sum());
+        assertEquals(110, floats.sum(), 0);
+        assertEquals(110, doubles.sum(), 0);
+    }
+
+    @Test
+    public void removeMany() {
+        int count = 1_000_000;
+        IntDict dict = new IntDict();
+        for (int i = 0; i < count; i++) {
+            dict.increment("key" + i);
+        }
+        // with entries shifted on each removal, this would take minutes
+        for (int i = 0; i < count; i += 2) {
+            dict.remove("key" + i);
+        }
+        assertEquals(count / 2, dict.size());
+        assertEquals("key1", dict.key(0));
+        assertEquals("key" + (count - 1), dict.key(count / 2 - 1));
+        assertEquals(count / 2, dict.sum());
+
+        // growing again after removals reuses the space
+        DoubleDict doubles = new DoubleDict();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 1000; i++) {
+                doubles.set("r" + round + "_" + i, i);
+            }
+            for (int i = 0; i < 1000; i++) {
+                doubles.remove("r" + round + "_" + i);
+            }
+        }
+        assertEquals(0, doubles.size());
+        assertEquals(-1, doubles.minIndex());
+    }
+
+    @Test
+    public void matchesLinkedHashMap() {
+        // lots of removals and re-adds, so the DELETED slots get reused
+        Random random = new Random(11);
+        IntDict dict = new IntDict();
+        LinkedHashMap<String, Integer> map = new LinkedHashMap<>();
+        for (int step = 0; step < 50000; step++) {
+            String key = (random.nextInt(50) == 0) ? null : "k" + random.nextInt(300);
+            if (random.nextInt(3) == 0) {
+                if (map.containsKey(key)) {
+                    assertEquals((int) map.remove(key), dict.remove(key));
+                }
+            } else if (key != null) {
+                map.put(key, step);
+                dict.set(key, step);
+            }
+            if (step % 1000 == 0) {
+                assertArrayEquals(map.keySet().toArray(new String[0]), dict.keyArray());
+                for (String k : map.keySet()) {
+                    assertEquals((int) map.get(k), dict.get(k));
+                }
+            }
+        }
+        assertEquals(map.size(), dict.size());
+        assertFalse(dict.hasKey("k300"));
+    }
+}
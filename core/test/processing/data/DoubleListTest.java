@@ -84,4 +84,40 @@ public class DoubleListTest{
 
         assertArrayEquals(expected, testedList.values(),1e-7);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMathOnEach() {
+        DoubleList list = new DoubleList(new double[] {1, 2, 3, 4, 5});
+        DoubleList other = new DoubleList(new double[] {5, 4, 3, 2, 1});
+        assertEquals(35, list.dot(other), 0);
+        list.multEach(2);
+        list.addEach(other);
+        assertArrayEquals(new double[] {7, 8, 9, 10, 11}, list.values(), 0);
+        list.subEach(7);
+        list.divEach(2);
+        list.clamp(1, 1.5);
+        assertArrayEquals(new double[] {1, 1, 1, 1.5, 1.5}, list.values(), 0);
+        list.map(x -> -x);
+        assertEquals(-6, list.sum(), 0);
+        try {
+            list.addEach(new DoubleList(new double[] {1}));
+            fail();
+        } catch (IllegalArgumentException expected) { }
+    }
+
+    @Test
+    public void testHistogramAndPercent() {
+        DoubleList list = new DoubleList();
+        for (int i = 0; i < 100000; i++) {
+            list.append(i % 10);
+        }
+        IntList counts = list.histogram(5, 0, 10);
+        assertArrayEquals(new int[] {20000, 20000, 20000, 20000, 20000}, counts.values());
+        assertArrayEquals(new int[] {10000, 10000}, list.histogram(2, 8, 9).values());
+
+        DoubleList percent = list.getPercent();
+        assertEquals(list.size(), percent.size());
+        assertEquals(9 / list.sum(), percent.get(9), 1e-15);
+        assertEquals(1, percent.sum(), 1e-9);
+    }
+}
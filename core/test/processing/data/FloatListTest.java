@@ -0,0 +1,54 @@
+package processing.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FloatListTest {
+
+    @Test
+    public void testMathOnEach() {
+        FloatList list = new FloatList(new float[] {1, 2, 3, 4, 5});
+        FloatList other = new FloatList(new float[] {5, 4, 3, 2, 1});
+        assertEquals(35, list.dot(other), 0);
+        list.multEach(2);
+        list.addEach(other);
+        assertArrayEquals(new float[] {7, 8, 9, 10, 11}, list.values(), 0);
+        list.subEach(7);
+        list.divEach(2);
+        list.clamp(1, 1.5f);
+        assertArrayEquals(new float[] {1, 1, 1, 1.5f, 1.5f}, list.values(), 0);
+        list.map(x -> -x);
+        assertEquals(-6, list.sum(), 0);
+        try {
+            list.addEach(new FloatList(new float[] {1}));
+            fail();
+        } catch (IllegalArgumentException expected) { }
+    }
+
+    @Test
+    public void testDotPrecision() {
+        // 4097 * 4097 needs more bits than a float has
+        FloatList list = new FloatList();
+        for (int i = 0; i < 7; i++) {
+            list.append(4097);
+        }
+        assertEquals(7 * 16785409.0, list.dot(list), 0);
+    }
+
+    @Test
+    public void testHistogramAndPercent() {
+        FloatList list = new FloatList();
+        for (int i = 0; i < 100000; i++) {
+            list.append(i % 10);
+        }
+        IntList counts = list.histogram(5, 0, 10);
+        assertArrayEquals(new int[] {20000, 20000, 20000, 20000, 20000}, counts.values());
+        assertArrayEquals(new int[] {10000, 10000}, list.histogram(2, 8, 9).values());
+
+        FloatList percent = list.getPercent();
+        assertEquals(list.size(), percent.size());
+        assertEquals(9 / list.sum(), percent.get(9), 1e-7);
+        assertEquals(1, percent.sum(), 1e-3);
+    }
+}
@@ -499,4 +499,31 @@ public class IntListTest {
         IntList originalList = new IntList();
         assertEquals("", originalList.join("&"));
     }
+    @Test
+    public void testMathOnEach() {
+        IntList list = new IntList(new int[] {1, 2, 3, 4, 5});
+        IntList other = new IntList(new int[] {5, 4, 3, 2, 1});
+        assertEquals(35, list.dot(other));
+        list.multEach(other);
+        list.subEach(1);
+        list.divEach(2);
+        assertArrayEquals(new int[] {2, 3, 4, 3, 2}, list.values());
+        list.clamp(3, 3);
+        list.map(x -> x * x);
+        list.addEach(1);
+        assertArrayEquals(new int[] {10, 10, 10, 10, 10}, list.values());
+        IntList big = new IntList(new int[] {1 << 30});
+        assertEquals(1L << 60, big.dot(big));
+    }
+    @Test
+    public void testHistogramAndPercent() {
+        IntList list = new IntList();
+        for (int i = 0; i < 100000; i++) {
+            list.append(i % 4);
+        }
+        assertArrayEquals(new int[] {25000, 25000, 50000}, list.histogram(3, 0, 3).values());
+        FloatList percent = list.getPercent();
+        assertEquals(100000, percent.size());
+        assertEquals(3 / 150000.0, percent.get(3), 1e-9);
+    }
 }
@@ -0,0 +1,228 @@
+package processing.data;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class JSONTest {
+
+    private static final String SAMPLE =
+        "{ \"name\": \"caf\\u00e9 \\\"one\\\"\", \"count\": 3, \"big\": 12345678901,\n" +
+        "  \"ratio\": 0.25, \"tiny\": 1.5e-30, \"neg\": -7.125E2, \"ok\": true,\n" +
+        "  \"nothing\": null, \"list\": [1, 2.5, \"x\", [], {}],\n" +
+        "  \"nested\": { \"a\": { \"b\": [false] } }, 'single': 'quoted',\n" +
+        "  unquoted = bare words; \"trailing\": [1, 2,], \"gaps\": [1,,3], }";
+
+    @Test
+    public void sameTreeAsTokener() {
+        JSONObject expected = new JSONObject(new JSONTokener(SAMPLE));
+        JSONObject actual = new JSONObject(new StringReader(SAMPLE));
+        assertEquals(expected.format(-1), actual.format(-1));
+
+        assertEquals("café \"one\"", actual.getString("name"));
+        assertTrue(actual.get("count") instanceof Integer);
+        assertTrue(actual.get("big") instanceof Long);
+        assertTrue(actual.get("ratio") instanceof Double);
+        assertEquals(1.5e-30, actual.getDouble("tiny"), 0);
+        assertEquals("bare words", actual.getString("unquoted"));
+        assertTrue(actual.isNull("nothing"));
+        assertEquals(3, actual.getJSONArray("gaps").size());
+        assertTrue(actual.getJSONArray("gaps").isNull(1));
+    }
+
+    @Test
+    public void pullEvents() {
+        // a tiny buffer so that names and strings are split across reads
+        JSONReader reader = new JSONReader(new StringReader(SAMPLE), 7);
+        reader.beginObject();
+        assertEquals("name", reader.nextName());
+        assertEquals("café \"one\"", reader.nextString());
+        assertEquals("count", reader.nextName());
+        assertEquals(3, reader.nextInt());
+        assertEquals("big", reader.nextName());
+        assertEquals(12345678901L, reader.nextLong());
+        assertEquals("ratio", reader.nextName());
+        assertEquals(0.25, reader.nextDouble(), 0);
+        assertEquals("tiny", reader.nextName());
+        assertEquals(1.5e-30, reader.nextDouble(), 0);
+        assertEquals("neg", reader.nextName());
+        assertEquals(JSONReader.NUMBER, reader.peek());
+        assertEquals(-712.5, reader.nextDouble(), 0);
+        assertEquals("ok", reader.nextName());
+        assertTrue(reader.nextBoolean());
+        assertEquals("nothing", reader.nextName());
+        reader.nextNull();
+        assertEquals("list", reader.nextName());
+        reader.skipValue();
+        assertEquals("nested", reader.nextName());
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        JSONObject a = reader.nextObject();
+        assertFalse(a.getJSONArray("b").getBoolean(0));
+        assertEquals(JSONReader.END_OBJECT, reader.peek());
+        reader.endObject();
+        int names = 0;
+        while (reader.hasNext()) {
+            reader.nextName();
+            reader.skipValue();
+            names++;
+        }
+        assertEquals(4, names);
+        reader.endObject();
+        assertEquals(JSONReader.END_DOCUMENT, reader.peek());
+        assertEquals(5, reader.getLineNumber());
+    }
+
+    @Test
+    public void numbers() {
+        String text = "[0, -0.0, 1e22, 123456789012345678, 1234567890123456789, " +
+                      "0.1, 3.141592653589793, 2.2250738585072014E-308, 1e400]";
+        JSONArray expected = new JSONArray(new JSONTokener(text));
+        JSONReader reader = new JSONReader(new StringReader(text));
+        reader.beginArray();
+        for (int i = 0; i < expected.size() - 1; i++) {
+            Object value = expected.get(i);
+            if (value instanceof Double) {
+                double d = reader.nextDouble();
+                assertEquals(Double.doubleToLongBits((Double) value), Double.doubleToLongBits(d));
+            } else {
+                assertEquals(((Number) value).longValue(), reader.nextLong());
+            }
+        }
+        // too large for a double, so it's left as a String like before
+        assertEquals(JSONReader.STRING, reader.peek());
+        assertEquals("1e400", reader.nextString());
+        reader.endArray();
+    }
+
+    @Test
+    public void records() {
+        String text = "{\"id\": 1, \"tags\": [\"a\"]}\n{\"id\": 2}\n\n{\"id\": 3}\n";
+        int count = 0;
+        for (JSONObject record : new JSONReader(new StringReader(text)).objects()) {
+            count++;
+            assertEquals(count, record.getInt("id"));
+        }
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void errors() {
+        String[] bad = { "{\"a\" 1}", "{\"a\": 1", "[1 2]", "{\"a\": \"b\n\"}", "{\"a\": 1, \"a\": 2}" };
+        for (String text : bad) {
+            try {
+                new JSONObject(new StringReader(text));
+                fail(text);
+            } catch (RuntimeException expected) { }
+        }
+        assertNull(JSONArray.parse("[1, 2"));
+    }
+
+    @Test
+    public void writer() {
+        StringWriter out = new StringWriter();
+        JSONWriter writer = new JSONWriter(out);
+        for (int i = 0; i < 2; i++) {
+            writer.beginObject();
+            writer.name("i").value(i);
+            writer.name("f").value(0.1f);
+            writer.name("d").value(2.0);
+            writer.name("s").value("tab\there </b>");
+            writer.name("list").beginArray().value(true).nullValue().value(-0.0).endArray();
+            writer.name("tree").value(JSONObject.parse("{\"x\": [1]}"));
+            writer.endObject();
+        }
+        writer.close();
+        String expected =
+            "{\"i\":0,\"f\":0.1,\"d\":2,\"s\":\"tab\\there <\\/b>\",\"list\":[true,null,-0],\"tree\":{\"x\":[1]}}\n" +
+            "{\"i\":1,\"f\":0.1,\"d\":2,\"s\":\"tab\\there <\\/b>\",\"list\":[true,null,-0],\"tree\":{\"x\":[1]}}";
+        assertEquals(expected, out.toString());
+
+        int count = 0;
+        for (JSONObject record : new JSONReader(new StringReader(out.toString())).objects()) {
+            assertEquals(count++, record.getInt("i"));
+            assertEquals("tab\there </b>", record.getString("s"));
+        }
+        assertEquals(2, count);
+    }
+
+    @Test
+    public void indentedWriter() {
+        StringWriter out = new StringWriter();
+        JSONWriter writer = new JSONWriter(out, 2);
+        writer.beginObject();
+        writer.name("a").value(1);
+        writer.name("b").beginArray().value("x").value("y").endArray();
+        writer.name("c").beginObject().endObject();
+        writer.endObject();
+        writer.close();
+        String text = out.toString();
+        assertEquals("{\n  \"a\": 1,\n  \"b\": [\n    \"x\",\n    \"y\"\n  ],\n  \"c\": {}\n}", text);
+        assertEquals(JSONObject.parse(text).format(-1), new JSONObject(new StringReader(text)).format(-1));
+    }
+
+    @Test
+    public void numericArrays() {
+        String[] texts = {
+            "[1, 2, 3]", "[12345678901, -1, 0]", "[0.5, 2, -0.0, 1e7, 3]",
+            "[1, 2.5, 12345678901]", "[1, 2, 1e-9, 12345678]", "[1, 2, \"x\", 3.5]",
+            "[1.0, 2, 2.5]", "[1, 9.0E6, 5000000.0]", "[-0, 3, -0.0]"
+        };
+        for (String text : texts) {
+            JSONArray expected = new JSONArray(new JSONTokener(text));
+            JSONArray actual = JSONArray.parse(text);
+            assertEquals(text, expected.format(-1), actual.format(-1));
+            assertEquals(text, expected.join(","), actual.join(","));
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(text, expected.get(i), actual.get(i));
+            }
+            // removing keeps track of which were whole numbers
+            expected.remove(0);
+            actual.remove(0);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(text, expected.get(i), actual.get(i));
+            }
+            // and the same after being moved out of the primitive array
+            actual.append(true);
+            assertEquals(text, expected.append(true).format(2), actual.format(2));
+        }
+    }
+
+    @Test
+    public void sharedLists() {
+        // the to*List() methods make copies
+        JSONArray sorted = JSONArray.parse("[3, 1, 2]");
+        sorted.toIntList().sort();
+        assertEquals("[3,1,2]", sorted.format(-1));
+        JSONArray mixed = JSONArray.parse("[2, 0.5]");
+        mixed.asDoubleList().set(0, 2.5);
+        assertEquals(Integer.valueOf(2), mixed.get(0));
+
+        JSONArray ints = JSONArray.parse("[3, 1, 2]");
+        IntList list = ints.asIntList();
+        ints.setInt(0, 7);
+        assertEquals(7, list.get(0));
+        assertEquals(3, list.size());
+        assertArrayEquals(new int[] { 7, 1, 2 }, ints.toIntArray());
+
+        JSONArray doubles = JSONArray.parse("[0.5, 1.5]");
+        doubles.append(2.5);
+        assertEquals(3, doubles.asDoubleList().size());
+        assertEquals(2.5, doubles.asDoubleList().get(2), 0);
+        assertEquals(1.5, doubles.remove(1));
+        assertEquals("[0.5,2.5]", doubles.format(-1));
+
+        FloatList floats = new FloatList(0.1f, 0.2f);
+        JSONArray fromFloats = new JSONArray(floats);
+        assertEquals("[0.1,0.2]", fromFloats.format(-1));
+        assertEquals(0.2f, fromFloats.asFloatList().get(1), 0);
+        assertEquals(Float.valueOf(0.1f), fromFloats.get(0));
+
+        // anything other than a matching number moves the values into a list
+        ints.setString(1, "one");
+        assertEquals("[7,\"one\",2]", ints.format(-1));
+        assertEquals(7, list.get(0));
+    }
+}
@@ -0,0 +1,89 @@
+package processing.data;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class KeyPoolTest {
+
+    @Test
+    public void sharesKeys() {
+        KeyPool pool = new KeyPool(16);
+        String a = pool.intern(new String("name"));
+        String b = pool.intern(new String("name"));
+        assertSame(a, b);
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+
+        pool.clear();
+        assertNotSame(a, pool.intern(new String("name")));
+        assertEquals(0, pool.getHitCount());
+    }
+
+    @Test
+    public void keepsKeysInUse() {
+        KeyPool pool = new KeyPool(16);
+        String hot = pool.intern(new String("hot"));
+        // a long run of keys that are only seen once
+        for (int i = 0; i < 10000; i++) {
+            pool.intern("cold" + i);
+            assertSame(hot, pool.intern(new String("hot")));
+        }
+        assertEquals(10000, pool.getHitCount());
+    }
+
+    @Test
+    public void readerPools() {
+        String text = "{\"id\": 1}\n{\"id\": 2}\n";
+        KeyPool pool = new KeyPool(64);
+        JSONReader reader = new JSONReader(new StringReader(text));
+        reader.setKeyPool(pool);
+        int count = 0;
+        for (JSONObject record : reader.objects()) {
+            assertEquals(++count, record.getInt("id"));
+        }
+        assertEquals(2, count);
+        assertEquals(1, pool.getMissCount());
+
+        reader = new JSONReader(new StringReader(text));
+        reader.setKeyPool(null);
+        assertEquals(1, reader.nextObject().getInt("id"));
+        assertEquals(1, pool.getMissCount());
+    }
+
+    @Test
+    public void concurrentParsing() throws Exception {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            sb.append(i == 0 ? "" : ",");
+            sb.append("{\"key").append(i % 300).append("\": ").append(i)
+              .append(", \"name\": \"n").append(i).append("\"}");
+        }
+        String text = sb.append("]").toString();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<JSONArray>> results = new ArrayList<>();
+            for (int t = 0; t < 32; t++) {
+                results.add(executor.submit(() -> new JSONArray(new StringReader(text))));
+            }
+            for (Future<JSONArray> result : results) {
+                JSONArray array = result.get();
+                assertEquals(2000, array.size());
+                for (int i = 0; i < 2000; i += 97) {
+                    JSONObject object = array.getJSONObject(i);
+                    assertEquals(i, object.getInt("key" + (i % 300)));
+                    assertEquals("n" + i, object.getString("name"));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
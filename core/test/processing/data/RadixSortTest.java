@@ -0,0 +1,143 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RadixSortTest {
+
+    private static final int LARGE = 5000;
+
+    @Test
+    public void testSortIntsMatchesArrays() {
+        Random random = new Random(1);
+        int[] data = new int[LARGE + 10];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt();
+        }
+        data[3] = Integer.MIN_VALUE;
+        data[4] = Integer.MAX_VALUE;
+        int[] expected = Arrays.copyOf(data, LARGE);
+        Arrays.sort(expected);
+        RadixSort.sort(data, LARGE);
+        assertArrayEquals(expected, Arrays.copyOf(data, LARGE));
+    }
+
+    @Test
+    public void testSortLongsMatchesArrays() {
+        Random random = new Random(2);
+        long[] data = new long[LARGE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextLong() >> random.nextInt(64);
+        }
+        long[] expected = data.clone();
+        Arrays.sort(expected);
+        RadixSort.sort(data, data.length);
+        assertArrayEquals(expected, data);
+    }
+
+    @Test
+    public void testSortFloatsMatchesArrays() {
+        Random random = new Random(3);
+        float[] data = new float[LARGE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (random.nextFloat() - 0.5f) * 1000;
+        }
+        data[0] = Float.NaN;
+        data[1] = -0f;
+        data[2] = 0f;
+        data[3] = Float.NEGATIVE_INFINITY;
+        data[4] = Float.POSITIVE_INFINITY;
+        float[] expected = data.clone();
+        Arrays.sort(expected);
+        RadixSort.sort(data, data.length);
+        assertArrayEquals(expected, data, 0);
+        assertTrue(Float.isNaN(data[data.length - 1]));
+    }
+
+    @Test
+    public void testSortDoublesMatchesArrays() {
+        Random random = new Random(4);
+        double[] data = new double[LARGE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextGaussian() * 1e10;
+        }
+        data[0] = Double.NaN;
+        data[1] = -0.0;
+        double[] expected = data.clone();
+        Arrays.sort(expected);
+        RadixSort.sort(data, data.length);
+        assertArrayEquals(expected, data, 0);
+    }
+
+    @Test
+    public void testSortIndicesIsStable() {
+        int[] keys = { 3, 1, 3, 2, 1, 3 };
+        int[] order = IntList.fromRange(keys.length).values();
+        RadixSort.sortIndices(keys, order, keys.length, false);
+        assertArrayEquals(new int[] { 1, 4, 3, 0, 2, 5 }, order);
+
+        order = IntList.fromRange(keys.length).values();
+        RadixSort.sortIndices(keys, order, keys.length, true);
+        assertArrayEquals(new int[] { 0, 2, 5, 3, 1, 4 }, order);
+    }
+
+    @Test
+    public void testSortIndicesParallel() {
+        Random random = new Random(5);
+        int count = RadixSort.PARALLEL_THRESHOLD + 123;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = random.nextInt(1000) - 500;
+        }
+        int[] order = IntList.fromRange(count).values();
+        RadixSort.sortIndices(keys, order, count, false);
+        for (int i = 1; i < count; i++) {
+            long prev = keys[order[i-1]];
+            long curr = keys[order[i]];
+            assertTrue(prev < curr || (prev == curr && order[i-1] < order[i]));
+        }
+    }
+
+    @Test
+    public void testFloatKeysKeepNaNLast() {
+        float[] data = { 2, Float.NaN, -1, 5 };
+        int[] order = IntList.fromRange(data.length).values();
+        RadixSort.sortIndices(RadixSort.floatKeys(data, data.length, true), order, data.length, true);
+        assertArrayEquals(new int[] { 3, 0, 2, 1 }, order);
+    }
+
+    @Test
+    public void testRankIgnoresCase() {
+        String[] values = { "b", "A", null, "a", "C" };
+        assertArrayEquals(new int[] { 2, 1, 0, 1, 3 }, RadixSort.rank(values, values.length));
+    }
+
+    @Test
+    public void testDictSorts() {
+        IntDict dict = new IntDict();
+        dict.set("b", 2);
+        dict.set("C", 1);
+        dict.set("a", 2);
+        dict.sortValues();
+        assertArrayEquals(new String[] { "C", "a", "b" }, dict.keyArray());
+        // ties are broken by the keys, also in reverse
+        dict.sortValuesReverse();
+        assertArrayEquals(new String[] { "b", "a", "C" }, dict.keyArray());
+        dict.sortKeys();
+        assertArrayEquals(new String[] { "a", "b", "C" }, dict.keyArray());
+        assertEquals(1, dict.get("C"));
+
+        FloatDict floats = new FloatDict();
+        floats.set("x", Float.NaN);
+        floats.set("y", 3);
+        floats.set("z", -1);
+        floats.sortValuesReverse();
+        assertArrayEquals(new String[] { "y", "z", "x" }, floats.keyArray());
+        floats.sortValues();
+        assertArrayEquals(new String[] { "z", "y", "x" }, floats.keyArray());
+    }
+}
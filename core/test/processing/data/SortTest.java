@@ -162,4 +162,16 @@ public class SortTest {
         sorter.run();
         assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6}, data);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSortLargePresorted() {
+        // used to recurse once per element on data like this
+        int[] data = new int[200000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i / 3;
+        }
+        int[] expected = data.clone();
+        new IntArraySort(data).run();
+        assertArrayEquals(expected, data);
+    }
+}
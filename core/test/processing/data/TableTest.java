@@ -4,6 +4,20 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 public class TableTest {
@@ -106,4 +120,817 @@ public class TableTest {
 
         assertEquals(42.0f, table6.getMaxFloat(), 0.001f);
     }
+
+    private static byte[] sampleCSV(int rows) {
+        StringBuilder sb = new StringBuilder("\uFEFFid,name,score,group\n");
+        for (int i = 0; i < rows; i++) {
+            sb.append(i).append(',');
+            if (i % 7 == 0) {
+                sb.append("\"quoted, \"\"with\"\"\nnewline ").append(i).append('"');
+            } else {
+                sb.append("name").append(i);
+            }
+            sb.append(',').append(i * 0.25).append(",g").append(i % 5).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void parseParallelMatchesSequential() throws IOException {
+        // large enough to be split into several blocks
+        byte[] data = sampleCSV(300000);
+
+        Table dictionary = new Table();
+        dictionary.addColumn("title");
+        dictionary.addColumn("type");
+        dictionary.addRow(new Object[] { "id", "int" });
+        dictionary.addRow(new Object[] { "name", "string" });
+        dictionary.addRow(new Object[] { "score", "double" });
+        dictionary.addRow(new Object[] { "group", "category" });
+
+        Table sequential = dictionary.typedParse(new ByteArrayInputStream(data), "csv,header");
+        Table parallel = dictionary.typedParse(new ByteArrayInputStream(data), "csv,header,parallel");
+
+        assertArrayEquals(sequential.getColumnTitles(), parallel.getColumnTitles());
+        assertEquals(sequential.getRowCount(), parallel.getRowCount());
+        assertArrayEquals(sequential.getIntColumn(0), parallel.getIntColumn(0));
+        assertArrayEquals(sequential.getStringColumn(1), parallel.getStringColumn(1));
+        assertArrayEquals(sequential.getDoubleColumn(2), parallel.getDoubleColumn(2), 0);
+        assertArrayEquals(sequential.getStringColumn(3), parallel.getStringColumn(3));
+        assertArrayEquals(sequential.getIntColumn(3), parallel.getIntColumn(3));
+    }
+
+    @Test
+    public void parseParallelUntyped() throws IOException {
+        String tsv = "a\tb\n1\t2\n\n3\t4\t5\r\n6";
+        byte[] data = tsv.getBytes(StandardCharsets.UTF_8);
+        Table sequential = new Table(new ByteArrayInputStream(data), "tsv");
+        Table parallel = new Table(new ByteArrayInputStream(data), "tsv,parallel");
+
+        assertEquals(sequential.getRowCount(), parallel.getRowCount());
+        assertEquals(sequential.getColumnCount(), parallel.getColumnCount());
+        for (int row = 0; row < sequential.getRowCount(); row++) {
+            assertArrayEquals(sequential.getStringRow(row), parallel.getStringRow(row));
+        }
+    }
+
+    @Test
+    public void parseInferTypes() throws IOException {
+        byte[] data = sampleCSV(300000);
+        Table strings = new Table(new ByteArrayInputStream(data), "csv,header");
+        Table inferred = new Table(new ByteArrayInputStream(data), "csv,header,infer");
+        Table parallel = new Table(new ByteArrayInputStream(data), "csv,header,infer,parallel");
+
+        int[] expected = { Table.INT, Table.STRING, Table.FLOAT, Table.CATEGORY };
+        assertArrayEquals(expected, inferred.getColumnTypes());
+        assertArrayEquals(expected, parallel.getColumnTypes());
+        assertSameValues(strings, inferred);
+        assertSameValues(strings, parallel);
+    }
+
+    @Test
+    public void parseInferWidens() throws IOException {
+        StringBuilder sb = new StringBuilder("id,value,zip,note\n");
+        for (int i = 0; i < 5000; i++) {
+            if (i == 3000) {
+                // breaks the types guessed from the first rows
+                sb.append("5000000000,n/a,00501,x\n");
+            } else {
+                sb.append(i).append(',').append(i / 2).append(',')
+                  .append(10000 + i).append(",\n");
+            }
+        }
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+        Table strings = new Table(new ByteArrayInputStream(data), "csv,header");
+        for (String options : new String[] { "csv,header,infer", "csv,header,infer,parallel" }) {
+            Table inferred = new Table(new ByteArrayInputStream(data), options);
+            assertArrayEquals(new int[] { Table.LONG, Table.STRING, Table.STRING, Table.STRING },
+                              inferred.getColumnTypes());
+            assertSameValues(strings, inferred);
+            assertEquals(5000000000L, inferred.getLong(3000, "id"));
+            // leading zeroes are kept by switching to a String column
+            assertEquals("00501", inferred.getString(3000, "zip"));
+        }
+    }
+
+    @Test
+    public void parseInferBlanksToString() throws IOException {
+        // small enough for one block, then large enough that
+        // the column turns into a STRING in a later block
+        for (int rows : new int[] { 3000, 700000 }) {
+            StringBuilder sb = new StringBuilder("id,code\n");
+            for (int i = 0; i < rows; i++) {
+                sb.append(i).append(',');
+                if (i == rows - 1) {
+                    sb.append("abc");
+                } else if (i % 3 == 0) {
+                    sb.append(i % 100);
+                }
+                sb.append('\n');
+            }
+            byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+            for (String options : new String[] { "csv,header,infer", "csv,header,infer,parallel" }) {
+                Table inferred = new Table(new ByteArrayInputStream(data), options);
+                assertEquals(Table.STRING, inferred.getColumnType("code"));
+                assertEquals("0", inferred.getString(0, "code"));
+                assertNull(inferred.getString(1, "code"));
+                assertEquals("3", inferred.getString(3, "code"));
+                assertNull(inferred.getString(rows - 2, "code"));
+                assertEquals("abc", inferred.getString(rows - 1, "code"));
+            }
+        }
+    }
+
+    @Test
+    public void parseCompact() throws IOException {
+        StringBuilder sb = new StringBuilder("name,city,note\n");
+        String[] cities = { "Zürich", "東京", "😀 town", "Boston" };
+        for (int i = 0; i < 200000; i++) {
+            sb.append("name").append(i % 5000).append(',')
+              .append(cities[i % cities.length]);
+            if (i % 7 != 0) {  // short rows leave the last column empty
+                sb.append(",\"quoted, ").append(i % 3).append('\"');
+            }
+            sb.append('\n');
+        }
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+        Table strings = new Table(new ByteArrayInputStream(data), "csv,header");
+        for (String options : new String[] { "csv,header,compact", "csv,header,compact=offheap,parallel" }) {
+            Table compact = new Table(new ByteArrayInputStream(data), options);
+            assertTrue(compact.columns[0] instanceof MappedColumn);
+            assertSameValues(strings, compact);
+
+            // modifying goes back to a regular String[]
+            compact.setString(1, "city", "Paris");
+            assertEquals("Paris", compact.getString(1, "city"));
+            assertEquals("東京", compact.getString(5, "city"));
+        }
+    }
+
+    @Test
+    public void categoryDictionary() {
+        Table table = new Table();
+        table.addColumn("group", Table.CATEGORY);
+        for (int i = 0; i < 1000; i++) {
+            table.addRow(new Object[] { "g" + (i * 7 % 300) });
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("g" + (i * 7 % 300), table.getString(i, 0));
+        }
+        assertEquals(300, table.columnCategories[0].size());
+        assertEquals(0, table.columnCategories[0].find("g0"));
+        assertEquals(-1, table.columnCategories[0].find("g300"));
+    }
+
+    @Test
+    public void odsRoundTrip() throws IOException {
+        Table table = new Table();
+        table.addColumn("name", Table.STRING);
+        table.addColumn("count", Table.INT);
+        table.addColumn("score", Table.DOUBLE);
+        table.addRow(new Object[] { "  two  spaces & <tags>", 1, 0.5 });
+        table.addRow(new Object[] { "tab\there\nnewline 😀", 20, Double.NaN });
+        table.addRow(new Object[] { null, 300, 1e20 });
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        table.saveODS(output);
+        byte[] data = output.toByteArray();
+
+        Table strings = new Table(new ByteArrayInputStream(data), "ods,header");
+        assertArrayEquals(new String[] { "name", "count", "score" }, strings.getColumnTitles());
+        assertEquals(3, strings.getRowCount());
+        assertEquals("  two  spaces & <tags>", strings.getString(0, "name"));
+        assertEquals("tab\there\nnewline 😀", strings.getString(1, "name"));
+        assertNull(strings.getString(2, "name"));
+        assertEquals("300", strings.getString(2, "count"));
+
+        Table typed = new Table(new ByteArrayInputStream(data), "ods,header,infer");
+        // same rules as for CSV, so 0.5 and 1e20 fit in a float
+        assertArrayEquals(new int[] { Table.STRING, Table.INT, Table.FLOAT }, typed.getColumnTypes());
+        assertEquals(300, typed.getInt(2, "count"));
+        assertTrue(Float.isNaN(typed.getFloat(1, "score")));
+        assertEquals(1e20f, typed.getFloat(2, "score"), 0);
+    }
+
+    @Test
+    public void odsRepeatedCells() throws IOException {
+        String content =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<office:document-content xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\"" +
+            " xmlns:table=\"urn:oasis:names:tc:opendocument:xmlns:table:1.0\"" +
+            " xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\">" +
+            "<office:body><office:spreadsheet>" +
+            "<table:table table:name=\"Skipped\"><table:table-row><table:table-cell><text:p>no</text:p></table:table-cell></table:table-row></table:table>" +
+            "<table:table table:name=\"Data\">" +
+            "<table:table-row table:number-rows-repeated=\"3\">" +
+            "<table:table-cell office:value-type=\"float\" office:value=\"7\"><text:p>7.00</text:p></table:table-cell>" +
+            "<table:table-cell table:number-columns-repeated=\"2\"/>" +
+            "<table:table-cell><text:p>a<text:s text:c=\"2\"/>b</text:p><text:p>c</text:p></table:table-cell>" +
+            "<table:table-cell table:number-columns-repeated=\"16380\"/>" +
+            "</table:table-row>" +
+            "<table:table-row table:number-rows-repeated=\"1048573\"><table:table-cell table:number-columns-repeated=\"16384\"/></table:table-row>" +
+            "</table:table></office:spreadsheet></office:body></office:document-content>";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        java.util.zip.ZipOutputStream zos = new java.util.zip.ZipOutputStream(output);
+        zos.putNextEntry(new java.util.zip.ZipEntry("content.xml"));
+        zos.write(content.getBytes(StandardCharsets.UTF_8));
+        zos.closeEntry();
+        zos.close();
+
+        Table table = new Table(new ByteArrayInputStream(output.toByteArray()), "ods,worksheet=Data,infer");
+        assertEquals(3, table.getRowCount());
+        assertEquals(4, table.getColumnCount());
+        for (int row = 0; row < 3; row++) {
+            assertEquals(7, table.getInt(row, 0));
+            assertNull(table.getString(row, 1));
+            assertEquals("a  b\nc", table.getString(row, 3));
+        }
+    }
+
+    @Test
+    public void odsInferBlanksToString() throws IOException {
+        String number = "<table:table-row><table:table-cell office:value-type=\"float\" office:value=\"%d\"><text:p>%<d</text:p></table:table-cell></table:table-row>";
+        String blank = "<table:table-row table:number-rows-repeated=\"2\"><table:table-cell/></table:table-row>";
+        String content =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<office:document-content xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\"" +
+            " xmlns:table=\"urn:oasis:names:tc:opendocument:xmlns:table:1.0\"" +
+            " xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\">" +
+            "<office:body><office:spreadsheet><table:table table:name=\"Data\">" +
+            String.format(number, 0) + blank + String.format(number, 7) + blank +
+            "<table:table-row><table:table-cell><text:p>abc</text:p></table:table-cell></table:table-row>" +
+            "</table:table></office:spreadsheet></office:body></office:document-content>";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        java.util.zip.ZipOutputStream zos = new java.util.zip.ZipOutputStream(output);
+        zos.putNextEntry(new java.util.zip.ZipEntry("content.xml"));
+        zos.write(content.getBytes(StandardCharsets.UTF_8));
+        zos.closeEntry();
+        zos.close();
+
+        Table table = new Table(new ByteArrayInputStream(output.toByteArray()), "ods,infer");
+        assertEquals(Table.STRING, table.getColumnType(0));
+        assertEquals(7, table.getRowCount());
+        String[] expected = { "0", null, null, "7", null, null, "abc" };
+        for (int row = 0; row < expected.length; row++) {
+            assertEquals(expected[row], table.getString(row, 0));
+        }
+    }
+
+    private static void assertSameValues(Table strings, Table typed) {
+        assertArrayEquals(strings.getColumnTitles(), typed.getColumnTitles());
+        assertEquals(strings.getRowCount(), typed.getRowCount());
+        for (int col = 0; col < strings.getColumnCount(); col++) {
+            int type = typed.getColumnType(col);
+            for (int row = 0; row < strings.getRowCount(); row++) {
+                String s = strings.getString(row, col);
+                if (type == Table.STRING || type == Table.CATEGORY) {
+                    assertEquals(s, typed.getString(row, col));
+                } else if (type == Table.FLOAT) {
+                    assertEquals(Float.parseFloat(s), typed.getFloat(row, col), 0);
+                } else {
+                    assertEquals(Double.parseDouble(s), typed.getDouble(row, col), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void streamRows() throws IOException {
+        String csv = "\uFEFFname,count,note\nfirst,1,\"two\nlines\"\nsecond,2\nthird,3,\"\"\"quoted\"\"\"\n";
+        int total = 0;
+        StringList names = new StringList();
+        for (TableRow row : Table.stream(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "csv,header")) {
+            total += row.getInt("count");
+            names.append(row.getString("name"));
+            if (total == 1) {
+                assertEquals("two\nlines", row.getString("note"));
+            } else if (total == 3) {
+                // nothing left over from the previous row
+                assertNull(row.getString("note"));
+            } else {
+                assertEquals("\"quoted\"", row.getString(2));
+            }
+        }
+        assertEquals(6, total);
+        assertArrayEquals(new String[] { "first", "second", "third" }, names.toArray());
+
+        Iterator<TableRow> rows = Table.stream(new ByteArrayInputStream("a\tb\n".getBytes(StandardCharsets.UTF_8)), "tsv").iterator();
+        assertTrue(rows.hasNext());
+        assertEquals("b", rows.next().getString(1));
+        assertFalse(rows.hasNext());
+    }
+
+    @Test
+    public void streamErrorLine() throws IOException {
+        // line 1 is the header, and the first row takes up lines 2 and 3
+        String csv = "name,note\nfirst,\"two\nlines\"\nsecond,ok\nthird,\"never closed\n";
+        Iterator<TableRow> rows = Table.stream(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "csv,header").iterator();
+        assertEquals("first", rows.next().getString(0));
+        assertEquals("second", rows.next().getString(0));
+        try {
+            rows.next();
+            fail("unterminated quote not reported");
+        } catch (RuntimeException e) {
+            assertEquals("Error reading table on line 5", e.getMessage());
+        }
+    }
+
+    @Test
+    public void parseErrorLine() throws IOException {
+        // same as above, with the rows parsed in blocks
+        String csv = "name,note\nfirst,\"two\nlines\"\nsecond,ok\nthird,bad\"quote\n";
+        try {
+            new Table(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "csv,header,parallel");
+            fail("stray quote not reported");
+        } catch (RuntimeException e) {
+            assertEquals("Error reading table on line 5", e.getMessage());
+        }
+
+        // enough two-line rows to fill more than one block
+        StringBuilder big = new StringBuilder("name,note\r\n");
+        int count = 700000;
+        for (int i = 0; i < count; i++) {
+            big.append("x,\"a\r\nb\"\r\n");
+        }
+        big.append("y,bad\"quote\r\n");
+        try {
+            new Table(new ByteArrayInputStream(big.toString().getBytes(StandardCharsets.UTF_8)), "csv,header,parallel");
+            fail("stray quote not reported");
+        } catch (RuntimeException e) {
+            assertEquals("Error reading table on line " + (2 + 2 * count), e.getMessage());
+        }
+    }
+
+    @Test
+    public void sortMultipleColumns() {
+        Table table = new Table();
+        table.addColumn("name", Table.STRING);
+        table.addColumn("group", Table.CATEGORY);
+        table.addColumn("score", Table.FLOAT);
+        table.addRow(new Object[] { "d", "x", 2f });
+        table.addRow(new Object[] { "a", "y", 1f });
+        table.addRow(new Object[] { "c", "x", Float.NaN });
+        table.addRow(new Object[] { "B", "x", 2f });
+        table.addRow(new Object[] { "e", "y", 3f });
+
+        table.sort("group", "score");
+        assertArrayEquals(new String[] { "d", "B", "c", "a", "e" }, table.getStringColumn("name"));
+
+        table.sortReverse("score");
+        // NaN stays at the end, ties keep their order
+        assertArrayEquals(new String[] { "e", "d", "B", "a", "c" }, table.getStringColumn("name"));
+
+        table.sort("name");
+        assertArrayEquals(new String[] { "a", "B", "c", "d", "e" }, table.getStringColumn("name"));
+    }
+
+    @Test
+    public void groupByAggregates() {
+        Table table = new Table();
+        table.addColumn("region", Table.CATEGORY);
+        table.addColumn("year", Table.INT);
+        table.addColumn("sales", Table.INT);
+        table.addColumn("price", Table.FLOAT);
+        table.addRow(new Object[] { "north", 2020, 10, 1.5f });
+        table.addRow(new Object[] { "south", 2020, 20, 2f });
+        table.addRow(new Object[] { "north", 2021, 30, Float.NaN });
+        table.addRow(new Object[] { "east", 2020, 5, 4f });
+        table.addRow(new Object[] { "north", 2020, 1, 3.5f });
+
+        Table totals = table.groupBy("region").sum("sales").mean("price").max("price").count();
+        assertEquals(3, totals.getRowCount());
+        assertArrayEquals(new String[] { "north", "south", "east" }, totals.getStringColumn("region"));
+        assertEquals(Table.CATEGORY, totals.getColumnType("region"));
+        assertEquals(Table.LONG, totals.getColumnType("sum(sales)"));
+        assertEquals(41, totals.getLong(0, "sum(sales)"));
+        assertEquals(2.5, totals.getDouble(0, "mean(price)"), 0);
+        assertEquals(3.5f, totals.getFloat(0, "max(price)"), 0);
+        assertEquals(3, totals.getInt(0, "count"));
+        assertEquals(1, totals.getInt(2, "count"));
+
+        Table byYear = table.groupBy("region", "year").min("sales").count();
+        assertEquals(4, byYear.getRowCount());
+        assertEquals(2020, byYear.getInt(0, "year"));
+        assertEquals(1, byYear.getInt(0, "min(sales)"));
+        assertEquals(2, byYear.getInt(0, "count"));
+        assertEquals("north", byYear.getString(2, "region"));
+        assertEquals(2021, byYear.getInt(2, "year"));
+    }
+
+    @Test
+    public void groupByLargeTable() {
+        // big enough to be split into partitions
+        int rows = TableGroup.PARALLEL_THRESHOLD + 12345;
+        Table table = new Table();
+        table.addColumn("key", Table.STRING);
+        table.addColumn("value", Table.DOUBLE);
+        table.setRowCount(rows);
+        String[] keys = (String[]) table.columns[0];
+        double[] values = (double[]) table.columns[1];
+        long[] expectedCount = new long[100];
+        for (int row = 0; row < rows; row++) {
+            int key = (int) ((row * 2654435761L) % 97);
+            keys[row] = "k" + key;
+            values[row] = key;
+            expectedCount[key]++;
+        }
+
+        Table totals = table.groupBy("key").sum("value").min("value").count();
+        assertEquals(97, totals.getRowCount());
+        for (int group = 0; group < 97; group++) {
+            int key = Integer.parseInt(totals.getString(group, "key").substring(1));
+            assertEquals(expectedCount[key], totals.getInt(group, "count"));
+            assertEquals(key * expectedCount[key], totals.getDouble(group, "sum(value)"), 0);
+            assertEquals(key, totals.getDouble(group, "min(value)"), 0);
+        }
+        // groups are in order of first appearance
+        assertEquals("k0", totals.getString(0, "key"));
+        assertEquals("k" + (2654435761L % 97), totals.getString(1, "key"));
+    }
+
+    @Test
+    public void joinTables() {
+        Table sales = new Table();
+        sales.addColumn("store", Table.INT);
+        sales.addColumn("region", Table.CATEGORY);
+        sales.addColumn("amount", Table.FLOAT);
+        sales.addRow(new Object[] { 1, "north", 10f });
+        sales.addRow(new Object[] { 2, "south", 20f });
+        sales.addRow(new Object[] { 3, "east", 30f });
+        sales.addRow(new Object[] { 1, "north", 40f });
+
+        Table stores = new Table();
+        stores.addColumn("id", Table.LONG);
+        stores.addColumn("name", Table.STRING);
+        stores.addColumn("amount", Table.INT);
+        stores.addRow(new Object[] { 2L, "Bravo", 200 });
+        stores.addRow(new Object[] { 1L, "Alpha", 100 });
+        stores.addRow(new Object[] { 2L, "Bravo 2", 300 });
+
+        Table inner = sales.join(stores, "store", "id", Table.JoinType.INNER);
+        assertArrayEquals(new String[] { "store", "region", "amount", "name", "amount_2" }, inner.getColumnTitles());
+        assertArrayEquals(new String[] { "Alpha", "Bravo", "Bravo 2", "Alpha" }, inner.getStringColumn("name"));
+        assertArrayEquals(new int[] { 1, 2, 2, 1 }, inner.getIntColumn("store"));
+        assertEquals(Table.INT, inner.getColumnType("store"));
+        assertEquals(Table.CATEGORY, inner.getColumnType("region"));
+        assertEquals("south", inner.getString(2, "region"));
+        assertEquals(300, inner.getInt(2, "amount_2"));
+
+        Table outer = sales.join(stores, "store", "id", Table.JoinType.LEFT);
+        assertEquals(5, outer.getRowCount());
+        assertEquals(3, outer.getInt(3, "store"));
+        assertNull(outer.getString(3, "name"));
+
+        // categories match by name, even when numbered differently
+        Table regions = new Table();
+        regions.addColumn("region", Table.CATEGORY);
+        regions.addColumn("manager", Table.STRING);
+        regions.addRow(new Object[] { "west", "W" });
+        regions.addRow(new Object[] { "north", "N" });
+        regions.addRow(new Object[] { "east", "E" });
+        Table managed = sales.join(regions, "region", "region", Table.JoinType.LEFT);
+        assertArrayEquals(new String[] { "N", null, "E", "N" }, managed.getStringColumn("manager"));
+        assertEquals(4, managed.getColumnCount());
+    }
+
+    @Test
+    public void indexesFollowChanges() {
+        Table table = new Table();
+        table.addColumn("id", Table.INT);
+        table.addColumn("name", Table.STRING);
+        table.addColumn("score", Table.FLOAT);
+        table.createIndex("name");
+        table.createIndex("id");
+        table.createSortedIndex("score");
+        table.createSortedIndex("name");
+
+        java.util.Random random = new java.util.Random(6);
+        for (int step = 0; step < 2000; step++) {
+            int op = random.nextInt(10);
+            int rows = table.getRowCount();
+            if (op < 4 || rows == 0) {
+                table.addRow(new Object[] { random.nextInt(20), "n" + random.nextInt(30), random.nextInt(50) / 2f });
+            } else if (op == 4) {
+                table.removeRow(random.nextInt(rows));
+            } else if (op == 5) {
+                table.insertRow(random.nextInt(rows), new Object[] { random.nextInt(20), "N" + random.nextInt(30) });
+            } else if (op == 6) {
+                table.setFloat(random.nextInt(rows), "score", random.nextBoolean() ? Float.NaN : random.nextInt(50));
+            } else if (op == 7) {
+                table.setString(random.nextInt(rows), "name", random.nextBoolean() ? null : "n" + random.nextInt(30));
+            } else if (op == 8) {
+                table.setInt(random.nextInt(rows), "id", random.nextInt(20));
+            } else if (step % 50 == 9) {
+                table.sort("score");
+            }
+
+            if (step % 10 == 0) {
+                String name = "n" + random.nextInt(30);
+                assertArrayEquals(scan(table, 1, name), table.findRowIndices(name, "name"));
+                int[] nulls = scan(table, 1, null);
+                assertEquals(nulls.length == 0 ? -1 : nulls[0], table.findRowIndex(null, 1));
+                String id = String.valueOf(random.nextInt(20));
+                assertArrayEquals(scan(table, 0, id), table.findRowIndices(id, "id"));
+
+                float low = random.nextInt(25);
+                float high = low + random.nextInt(10);
+                IntList expected = new IntList();
+                for (int row = 0; row < table.getRowCount(); row++) {
+                    float value = table.getFloat(row, 2);
+                    if (value >= low && value <= high) {
+                        expected.append(row);
+                    }
+                }
+                assertArrayEquals(expected.values(), table.findRowIndicesBetween(low, high, "score"));
+
+                expected.clear();
+                for (int row = 0; row < table.getRowCount(); row++) {
+                    String value = table.getString(row, 1);
+                    if (value != null && value.compareToIgnoreCase("n1") >= 0 && value.compareToIgnoreCase("n2") <= 0) {
+                        expected.append(row);
+                    }
+                }
+                assertArrayEquals(expected.values(), table.findRowIndicesBetween("n1", "N2", "name"));
+            }
+        }
+
+        table.removeColumn("id");
+        assertArrayEquals(scan(table, 0, "n3"), table.findRowIndices("n3", "name"));
+        table.clearRows();
+        assertEquals(-1, table.findRowIndex("n3", "name"));
+        assertEquals(0, table.findRowIndicesBetween(0, 100, "score").length);
+    }
+
+    @Test
+    public void indexCategoryAddRow() {
+        Table table = new Table();
+        table.addColumn("group", Table.CATEGORY);
+        table.createIndex("group");
+        table.createSortedIndex("group");
+        // build the indexes before anything is added
+        assertEquals(-1, table.findRowIndex("a", "group"));
+        assertEquals(0, table.findRowIndicesBetween("a", "z", "group").length);
+
+        // the new row's category isn't set until after it's been added
+        table.addRow();
+        table.setRow(0, new Object[] { "b" });
+        table.addRow(new Object[] { "a" });
+        table.addRow(new Object[] { "b" });
+        table.insertRow(0, new Object[] { "c" });
+        assertArrayEquals(new int[] { 1, 3 }, table.findRowIndices("b", "group"));
+        assertEquals(0, table.findRowIndex("c", "group"));
+        assertArrayEquals(new int[] { 1, 2, 3 }, table.findRowIndicesBetween("a", "b", "group"));
+    }
+
+    private static int[] scan(Table table, int column, String value) {
+        IntList outgoing = new IntList();
+        for (int row = 0; row < table.getRowCount(); row++) {
+            String s = table.getString(row, column);
+            if (value == null ? s == null : value.equals(s)) {
+                outgoing.append(row);
+            }
+        }
+        return outgoing.values();
+    }
+
+    private static Table binarySample() {
+        Table table = new Table();
+        table.addColumn("i", Table.INT);
+        table.addColumn("l", Table.LONG);
+        table.addColumn("f", Table.FLOAT);
+        table.addColumn("d", Table.DOUBLE);
+        table.addColumn("s", Table.STRING);
+        table.addColumn("c", Table.CATEGORY);
+        for (int row = 0; row < 1000; row++) {
+            table.addRow(new Object[] {
+                row, row * 10_000_000_000L, row / 4f, row / 8.0,
+                (row % 10 == 0) ? null : "caf\u00e9 " + row, "cat" + (row % 3)
+            });
+        }
+        table.setFloat(5, "f", Float.NaN);
+        return table;
+    }
+
+    private static void assertSameTable(Table expected, Table actual) {
+        assertArrayEquals(expected.getColumnTitles(), actual.getColumnTitles());
+        assertArrayEquals(expected.getColumnTypes(), actual.getColumnTypes());
+        assertEquals(expected.getRowCount(), actual.getRowCount());
+        for (int row = 0; row < expected.getRowCount(); row++) {
+            assertArrayEquals(expected.getStringRow(row), actual.getStringRow(row));
+        }
+    }
+
+    @Test
+    public void binaryMapped() throws IOException {
+        Table table = binarySample();
+        File file = File.createTempFile("table", ".bin");
+        file.deleteOnExit();
+        assertTrue(table.save(file, "bin"));
+
+        Table mapped = new Table(file);
+        assertTrue(mapped.columns[0] instanceof MappedColumn);
+        assertSameTable(table, mapped);
+        assertEquals(999 * 10_000_000_000L, mapped.getLong(999, "l"));
+        assertEquals(2, mapped.getInt(5, "c"));
+
+        // modifying a column copies it out of the mapped file
+        mapped.setInt(3, "c", 1);
+        assertFalse(mapped.columns[5] instanceof MappedColumn);
+        assertEquals("cat1", mapped.getString(3, "c"));
+        mapped.removeRow(0);
+        assertEquals(999, mapped.getRowCount());
+        assertEquals(1, mapped.getInt(0, "i"));
+    }
+
+    @Test
+    public void binarySaveOverMapped() throws IOException {
+        Table table = binarySample();
+        File file = File.createTempFile("table", ".bin");
+        file.deleteOnExit();
+        assertTrue(table.save(file, "bin"));
+
+        // the mapped columns still read from the file while it's replaced
+        Table mapped = new Table(file, "bin");
+        assertTrue(mapped.columns[4] instanceof MappedColumn);
+        assertTrue(mapped.save(file, "bin"));
+        assertSameTable(table, mapped);
+        assertSameTable(table, new Table(file, "bin"));
+        File[] leftovers = file.getParentFile().listFiles((dir, name) -> name.endsWith("-" + file.getName()));
+        assertEquals(0, leftovers.length);
+    }
+
+    @Test
+    public void binaryStream() throws IOException {
+        Table table = binarySample();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertTrue(table.save(output, "bin"));
+        Table loaded = new Table(new ByteArrayInputStream(output.toByteArray()), "bin");
+        assertSameTable(table, loaded);
+    }
+
+    @Test
+    public void arrowMapped() throws IOException {
+        Table table = binarySample();
+        File file = File.createTempFile("table", ".arrow");
+        file.deleteOnExit();
+        assertTrue(table.save(file, "arrow"));
+
+        Table mapped = new Table(file);
+        for (int col = 0; col < 4; col++) {
+            assertTrue(mapped.columns[col] instanceof MappedColumn);
+        }
+        assertTrue(mapped.columns[5] instanceof MappedColumn);
+        assertSameTable(table, mapped);
+        assertTrue(Float.isNaN(mapped.getFloat(5, "f")));
+        assertEquals(999 * 10_000_000_000L, mapped.getLong(999, "l"));
+        assertEquals("cat2", mapped.getString(5, "c"));
+
+        mapped.setInt(3, "c", 1);
+        assertFalse(mapped.columns[5] instanceof MappedColumn);
+        assertEquals("cat1", mapped.getString(3, "c"));
+    }
+
+    @Test
+    public void arrowSaveOverMapped() throws IOException {
+        Table table = binarySample();
+        File file = File.createTempFile("table", ".arrow");
+        file.deleteOnExit();
+        assertTrue(table.save(file, "arrow"));
+
+        Table mapped = new Table(file, "arrow");
+        assertTrue(mapped.columns[0] instanceof MappedColumn);
+        assertTrue(mapped.save(file, "arrow"));
+        assertSameTable(table, mapped);
+        assertSameTable(table, new Table(file, "arrow"));
+    }
+
+    @Test
+    public void arrowStream() throws IOException {
+        Table table = binarySample();
+        table.setColumnTitles(null);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertTrue(table.save(output, "arrow"));
+        byte[] bytes = output.toByteArray();
+        assertEquals("ARROW1", new String(bytes, 0, 6, StandardCharsets.US_ASCII));
+        assertEquals("ARROW1", new String(bytes, bytes.length - 6, 6, StandardCharsets.US_ASCII));
+
+        Table loaded = new Table(new ByteArrayInputStream(bytes), "arrow");
+        assertSameTable(table, loaded);
+
+        // the stream flavor is the file without the magic numbers and footer
+        ByteBuffer end = ByteBuffer.wrap(bytes, bytes.length - 10, 4).order(ByteOrder.LITTLE_ENDIAN);
+        int footer = end.getInt();
+        byte[] stream = Arrays.copyOfRange(bytes, 8, bytes.length - 10 - footer);
+        loaded = new Table(new ByteArrayInputStream(stream), "arrow");
+        assertSameTable(table, loaded);
+    }
+
+    private static Table logSample() {
+        Table table = new Table();
+        table.addColumn("time", Table.LONG);
+        table.addColumn("reading", Table.FLOAT);
+        table.addColumn("sensor", Table.CATEGORY);
+        table.addColumn("note", Table.STRING);
+        return table;
+    }
+
+    @Test
+    public void logAppends() throws IOException {
+        File file = File.createTempFile("log", ".csv");
+        file.deleteOnExit();
+        Table table = logSample();
+        TableLog log = new TableLog(table, file);
+        log.setFlushRows(10);
+        for (int i = 0; i < 25; i++) {
+            table.addRow(new Object[] {
+                1_700_000_000_000L + i, i / 3f, "s" + (i % 2),
+                (i == 4) ? "a, \"quoted\" note" : "n" + i
+            });
+        }
+        // the 21st row started a flush of the 20 before it
+        assertEquals(21, Files.readAllLines(file.toPath()).size());
+        assertTrue(log.close());
+        assertEquals(26, Files.readAllLines(file.toPath()).size());
+
+        // a row that was cut off partway is dropped when the log is reopened
+        Files.write(file.toPath(), "1,2.5,s".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+        Table replayed = logSample();
+        log = new TableLog(replayed, file);
+        assertSameTable(table, replayed);
+        assertEquals(1_700_000_000_024L, replayed.getLong(24, "time"));
+        assertEquals(24 / 3f, replayed.getFloat(24, "reading"), 0);
+        assertEquals(26, Files.readAllLines(file.toPath()).size());
+
+        // removing rows rewrites the file
+        replayed.removeRow(0);
+        replayed.addRow(new Object[] { 5L, 0.5f, "s1", "last" });
+        assertTrue(log.close());
+        Table loaded = new Table(file, "header");
+        assertEquals(25, loaded.getRowCount());
+        assertEquals("n1", loaded.getString(0, "note"));
+        assertEquals("last", loaded.getString(24, "note"));
+    }
+
+    static class Reading {
+        long time;
+        float reading;
+        String sensor;
+        boolean valid;
+        char grade;
+        transient int ignored;
+    }
+
+    class Note {
+        String note;
+        int count;
+    }
+
+    Reading[] readings;
+    Note[] notes;
+
+    @Test
+    public void objects() {
+        List<Reading> list = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            Reading r = new Reading();
+            r.time = 1_700_000_000_000L + i;
+            r.reading = i / 4f;
+            r.sensor = "s" + (i % 3);
+            r.valid = (i % 2 == 0);
+            r.grade = (char) ('A' + i % 5);
+            r.ignored = i;
+            list.add(r);
+        }
+        Table table = Table.fromObjects(list);
+        assertArrayEquals(new String[] { "time", "reading", "sensor", "valid", "grade" },
+                          table.getColumnTitles());
+        assertEquals(Table.LONG, table.getColumnType("time"));
+        assertEquals(20000, table.getRowCount());
+        assertEquals("true", table.getString(0, "valid"));
+        assertEquals("false", table.getString(1, "valid"));
+        assertEquals("C", table.getString(7, "grade"));
+
+        table.parseInto(this, "readings");
+        assertEquals(20000, readings.length);
+        for (int i = 0; i < readings.length; i += 997) {
+            assertEquals(list.get(i).time, readings[i].time);
+            assertEquals(list.get(i).reading, readings[i].reading, 0);
+            assertEquals(list.get(i).sensor, readings[i].sensor);
+            assertEquals(list.get(i).valid, readings[i].valid);
+            assertEquals(list.get(i).grade, readings[i].grade);
+            assertEquals(0, readings[i].ignored);
+        }
+
+        // inner classes, and columns that aren't in the class
+        Table small = new Table();
+        small.addColumn("note", Table.STRING);
+        small.addColumn("count", Table.STRING);
+        small.addColumn("extra", Table.INT);
+        small.addRow(new Object[] { "a", "12", 5 });
+        small.parseInto(this, "notes");
+        assertEquals("a", notes[0].note);
+        assertEquals(12, notes[0].count);
+        assertEquals(0, Table.fromObjects(new ArrayList<Note>()).getColumnCount());
+    }
 }
@@ -0,0 +1,161 @@
+package processing.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class XMLTest {
+
+    private static final String SAMPLE =
+        "<?xml version=\"1.0\"?>\n" +
+        "<osm version=\"0.6\" xmlns:x=\"urn:example\">\n" +
+        "  <!-- a comment -->\n" +
+        "  <node id=\"1\" lat=\"52.5\" lon=\"13.25\"><tag k=\"name\" v=\"A &amp; B\"/></node>\n" +
+        "  <node id=\"2\" lat=\"-1.5\" lon=\"0\"/>\n" +
+        "  <way id=\"3\"><nd ref=\"1\"/><nd ref=\"2\"/><x:note>two <![CDATA[<nodes>]]></x:note></way>\n" +
+        "</osm>\n";
+
+    private static void assertSameTree(XML expected, XML actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getContent(), actual.getContent());
+        if (expected.getName().startsWith("#")) {
+            return;
+        }
+        // xmlns attributes are copied down to each child in the DOM version
+        String[] attrs = actual.listAttributes();
+        Arrays.sort(attrs);
+        String[] domAttrs = expected.listAttributes();
+        Arrays.sort(domAttrs);
+        if (actual.getParent() != null) {
+            domAttrs = Arrays.stream(domAttrs).filter(a -> !a.startsWith("xmlns")).toArray(String[]::new);
+        }
+        assertArrayEquals(domAttrs, attrs);
+        for (String attr : attrs) {
+            assertEquals(expected.getString(attr), actual.getString(attr));
+        }
+        assertEquals(expected.getChildCount(), actual.getChildCount());
+        for (int i = 0; i < expected.getChildCount(); i++) {
+            assertSame(actual, actual.getChild(i).getParent());
+            assertSameTree(expected.getChild(i), actual.getChild(i));
+        }
+    }
+
+    @Test
+    public void readOnlyMatchesDOM() throws Exception {
+        XML dom = XML.parse(SAMPLE);
+        XML compact = XML.parseReadOnly(new StringReader(SAMPLE));
+        assertSameTree(dom, compact);
+
+        assertEquals(52.5f, compact.getChild("node").getFloat("lat"), 0);
+        assertEquals("A & B", compact.getChild("node/tag").getString("v"));
+        assertSame(compact.getChild("way/x:note"), compact.getChild("way/x:note"));
+        assertEquals("note", compact.getChild("way/x:note").getLocalName());
+        assertEquals(2, compact.getChildren("way/nd").length);
+        assertEquals(2, compact.getChildren("node").length);
+        assertEquals(-1.5, compact.getChildren("node")[1].getDouble("lat"), 0);
+        assertNull(compact.getChild("relation"));
+        assertEquals(dom.format(-1), compact.format(-1));
+
+        // can be copied into a regular XML object
+        XML copy = new XML("copy");
+        copy.addChild(compact.getChild("way"));
+        assertEquals(2, copy.getChild("way").getChildren("nd").length);
+    }
+
+    @Test
+    public void readOnly() throws Exception {
+        XML compact = XML.parseReadOnly(new StringReader(SAMPLE));
+        try {
+            compact.getChild("node").setInt("id", 5);
+            fail();
+        } catch (UnsupportedOperationException expected) { }
+        try {
+            compact.addChild("node");
+            fail();
+        } catch (UnsupportedOperationException expected) { }
+    }
+
+    @Test
+    public void stream() {
+        byte[] data = SAMPLE.getBytes(StandardCharsets.UTF_8);
+        int count = 0;
+        for (XML node : XML.stream(new ByteArrayInputStream(data), "node")) {
+            count++;
+            assertEquals(count, node.getInt("id"));
+            assertNull(node.getParent());
+        }
+        assertEquals(2, count);
+
+        XML[] nds = new XML[2];
+        int index = 0;
+        for (XML nd : XML.stream(new StringReader(SAMPLE), "nd")) {
+            nds[index++] = nd;
+        }
+        assertEquals(2, nds[1].getInt("ref"));
+        assertEquals("two <nodes>", XML.stream(new StringReader(SAMPLE), "x:note")
+                                       .iterator().next().getContent());
+        assertFalse(XML.stream(new StringReader(SAMPLE), "relation").iterator().hasNext());
+    }
+
+    @Test
+    public void queries() throws Exception {
+        XML dom = XML.parse(SAMPLE);
+        XML compact = XML.parseReadOnly(new StringReader(SAMPLE));
+        for (XML xml : new XML[] { dom, compact }) {
+            assertEquals(2, xml.getChildren(XML.compile("way/nd")).length);
+            assertEquals("2", xml.getChild(XML.compile("node[@id='2']")).getString("id"));
+            assertEquals("2", xml.getChild(XML.compile("node[1]")).getString("id"));
+            assertEquals("name", xml.getChild(XML.compile("//tag[@k]")).getString("k"));
+            assertEquals(2, xml.getChildren(XML.compile("//nd")).length);
+            assertEquals(2, xml.getChildren(XML.compile("way//nd")).length);
+            assertEquals(0, xml.getChildren(XML.compile("node//nd")).length);
+            assertEquals(3, xml.getChildren(XML.compile("*[@id]")).length);
+            assertEquals(1, xml.getChildren(XML.compile("*[@id][@lon=\"0\"]")).length);
+            assertEquals("x:note", xml.getChild(XML.compile("way/2")).getName());
+            assertEquals(7, xml.getChildren(XML.compile("//*")).length);
+            assertNull(xml.getChild(XML.compile("//relation")));
+            // same as the path version for plain paths
+            assertArrayEquals(xml.getChildren("way/nd"), xml.getChildren(XML.compile("way/nd")));
+        }
+
+        // results are remembered, but not once the document changes
+        XMLQuery nds = XML.compile("//nd");
+        XML way = dom.getChild("way");
+        assertSame(dom.getChild(nds), dom.getChild(nds));
+        way.addChild("nd").setInt("ref", 4);
+        assertEquals(3, dom.getChildren(nds).length);
+        assertEquals(4, dom.getChildren(nds)[2].getInt("ref"));
+        way.getChild(0).setInt("ref", 9);
+        assertEquals(9, dom.getChild(XML.compile("//nd[@ref='9']")).getInt("ref"));
+
+        // changes to some other document leave them alone
+        XML[] found = nds.find(dom);
+        XML.parse(SAMPLE).getChild("way").addChild("nd");
+        assertSame(found, nds.find(dom));
+
+        // document order, even when the contexts are nested
+        XML nested = XML.parse("<a><b id='0'><b id='1'><c id='2'/></b><c id='3'/></b></a>");
+        for (XML xml : new XML[] { nested, XML.parseReadOnly(new StringReader(nested.toString())) }) {
+            XML[] cs = xml.getChildren(XML.compile("//b/c"));
+            assertEquals(2, cs.length);
+            assertEquals(2, cs[0].getInt("id"));
+            assertEquals(3, cs[1].getInt("id"));
+            assertEquals(2, xml.getChild(XML.compile("//c")).getInt("id"));
+        }
+        // unlike getChild(String), every b is searched, not only the first
+        XML later = XML.parse("<a><b/><b><c/></b></a>");
+        assertNull(later.getChild("b/c"));
+        assertNotNull(later.getChild(XML.compile("b/c")));
+
+        for (String bad : new String[] { "/osm", "node[@id=2]", "a//", "node[x]", "" }) {
+            try {
+                XML.compile(bad);
+                fail(bad);
+            } catch (IllegalArgumentException expected) { }
+        }
+    }
+}